@@ -0,0 +1,257 @@
+package org.opensearch.migrations.trafficcapture.kafkaoffloader;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.opentelemetry.api.common.Attributes;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.opensearch.migrations.trafficcapture.IOffloaderBackpressure;
+import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.IRootKafkaOffloaderContext;
+import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.KafkaRecordContext;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands records to a Producer from a single, dedicated thread that drains a bounded queue.
+ * <p>
+ * Producer.send() can block on things like retrieving cluster metadata or waiting for buffer memory, so callers
+ * (Netty event loops and producer callbacks) must never call it directly.  Running those calls on a dedicated
+ * thread, rather than on a shared pool, keeps a slow broker from starving unrelated work in the JVM, and bounding
+ * the queue in front of that thread makes the amount of capture data held in memory, and what happens when it is
+ * exceeded, explicit.  See {@link QueueFullPolicy} for the options.  send() never waits for room in the queue.
+ */
+@Slf4j
+public class BoundedKafkaSender<K, V> implements AutoCloseable, IOffloaderBackpressure {
+    public static final int DEFAULT_QUEUE_DEPTH = 10 * 1024;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    public enum QueueFullPolicy {
+        /**
+         * Once the queue is 3/4 full, connections stop reading from their clients (see
+         * {@link IOffloaderBackpressure}) until it has drained to half full.  Records that are still sent while
+         * reads are paused (e.g. streams that were already being closed) are never failed.  Once the queue is
+         * full, they wait in an overflow list that is sent, in order, after the queue.
+         */
+        PAUSE_READS,
+        /**
+         * Discard the record and complete its future with a null RecordMetadata so that the connection carries on
+         * as if the record had been sent.  Discarded records are logged and counted, and they leave a gap in the
+         * TrafficStream indices for that connection.
+         */
+        DROP,
+        /**
+         * Complete the record's future exceptionally with a {@link SendQueueFullException}
+         */
+        FAIL
+    }
+
+    public static class SendQueueFullException extends RuntimeException {
+        public SendQueueFullException(int queueDepth) {
+            super("The Kafka send queue is full (" + queueDepth + " records are waiting to be sent)");
+        }
+    }
+
+    private static class PendingSend<K, V> {
+        final ProducerRecord<K, V> record;
+        final CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        final long enqueueNanos = System.nanoTime();
+
+        PendingSend(ProducerRecord<K, V> record) {
+            this.record = record;
+        }
+    }
+
+    private final IRootKafkaOffloaderContext rootScope;
+    @Getter
+    private final Producer<K, V> producer;
+    @Getter
+    private final int maxQueueDepth;
+    @Getter
+    private final QueueFullPolicy queueFullPolicy;
+    private final int pauseReadsQueueDepth;
+    private final int resumeReadsQueueDepth;
+    private final BlockingQueue<PendingSend<K, V>> queue;
+    /**
+     * Records that didn't fit into the queue under PAUSE_READS.  While this has anything in it, every new record is
+     * added here too, so that records are still sent in the order that they were sent to this.
+     */
+    private final ConcurrentLinkedQueue<PendingSend<K, V>> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger overflowDepth = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> pausedReaders = new ConcurrentLinkedQueue<>();
+    private final AtomicLong droppedRecordCount = new AtomicLong();
+    private final Thread senderThread;
+    private volatile boolean closed;
+
+    public BoundedKafkaSender(IRootKafkaOffloaderContext rootScope, Producer<K, V> producer) {
+        this(rootScope, producer, DEFAULT_QUEUE_DEPTH, QueueFullPolicy.PAUSE_READS);
+    }
+
+    public BoundedKafkaSender(IRootKafkaOffloaderContext rootScope, Producer<K, V> producer,
+                              int maxQueueDepth, QueueFullPolicy queueFullPolicy) {
+        if (maxQueueDepth <= 0) {
+            throw new IllegalArgumentException("maxQueueDepth (" + maxQueueDepth + ") must be > 0");
+        }
+        this.rootScope = rootScope;
+        this.producer = producer;
+        this.maxQueueDepth = maxQueueDepth;
+        this.queueFullPolicy = queueFullPolicy;
+        this.pauseReadsQueueDepth = Math.max(1, maxQueueDepth / 4 * 3);
+        this.resumeReadsQueueDepth = maxQueueDepth / 2;
+        this.queue = new ArrayBlockingQueue<>(maxQueueDepth);
+        this.senderThread = new DefaultThreadFactory("kafkaSenderThread", true).newThread(this::runSendLoop);
+        senderThread.start();
+    }
+
+    /**
+     * @return the number of records waiting to be sent, including any that have overflowed the queue
+     */
+    public int getQueueDepth() {
+        return queue.size() + overflowDepth.get();
+    }
+
+    public long getDroppedRecordCount() {
+        return droppedRecordCount.get();
+    }
+
+    @Override
+    public boolean shouldPauseReads() {
+        return queueFullPolicy == QueueFullPolicy.PAUSE_READS && getQueueDepth() >= pauseReadsQueueDepth;
+    }
+
+    @Override
+    public void resumeWhenRelieved(Runnable resumeReading) {
+        pausedReaders.add(resumeReading);
+        // the queue may have drained before the reader was registered
+        resumePausedReadersIfDrained();
+    }
+
+    @Override
+    public void cancelResume(Runnable resumeReading) {
+        pausedReaders.remove(resumeReading);
+    }
+
+    private void resumePausedReadersIfDrained() {
+        if (pausedReaders.isEmpty() || getQueueDepth() > resumeReadsQueueDepth) {
+            return;
+        }
+        Runnable resumeReading;
+        while ((resumeReading = pausedReaders.poll()) != null) {
+            try {
+                resumeReading.run();
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage("Couldn't resume reading for a connection").log();
+            }
+        }
+    }
+
+    /**
+     * @return a future that completes once the producer has acknowledged the record, or with null if the record
+     * was dropped because the queue was full and the policy is DROP
+     */
+    public CompletableFuture<RecordMetadata> send(ProducerRecord<K, V> record) {
+        var pendingSend = new PendingSend<>(record);
+        if (closed) {
+            pendingSend.future.completeExceptionally(new IllegalStateException("The Kafka sender has been closed"));
+            return pendingSend.future;
+        }
+        if (overflowDepth.get() == 0 && queue.offer(pendingSend)) {
+            rootScope.meterDeltaEvent(getInstruments().sendQueueDepth, 1);
+        } else {
+            rootScope.meterIncrementEvent(getInstruments().sendQueueFullCounter, 1,
+                    Attributes.builder().put(KafkaRecordContext.QUEUE_FULL_POLICY_ATTR, queueFullPolicy.name()));
+            if (queueFullPolicy == QueueFullPolicy.PAUSE_READS) {
+                // reads have already been paused, so this can only grow by what was in flight before that
+                overflowDepth.incrementAndGet();
+                overflow.add(pendingSend);
+                rootScope.meterDeltaEvent(getInstruments().sendQueueDepth, 1);
+            } else if (queueFullPolicy == QueueFullPolicy.DROP) {
+                var totalDropped = droppedRecordCount.incrementAndGet();
+                log.atWarn().setMessage(() -> "Dropping Kafka record " + record.key() +
+                        " because the send queue is full (" + totalDropped + " records have been dropped)").log();
+                pendingSend.future.complete(null);
+            } else {
+                pendingSend.future.completeExceptionally(new SendQueueFullException(maxQueueDepth));
+            }
+        }
+        return pendingSend.future;
+    }
+
+    private KafkaRecordContext.MetricInstruments getInstruments() {
+        return rootScope.getKafkaOffloadingInstruments();
+    }
+
+    /**
+     * Everything in the queue was sent before anything in the overflow list, so the queue is emptied first
+     */
+    private PendingSend<K, V> takeNextPendingSend() throws InterruptedException {
+        var pendingSend = queue.poll();
+        if (pendingSend != null) {
+            return pendingSend;
+        }
+        pendingSend = overflow.poll();
+        if (pendingSend != null) {
+            overflowDepth.decrementAndGet();
+            return pendingSend;
+        }
+        return queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void runSendLoop() {
+        while (!closed || getQueueDepth() > 0) {
+            PendingSend<K, V> pendingSend;
+            try {
+                pendingSend = takeNextPendingSend();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (pendingSend != null) {
+                sendNow(pendingSend);
+            }
+            resumePausedReadersIfDrained();
+        }
+        PendingSend<K, V> abandoned;
+        while ((abandoned = queue.poll()) != null || (abandoned = overflow.poll()) != null) {
+            abandoned.future.completeExceptionally(new IllegalStateException("The Kafka sender has been closed"));
+        }
+        resumePausedReadersIfDrained();
+    }
+
+    private void sendNow(PendingSend<K, V> pendingSend) {
+        var sendStartNanos = System.nanoTime();
+        rootScope.meterDeltaEvent(getInstruments().sendQueueDepth, -1);
+        rootScope.meterHistogramMillis(getInstruments().sendQueueWaitDuration,
+                Duration.ofNanos(sendStartNanos - pendingSend.enqueueNanos));
+        try {
+            producer.send(pendingSend.record, (metadata, exception) -> {
+                rootScope.meterHistogramMillis(getInstruments().sendLatencyDuration,
+                        Duration.ofNanos(System.nanoTime() - sendStartNanos));
+                if (exception != null) {
+                    pendingSend.future.completeExceptionally(exception);
+                } else {
+                    pendingSend.future.complete(metadata);
+                }
+            });
+        } catch (Exception e) {
+            pendingSend.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stop accepting new records and wait for the ones that have already been queued to be handed to the producer
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        senderThread.join();
+    }
+}
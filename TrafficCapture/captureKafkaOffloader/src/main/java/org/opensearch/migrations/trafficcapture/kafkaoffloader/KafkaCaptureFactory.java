@@ -1,28 +1,32 @@
 package org.opensearch.migrations.trafficcapture.kafkaoffloader;
 
-import com.google.protobuf.CodedOutputStream;
-import java.nio.ByteBuffer;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ForkJoinPool;
-import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
+import org.opensearch.migrations.trafficcapture.CodedOutputStreamAndByteBufWrapper;
 import org.opensearch.migrations.trafficcapture.CodedOutputStreamHolder;
 import org.opensearch.migrations.trafficcapture.IChannelConnectionCaptureSerializer;
 import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.IOffloaderBackpressure;
 import org.opensearch.migrations.trafficcapture.OrderedStreamLifecyleManager;
 import org.opensearch.migrations.trafficcapture.StreamChannelConnectionCaptureSerializer;
 import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.IRootKafkaOffloaderContext;
+import org.opensearch.migrations.trafficcapture.protos.CompressionCodec;
 
 
 @Slf4j
-public class KafkaCaptureFactory implements IConnectionCaptureFactory<RecordMetadata> {
+public class KafkaCaptureFactory implements IConnectionCaptureFactory<RecordMetadata>, AutoCloseable {
 
     private static final String DEFAULT_TOPIC_NAME_FOR_TRAFFIC = "logging-traffic-topic";
     // This value encapsulates overhead we should reserve for a given Producer record to account for record key bytes and
@@ -31,44 +35,98 @@ public class KafkaCaptureFactory implements IConnectionCaptureFactory<RecordMeta
 
     private final IRootKafkaOffloaderContext rootScope;
     private final String nodeId;
-    // Potential future optimization here to use a direct buffer (e.g. nio) instead of byte array
-    private final Producer<String, byte[]> producer;
+    // All records go to the producer through this, so that Producer.send() never runs on a Netty or producer thread
+    private final BoundedKafkaSender<String, byte[]> sender;
     private final String topicNameForTraffic;
     private final int bufferSize;
+    // Stream buffers are leased from here (direct, size-classed arenas for the pooled allocator) and returned as
+    // soon as their contents have been handed to the producer.  Each stream starts small and only grows toward
+    // bufferSize as observations are actually written to it.
+    private final ByteBufAllocator bufferAllocator;
+
+    // When non-null, TrafficStreams from all connections are packed together into shared records
+    private final TrafficStreamBatcher trafficStreamBatcherOrNull;
+    private final CompressionCodec dataCompressionCodec;
+    // When non-null, stream buffers and records that are waiting to be sent are accounted for here
+    private final CaptureMemoryBudget memoryBudgetOrNull;
+
+    /**
+     * How a KafkaCaptureFactory buffers, packs and compresses what it sends.  Everything is optional and the
+     * defaults are to send each TrafficStream, uncompressed, as its own record on the default topic.
+     */
+    @Builder
+    @Getter
+    public static class Options {
+        @Builder.Default
+        private final String topicNameForTraffic = DEFAULT_TOPIC_NAME_FOR_TRAFFIC;
+        @Builder.Default
+        private final ByteBufAllocator bufferAllocator = PooledByteBufAllocator.DEFAULT;
+        /**
+         * When non-null, enables batching of TrafficStreams from different connections into shared Kafka
+         * records.  A batch is sent no later than this long after its first TrafficStream was added.
+         */
+        private final Duration batchLingerTime;
+        /**
+         * The size at which a batch is sent without waiting for the linger time.  This is capped by the space
+         * available for a single record.  Values &lt;= 0 use that cap.
+         */
+        @Builder.Default
+        private final int maxBatchBytes = -1;
+        /**
+         * How to compress the contents of reads and writes (see {@link StreamChannelConnectionCaptureSerializer})
+         */
+        @Builder.Default
+        private final CompressionCodec dataCompressionCodec = CompressionCodec.UNCOMPRESSED;
+        /**
+         * When non-null, the stream buffers and the records that haven't finished sending are reserved against
+         * this budget
+         */
+        private final CaptureMemoryBudget memoryBudget;
+    }
 
-    public KafkaCaptureFactory(IRootKafkaOffloaderContext rootScope, String nodeId, Producer<String, byte[]> producer,
-                               String topicNameForTraffic, int messageSize) {
+    public KafkaCaptureFactory(IRootKafkaOffloaderContext rootScope, String nodeId,
+                               BoundedKafkaSender<String, byte[]> sender, int messageSize, @NonNull Options options) {
         this.rootScope = rootScope;
         this.nodeId = nodeId;
-        this.producer = producer;
-        this.topicNameForTraffic = topicNameForTraffic;
+        this.sender = sender;
+        this.topicNameForTraffic = options.topicNameForTraffic;
         this.bufferSize = messageSize - KAFKA_MESSAGE_OVERHEAD_BYTES;
+        this.bufferAllocator = options.bufferAllocator;
+        this.trafficStreamBatcherOrNull = options.batchLingerTime == null ? null :
+                new TrafficStreamBatcher(sender, topicNameForTraffic, nodeId,
+                        options.maxBatchBytes > 0 ? Math.min(options.maxBatchBytes, bufferSize) : bufferSize,
+                        options.batchLingerTime);
+        this.dataCompressionCodec = options.dataCompressionCodec;
+        this.memoryBudgetOrNull = options.memoryBudget;
     }
 
     public KafkaCaptureFactory(IRootKafkaOffloaderContext rootScope, String nodeId, Producer<String, byte[]> producer, int messageSize) {
-        this(rootScope, nodeId, producer, DEFAULT_TOPIC_NAME_FOR_TRAFFIC, messageSize);
+        this(rootScope, nodeId, new BoundedKafkaSender<>(rootScope, producer), messageSize,
+                Options.builder().build());
     }
 
     @Override
     public IChannelConnectionCaptureSerializer<RecordMetadata>
     createOffloader(IConnectionContext ctx) {
         return new StreamChannelConnectionCaptureSerializer<>(nodeId, ctx.getConnectionId(),
-                new StreamManager(rootScope, ctx));
+                new StreamManager(rootScope, ctx), dataCompressionCodec);
     }
 
-    @AllArgsConstructor
-    static class CodedOutputStreamWrapper implements CodedOutputStreamHolder {
-        private final CodedOutputStream codedOutputStream;
-        private final ByteBuffer byteBuffer;
-        @Override
-        public int getOutputStreamBytesLimit() {
-            return byteBuffer.limit();
-        }
+    @Override
+    public IOffloaderBackpressure getBackpressure() {
+        return sender.getQueueFullPolicy() == BoundedKafkaSender.QueueFullPolicy.PAUSE_READS ? sender : null;
+    }
 
-        @Override
-        public @NonNull CodedOutputStream getOutputStream() {
-            return codedOutputStream;
+    /**
+     * Sends any TrafficStreams that are still waiting in a batch, stops the batcher's linger thread, and then
+     * closes the sender once everything that was queued has been handed to the producer
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (trafficStreamBatcherOrNull != null) {
+            trafficStreamBatcherOrNull.close();
         }
+        sender.close();
     }
 
     class StreamManager extends OrderedStreamLifecyleManager<RecordMetadata> {
@@ -84,32 +142,46 @@ public class KafkaCaptureFactory implements IConnectionCaptureFactory<RecordMeta
         }
 
         @Override
-        public CodedOutputStreamWrapper createStream() {
+        public CodedOutputStreamAndByteBufWrapper createStream() {
             telemetryContext.getCurrentSpan().addEvent("streamCreated");
+            return new CodedOutputStreamAndByteBufWrapper(bufferAllocator,
+                    CodedOutputStreamAndByteBufWrapper.DEFAULT_INITIAL_SEGMENT_SIZE, bufferSize, memoryBudgetOrNull);
+        }
 
-            ByteBuffer bb = ByteBuffer.allocate(bufferSize);
-            return new CodedOutputStreamWrapper(CodedOutputStream.newInstance(bb), bb);
+        @Override
+        public CompletableFuture<RecordMetadata> closeStream(CodedOutputStreamHolder outputStreamHolder, int index) {
+            // If an earlier close failed, kickoffCloseStream() will never be called for this holder, so make sure
+            // that its buffer still finds its way back to the allocator
+            return super.closeStream(outputStreamHolder, index)
+                    .whenComplete((v, t) -> releaseStream(outputStreamHolder));
         }
 
         @Override
         public CompletableFuture<RecordMetadata>
         kickoffCloseStream(CodedOutputStreamHolder outputStreamHolder, int index) {
-            if (!(outputStreamHolder instanceof CodedOutputStreamWrapper)) {
+            if (!(outputStreamHolder instanceof CodedOutputStreamAndByteBufWrapper)) {
                 throw new IllegalArgumentException("Unknown outputStreamHolder sent back to StreamManager: " +
                         outputStreamHolder);
             }
-            var osh = (CodedOutputStreamWrapper) outputStreamHolder;
+            var osh = (CodedOutputStreamAndByteBufWrapper) outputStreamHolder;
 
             final var connectionId = telemetryContext.getConnectionId();
 
             String recordId = String.format("%s.%d", connectionId, index);
-            var byteBuffer = osh.byteBuffer;
-            ProducerRecord<String, byte[]> kafkaRecord = new ProducerRecord<>(topicNameForTraffic, recordId,
-                    Arrays.copyOfRange(byteBuffer.array(), 0, byteBuffer.position()));
-            log.debug("Sending Kafka producer record: {} for topic: {}", recordId, topicNameForTraffic);
-
+            // Kafka's Serializer contract requires a byte[], so take one right-sized copy of the filled region and
+            // give the (much larger) pooled buffer back immediately instead of holding it for the whole send
+            byte[] recordValue;
+            try {
+                recordValue = osh.copyFilledBytes();
+            } finally {
+                osh.close();
+            }
+            final var recordLength = recordValue.length;
+            if (memoryBudgetOrNull != null) {
+                memoryBudgetOrNull.reserveQueuedBytes(recordLength);
+            }
             var flushContext = rootScope.createKafkaRecordContext(telemetryContext,
-                    topicNameForTraffic, recordId, kafkaRecord.value().length);
+                    topicNameForTraffic, recordId, recordValue.length);
             /*
              * The default KafkaProducer comes with built-in retry and error-handling logic that suits many cases. From the
              * documentation here for retry: https://kafka.apache.org/35/javadoc/org/apache/kafka/clients/producer/KafkaProducer.html
@@ -120,40 +192,39 @@ public class KafkaCaptureFactory implements IConnectionCaptureFactory<RecordMeta
              * retried or not retried at all: https://kafka.apache.org/35/javadoc/org/apache/kafka/common/errors/RetriableException.html
              * as well as basic retry backoff
              */
-            return sendFullyAsync(producer, kafkaRecord)
+            CompletableFuture<RecordMetadata> sendFuture;
+            if (trafficStreamBatcherOrNull != null) {
+                log.debug("Batching TrafficStream: {} for topic: {}", recordId, topicNameForTraffic);
+                sendFuture = trafficStreamBatcherOrNull.add(recordValue);
+            } else {
+                log.debug("Sending Kafka producer record: {} for topic: {}", recordId, topicNameForTraffic);
+                sendFuture = sender.send(new ProducerRecord<>(topicNameForTraffic, recordId, recordValue));
+            }
+            return sendFuture
                 .whenComplete(((recordMetadata, throwable) -> {
                     if (throwable != null) {
                         flushContext.addException(throwable, true);
                         log.error("Error sending producer record: {}", recordId, throwable);
+                    } else if (recordMetadata == null) {
+                        flushContext.getCurrentSpan().addEvent("recordDropped");
+                        rootScope.meterIncrementEvent(
+                                rootScope.getKafkaOffloadingInstruments().droppedTrafficStreamCounter);
+                        log.warn("Kafka producer record: {} was dropped because the send queue was full", recordId);
                     } else {
                         log.debug("Kafka producer record: {} has finished sending for topic: {} and partition {}",
                             recordId, recordMetadata.topic(), recordMetadata.partition());
                     }
                     flushContext.close();
+                    if (memoryBudgetOrNull != null) {
+                        memoryBudgetOrNull.releaseQueuedBytes(recordLength);
+                    }
                 }));
         }
-    }
-    
-    // Producer Send will block on actions such as retrieving cluster metadata, allows running fully async
-    public static <K, V> CompletableFuture<RecordMetadata> sendFullyAsync(Producer<K, V> producer, ProducerRecord<K, V> record) {
-        CompletableFuture<RecordMetadata> completableFuture = new CompletableFuture<>();
 
-        ForkJoinPool.commonPool().execute(() -> {
-            try {
-                producer.send(record, (metadata, exception) -> {
-                    if (exception != null) {
-                        completableFuture.completeExceptionally(exception);
-                    }
-                    else {
-                        completableFuture.complete(metadata);
-                    }
-                });
-            }
-            catch (Exception exception) {
-                completableFuture.completeExceptionally(exception);
+        private void releaseStream(CodedOutputStreamHolder outputStreamHolder) {
+            if (outputStreamHolder instanceof CodedOutputStreamAndByteBufWrapper) {
+                ((CodedOutputStreamAndByteBufWrapper) outputStreamHolder).close();
             }
-        });
-
-        return completableFuture;
+        }
     }
 }
@@ -0,0 +1,158 @@
+package org.opensearch.migrations.trafficcapture.kafkaoffloader;
+
+import com.google.protobuf.CodedOutputStream;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs serialized TrafficStreams from any number of connections into shared Kafka records so that a proxy
+ * handling many small requests sends fewer, larger records.  Each record's value is a sequence of length-delimited
+ * TrafficStreams and the record carries the {@link TrafficStreamUtils#TRAFFIC_STREAM_BATCH_FORMAT_HEADER} header so
+ * that the replayer knows to unpack it.
+ * <p>
+ * A batch is sent once adding the next TrafficStream would take it past maxBatchBytes or once the first
+ * TrafficStream in it has waited for the linger time, whichever comes first.  The future returned for each
+ * TrafficStream completes when the record that it was packed into has been acknowledged.  Because each
+ * connection's StreamManager waits on that future before closing its next stream, a connection never has more
+ * than one TrafficStream in any batch and per-connection ordering is unchanged.
+ */
+@Slf4j
+public class TrafficStreamBatcher implements AutoCloseable {
+    private final BoundedKafkaSender<String, byte[]> sender;
+    private final String topic;
+    private final String batchKeyPrefix;
+    private final int maxBatchBytes;
+    private final Duration lingerTime;
+    private final ScheduledExecutorService lingerScheduler;
+
+    private PendingBatch currentBatch;
+    private long batchesCreated;
+
+    private static class PendingBatch {
+        final String recordKey;
+        final List<byte[]> trafficStreams = new ArrayList<>();
+        final List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>();
+        int serializedSize;
+        ScheduledFuture<?> lingerFuture;
+
+        PendingBatch(String recordKey) {
+            this.recordKey = recordKey;
+        }
+
+        static int getDelimitedSize(byte[] trafficStreamBytes) {
+            return CodedOutputStream.computeUInt32SizeNoTag(trafficStreamBytes.length) + trafficStreamBytes.length;
+        }
+
+        void add(byte[] trafficStreamBytes, CompletableFuture<RecordMetadata> future) {
+            trafficStreams.add(trafficStreamBytes);
+            futures.add(future);
+            serializedSize += getDelimitedSize(trafficStreamBytes);
+        }
+
+        byte[] toRecordValue() throws IOException {
+            var value = new byte[serializedSize];
+            var cos = CodedOutputStream.newInstance(value);
+            for (var ts : trafficStreams) {
+                cos.writeUInt32NoTag(ts.length);
+                cos.writeRawBytes(ts);
+            }
+            cos.checkNoSpaceLeft();
+            return value;
+        }
+    }
+
+    public TrafficStreamBatcher(BoundedKafkaSender<String, byte[]> sender, String topic, String batchKeyPrefix,
+                                int maxBatchBytes, Duration lingerTime) {
+        this.sender = sender;
+        this.topic = topic;
+        this.batchKeyPrefix = batchKeyPrefix;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerTime = lingerTime;
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("kafkaBatchLingerThread", true));
+    }
+
+    /**
+     * Queue the serialized TrafficStream to be sent in the next batch.
+     * @return a future that completes with the metadata for the Kafka record that included the TrafficStream
+     */
+    public synchronized CompletableFuture<RecordMetadata> add(byte[] trafficStreamBytes) {
+        var future = new CompletableFuture<RecordMetadata>();
+        if (currentBatch != null &&
+                currentBatch.serializedSize + PendingBatch.getDelimitedSize(trafficStreamBytes) > maxBatchBytes) {
+            sendCurrentBatch();
+        }
+        if (currentBatch == null) {
+            var batch = new PendingBatch(String.format("%s.batch.%d", batchKeyPrefix, ++batchesCreated));
+            batch.lingerFuture = lingerScheduler.schedule(() -> sendBatchIfCurrent(batch),
+                    lingerTime.toNanos(), TimeUnit.NANOSECONDS);
+            currentBatch = batch;
+        }
+        currentBatch.add(trafficStreamBytes, future);
+        if (currentBatch.serializedSize >= maxBatchBytes) {
+            sendCurrentBatch();
+        }
+        return future;
+    }
+
+    private synchronized void sendBatchIfCurrent(PendingBatch batch) {
+        if (currentBatch == batch) {
+            sendCurrentBatch();
+        }
+    }
+
+    /**
+     * Send whatever has been batched so far without waiting for the linger time to expire
+     */
+    public synchronized void flush() {
+        if (currentBatch != null) {
+            sendCurrentBatch();
+        }
+    }
+
+    private void sendCurrentBatch() {
+        var batch = currentBatch;
+        currentBatch = null;
+        batch.lingerFuture.cancel(false);
+        byte[] recordValue;
+        try {
+            recordValue = batch.toRecordValue();
+        } catch (IOException e) {
+            batch.futures.forEach(f -> f.completeExceptionally(e));
+            return;
+        }
+        var kafkaRecord = new ProducerRecord<>(topic, batch.recordKey, recordValue);
+        kafkaRecord.headers().add(TrafficStreamUtils.TRAFFIC_STREAM_BATCH_FORMAT_HEADER,
+                TrafficStreamUtils.LENGTH_DELIMITED_BATCH_FORMAT.getBytes(StandardCharsets.UTF_8));
+        log.debug("Sending Kafka batch record: {} with {} TrafficStreams ({} bytes) for topic: {}",
+                batch.recordKey, batch.trafficStreams.size(), recordValue.length, topic);
+        sender.send(kafkaRecord)
+                .whenComplete((recordMetadata, throwable) -> {
+                    if (throwable != null) {
+                        batch.futures.forEach(f -> f.completeExceptionally(throwable));
+                    } else {
+                        batch.futures.forEach(f -> f.complete(recordMetadata));
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        flush();
+        lingerScheduler.shutdown();
+    }
+}
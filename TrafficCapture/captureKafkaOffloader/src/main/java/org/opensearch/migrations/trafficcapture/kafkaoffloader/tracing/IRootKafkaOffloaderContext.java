@@ -1,9 +1,9 @@
 package org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing;
 
-import org.opensearch.migrations.tracing.IInstrumentConstructor;
+import org.opensearch.migrations.tracing.IRootOtelContext;
 import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
 
-public interface IRootKafkaOffloaderContext extends IInstrumentConstructor {
+public interface IRootKafkaOffloaderContext extends IRootOtelContext {
     KafkaRecordContext.MetricInstruments getKafkaOffloadingInstruments();
 
     default KafkaRecordContext createKafkaRecordContext(IConnectionContext telemetryContext,
@@ -2,6 +2,9 @@ package org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing;
 
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
 import io.opentelemetry.api.metrics.Meter;
 import lombok.Getter;
 import lombok.NonNull;
@@ -18,6 +21,15 @@ public class KafkaRecordContext extends
     static final AttributeKey<String> TOPIC_ATTR = AttributeKey.stringKey("topic");
     static final AttributeKey<String> RECORD_ID_ATTR = AttributeKey.stringKey("recordId");
     static final AttributeKey<Long> RECORD_SIZE_ATTR = AttributeKey.longKey("recordSize");
+    public static final AttributeKey<String> QUEUE_FULL_POLICY_ATTR = AttributeKey.stringKey("queueFullPolicy");
+
+    public static class MetricNames {
+        public static final String SEND_QUEUE_DEPTH = "kafkaSendQueueDepth";
+        public static final String SEND_QUEUE_WAIT = "kafkaSendQueueWait";
+        public static final String SEND_LATENCY = "kafkaSendLatency";
+        public static final String SEND_QUEUE_FULL = "kafkaSendQueueFull";
+        public static final String TRAFFIC_STREAMS_DROPPED = "kafkaTrafficStreamsDropped";
+    }
 
     @Getter
     public final String topic;
@@ -34,8 +46,23 @@ public class KafkaRecordContext extends
     }
 
     public static class MetricInstruments extends CommonScopedMetricInstruments {
+        /**
+         * The following instruments are for the process-wide send queue that all records pass through on their
+         * way to the producer, so they're metered against the root context rather than per record.
+         */
+        public final LongUpDownCounter sendQueueDepth;
+        public final DoubleHistogram sendQueueWaitDuration;
+        public final DoubleHistogram sendLatencyDuration;
+        public final LongCounter sendQueueFullCounter;
+        public final LongCounter droppedTrafficStreamCounter;
+
         private MetricInstruments(Meter meter, String activityName) {
             super(meter, activityName);
+            sendQueueDepth = meter.upDownCounterBuilder(MetricNames.SEND_QUEUE_DEPTH).build();
+            sendQueueWaitDuration = meter.histogramBuilder(MetricNames.SEND_QUEUE_WAIT).setUnit("ms").build();
+            sendLatencyDuration = meter.histogramBuilder(MetricNames.SEND_LATENCY).setUnit("ms").build();
+            sendQueueFullCounter = meter.counterBuilder(MetricNames.SEND_QUEUE_FULL).build();
+            droppedTrafficStreamCounter = meter.counterBuilder(MetricNames.TRAFFIC_STREAMS_DROPPED).build();
         }
     }
 
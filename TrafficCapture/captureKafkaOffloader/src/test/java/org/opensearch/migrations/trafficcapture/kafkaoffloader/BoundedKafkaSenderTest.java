@@ -0,0 +1,124 @@
+package org.opensearch.migrations.trafficcapture.kafkaoffloader;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.TestRootKafkaOffloaderContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class BoundedKafkaSenderTest {
+
+    /**
+     * A producer whose send() doesn't return until it is released, as happens when metadata can't be fetched
+     */
+    private static class StalledProducer extends MockProducer<String, byte[]> {
+        final CountDownLatch sendEntered = new CountDownLatch(1);
+        final CountDownLatch releaseSends = new CountDownLatch(1);
+
+        StalledProducer() {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback) {
+            sendEntered.countDown();
+            try {
+                releaseSends.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.send(record, callback);
+        }
+    }
+
+    private static ProducerRecord<String, byte[]> makeRecord(int i) {
+        return new ProducerRecord<>("topic", "key" + i, new byte[]{(byte) i});
+    }
+
+    private static void fillQueue(BoundedKafkaSender<String, byte[]> sender, StalledProducer producer,
+                                  int depth) throws InterruptedException {
+        // the first record is taken off the queue by the sender thread, which then stalls in send()
+        sender.send(makeRecord(0));
+        Assertions.assertTrue(producer.sendEntered.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= depth; ++i) {
+            sender.send(makeRecord(i));
+        }
+        Assertions.assertEquals(depth, sender.getQueueDepth());
+    }
+
+    @Test
+    public void testFailPolicyFailsRecordsOnceTheQueueIsFull() throws Exception {
+        var rootContext = TestRootKafkaOffloaderContext.noTracking();
+        var producer = new StalledProducer();
+        var sender = new BoundedKafkaSender<>(rootContext, producer, 2,
+                BoundedKafkaSender.QueueFullPolicy.FAIL);
+        fillQueue(sender, producer, 2);
+
+        var rejected = sender.send(makeRecord(3));
+        var e = Assertions.assertThrows(ExecutionException.class, rejected::get);
+        Assertions.assertInstanceOf(BoundedKafkaSender.SendQueueFullException.class, e.getCause());
+
+        producer.releaseSends.countDown();
+        sender.close();
+        Assertions.assertEquals(3, producer.history().size());
+    }
+
+    @Test
+    public void testDropPolicyCompletesDroppedRecordsWithoutMetadata() throws Exception {
+        var rootContext = TestRootKafkaOffloaderContext.noTracking();
+        var producer = new StalledProducer();
+        var sender = new BoundedKafkaSender<>(rootContext, producer, 1,
+                BoundedKafkaSender.QueueFullPolicy.DROP);
+        fillQueue(sender, producer, 1);
+
+        Assertions.assertNull(sender.send(makeRecord(2)).get());
+        Assertions.assertEquals(1, sender.getDroppedRecordCount());
+
+        producer.releaseSends.countDown();
+        sender.close();
+        Assertions.assertEquals(2, producer.history().size());
+    }
+
+    @Test
+    public void testPauseReadsPolicyPausesReadersWithoutBlockingTheCaller() throws Exception {
+        var rootContext = TestRootKafkaOffloaderContext.noTracking();
+        var producer = new StalledProducer();
+        var sender = new BoundedKafkaSender<>(rootContext, producer, 4,
+                BoundedKafkaSender.QueueFullPolicy.PAUSE_READS);
+        fillQueue(sender, producer, 3);
+        Assertions.assertTrue(sender.shouldPauseReads());
+
+        var resumed = new CountDownLatch(1);
+        sender.resumeWhenRelieved(resumed::countDown);
+        Assertions.assertEquals(1, resumed.getCount());
+        // sends that arrive while reads are paused still don't wait, and aren't failed once the queue is full
+        sender.send(makeRecord(4));
+        var overflowed = List.of(sender.send(makeRecord(5)), sender.send(makeRecord(6)));
+        Assertions.assertEquals(6, sender.getQueueDepth());
+        Assertions.assertTrue(overflowed.stream().noneMatch(CompletableFuture::isDone));
+
+        producer.releaseSends.countDown();
+        Assertions.assertTrue(resumed.await(10, TimeUnit.SECONDS));
+        Assertions.assertFalse(sender.shouldPauseReads());
+        for (var future : overflowed) {
+            Assertions.assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+
+        sender.close();
+        Assertions.assertEquals(IntStream.rangeClosed(0, 6).mapToObj(i -> "key" + i).collect(Collectors.toList()),
+                producer.history().stream().map(ProducerRecord::key).collect(Collectors.toList()));
+    }
+}
@@ -1,6 +1,8 @@
 package org.opensearch.migrations.trafficcapture.kafkaoffloader;
 
+import com.google.protobuf.CodedOutputStream;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
@@ -28,11 +30,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.TestRootKafkaOffloaderContext;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
 import org.opensearch.migrations.trafficcapture.tracing.ConnectionContext;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -80,6 +86,94 @@ public class KafkaCaptureFactoryTest {
         producer.close();
     }
 
+    @Test
+    public void testStreamBuffersAreReturnedToTheAllocatorOnceSent() throws Exception {
+        var allocator = new UnpooledByteBufAllocator(true);
+        var rootScope = TestRootKafkaOffloaderContext.noTracking();
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        KafkaCaptureFactory kafkaCaptureFactory =
+            new KafkaCaptureFactory(rootScope, TEST_NODE_ID_STRING, new BoundedKafkaSender<>(rootScope, producer),
+                    1024*1024, KafkaCaptureFactory.Options.builder()
+                            .topicNameForTraffic(topic)
+                            .bufferAllocator(allocator)
+                            .build());
+        var serializer = kafkaCaptureFactory.createOffloader(createCtx());
+
+        var bb = Unpooled.wrappedBuffer("FakeData".getBytes(StandardCharsets.UTF_8));
+        serializer.addReadEvent(Instant.now(), bb);
+        // the stream only takes its first segment from the allocator once the coded stream's own buffer spills
+        var spillingBb = Unpooled.wrappedBuffer(new byte[2 * CodedOutputStream.DEFAULT_BUFFER_SIZE]);
+        serializer.addReadEvent(Instant.now(), spillingBb);
+        Assertions.assertTrue(allocator.metric().usedDirectMemory() > 0);
+        serializer.flushCommitAndResetStream(false).get();
+        Assertions.assertEquals(0, allocator.metric().usedDirectMemory());
+        serializer.addReadEvent(Instant.now(), bb);
+        serializer.flushCommitAndResetStream(true).get();
+        Assertions.assertEquals(0, allocator.metric().usedDirectMemory());
+
+        Assertions.assertEquals(2, producer.history().size());
+        var firstRecordBytes = producer.history().get(0).value();
+        var firstStream = TrafficStream.parseFrom(firstRecordBytes);
+        Assertions.assertEquals("FakeData", firstStream.getSubStream(0).getRead().getData().toStringUtf8());
+        bb.release();
+        spillingBb.release();
+        producer.close();
+    }
+
+    @Test
+    public void testTrafficStreamsFromManyConnectionsAreBatchedIntoOneRecord() throws Exception {
+        var rootScope = TestRootKafkaOffloaderContext.noTracking();
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        KafkaCaptureFactory kafkaCaptureFactory =
+            new KafkaCaptureFactory(rootScope, TEST_NODE_ID_STRING, new BoundedKafkaSender<>(rootScope, producer),
+                    1024*1024, KafkaCaptureFactory.Options.builder().batchLingerTime(Duration.ofMillis(50)).build());
+        var numConnections = 3;
+        var futures = new ArrayList<CompletableFuture<RecordMetadata>>();
+        var bb = Unpooled.wrappedBuffer("FakeData".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < numConnections; ++i) {
+            var serializer = kafkaCaptureFactory.createOffloader(
+                    new ConnectionContext(new TestRootKafkaOffloaderContext(), "c" + i, "test"));
+            serializer.addReadEvent(Instant.now(), bb);
+            futures.add(serializer.flushCommitAndResetStream(true));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        bb.release();
+
+        Assertions.assertEquals(1, producer.history().size());
+        var record = producer.history().get(0);
+        Assertions.assertEquals(TrafficStreamUtils.LENGTH_DELIMITED_BATCH_FORMAT, new String(
+                record.headers().lastHeader(TrafficStreamUtils.TRAFFIC_STREAM_BATCH_FORMAT_HEADER).value(),
+                StandardCharsets.UTF_8));
+        var inputStream = new ByteArrayInputStream(record.value());
+        var connectionIds = new ArrayList<String>();
+        for (var ts = TrafficStream.parseDelimitedFrom(inputStream); ts != null;
+             ts = TrafficStream.parseDelimitedFrom(inputStream)) {
+            connectionIds.add(ts.getConnectionId());
+        }
+        Assertions.assertEquals(List.of("c0", "c1", "c2"), connectionIds);
+        producer.close();
+    }
+
+    @Test
+    public void testClosingTheFactorySendsTheLingeringBatch() throws Exception {
+        var rootScope = TestRootKafkaOffloaderContext.noTracking();
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        KafkaCaptureFactory kafkaCaptureFactory =
+            new KafkaCaptureFactory(rootScope, TEST_NODE_ID_STRING, new BoundedKafkaSender<>(rootScope, producer),
+                    1024*1024, KafkaCaptureFactory.Options.builder().batchLingerTime(Duration.ofHours(1)).build());
+        var serializer = kafkaCaptureFactory.createOffloader(createCtx());
+        var bb = Unpooled.wrappedBuffer("FakeData".getBytes(StandardCharsets.UTF_8));
+        serializer.addReadEvent(Instant.now(), bb);
+        var future = serializer.flushCommitAndResetStream(true);
+        Assertions.assertFalse(future.isDone());
+
+        kafkaCaptureFactory.close();
+        future.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, producer.history().size());
+        bb.release();
+        producer.close();
+    }
+
     private static ConnectionContext createCtx() {
         return new ConnectionContext(new TestRootKafkaOffloaderContext(), "test", "test");
     }
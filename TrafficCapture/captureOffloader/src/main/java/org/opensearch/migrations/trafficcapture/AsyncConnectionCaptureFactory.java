@@ -0,0 +1,536 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wraps another capture factory so that its serializers run on a small pool of serializer threads rather than on
+ * the threads that observe the traffic.  Protobuf encoding and handing TrafficStreams to the offloader then
+ * don't add to the latency of the (event loop) thread that's forwarding the traffic.
+ * <p>
+ * Each thread that creates offloaders gets its own {@link CaptureEventRing}, which is drained by one of the
+ * serializer threads.  Every event for a connection must come from the thread that created its offloader (as
+ * they do from a netty channel's handlers), so a connection's events are serialized in the order they were
+ * observed.  Buffers passed to addReadEvent and addWriteEvent are retained until they've been serialized.
+ * <p>
+ * A producing thread never waits for a serializer thread.  {@link #getBackpressure()} asks connections to stop
+ * reading while their thread's ring is filling up.  If a ring fills up anyway, the connection whose event didn't
+ * fit stops being captured, as if it had failed to serialize, and its dropped events are counted.
+ * <p>
+ * Since events are serialized later, exceptions from the underlying serializer can't be thrown to the caller.
+ * The first one stops the capture for that connection and fails the future from every subsequent call to
+ * flushCommitAndResetStream.
+ */
+@Slf4j
+public class AsyncConnectionCaptureFactory<T> implements IConnectionCaptureFactory<T>, AutoCloseable {
+    public static final int DEFAULT_RING_CAPACITY = 4096;
+
+    private final IConnectionCaptureFactory<T> underlyingFactory;
+    private final int ringCapacity;
+    private final SerializerWorker[] workers;
+    private final AtomicInteger nextWorkerIndex = new AtomicInteger();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private final FastThreadLocal<CaptureEventRing> ringForThisThread = new FastThreadLocal<>() {
+        @Override
+        protected CaptureEventRing initialValue() {
+            var worker = workers[Math.floorMod(nextWorkerIndex.getAndIncrement(), workers.length)];
+            var ring = new CaptureEventRing(ringCapacity, worker);
+            worker.rings.add(ring);
+            return ring;
+        }
+    };
+
+    public AsyncConnectionCaptureFactory(IConnectionCaptureFactory<T> underlyingFactory, int numSerializerThreads) {
+        this(underlyingFactory, numSerializerThreads, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * @param ringCapacity the number of events that each producing thread may have waiting to be serialized.
+     *                     Reads are paused once 3/4 of them are in use.  Must be a power of 2.
+     */
+    public AsyncConnectionCaptureFactory(IConnectionCaptureFactory<T> underlyingFactory, int numSerializerThreads,
+                                         int ringCapacity) {
+        if (numSerializerThreads <= 0) {
+            throw new IllegalArgumentException("numSerializerThreads must be positive");
+        }
+        if (Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("ringCapacity must be a power of 2");
+        }
+        this.underlyingFactory = underlyingFactory;
+        this.ringCapacity = ringCapacity;
+        this.workers = new SerializerWorker[numSerializerThreads];
+        for (int i = 0; i < numSerializerThreads; ++i) {
+            workers[i] = new SerializerWorker("captureSerializer-" + i);
+            workers[i].thread.start();
+        }
+    }
+
+    @Override
+    public IChannelConnectionCaptureSerializer<T> createOffloader(IConnectionContext ctx) throws IOException {
+        return new AsyncCaptureSerializer<>(underlyingFactory.createOffloader(ctx), ringForThisThread.get(),
+                droppedEventCount);
+    }
+
+    /**
+     * Returns the backpressure for offloaders created on the calling thread, which covers both that thread's ring
+     * and whatever the underlying factory's offloader reports
+     */
+    @Override
+    public IOffloaderBackpressure getBackpressure() {
+        var ring = ringForThisThread.get();
+        var underlyingBackpressure = underlyingFactory.getBackpressure();
+        return underlyingBackpressure == null ? ring : new RingAndUnderlyingBackpressure(ring, underlyingBackpressure);
+    }
+
+    /**
+     * @return the number of events that were dropped because a ring was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    private static class RingAndUnderlyingBackpressure implements IOffloaderBackpressure {
+        private final CaptureEventRing ring;
+        private final IOffloaderBackpressure underlying;
+
+        RingAndUnderlyingBackpressure(CaptureEventRing ring, IOffloaderBackpressure underlying) {
+            this.ring = ring;
+            this.underlying = underlying;
+        }
+
+        @Override
+        public boolean shouldPauseReads() {
+            return ring.shouldPauseReads() || underlying.shouldPauseReads();
+        }
+
+        @Override
+        public void resumeWhenRelieved(Runnable resumeReading) {
+            ring.resumeWhenRelieved(new ResumeAfterUnderlying(resumeReading, underlying));
+        }
+
+        @Override
+        public void cancelResume(Runnable resumeReading) {
+            ring.cancelResume(new ResumeAfterUnderlying(resumeReading, underlying));
+            underlying.cancelResume(resumeReading);
+        }
+    }
+
+    /**
+     * Once the ring has drained, waits for the underlying backpressure too.  Instances are equal when they wrap
+     * the same resumeReading so that they can be cancelled.
+     */
+    private static class ResumeAfterUnderlying implements Runnable {
+        private final Runnable resumeReading;
+        private final IOffloaderBackpressure underlying;
+
+        ResumeAfterUnderlying(Runnable resumeReading, IOffloaderBackpressure underlying) {
+            this.resumeReading = resumeReading;
+            this.underlying = underlying;
+        }
+
+        @Override
+        public void run() {
+            underlying.resumeWhenRelieved(resumeReading);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ResumeAfterUnderlying && ((ResumeAfterUnderlying) o).resumeReading == resumeReading;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(resumeReading);
+        }
+    }
+
+    /**
+     * Serializes every event that has already been published and then stops the serializer threads.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (var worker : workers) {
+            worker.running = false;
+            worker.wakeUp();
+        }
+        for (var worker : workers) {
+            worker.thread.join();
+        }
+    }
+
+    static class SerializerWorker implements Runnable {
+        private static final long IDLE_PARK_NANOS = 1_000_000;
+
+        final CopyOnWriteArrayList<CaptureEventRing> rings = new CopyOnWriteArrayList<>();
+        final Thread thread;
+        volatile boolean running = true;
+        private volatile boolean parked;
+
+        SerializerWorker(String threadName) {
+            thread = new Thread(this, threadName);
+            thread.setDaemon(true);
+        }
+
+        void wakeUp() {
+            LockSupport.unpark(thread);
+        }
+
+        void wakeUpIfParked() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                // read before draining so that everything published before close() is drained before exiting
+                var keepRunning = running;
+                int numDrained = 0;
+                for (var ring : rings) {
+                    numDrained += ring.drain();
+                }
+                if (numDrained > 0) {
+                    continue;
+                } else if (!keepRunning) {
+                    return;
+                }
+                parked = true;
+                // producers check parked after publishing, so anything published from here on will unpark us
+                if (rings.stream().allMatch(CaptureEventRing::isEmpty)) {
+                    rings.removeIf(CaptureEventRing::isAbandoned);
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    static class AsyncCaptureSerializer<T> implements IChannelConnectionCaptureSerializer<T> {
+        private final IChannelConnectionCaptureSerializer<T> underlyingSerializer;
+        private final CaptureEventRing ring;
+        private final AtomicLong droppedEventCount;
+        /** Set (by the producing thread) once an event didn't fit into the ring */
+        private boolean droppedEvents;
+        /** Only accessed by the serializer thread */
+        private Exception failure;
+
+        AsyncCaptureSerializer(IChannelConnectionCaptureSerializer<T> underlyingSerializer, CaptureEventRing ring,
+                               AtomicLong droppedEventCount) {
+            this.underlyingSerializer = underlyingSerializer;
+            this.ring = ring;
+            this.droppedEventCount = droppedEventCount;
+        }
+
+        /**
+         * @return the slot for the event, or null if the event has to be dropped.  Once one event for this
+         * connection has been dropped, every later one is too, since the capture would be missing something.
+         */
+        private CaptureEventRing.CaptureEvent claim(CaptureEventRing.EventType type, Instant timestamp) {
+            var event = droppedEvents ? null : ring.tryClaim();
+            if (event == null) {
+                if (!droppedEvents) {
+                    log.atWarn().setMessage(() -> "Stopping the capture of a connection because its thread's " +
+                            "capture ring is full").log();
+                    droppedEvents = true;
+                }
+                droppedEventCount.incrementAndGet();
+                return null;
+            }
+            event.connection = this;
+            event.type = type;
+            event.timestamp = timestamp;
+            return event;
+        }
+
+        private void publish(CaptureEventRing.EventType type, Instant timestamp) {
+            if (claim(type, timestamp) != null) {
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addBindEvent(Instant timestamp, SocketAddress addr) {
+            var event = claim(CaptureEventRing.EventType.BIND, timestamp);
+            if (event != null) {
+                event.firstArgument = addr;
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addConnectEvent(Instant timestamp, SocketAddress remote, SocketAddress local) {
+            var event = claim(CaptureEventRing.EventType.CONNECT, timestamp);
+            if (event != null) {
+                event.firstArgument = remote;
+                event.secondArgument = local;
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addDisconnectEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.DISCONNECT, timestamp);
+        }
+
+        @Override
+        public void addCloseEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CLOSE, timestamp);
+        }
+
+        @Override
+        public void addDeregisterEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.DEREGISTER, timestamp);
+        }
+
+        @Override
+        public void addReadEvent(Instant timestamp, ByteBuf buffer) {
+            var event = claim(CaptureEventRing.EventType.READ, timestamp);
+            if (event != null) {
+                event.buffer = buffer.retainedDuplicate();
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addWriteEvent(Instant timestamp, ByteBuf buffer) {
+            var event = claim(CaptureEventRing.EventType.WRITE, timestamp);
+            if (event != null) {
+                event.buffer = buffer.retainedDuplicate();
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addResponseMetadataEvent(Instant timestamp, ResponseMetadataObservation responseMetadata) {
+            var event = claim(CaptureEventRing.EventType.RESPONSE_METADATA, timestamp);
+            if (event != null) {
+                event.firstArgument = responseMetadata;
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addFlushEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.FLUSH, timestamp);
+        }
+
+        @Override
+        public void addChannelRegisteredEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_REGISTERED, timestamp);
+        }
+
+        @Override
+        public void addChannelUnregisteredEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_UNREGISTERED, timestamp);
+        }
+
+        @Override
+        public void addChannelActiveEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_ACTIVE, timestamp);
+        }
+
+        @Override
+        public void addChannelInactiveEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_INACTIVE, timestamp);
+        }
+
+        @Override
+        public void addChannelReadEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_READ, timestamp);
+        }
+
+        @Override
+        public void addChannelReadCompleteEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_READ_COMPLETE, timestamp);
+        }
+
+        @Override
+        public void addUserEventTriggeredEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.USER_EVENT_TRIGGERED, timestamp);
+        }
+
+        @Override
+        public void addChannelWritabilityChangedEvent(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CHANNEL_WRITABILITY_CHANGED, timestamp);
+        }
+
+        @Override
+        public void addExceptionCaughtEvent(Instant timestamp, Throwable t) {
+            var event = claim(CaptureEventRing.EventType.EXCEPTION_CAUGHT, timestamp);
+            if (event != null) {
+                event.firstArgument = t;
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addEndOfFirstLineIndicator(int characterIndex) {
+            var event = claim(CaptureEventRing.EventType.END_OF_FIRST_LINE, null);
+            if (event != null) {
+                event.index = characterIndex;
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void addEndOfHeadersIndicator(int characterIndex) {
+            var event = claim(CaptureEventRing.EventType.END_OF_HEADERS, null);
+            if (event != null) {
+                event.index = characterIndex;
+                ring.publish();
+            }
+        }
+
+        @Override
+        public void commitEndOfHttpMessageIndicator(Instant timestamp) {
+            publish(CaptureEventRing.EventType.END_OF_HTTP_MESSAGE, timestamp);
+        }
+
+        @Override
+        public CompletableFuture<T> flushCommitAndResetStream(boolean isFinal) {
+            var event = claim(CaptureEventRing.EventType.FLUSH_COMMIT_AND_RESET, null);
+            if (event == null) {
+                return CompletableFuture.failedFuture(
+                        new IOException("Capture events were dropped because the capture ring was full"));
+            }
+            var result = new CompletableFuture<T>();
+            event.isFinal = isFinal;
+            event.result = result;
+            ring.publish();
+            return result;
+        }
+
+        @Override
+        public void cancelCaptureForCurrentRequest(Instant timestamp) {
+            publish(CaptureEventRing.EventType.CANCEL_CURRENT_REQUEST, timestamp);
+        }
+
+        /**
+         * Called on the serializer thread to pass an event to the underlying serializer
+         */
+        @SuppressWarnings("unchecked")
+        void apply(CaptureEventRing.CaptureEvent event) {
+            var result = (CompletableFuture<T>) event.result;
+            try {
+                if (failure != null) {
+                    if (result != null) {
+                        result.completeExceptionally(failure);
+                    }
+                    return;
+                }
+                applyToUnderlyingSerializer(event, result);
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage(() -> "Stopping the capture of a connection after failing to " +
+                        "serialize a " + event.type + " event").log();
+                failure = e;
+                if (result != null) {
+                    result.completeExceptionally(e);
+                }
+            } finally {
+                if (event.buffer != null) {
+                    event.buffer.release();
+                }
+            }
+        }
+
+        private void applyToUnderlyingSerializer(CaptureEventRing.CaptureEvent event, CompletableFuture<T> result)
+                throws IOException {
+            var timestamp = event.timestamp;
+            switch (event.type) {
+                case BIND:
+                    underlyingSerializer.addBindEvent(timestamp, (SocketAddress) event.firstArgument);
+                    break;
+                case CONNECT:
+                    underlyingSerializer.addConnectEvent(timestamp, (SocketAddress) event.firstArgument,
+                            (SocketAddress) event.secondArgument);
+                    break;
+                case DISCONNECT:
+                    underlyingSerializer.addDisconnectEvent(timestamp);
+                    break;
+                case CLOSE:
+                    underlyingSerializer.addCloseEvent(timestamp);
+                    break;
+                case DEREGISTER:
+                    underlyingSerializer.addDeregisterEvent(timestamp);
+                    break;
+                case READ:
+                    underlyingSerializer.addReadEvent(timestamp, event.buffer);
+                    break;
+                case WRITE:
+                    underlyingSerializer.addWriteEvent(timestamp, event.buffer);
+                    break;
+                case RESPONSE_METADATA:
+                    underlyingSerializer.addResponseMetadataEvent(timestamp,
+                            (ResponseMetadataObservation) event.firstArgument);
+                    break;
+                case FLUSH:
+                    underlyingSerializer.addFlushEvent(timestamp);
+                    break;
+                case CHANNEL_REGISTERED:
+                    underlyingSerializer.addChannelRegisteredEvent(timestamp);
+                    break;
+                case CHANNEL_UNREGISTERED:
+                    underlyingSerializer.addChannelUnregisteredEvent(timestamp);
+                    break;
+                case CHANNEL_ACTIVE:
+                    underlyingSerializer.addChannelActiveEvent(timestamp);
+                    break;
+                case CHANNEL_INACTIVE:
+                    underlyingSerializer.addChannelInactiveEvent(timestamp);
+                    break;
+                case CHANNEL_READ:
+                    underlyingSerializer.addChannelReadEvent(timestamp);
+                    break;
+                case CHANNEL_READ_COMPLETE:
+                    underlyingSerializer.addChannelReadCompleteEvent(timestamp);
+                    break;
+                case USER_EVENT_TRIGGERED:
+                    underlyingSerializer.addUserEventTriggeredEvent(timestamp);
+                    break;
+                case CHANNEL_WRITABILITY_CHANGED:
+                    underlyingSerializer.addChannelWritabilityChangedEvent(timestamp);
+                    break;
+                case EXCEPTION_CAUGHT:
+                    underlyingSerializer.addExceptionCaughtEvent(timestamp, (Throwable) event.firstArgument);
+                    break;
+                case END_OF_FIRST_LINE:
+                    underlyingSerializer.addEndOfFirstLineIndicator(event.index);
+                    break;
+                case END_OF_HEADERS:
+                    underlyingSerializer.addEndOfHeadersIndicator(event.index);
+                    break;
+                case END_OF_HTTP_MESSAGE:
+                    underlyingSerializer.commitEndOfHttpMessageIndicator(timestamp);
+                    break;
+                case FLUSH_COMMIT_AND_RESET:
+                    underlyingSerializer.flushCommitAndResetStream(event.isFinal).whenComplete((v, t) -> {
+                        if (t != null) {
+                            result.completeExceptionally(t);
+                        } else {
+                            result.complete(v);
+                        }
+                    });
+                    break;
+                case CANCEL_CURRENT_REQUEST:
+                    underlyingSerializer.cancelCaptureForCurrentRequest(timestamp);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown capture event type: " + event.type);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded ring of capture events with exactly one producer thread (an event loop) and one consumer thread (the
+ * serializer thread that the ring was assigned to).  The slots are allocated once and reused, so publishing a
+ * read or a write allocates nothing beyond what the caller already had (the timestamp and the retained buffer).
+ * <p>
+ * The producer claims the next slot, fills it in and publishes it.  The producer is an event loop, so it never
+ * waits for the consumer.  Instead, once the ring is 3/4 full, {@link #shouldPauseReads()} asks the connections
+ * on that event loop to stop reading until the consumer has drained it to half full.  Events that still arrive
+ * (e.g. writes and closes) use up the rest of the ring.  If that runs out too, {@link #tryClaim()} fails and the
+ * caller has to drop the event.
+ */
+@Slf4j
+class CaptureEventRing implements IOffloaderBackpressure {
+    enum EventType {
+        BIND, CONNECT, DISCONNECT, CLOSE, DEREGISTER, READ, WRITE, FLUSH, CHANNEL_REGISTERED,
+        CHANNEL_UNREGISTERED, CHANNEL_ACTIVE, CHANNEL_INACTIVE, CHANNEL_READ, CHANNEL_READ_COMPLETE,
+        USER_EVENT_TRIGGERED, CHANNEL_WRITABILITY_CHANGED, EXCEPTION_CAUGHT, END_OF_FIRST_LINE, END_OF_HEADERS,
+        END_OF_HTTP_MESSAGE, FLUSH_COMMIT_AND_RESET, CANCEL_CURRENT_REQUEST, RESPONSE_METADATA
+    }
+
+    static class CaptureEvent {
+        EventType type;
+        AsyncConnectionCaptureFactory.AsyncCaptureSerializer<?> connection;
+        Instant timestamp;
+        ByteBuf buffer;
+        Object firstArgument;
+        Object secondArgument;
+        int index;
+        boolean isFinal;
+        CompletableFuture<?> result;
+
+        private void clear() {
+            connection = null;
+            timestamp = null;
+            buffer = null;
+            firstArgument = null;
+            secondArgument = null;
+            result = null;
+        }
+    }
+
+    private final CaptureEvent[] slots;
+    private final int mask;
+    private final int pauseReadsDepth;
+    private final int resumeReadsDepth;
+    private final Thread producerThread;
+    private final AsyncConnectionCaptureFactory.SerializerWorker consumer;
+    /** The next position to be published.  Only written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+    /** The next position to be consumed.  Only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+    /** The producer's last view of head, so that it only reads the consumer's counter when the ring looks full */
+    private long cachedHead;
+    private final ConcurrentLinkedQueue<Runnable> pausedReaders = new ConcurrentLinkedQueue<>();
+
+    CaptureEventRing(int capacity, AsyncConnectionCaptureFactory.SerializerWorker consumer) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The ring capacity must be a power of 2");
+        }
+        this.slots = new CaptureEvent[capacity];
+        for (int i = 0; i < capacity; ++i) {
+            slots[i] = new CaptureEvent();
+        }
+        this.mask = capacity - 1;
+        this.pauseReadsDepth = Math.max(1, capacity / 4 * 3);
+        this.resumeReadsDepth = capacity / 2;
+        this.producerThread = Thread.currentThread();
+        this.consumer = consumer;
+    }
+
+    /**
+     * Returns the slot to fill in for the next event, or null if the ring is full.  The event isn't visible to
+     * the consumer until publish() is called.
+     */
+    CaptureEvent tryClaim() {
+        assert Thread.currentThread() == producerThread : "Capture events must all come from the ring's thread";
+        var position = tail.get();
+        if (position - cachedHead >= slots.length && position - (cachedHead = head.get()) >= slots.length) {
+            consumer.wakeUp();
+            return null;
+        }
+        return slots[(int) position & mask];
+    }
+
+    void publish() {
+        // a volatile write so that it's ordered before the read of the consumer's parked state in wakeUpIfParked()
+        tail.set(tail.get() + 1);
+        consumer.wakeUpIfParked();
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    private long size() {
+        return tail.get() - head.get();
+    }
+
+    @Override
+    public boolean shouldPauseReads() {
+        return size() >= pauseReadsDepth;
+    }
+
+    @Override
+    public void resumeWhenRelieved(Runnable resumeReading) {
+        pausedReaders.add(resumeReading);
+        // the consumer may have drained the ring before the reader was registered
+        resumePausedReadersIfDrained();
+    }
+
+    @Override
+    public void cancelResume(Runnable resumeReading) {
+        pausedReaders.remove(resumeReading);
+    }
+
+    private void resumePausedReadersIfDrained() {
+        if (pausedReaders.isEmpty() || size() > resumeReadsDepth) {
+            return;
+        }
+        Runnable resumeReading;
+        while ((resumeReading = pausedReaders.poll()) != null) {
+            try {
+                resumeReading.run();
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage("Couldn't resume reading for a connection").log();
+            }
+        }
+    }
+
+    /**
+     * @return true once the producer thread has exited and everything that it published has been consumed
+     */
+    boolean isAbandoned() {
+        return !producerThread.isAlive() && isEmpty();
+    }
+
+    /**
+     * Processes every event published so far.  Only called by the consumer.
+     * @return the number of events that were processed
+     */
+    int drain() {
+        var position = head.get();
+        var end = tail.get();
+        for (var i = position; i < end; ++i) {
+            var event = slots[(int) i & mask];
+            try {
+                event.connection.apply(event);
+            } finally {
+                event.clear();
+            }
+            // hand the slot back right away so that a producer with a full ring can continue
+            head.lazySet(i + 1);
+        }
+        resumePausedReadersIfDrained();
+        return (int) (end - position);
+    }
+}
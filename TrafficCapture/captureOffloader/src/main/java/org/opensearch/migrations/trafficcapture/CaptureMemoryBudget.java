@@ -0,0 +1,152 @@
+package org.opensearch.migrations.trafficcapture;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps account of the memory that all the connections of a proxy hold for capture data that hasn't been
+ * offloaded yet.  That's the buffers that TrafficStreams are serialized into (see
+ * {@link CodedOutputStreamAndByteBufWrapper}) plus the serialized records that are still waiting to be sent.
+ * Each connection's buffer is bounded by the maximum TrafficStream size, but without this, nothing bounds their
+ * sum when many connections arrive at once or when the offloader falls behind.
+ * <p>
+ * Reservations are never refused, since bytes that have already been read have to go somewhere.  Instead,
+ * the capture handlers check {@link #isExceeded()} as they capture and apply the {@link OverBudgetPolicy}.  All
+ * of the accounting is done with atomics, so it's safe (and cheap) to call from any thread.
+ */
+@Slf4j
+public class CaptureMemoryBudget {
+
+    public enum OverBudgetPolicy {
+        /**
+         * Connections whose unflushed capture is larger than the average buffer flush it right away rather than
+         * waiting for the end of a request (or for the buffer to fill), so that their buffers can be given back
+         * as soon as the data has been copied into a record
+         */
+        FLUSH_LARGEST,
+        /**
+         * Requests aren't captured while the budget is exceeded.  A request whose capture was already in progress
+         * is cut short with a RequestIntentionallyDropped observation so that the replayer skips it.
+         */
+        SUPPRESS_CAPTURE,
+        /**
+         * Connections flush what they have and then stop reading from their clients until the reserved bytes
+         * have fallen back below the resume threshold
+         */
+        PAUSE_READS
+    }
+
+    @Getter
+    private final long limitBytes;
+    @Getter
+    private final long resumeThresholdBytes;
+    @Getter
+    private final OverBudgetPolicy overBudgetPolicy;
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicInteger openBuffers = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> pausedReaders = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Readers that are paused with PAUSE_READS are resumed once the reserved bytes fall to 3/4 of limitBytes.
+     */
+    public CaptureMemoryBudget(long limitBytes, OverBudgetPolicy overBudgetPolicy) {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException("limitBytes must be positive");
+        }
+        this.limitBytes = limitBytes;
+        this.resumeThresholdBytes = limitBytes / 4 * 3;
+        this.overBudgetPolicy = overBudgetPolicy;
+    }
+
+    public long getReservedBytes() {
+        return bufferedBytes.get() + queuedBytes.get();
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public boolean isExceeded() {
+        return getReservedBytes() > limitBytes;
+    }
+
+    /**
+     * @return the average number of bytes held by each serialization buffer that's currently open
+     */
+    public long getMeanBufferedBytes() {
+        var buffers = openBuffers.get();
+        return buffers <= 0 ? 0 : bufferedBytes.get() / buffers;
+    }
+
+    void onBufferOpened() {
+        openBuffers.incrementAndGet();
+    }
+
+    void onBufferClosed(long bytesReleased) {
+        openBuffers.decrementAndGet();
+        releaseBufferedBytes(bytesReleased);
+    }
+
+    void reserveBufferedBytes(long bytes) {
+        bufferedBytes.addAndGet(bytes);
+    }
+
+    private void releaseBufferedBytes(long bytes) {
+        bufferedBytes.addAndGet(-bytes);
+        resumePausedReadersIfUnderThreshold();
+    }
+
+    /**
+     * Account for a serialized record that's been handed off to be sent.  Every call must be matched with a
+     * call to {@link #releaseQueuedBytes} once the record has been sent (or has failed).
+     */
+    public void reserveQueuedBytes(long bytes) {
+        queuedBytes.addAndGet(bytes);
+    }
+
+    public void releaseQueuedBytes(long bytes) {
+        queuedBytes.addAndGet(-bytes);
+        resumePausedReadersIfUnderThreshold();
+    }
+
+    /**
+     * Calls resumeReading (from whichever thread releases the bytes) once the reserved bytes have fallen to
+     * the resume threshold, which may be right away.
+     */
+    public void pauseUntilUnderBudget(Runnable resumeReading) {
+        pausedReaders.add(resumeReading);
+        // the reservations may have been released before the reader was registered
+        resumePausedReadersIfUnderThreshold();
+    }
+
+    /**
+     * Stops a resumeReading that was passed to {@link #pauseUntilUnderBudget} from being called, e.g. because its
+     * connection has closed while it was paused
+     */
+    public void cancelPause(Runnable resumeReading) {
+        pausedReaders.remove(resumeReading);
+    }
+
+    private void resumePausedReadersIfUnderThreshold() {
+        if (pausedReaders.isEmpty() || getReservedBytes() > resumeThresholdBytes) {
+            return;
+        }
+        Runnable resumeReading;
+        while ((resumeReading = pausedReaders.poll()) != null) {
+            try {
+                resumeReading.run();
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage("Couldn't resume reading for a connection").log();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.opensearch.migrations.trafficcapture;
+
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CodedOutputStreamHolder whose backing memory comes from a (typically pooled) netty ByteBufAllocator rather
+ * than from a freshly allocated heap ByteBuffer.
+ * <p>
+ * The holder starts with a small segment and chains progressively larger segments onto it as bytes are written,
+ * up to maxBytes, which is what {@link #getOutputStreamBytesLimit()} reports.  Connections that only send a few
+ * small requests before flushing (or that sit idle between requests) therefore only hold on to a few KB, while
+ * large requests can still fill a TrafficStream up to the full record size.  Nothing is ever reallocated or
+ * copied as the holder grows.
+ * <p>
+ * Callers MUST call {@link #close()} once the contents are no longer needed so that the memory is returned to
+ * the allocator (and to the {@link CaptureMemoryBudget}, if there is one).  Calling close() more than once is
+ * harmless.
+ */
+public class CodedOutputStreamAndByteBufWrapper implements CodedOutputStreamHolder, AutoCloseable {
+    public static final int DEFAULT_INITIAL_SEGMENT_SIZE = 16 * 1024;
+
+    private final SegmentChainingOutputStream segmentStream;
+    @Getter
+    @NonNull
+    private final CodedOutputStream outputStream;
+
+    public CodedOutputStreamAndByteBufWrapper(ByteBufAllocator allocator, int maxBytes) {
+        this(allocator, DEFAULT_INITIAL_SEGMENT_SIZE, maxBytes);
+    }
+
+    public CodedOutputStreamAndByteBufWrapper(ByteBufAllocator allocator, int initialSegmentSize, int maxBytes) {
+        this(allocator, initialSegmentSize, maxBytes, null);
+    }
+
+    /**
+     * @param memoryBudget when non-null, every segment that's allocated is reserved against this budget until
+     *                     the holder is closed
+     */
+    public CodedOutputStreamAndByteBufWrapper(ByteBufAllocator allocator, int initialSegmentSize, int maxBytes,
+                                              CaptureMemoryBudget memoryBudget) {
+        this.segmentStream = new SegmentChainingOutputStream(allocator, Math.min(initialSegmentSize, maxBytes),
+                maxBytes, memoryBudget);
+        this.outputStream = CodedOutputStream.newInstance(segmentStream,
+                Math.min(CodedOutputStream.DEFAULT_BUFFER_SIZE, segmentStream.initialSegmentSize));
+    }
+
+    @Override
+    public int getOutputStreamBytesLimit() {
+        return segmentStream.maxBytes;
+    }
+
+    /**
+     * @return the number of bytes currently reserved from the allocator to back this stream
+     */
+    public int getAllocatedBytes() {
+        return segmentStream.allocatedBytes;
+    }
+
+    /**
+     * @return a view of the bytes that have been written (and flushed) so far.  The view shares memory with this
+     * holder, but holds its own reference, so the caller must release it.
+     */
+    public ByteBuf getFilledByteBuf() {
+        var segments = segmentStream.segments;
+        var retainedSegments = new ByteBuf[segments.size()];
+        for (int i = 0; i < retainedSegments.length; ++i) {
+            retainedSegments[i] = segments.get(i).retainedDuplicate();
+        }
+        return Unpooled.wrappedBuffer(retainedSegments).asReadOnly();
+    }
+
+    /**
+     * @return a heap copy of exactly the bytes that have been written (and flushed) so far
+     */
+    public byte[] copyFilledBytes() {
+        var filledBytes = new byte[segmentStream.bytesWritten];
+        int offset = 0;
+        for (var segment : segmentStream.segments) {
+            var len = segment.readableBytes();
+            segment.getBytes(segment.readerIndex(), filledBytes, offset, len);
+            offset += len;
+        }
+        return filledBytes;
+    }
+
+    @Override
+    public void close() {
+        segmentStream.releaseSegments();
+    }
+
+    private static class SegmentChainingOutputStream extends OutputStream {
+        private final ByteBufAllocator allocator;
+        private final int initialSegmentSize;
+        private final int maxBytes;
+        private final CaptureMemoryBudget memoryBudget;
+        private final List<ByteBuf> segments = new ArrayList<>();
+        private ByteBuf currentSegment;
+        private int allocatedBytes;
+        private int bytesWritten;
+        private boolean released;
+
+        SegmentChainingOutputStream(ByteBufAllocator allocator, int initialSegmentSize, int maxBytes,
+                                    CaptureMemoryBudget memoryBudget) {
+            this.allocator = allocator;
+            this.initialSegmentSize = Math.max(1, initialSegmentSize);
+            this.maxBytes = maxBytes;
+            this.memoryBudget = memoryBudget;
+            if (memoryBudget != null) {
+                memoryBudget.onBufferOpened();
+            }
+        }
+
+        /**
+         * Each new segment doubles the total capacity so far, so a stream that fills all the way up to maxBytes
+         * only needs a logarithmic number of segments.
+         */
+        private ByteBuf nextWritableSegment() throws IOException {
+            if (currentSegment != null && currentSegment.isWritable()) {
+                return currentSegment;
+            }
+            var remaining = maxBytes - allocatedBytes;
+            if (remaining <= 0) {
+                throw new IOException("Attempted to write more than the " + maxBytes +
+                        " bytes that this stream is limited to");
+            }
+            var size = Math.min(remaining, Math.max(initialSegmentSize, allocatedBytes));
+            currentSegment = allocator.directBuffer(size, size);
+            segments.add(currentSegment);
+            allocatedBytes += size;
+            if (memoryBudget != null) {
+                memoryBudget.reserveBufferedBytes(size);
+            }
+            return currentSegment;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            nextWritableSegment().writeByte(b);
+            ++bytesWritten;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                var segment = nextWritableSegment();
+                var chunkSize = Math.min(len, segment.writableBytes());
+                segment.writeBytes(b, off, chunkSize);
+                off += chunkSize;
+                len -= chunkSize;
+                bytesWritten += chunkSize;
+            }
+        }
+
+        void releaseSegments() {
+            for (var segment : segments) {
+                if (segment.refCnt() > 0) {
+                    segment.release();
+                }
+            }
+            segments.clear();
+            currentSegment = null;
+            if (memoryBudget != null && !released) {
+                memoryBudget.onBufferClosed(allocatedBytes);
+            }
+            released = true;
+        }
+    }
+}
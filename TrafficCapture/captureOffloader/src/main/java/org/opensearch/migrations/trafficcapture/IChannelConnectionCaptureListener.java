@@ -1,6 +1,7 @@
 package org.opensearch.migrations.trafficcapture;
 
 import io.netty.buffer.ByteBuf;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
 
 import java.io.IOException;
 import java.net.SocketAddress;
@@ -29,6 +30,15 @@ public interface IChannelConnectionCaptureListener<T> {
     default void addWriteEvent(Instant timestamp, ByteBuf buffer) throws IOException {
     }
 
+    /**
+     * Records a summary of a response in place of the write events for it
+     *
+     * @param timestamp when the first byte of the response was written
+     */
+    default void addResponseMetadataEvent(Instant timestamp, ResponseMetadataObservation responseMetadata)
+            throws IOException {
+    }
+
     default void addFlushEvent(Instant timestamp) throws IOException {
     }
 
@@ -6,4 +6,12 @@ import java.io.IOException;
 
 public interface IConnectionCaptureFactory<T> {
     IChannelConnectionCaptureSerializer<T> createOffloader(IConnectionContext ctx) throws IOException;
+
+    /**
+     * @return what connections should consult to find out whether this factory's offloader wants them to stop
+     * reading, or null if it never does
+     */
+    default IOffloaderBackpressure getBackpressure() {
+        return null;
+    }
 }
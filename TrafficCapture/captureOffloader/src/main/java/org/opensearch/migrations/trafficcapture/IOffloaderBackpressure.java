@@ -0,0 +1,24 @@
+package org.opensearch.migrations.trafficcapture;
+
+/**
+ * Lets an offloader that has fallen behind ask the connections that feed it to stop reading from their clients,
+ * rather than holding their capture data without bound or parking the threads that hand it over.
+ */
+public interface IOffloaderBackpressure {
+    /**
+     * @return true if connections should stop reading until {@link #resumeWhenRelieved} calls them back
+     */
+    boolean shouldPauseReads();
+
+    /**
+     * Calls resumeReading (from whichever thread relieves the pressure) once reads can resume, which may be
+     * right away.  Unless it's cancelled, each call to this runs resumeReading exactly once.
+     */
+    void resumeWhenRelieved(Runnable resumeReading);
+
+    /**
+     * Stops a resumeReading that was passed to {@link #resumeWhenRelieved} from being called, e.g. because its
+     * connection has closed while it was paused
+     */
+    void cancelResume(Runnable resumeReading);
+}
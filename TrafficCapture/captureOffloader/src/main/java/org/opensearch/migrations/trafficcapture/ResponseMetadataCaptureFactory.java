@@ -0,0 +1,228 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.ByteBuf;
+import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Wraps another capture factory so that responses are captured as ResponseMetadataObservations (status line,
+ * selected headers, byte length, timing and an optional body hash) rather than as every byte that was written.
+ * Requests are still captured in full, so that they can be replayed.  This is meant for replays that only compare
+ * status codes and latencies, where response bodies (especially search results) are most of what's captured.
+ * <p>
+ * A response is recorded as soon as its headers show that it's complete.  Otherwise (e.g. for chunked responses),
+ * it's recorded when the next request begins or when the connection closes or fails.  This matches how the replayer
+ * groups the writes of responses that are captured in full.
+ */
+public class ResponseMetadataCaptureFactory<T> implements IConnectionCaptureFactory<T> {
+    public static final List<String> DEFAULT_HEADERS_TO_KEEP = List.of("content-type", "content-encoding");
+
+    private static final byte[] HEAD_REQUEST_PREFIX = "HEAD ".getBytes(StandardCharsets.US_ASCII);
+
+    private final IConnectionCaptureFactory<T> underlyingFactory;
+    private final Set<String> lowerCaseHeadersToKeep;
+    private final boolean hashBodies;
+
+    public ResponseMetadataCaptureFactory(IConnectionCaptureFactory<T> underlyingFactory) {
+        this(underlyingFactory, DEFAULT_HEADERS_TO_KEEP, false);
+    }
+
+    /**
+     * @param headersToKeep the (case-insensitive) names of the response headers to record
+     * @param hashBodies when true, a CRC-32C of each response body is recorded too
+     */
+    public ResponseMetadataCaptureFactory(IConnectionCaptureFactory<T> underlyingFactory,
+                                          Collection<String> headersToKeep, boolean hashBodies) {
+        this.underlyingFactory = underlyingFactory;
+        this.lowerCaseHeadersToKeep = headersToKeep.stream().map(h -> h.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.hashBodies = hashBodies;
+    }
+
+    @Override
+    public IChannelConnectionCaptureSerializer<T> createOffloader(IConnectionContext ctx) throws IOException {
+        return new ResponseMetadataCaptureSerializer<>(underlyingFactory.createOffloader(ctx),
+                new ResponseMetadataCollector(lowerCaseHeadersToKeep, hashBodies));
+    }
+
+    @Override
+    public IOffloaderBackpressure getBackpressure() {
+        return underlyingFactory.getBackpressure();
+    }
+
+    static class ResponseMetadataCaptureSerializer<T> implements IChannelConnectionCaptureSerializer<T> {
+        private final IChannelConnectionCaptureSerializer<T> underlyingSerializer;
+        private final ResponseMetadataCollector responseMetadataCollector;
+        private boolean atStartOfRequest = true;
+
+        ResponseMetadataCaptureSerializer(IChannelConnectionCaptureSerializer<T> underlyingSerializer,
+                                          ResponseMetadataCollector responseMetadataCollector) {
+            this.underlyingSerializer = underlyingSerializer;
+            this.responseMetadataCollector = responseMetadataCollector;
+        }
+
+        private void offloadResponseIfPresent() throws IOException {
+            if (responseMetadataCollector.hasResponse()) {
+                var timestamp = responseMetadataCollector.getFirstByteTimestamp();
+                underlyingSerializer.addResponseMetadataEvent(timestamp, responseMetadataCollector.finishResponse());
+            }
+        }
+
+        private static boolean isHeadRequest(ByteBuf buffer) {
+            if (buffer.readableBytes() < HEAD_REQUEST_PREFIX.length) {
+                return false;
+            }
+            for (int i = 0; i < HEAD_REQUEST_PREFIX.length; ++i) {
+                if (buffer.getByte(buffer.readerIndex() + i) != HEAD_REQUEST_PREFIX[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void addReadEvent(Instant timestamp, ByteBuf buffer) throws IOException {
+            if (atStartOfRequest) {
+                // Anything written before a new request belongs to an earlier one.  Writes in the middle of a
+                // request (e.g. a 100 Continue) may be only part of its response, so they're left to be finished
+                // later.
+                offloadResponseIfPresent();
+                responseMetadataCollector.addRequest(isHeadRequest(buffer));
+                atStartOfRequest = false;
+            }
+            underlyingSerializer.addReadEvent(timestamp, buffer);
+        }
+
+        @Override
+        public void addWriteEvent(Instant timestamp, ByteBuf buffer) throws IOException {
+            if (responseMetadataCollector.addWrite(timestamp, buffer)) {
+                offloadResponseIfPresent();
+            }
+        }
+
+        @Override
+        public void commitEndOfHttpMessageIndicator(Instant timestamp) throws IOException {
+            atStartOfRequest = true;
+            underlyingSerializer.commitEndOfHttpMessageIndicator(timestamp);
+        }
+
+        @Override
+        public void cancelCaptureForCurrentRequest(Instant timestamp) throws IOException {
+            atStartOfRequest = true;
+            underlyingSerializer.cancelCaptureForCurrentRequest(timestamp);
+        }
+
+        @Override
+        public void addCloseEvent(Instant timestamp) throws IOException {
+            offloadResponseIfPresent();
+            underlyingSerializer.addCloseEvent(timestamp);
+        }
+
+        @Override
+        public void addExceptionCaughtEvent(Instant timestamp, Throwable t) throws IOException {
+            offloadResponseIfPresent();
+            underlyingSerializer.addExceptionCaughtEvent(timestamp, t);
+        }
+
+        @Override
+        public CompletableFuture<T> flushCommitAndResetStream(boolean isFinal) throws IOException {
+            if (isFinal) {
+                offloadResponseIfPresent();
+            }
+            return underlyingSerializer.flushCommitAndResetStream(isFinal);
+        }
+
+        @Override
+        public void addResponseMetadataEvent(Instant timestamp, ResponseMetadataObservation responseMetadata)
+                throws IOException {
+            underlyingSerializer.addResponseMetadataEvent(timestamp, responseMetadata);
+        }
+
+        @Override
+        public void addBindEvent(Instant timestamp, SocketAddress addr) throws IOException {
+            underlyingSerializer.addBindEvent(timestamp, addr);
+        }
+
+        @Override
+        public void addConnectEvent(Instant timestamp, SocketAddress remote, SocketAddress local)
+                throws IOException {
+            underlyingSerializer.addConnectEvent(timestamp, remote, local);
+        }
+
+        @Override
+        public void addDisconnectEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addDisconnectEvent(timestamp);
+        }
+
+        @Override
+        public void addDeregisterEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addDeregisterEvent(timestamp);
+        }
+
+        @Override
+        public void addFlushEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addFlushEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelRegisteredEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelRegisteredEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelUnregisteredEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelUnregisteredEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelActiveEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelActiveEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelInactiveEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelInactiveEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelReadEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelReadEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelReadCompleteEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelReadCompleteEvent(timestamp);
+        }
+
+        @Override
+        public void addUserEventTriggeredEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addUserEventTriggeredEvent(timestamp);
+        }
+
+        @Override
+        public void addChannelWritabilityChangedEvent(Instant timestamp) throws IOException {
+            underlyingSerializer.addChannelWritabilityChangedEvent(timestamp);
+        }
+
+        @Override
+        public void addEndOfFirstLineIndicator(int characterIndex) throws IOException {
+            underlyingSerializer.addEndOfFirstLineIndicator(characterIndex);
+        }
+
+        @Override
+        public void addEndOfHeadersIndicator(int characterIndex) throws IOException {
+            underlyingSerializer.addEndOfHeadersIndicator(characterIndex);
+        }
+    }
+}
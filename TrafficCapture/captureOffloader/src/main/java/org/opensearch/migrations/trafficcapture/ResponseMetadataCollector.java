@@ -0,0 +1,234 @@
+package org.opensearch.migrations.trafficcapture;
+
+import com.google.protobuf.Timestamp;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Summarizes the bytes of one response at a time, as they're written, into a ResponseMetadataObservation.  The
+ * status line and headers are buffered until the blank line that ends them and are then parsed.  Body bytes are
+ * only counted and (optionally) hashed, so they're never copied.
+ * <p>
+ * Interim (1xx) responses are folded into the final response that follows them.  The end of a response is only
+ * known here when its headers give its length (Content-Length, or no body at all for a response to a HEAD request
+ * or a 204 or 304).  Callers are expected to finish other responses when the next request starts or the
+ * connection closes.
+ */
+class ResponseMetadataCollector {
+    static final int MAX_HEAD_SIZE = 16 * 1024;
+    private static final int INITIAL_HEAD_BUFFER_SIZE = 512;
+    private static final int UNKNOWN_LENGTH = -1;
+
+    private final Set<String> lowerCaseHeadersToKeep;
+    private final CRC32C bodyCrc;
+    /**
+     * Whether each request that hasn't had a response started for it yet was a HEAD request, in the order that the
+     * requests were received.  With pipelining, several requests can arrive before the first response is written.
+     */
+    private final ArrayDeque<Boolean> unansweredRequestsAreHead = new ArrayDeque<>();
+
+    // state for the response being collected
+    private boolean respondingToHeadRequest;
+    @Getter
+    private Instant firstByteTimestamp;
+    private Instant lastByteTimestamp;
+    private long byteLength;
+    private boolean inHead;
+    private boolean headWasParsed;
+    private byte[] headBytes = new byte[INITIAL_HEAD_BUFFER_SIZE];
+    private int headLength;
+    private ResponseMetadataObservation.Builder metadataBuilder;
+    private long bodyBytesExpected;
+    private long bodyBytesSeen;
+
+    /**
+     * @param lowerCaseHeadersToKeep the (lower case) names of the headers to copy into the observation
+     * @param hashBodies when true, the observation includes a CRC-32C of each response body
+     */
+    ResponseMetadataCollector(Set<String> lowerCaseHeadersToKeep, boolean hashBodies) {
+        this.lowerCaseHeadersToKeep = lowerCaseHeadersToKeep;
+        this.bodyCrc = hashBodies ? new CRC32C() : null;
+        resetForNextResponse();
+    }
+
+    /**
+     * Called as each request begins.  Responses to HEAD requests have headers that describe a body that isn't sent.
+     */
+    void addRequest(boolean isHeadRequest) {
+        unansweredRequestsAreHead.add(isHeadRequest);
+    }
+
+    boolean hasResponse() {
+        return firstByteTimestamp != null;
+    }
+
+    /**
+     * Adds the readable bytes of buffer, without changing its indices, to the current response.
+     *
+     * @return true iff the response is now known to be complete, in which case finishResponse() should be called
+     */
+    boolean addWrite(Instant timestamp, ByteBuf buffer) {
+        if (firstByteTimestamp == null) {
+            firstByteTimestamp = timestamp;
+            respondingToHeadRequest = Boolean.TRUE.equals(unansweredRequestsAreHead.poll());
+        }
+        lastByteTimestamp = timestamp;
+        byteLength += buffer.readableBytes();
+        var index = buffer.readerIndex();
+        final var end = buffer.writerIndex();
+        while (inHead && index < end) {
+            index = addHeadBytes(buffer, index, end);
+        }
+        if (index < end) {
+            addBodyBytes(buffer, index, end - index);
+        }
+        return !inHead && bodyBytesExpected != UNKNOWN_LENGTH && bodyBytesSeen >= bodyBytesExpected;
+    }
+
+    /**
+     * @return the metadata for everything added since the last call, after which the next write starts a new
+     * response
+     */
+    ResponseMetadataObservation finishResponse() {
+        var builder = metadataBuilder != null ? metadataBuilder : ResponseMetadataObservation.newBuilder();
+        builder.setByteLength(byteLength)
+                .setLastByteTs(Timestamp.newBuilder()
+                        .setSeconds(lastByteTimestamp.getEpochSecond())
+                        .setNanos(lastByteTimestamp.getNano()));
+        if (bodyCrc != null && headWasParsed) {
+            builder.setBodyCrc32C((int) bodyCrc.getValue());
+        }
+        var metadata = builder.build();
+        resetForNextResponse();
+        return metadata;
+    }
+
+    private int addHeadBytes(ByteBuf buffer, int index, int end) {
+        var bytesToCopy = Math.min(end - index, MAX_HEAD_SIZE - headLength);
+        if (bytesToCopy == 0) {
+            // give up on the headers and just count (but don't hash) the rest of the response
+            inHead = false;
+            return index;
+        }
+        if (headLength + bytesToCopy > headBytes.length) {
+            headBytes = Arrays.copyOf(headBytes, Math.min(MAX_HEAD_SIZE,
+                    Math.max(headBytes.length * 2, headLength + bytesToCopy)));
+        }
+        buffer.getBytes(index, headBytes, headLength, bytesToCopy);
+        var previousHeadLength = headLength;
+        headLength += bytesToCopy;
+        var headEnd = findEndOfHead(Math.max(0, previousHeadLength - 2));
+        if (headEnd < 0) {
+            return index + bytesToCopy;
+        }
+        onHeadFinished(headEnd);
+        return index + (headEnd - previousHeadLength);
+    }
+
+    /**
+     * @return the index just past the blank line that ends the head, or -1 if it hasn't been found yet
+     */
+    private int findEndOfHead(int searchFrom) {
+        for (int i = searchFrom; i < headLength - 1; ++i) {
+            if (headBytes[i] == '\n') {
+                if (headBytes[i + 1] == '\n') {
+                    return i + 2;
+                } else if (headBytes[i + 1] == '\r' && i + 2 < headLength && headBytes[i + 2] == '\n') {
+                    return i + 3;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void onHeadFinished(int headEnd) {
+        var lines = new String(headBytes, 0, headEnd, StandardCharsets.ISO_8859_1).split("\r?\n");
+        headLength = 0;
+        var statusLineParts = lines[0].trim().split("\\s+", 3);
+        int statusCode;
+        try {
+            statusCode = Integer.parseInt(statusLineParts[1]);
+        } catch (RuntimeException e) {
+            // not a status line that we understand, so treat everything from here on as an opaque body
+            inHead = false;
+            return;
+        }
+        if (statusCode >= 100 && statusCode < 200 && statusCode != 101) {
+            // an interim response, so the final response's head comes next
+            return;
+        }
+        var builder = ResponseMetadataObservation.newBuilder()
+                .setHttpVersion(statusLineParts[0])
+                .setStatusCode(statusCode)
+                .setReasonPhrase(statusLineParts.length > 2 ? statusLineParts[2] : "");
+        long contentLength = UNKNOWN_LENGTH;
+        var isChunked = false;
+        for (int i = 1; i < lines.length; ++i) {
+            var colonIndex = lines[i].indexOf(':');
+            if (colonIndex <= 0) {
+                continue;
+            }
+            var name = lines[i].substring(0, colonIndex).trim();
+            var value = lines[i].substring(colonIndex + 1).trim();
+            var lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (lowerCaseName.equals("content-length")) {
+                contentLength = parseContentLength(value);
+            } else if (lowerCaseName.equals("transfer-encoding")) {
+                isChunked |= value.toLowerCase(Locale.ROOT).contains("chunked");
+            }
+            if (lowerCaseHeadersToKeep.contains(lowerCaseName)) {
+                builder.addHeaders(ResponseMetadataObservation.Header.newBuilder().setName(name).setValue(value));
+            }
+        }
+        if (respondingToHeadRequest || statusCode == 204 || statusCode == 304) {
+            bodyBytesExpected = 0;
+        } else {
+            bodyBytesExpected = isChunked || statusCode == 101 ? UNKNOWN_LENGTH : contentLength;
+        }
+        metadataBuilder = builder;
+        headWasParsed = true;
+        inHead = false;
+    }
+
+    private static long parseContentLength(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return UNKNOWN_LENGTH;
+        }
+    }
+
+    private void addBodyBytes(ByteBuf buffer, int index, int length) {
+        bodyBytesSeen += length;
+        if (bodyCrc != null && headWasParsed) {
+            for (var nioBuffer : buffer.nioBuffers(index, length)) {
+                bodyCrc.update(nioBuffer);
+            }
+        }
+    }
+
+    private void resetForNextResponse() {
+        respondingToHeadRequest = false;
+        firstByteTimestamp = null;
+        lastByteTimestamp = null;
+        byteLength = 0;
+        inHead = true;
+        headWasParsed = false;
+        headLength = 0;
+        metadataBuilder = null;
+        bodyBytesExpected = UNKNOWN_LENGTH;
+        bodyBytesSeen = 0;
+        if (bodyCrc != null) {
+            bodyCrc.reset();
+        }
+    }
+}
@@ -8,13 +8,18 @@ import java.util.function.Supplier;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.migrations.trafficcapture.protos.CloseObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressedReadObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressedWriteObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressionCodec;
 import org.opensearch.migrations.trafficcapture.protos.ConnectionExceptionObservation;
 import org.opensearch.migrations.trafficcapture.protos.EndOfMessageIndication;
 import org.opensearch.migrations.trafficcapture.protos.EndOfSegmentsIndication;
 import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
 import org.opensearch.migrations.trafficcapture.protos.ReadSegmentObservation;
 import org.opensearch.migrations.trafficcapture.protos.RequestIntentionallyDropped;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
 import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservationCompression;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
 import org.opensearch.migrations.trafficcapture.protos.WriteObservation;
 import org.opensearch.migrations.trafficcapture.protos.WriteSegmentObservation;
@@ -65,6 +70,8 @@ public class StreamChannelConnectionCaptureSerializer<T> implements IChannelConn
 
     // 100 is the default size of netty connectionId and kafka nodeId along with serializationTags
     private static final int MAX_ID_SIZE = 100;
+    // Below this, compressing a read or write isn't worth the cpu or the extra bytes of codec overhead
+    public static final int MIN_BYTES_TO_COMPRESS = 512;
 
     private boolean readObservationsAreWaitingForEom;
     private int eomsSoFar;
@@ -76,11 +83,25 @@ public class StreamChannelConnectionCaptureSerializer<T> implements IChannelConn
     private final StreamLifecycleManager<T> streamManager;
     private final String nodeIdString;
     private final String connectionIdString;
+    private final CompressionCodec dataCompressionCodec;
     private CodedOutputStreamHolder currentCodedOutputStreamHolderOrNull;
 
     public StreamChannelConnectionCaptureSerializer(String nodeId, String connectionId,
                                                     @NonNull StreamLifecycleManager<T> streamLifecycleManager) {
+        this(nodeId, connectionId, streamLifecycleManager, CompressionCodec.UNCOMPRESSED);
+    }
+
+    /**
+     * @param dataCompressionCodec when this is anything other than UNCOMPRESSED, reads and writes are recorded as
+     *                             Compressed[Read|Write]Observations whenever that makes them smaller and the
+     *                             compressed observation fits within a single TrafficStream.  Otherwise, they are
+     *                             written (and segmented) exactly as they would be without compression.
+     */
+    public StreamChannelConnectionCaptureSerializer(String nodeId, String connectionId,
+                                                    @NonNull StreamLifecycleManager<T> streamLifecycleManager,
+                                                    @NonNull CompressionCodec dataCompressionCodec) {
         this.streamManager = streamLifecycleManager;
+        this.dataCompressionCodec = dataCompressionCodec;
         assert (nodeId == null ? 0 : CodedOutputStream.computeStringSize(TrafficStream.NODEID_FIELD_NUMBER, nodeId)) +
                 CodedOutputStream.computeStringSize(TrafficStream.CONNECTIONID_FIELD_NUMBER, connectionId)
                 <= MAX_ID_SIZE;
@@ -274,7 +295,82 @@ public class StreamChannelConnectionCaptureSerializer<T> implements IChannelConn
         writeByteStringToCurrentStream(dataFieldNumber, str);
     }
 
+    /**
+     * @return the most bytes that could be written to a brand-new stream before its first observation
+     */
+    private int maxBytesForTrafficStreamPreamble() {
+        return MAX_ID_SIZE +
+                CodedOutputStream.computeInt32Size(TrafficStream.PRIORREQUESTSRECEIVED_FIELD_NUMBER, eomsSoFar) +
+                CodedOutputStream.computeBoolSize(TrafficStream.LASTOBSERVATIONWASUNTERMINATEDREAD_FIELD_NUMBER, true);
+    }
+
+    /**
+     * @return true iff the data was written as a compressed observation.  When this returns false, nothing has been
+     * written and the caller should write the data as it normally would.
+     */
+    private boolean addCompressedDataMessageIfWorthwhile(int captureFieldNumber, Instant timestamp, ByteBuf buffer)
+            throws IOException {
+        var uncompressedLength = buffer.readableBytes();
+        if (dataCompressionCodec == CompressionCodec.UNCOMPRESSED || uncompressedLength < MIN_BYTES_TO_COMPRESS) {
+            return false;
+        }
+        var compressedBytes = TrafficObservationCompression.compress(dataCompressionCodec, buffer.nioBuffer());
+        if (compressedBytes.length >= uncompressedLength) {
+            return false;
+        }
+        int compressedFieldNumber;
+        int codecFieldNumber;
+        int dataFieldNumber;
+        int uncompressedLengthFieldNumber;
+        if (captureFieldNumber == TrafficObservation.READ_FIELD_NUMBER) {
+            compressedFieldNumber = TrafficObservation.COMPRESSEDREAD_FIELD_NUMBER;
+            codecFieldNumber = CompressedReadObservation.CODEC_FIELD_NUMBER;
+            dataFieldNumber = CompressedReadObservation.DATA_FIELD_NUMBER;
+            uncompressedLengthFieldNumber = CompressedReadObservation.UNCOMPRESSEDLENGTH_FIELD_NUMBER;
+        } else {
+            compressedFieldNumber = TrafficObservation.COMPRESSEDWRITE_FIELD_NUMBER;
+            codecFieldNumber = CompressedWriteObservation.CODEC_FIELD_NUMBER;
+            dataFieldNumber = CompressedWriteObservation.DATA_FIELD_NUMBER;
+            uncompressedLengthFieldNumber = CompressedWriteObservation.UNCOMPRESSEDLENGTH_FIELD_NUMBER;
+        }
+        var contentSize = CodedOutputStream.computeEnumSize(codecFieldNumber, dataCompressionCodec.getNumber()) +
+                CodedOutputStream.computeByteArraySize(dataFieldNumber, compressedBytes) +
+                CodedOutputStream.computeInt32Size(uncompressedLengthFieldNumber, uncompressedLength);
+        var captureLengthAndContentSize = CodedOutputStream.computeUInt32SizeNoTag(contentSize) + contentSize;
+
+        var limit = getOrCreateCodedOutputStreamHolder().getOutputStreamBytesLimit();
+        if (limit != -1) {
+            var tsContentSize = CodedOutputStreamSizeUtil.getSizeOfTimestamp(timestamp);
+            var observationSize = CodedOutputStreamSizeUtil.bytesNeededForObservationAndClosingIndex(
+                    CodedOutputStream.computeInt32Size(TrafficObservation.TS_FIELD_NUMBER, tsContentSize) +
+                            tsContentSize + CodedOutputStream.computeTagSize(compressedFieldNumber) +
+                            captureLengthAndContentSize,
+                    Integer.MAX_VALUE);
+            if (observationSize + maxBytesForTrafficStreamPreamble() > limit) {
+                // segmenting compressed data would mean that nothing could be decompressed until every segment
+                // had arrived, so just fall back to the uncompressed (segmented) representation
+                return false;
+            }
+        }
+
+        beginSubstreamObservation(timestamp, compressedFieldNumber, captureLengthAndContentSize);
+        // e.g. 17 {
+        writeObservationTag(compressedFieldNumber);
+        var codedOutputStream = getOrCreateCodedOutputStream();
+        codedOutputStream.writeUInt32NoTag(contentSize);
+        codedOutputStream.writeEnum(codecFieldNumber, dataCompressionCodec.getNumber());
+        codedOutputStream.writeByteArray(dataFieldNumber, compressedBytes);
+        codedOutputStream.writeInt32(uncompressedLengthFieldNumber, uncompressedLength);
+        if (captureFieldNumber == TrafficObservation.READ_FIELD_NUMBER) {
+            this.readObservationsAreWaitingForEom = true;
+        }
+        return true;
+    }
+
     private void addDataMessage(int captureFieldNumber, int dataFieldNumber, Instant timestamp, ByteBuf buffer) throws IOException {
+        if (addCompressedDataMessageIfWorthwhile(captureFieldNumber, timestamp, buffer)) {
+            return;
+        }
         var byteBuffer = buffer.nioBuffer();
         int segmentFieldNumber;
         int segmentDataFieldNumber;
@@ -375,6 +471,19 @@ public class StreamChannelConnectionCaptureSerializer<T> implements IChannelConn
         addDataMessage(TrafficObservation.WRITE_FIELD_NUMBER, WriteObservation.DATA_FIELD_NUMBER, timestamp, buffer);
     }
 
+    @Override
+    public void addResponseMetadataEvent(Instant timestamp, ResponseMetadataObservation responseMetadata)
+            throws IOException {
+        var contentSize = responseMetadata.getSerializedSize();
+        beginSubstreamObservation(timestamp, TrafficObservation.RESPONSEMETADATA_FIELD_NUMBER,
+                CodedOutputStream.computeUInt32SizeNoTag(contentSize) + contentSize);
+        // e.g. 19 {
+        writeObservationTag(TrafficObservation.RESPONSEMETADATA_FIELD_NUMBER);
+        var codedOutputStream = getOrCreateCodedOutputStream();
+        codedOutputStream.writeUInt32NoTag(contentSize);
+        responseMetadata.writeTo(codedOutputStream);
+    }
+
     @Override
     public void addFlushEvent(Instant timestamp) throws IOException {
         // not implemented for this serializer.  The v1.0 version of the replayer will ignore this type of observation
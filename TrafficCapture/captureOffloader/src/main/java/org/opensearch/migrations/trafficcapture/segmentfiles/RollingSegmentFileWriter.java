@@ -0,0 +1,261 @@
+package org.opensearch.migrations.trafficcapture.segmentfiles;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends serialized TrafficStreams from any number of connections to a shared sequence of segment files (see
+ * {@link TrafficSegmentFiles} for the layout).
+ * <p>
+ * All file I/O happens on one writer thread.  That thread takes every append that is waiting when it wakes up,
+ * writes them all, and then makes them durable with a single force() (group commit) before completing their
+ * futures.  Under load, the cost of each fsync is spread across many TrafficStreams, while a lone TrafficStream is
+ * still committed as soon as it arrives.
+ * <p>
+ * A new segment is started once the current one would grow past maxSegmentBytes or once it has been open for
+ * maxSegmentAge.  When the writer starts, it recovers the most recent segment from a previous run by truncating
+ * it after the last complete record and rebuilding its index.
+ */
+@Slf4j
+public class RollingSegmentFileWriter implements AutoCloseable {
+    public static final int DEFAULT_MAX_APPENDS_PER_COMMIT = 1024;
+    private static final long IDLE_POLL_MS = 100;
+
+    @AllArgsConstructor
+    private static class PendingAppend {
+        final String connectionId;
+        final int trafficStreamIndex;
+        final byte[] payload;
+        final CompletableFuture<Void> future;
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final Duration maxSegmentAge;
+    private final int maxAppendsPerCommit;
+    private final LinkedBlockingQueue<PendingAppend> pendingAppends = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    // Everything below is only touched by the writer thread (or by the constructor before it starts)
+    private long nextSequenceNumber;
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+    private long segmentSize;
+    private long segmentOpenedNanos;
+
+    public RollingSegmentFileWriter(Path directory, long maxSegmentBytes, Duration maxSegmentAge) throws IOException {
+        this(directory, maxSegmentBytes, maxSegmentAge, DEFAULT_MAX_APPENDS_PER_COMMIT);
+    }
+
+    public RollingSegmentFileWriter(Path directory, long maxSegmentBytes, Duration maxSegmentAge,
+                                    int maxAppendsPerCommit) throws IOException {
+        if (maxSegmentBytes <= 0 || maxSegmentBytes > TrafficSegmentFiles.MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("maxSegmentBytes (" + maxSegmentBytes + ") must be positive and " +
+                    "no more than " + TrafficSegmentFiles.MAX_SEGMENT_BYTES);
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAge = maxSegmentAge;
+        this.maxAppendsPerCommit = maxAppendsPerCommit;
+        Files.createDirectories(directory);
+        recoverFromPreviousRun();
+        this.writerThread = new Thread(this::runWriteLoop, "segmentFileWriter-" + directory.getFileName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return a future that completes once the TrafficStream has been durably written
+     */
+    public CompletableFuture<Void> append(String connectionId, int trafficStreamIndex, byte[] trafficStreamBytes) {
+        var future = new CompletableFuture<Void>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("The segment file writer has been closed"));
+        } else {
+            pendingAppends.add(new PendingAppend(connectionId, trafficStreamIndex, trafficStreamBytes, future));
+        }
+        return future;
+    }
+
+    /**
+     * Only the newest segment can have been left incomplete, since older ones were forced before each roll.
+     * A torn record at the end of it is cut off, the index is rebuilt to match, and new appends go to a new segment.
+     */
+    private void recoverFromPreviousRun() throws IOException {
+        var segments = TrafficSegmentFiles.listSegments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        var lastSegment = segments.get(segments.size() - 1);
+        nextSequenceNumber = TrafficSegmentFiles.sequenceNumberOf(lastSegment) + 1;
+        try (var channel = FileChannel.open(lastSegment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < TrafficSegmentFiles.SEGMENT_HEADER_SIZE) {
+                log.atWarn().setMessage(() -> "Removing segment " + lastSegment +
+                        " since it was created but never written").log();
+                channel.close();
+                Files.delete(lastSegment);
+                Files.deleteIfExists(TrafficSegmentFiles.indexPathForSegment(lastSegment));
+                return;
+            }
+            var contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            TrafficSegmentFiles.checkSegmentHeader(contents, lastSegment);
+            var indexEntries = new ArrayList<TrafficSegmentFiles.IndexEntry>();
+            int offset = TrafficSegmentFiles.SEGMENT_HEADER_SIZE;
+            ByteBuffer payload;
+            while ((payload = TrafficSegmentFiles.readRecordAt(contents, offset)) != null) {
+                var trafficStream = TrafficStream.parseFrom(payload);
+                indexEntries.add(new TrafficSegmentFiles.IndexEntry(trafficStream.getConnectionId(),
+                        TrafficStreamUtils.getTrafficStreamIndex(trafficStream), offset));
+                offset += TrafficSegmentFiles.RECORD_HEADER_SIZE + payload.remaining();
+            }
+            if (offset < channel.size()) {
+                final var validLength = offset;
+                log.atWarn().setMessage(() -> "Truncating " + lastSegment + " from " + contents.limit() +
+                        " to " + validLength + " bytes to remove an incomplete record").log();
+                channel.truncate(offset);
+                channel.force(true);
+            }
+            try (var indexChannelForRebuild = FileChannel.open(TrafficSegmentFiles.indexPathForSegment(lastSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (var entry : indexEntries) {
+                    writeFully(indexChannelForRebuild, ByteBuffer.wrap(TrafficSegmentFiles.encodeIndexEntry(entry)));
+                }
+            }
+        }
+    }
+
+    private void runWriteLoop() {
+        var batch = new ArrayList<PendingAppend>();
+        while (!closed || !pendingAppends.isEmpty()) {
+            try {
+                var first = pendingAppends.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (segmentChannel != null && segmentIsTooOld()) {
+                        closeSegment();
+                    }
+                    continue;
+                }
+                batch.add(first);
+                pendingAppends.drainTo(batch, maxAppendsPerCommit - 1);
+                writeAndCommit(batch);
+                batch.forEach(a -> a.future.complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.atError().setCause(e).setMessage(() -> "Failed to write " + batch.size() +
+                        " TrafficStreams to segment files in " + directory).log();
+                batch.forEach(a -> a.future.completeExceptionally(e));
+                // Don't try to append after whatever state the failure left the segment in
+                abandonSegment();
+            } finally {
+                batch.clear();
+            }
+        }
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            log.atError().setCause(e).setMessage(() -> "Failed to close the last segment in " + directory).log();
+        }
+    }
+
+    private void writeAndCommit(List<PendingAppend> batch) throws IOException {
+        for (var append : batch) {
+            var recordSize = TrafficSegmentFiles.RECORD_HEADER_SIZE + append.payload.length;
+            if (segmentChannel != null && segmentSize > TrafficSegmentFiles.SEGMENT_HEADER_SIZE &&
+                    (segmentSize + recordSize > maxSegmentBytes || segmentIsTooOld())) {
+                closeSegment();
+            }
+            if (segmentChannel == null) {
+                openNextSegment();
+            }
+            var recordOffset = segmentSize;
+            writeFully(segmentChannel, TrafficSegmentFiles.makeRecordHeader(append.payload),
+                    ByteBuffer.wrap(append.payload));
+            segmentSize += recordSize;
+            writeFully(indexChannel, ByteBuffer.wrap(TrafficSegmentFiles.encodeIndexEntry(
+                    new TrafficSegmentFiles.IndexEntry(append.connectionId, append.trafficStreamIndex, recordOffset))));
+        }
+        segmentChannel.force(false);
+    }
+
+    private boolean segmentIsTooOld() {
+        return System.nanoTime() - segmentOpenedNanos >= maxSegmentAge.toNanos();
+    }
+
+    private void openNextSegment() throws IOException {
+        var segmentPath = TrafficSegmentFiles.segmentPath(directory, nextSequenceNumber++);
+        log.atInfo().setMessage(() -> "Starting new capture segment " + segmentPath).log();
+        segmentChannel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(TrafficSegmentFiles.indexPathForSegment(segmentPath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeFully(segmentChannel, TrafficSegmentFiles.makeSegmentHeader());
+        segmentSize = TrafficSegmentFiles.SEGMENT_HEADER_SIZE;
+        segmentOpenedNanos = System.nanoTime();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segmentChannel == null) {
+            return;
+        }
+        try {
+            segmentChannel.force(true);
+            segmentChannel.close();
+            indexChannel.close();
+        } finally {
+            segmentChannel = null;
+            indexChannel = null;
+        }
+    }
+
+    private void abandonSegment() {
+        try {
+            if (segmentChannel != null) {
+                segmentChannel.close();
+            }
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+        } catch (IOException e) {
+            log.atWarn().setCause(e).setMessage(() -> "Error while abandoning a segment in " + directory).log();
+        } finally {
+            segmentChannel = null;
+            indexChannel = null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (var b : buffers) {
+            remaining += b.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * Stop accepting new appends and wait for the ones already accepted to be committed
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        writerThread.join();
+    }
+}
@@ -0,0 +1,85 @@
+package org.opensearch.migrations.trafficcapture.segmentfiles;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.AllArgsConstructor;
+import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
+import org.opensearch.migrations.trafficcapture.CodedOutputStreamAndByteBufWrapper;
+import org.opensearch.migrations.trafficcapture.CodedOutputStreamHolder;
+import org.opensearch.migrations.trafficcapture.IChannelConnectionCaptureSerializer;
+import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.OrderedStreamLifecyleManager;
+import org.opensearch.migrations.trafficcapture.StreamChannelConnectionCaptureSerializer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Captures TrafficStreams for every connection into one set of rolling segment files, for deployments that don't
+ * have a Kafka cluster.  The replayer can read the same directory with its segment file traffic source.
+ */
+public class SegmentFileConnectionCaptureFactory implements IConnectionCaptureFactory<Void>, AutoCloseable {
+    private final String nodeId;
+    private final RollingSegmentFileWriter writer;
+    private final int bufferSize;
+    private final ByteBufAllocator bufferAllocator;
+
+    public SegmentFileConnectionCaptureFactory(String nodeId, RollingSegmentFileWriter writer, int bufferSize,
+                                               ByteBufAllocator bufferAllocator) {
+        this.nodeId = nodeId;
+        this.writer = writer;
+        this.bufferSize = bufferSize;
+        this.bufferAllocator = bufferAllocator;
+    }
+
+    public SegmentFileConnectionCaptureFactory(String nodeId, Path directory, int bufferSize,
+                                               long maxSegmentBytes, Duration maxSegmentAge) throws IOException {
+        this(nodeId, new RollingSegmentFileWriter(directory, maxSegmentBytes, maxSegmentAge), bufferSize,
+                PooledByteBufAllocator.DEFAULT);
+    }
+
+    @AllArgsConstructor
+    class StreamManager extends OrderedStreamLifecyleManager<Void> {
+        String connectionId;
+
+        @Override
+        public CodedOutputStreamAndByteBufWrapper createStream() {
+            return new CodedOutputStreamAndByteBufWrapper(bufferAllocator, bufferSize);
+        }
+
+        @Override
+        public CompletableFuture<Void> closeStream(CodedOutputStreamHolder outputStreamHolder, int index) {
+            return super.closeStream(outputStreamHolder, index)
+                    .whenComplete((v, t) -> ((CodedOutputStreamAndByteBufWrapper) outputStreamHolder).close());
+        }
+
+        @Override
+        protected CompletableFuture<Void> kickoffCloseStream(CodedOutputStreamHolder outputStreamHolder, int index) {
+            if (!(outputStreamHolder instanceof CodedOutputStreamAndByteBufWrapper)) {
+                throw new IllegalArgumentException("Unknown outputStreamHolder sent back to StreamManager: " +
+                        outputStreamHolder);
+            }
+            var osh = (CodedOutputStreamAndByteBufWrapper) outputStreamHolder;
+            byte[] trafficStreamBytes;
+            try {
+                trafficStreamBytes = osh.copyFilledBytes();
+            } finally {
+                osh.close();
+            }
+            return writer.append(connectionId, index, trafficStreamBytes);
+        }
+    }
+
+    @Override
+    public IChannelConnectionCaptureSerializer<Void> createOffloader(IConnectionContext ctx) {
+        final var connectionId = ctx.getConnectionId();
+        return new StreamChannelConnectionCaptureSerializer<>(nodeId, connectionId, new StreamManager(connectionId));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        writer.close();
+    }
+}
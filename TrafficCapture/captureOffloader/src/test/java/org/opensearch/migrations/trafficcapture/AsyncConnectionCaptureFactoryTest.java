@@ -0,0 +1,196 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class AsyncConnectionCaptureFactoryTest {
+
+    private static class RecordingSerializer implements IChannelConnectionCaptureSerializer<String> {
+        final List<String> observations = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+
+        @Override
+        public void addReadEvent(Instant timestamp, ByteBuf buffer) {
+            threads.add(Thread.currentThread());
+            observations.add(buffer.toString(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void addEndOfHeadersIndicator(int characterIndex) throws IOException {
+            throw new IOException("Headers of " + characterIndex + " bytes are too long");
+        }
+
+        @Override
+        public CompletableFuture<String> flushCommitAndResetStream(boolean isFinal) {
+            return CompletableFuture.completedFuture(String.join(",", observations));
+        }
+    }
+
+    /**
+     * Blocks the serializer thread on its first read until it's released
+     */
+    private static class BlockingSerializer extends RecordingSerializer {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void addReadEvent(Instant timestamp, ByteBuf buffer) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.addReadEvent(timestamp, buffer);
+        }
+    }
+
+    /**
+     * Waits the way that a connection would with its reads paused
+     */
+    private static void waitUntilRelieved(IOffloaderBackpressure backpressure) throws InterruptedException {
+        if (backpressure.shouldPauseReads()) {
+            var relieved = new CountDownLatch(1);
+            backpressure.resumeWhenRelieved(relieved::countDown);
+            relieved.await();
+        }
+    }
+
+    @Test
+    public void testEventsAreSerializedInOrderOffOfTheProducingThreads() throws Exception {
+        final int NUM_PRODUCERS = 3;
+        final int NUM_CONNECTIONS_PER_PRODUCER = 4;
+        final int NUM_READS = 1000;
+        var buffers = new ConcurrentHashMap<String, List<ByteBuf>>();
+        var results = new ConcurrentHashMap<String, CompletableFuture<String>>();
+        // a small ring so that the producers have to pause for the serializers
+        var factory = new AsyncConnectionCaptureFactory<String>(ctx -> new RecordingSerializer(), 2, 16);
+        var producers = new ArrayList<Thread>();
+        for (int p = 0; p < NUM_PRODUCERS; ++p) {
+            final var producerIndex = p;
+            producers.add(new Thread(() -> {
+                try {
+                    var offloaders = new ArrayList<IChannelConnectionCaptureSerializer<String>>();
+                    for (int c = 0; c < NUM_CONNECTIONS_PER_PRODUCER; ++c) {
+                        offloaders.add(factory.createOffloader(null));
+                    }
+                    var backpressure = factory.getBackpressure();
+                    for (int i = 0; i < NUM_READS; ++i) {
+                        waitUntilRelieved(backpressure);
+                        for (int c = 0; c < offloaders.size(); ++c) {
+                            var bb = Unpooled.copiedBuffer(Integer.toString(i), StandardCharsets.UTF_8);
+                            offloaders.get(c).addReadEvent(Instant.now(), bb);
+                            bb.release();
+                            buffers.computeIfAbsent(producerIndex + "-" + c, k -> new ArrayList<>()).add(bb);
+                        }
+                    }
+                    waitUntilRelieved(backpressure);
+                    for (int c = 0; c < offloaders.size(); ++c) {
+                        results.put(producerIndex + "-" + c, offloaders.get(c).flushCommitAndResetStream(true));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (var producer : producers) {
+            producer.join();
+        }
+        factory.close();
+
+        var expected = IntStream.range(0, NUM_READS).mapToObj(Integer::toString).collect(Collectors.joining(","));
+        Assertions.assertEquals(NUM_PRODUCERS * NUM_CONNECTIONS_PER_PRODUCER, results.size());
+        Assertions.assertEquals(0, factory.getDroppedEventCount());
+        for (var result : results.values()) {
+            Assertions.assertEquals(expected, result.get(10, TimeUnit.SECONDS));
+        }
+        for (var bufferList : buffers.values()) {
+            for (var bb : bufferList) {
+                Assertions.assertEquals(0, bb.refCnt());
+            }
+        }
+    }
+
+    @Test
+    public void testSerializationFailureFailsTheNextFlush() throws Exception {
+        var serializer = new RecordingSerializer();
+        var factory = new AsyncConnectionCaptureFactory<String>(ctx -> serializer, 1);
+        var offloader = factory.createOffloader(null);
+        var bb = Unpooled.copiedBuffer("before", StandardCharsets.UTF_8);
+        offloader.addReadEvent(Instant.now(), bb);
+        bb.release();
+        offloader.addEndOfHeadersIndicator(10);
+        offloader.addReadEvent(Instant.now(), Unpooled.copiedBuffer("after", StandardCharsets.UTF_8));
+        var flushFuture = offloader.flushCommitAndResetStream(false);
+        factory.close();
+
+        var exception = Assertions.assertThrows(Exception.class, () -> flushFuture.get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IOException.class, exception.getCause());
+        Assertions.assertEquals(List.of("before"), serializer.observations);
+        Assertions.assertNotEquals(Thread.currentThread(), serializer.threads.get(0));
+        Assertions.assertEquals(0, bb.refCnt());
+    }
+
+    @Test
+    public void testReadsArePausedOnceTheRingIsMostlyFullAndResumedOnceItDrains() throws Exception {
+        var serializer = new BlockingSerializer();
+        var factory = new AsyncConnectionCaptureFactory<String>(ctx -> serializer, 1, 8);
+        var offloader = factory.createOffloader(null);
+        var backpressure = factory.getBackpressure();
+        for (int i = 0; i < 6; ++i) {
+            Assertions.assertFalse(backpressure.shouldPauseReads());
+            offloader.addReadEvent(Instant.now(), Unpooled.copiedBuffer(Integer.toString(i), StandardCharsets.UTF_8));
+        }
+        Assertions.assertTrue(backpressure.shouldPauseReads());
+        var resumed = new CountDownLatch(1);
+        backpressure.resumeWhenRelieved(resumed::countDown);
+        Assertions.assertEquals(1, resumed.getCount());
+
+        serializer.release.countDown();
+        Assertions.assertTrue(resumed.await(10, TimeUnit.SECONDS));
+        var flushFuture = offloader.flushCommitAndResetStream(true);
+        factory.close();
+        Assertions.assertEquals("0,1,2,3,4,5", flushFuture.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, factory.getDroppedEventCount());
+    }
+
+    @Test
+    public void testEventsThatDontFitAreDroppedAndCountedWithoutBlocking() throws Exception {
+        var serializer = new BlockingSerializer();
+        var factory = new AsyncConnectionCaptureFactory<String>(ctx -> serializer, 1, 4);
+        var offloader = factory.createOffloader(null);
+        var buffers = new ArrayList<ByteBuf>();
+        for (int i = 0; i < 10; ++i) {
+            var bb = Unpooled.copiedBuffer(Integer.toString(i), StandardCharsets.UTF_8);
+            offloader.addReadEvent(Instant.now(), bb);
+            bb.release();
+            buffers.add(bb);
+        }
+        var flushFuture = offloader.flushCommitAndResetStream(true);
+        // the ring can only hold 4 events, so at least 6 reads and the flush were dropped
+        Assertions.assertTrue(factory.getDroppedEventCount() >= 7);
+        var exception = Assertions.assertThrows(Exception.class, () -> flushFuture.get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IOException.class, exception.getCause());
+
+        serializer.release.countDown();
+        factory.close();
+        for (var bb : buffers) {
+            Assertions.assertEquals(0, bb.refCnt());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CaptureMemoryBudgetTest {
+
+    @Test
+    public void streamBuffersAreReservedAsTheyGrowAndReleasedOnceWhenClosed() throws Exception {
+        var budget = new CaptureMemoryBudget(64 * 1024, CaptureMemoryBudget.OverBudgetPolicy.FLUSH_LARGEST);
+        var small = new CodedOutputStreamAndByteBufWrapper(UnpooledByteBufAllocator.DEFAULT, 1024,
+                1024 * 1024, budget);
+        var large = new CodedOutputStreamAndByteBufWrapper(UnpooledByteBufAllocator.DEFAULT, 1024,
+                1024 * 1024, budget);
+        Assertions.assertEquals(0, budget.getReservedBytes());
+
+        small.getOutputStream().writeRawBytes(new byte[10]);
+        small.getOutputStream().flush();
+        large.getOutputStream().writeRawBytes(new byte[100 * 1024]);
+        large.getOutputStream().flush();
+        Assertions.assertEquals(small.getAllocatedBytes() + large.getAllocatedBytes(), budget.getBufferedBytes());
+        Assertions.assertEquals(budget.getBufferedBytes() / 2, budget.getMeanBufferedBytes());
+        Assertions.assertTrue(budget.isExceeded());
+
+        large.close();
+        large.close();
+        Assertions.assertEquals(small.getAllocatedBytes(), budget.getReservedBytes());
+        Assertions.assertFalse(budget.isExceeded());
+        small.close();
+        Assertions.assertEquals(0, budget.getReservedBytes());
+        Assertions.assertEquals(0, budget.getMeanBufferedBytes());
+    }
+
+    @Test
+    public void pausedReadersResumeOnlyOnceTheBudgetFallsToTheResumeThreshold() {
+        var budget = new CaptureMemoryBudget(1000, CaptureMemoryBudget.OverBudgetPolicy.PAUSE_READS);
+        var resumeCount = new AtomicInteger();
+        budget.reserveQueuedBytes(1200);
+        Assertions.assertTrue(budget.isExceeded());
+        budget.pauseUntilUnderBudget(resumeCount::incrementAndGet);
+        budget.pauseUntilUnderBudget(resumeCount::incrementAndGet);
+
+        budget.releaseQueuedBytes(300);
+        Assertions.assertFalse(budget.isExceeded());
+        Assertions.assertEquals(0, resumeCount.get(), "900 bytes are still above the resume threshold");
+        budget.releaseQueuedBytes(150);
+        Assertions.assertEquals(2, resumeCount.get());
+
+        // once under the threshold, readers are resumed right away
+        budget.pauseUntilUnderBudget(resumeCount::incrementAndGet);
+        Assertions.assertEquals(3, resumeCount.get());
+    }
+
+    @Test
+    public void cancelledReadersAreNotResumed() {
+        var budget = new CaptureMemoryBudget(1000, CaptureMemoryBudget.OverBudgetPolicy.PAUSE_READS);
+        var resumeCount = new AtomicInteger();
+        Runnable resumeReading = resumeCount::incrementAndGet;
+        budget.reserveQueuedBytes(1200);
+        budget.pauseUntilUnderBudget(resumeReading);
+        budget.cancelPause(resumeReading);
+
+        budget.releaseQueuedBytes(1200);
+        Assertions.assertEquals(0, resumeCount.get());
+    }
+}
@@ -0,0 +1,90 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+class CodedOutputStreamAndByteBufWrapperTest {
+
+    @Test
+    public void testStreamStartsSmallAndGrowsUpToTheLimit() throws IOException {
+        var allocator = new UnpooledByteBufAllocator(true);
+        var holder = new CodedOutputStreamAndByteBufWrapper(allocator, 16, 100);
+        Assertions.assertEquals(100, holder.getOutputStreamBytesLimit());
+        Assertions.assertEquals(0, holder.getAllocatedBytes());
+
+        var data = new byte[90];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        holder.getOutputStream().writeRawBytes(data, 0, 10);
+        holder.getOutputStream().flush();
+        Assertions.assertEquals(16, holder.getAllocatedBytes());
+
+        holder.getOutputStream().writeRawBytes(data, 10, 80);
+        holder.getOutputStream().flush();
+        Assertions.assertEquals(100, holder.getAllocatedBytes());
+        Assertions.assertEquals(10, holder.getOutputStreamSpaceLeft());
+        Assertions.assertArrayEquals(data, holder.copyFilledBytes());
+
+        var filledView = holder.getFilledByteBuf();
+        Assertions.assertEquals(Unpooled.wrappedBuffer(data), filledView);
+        filledView.release();
+
+        holder.getOutputStream().writeRawBytes(new byte[11]);
+        Assertions.assertThrows(IOException.class, () -> holder.getOutputStream().flush());
+
+        holder.close();
+        holder.close();
+        Assertions.assertEquals(0, allocator.metric().usedDirectMemory());
+    }
+
+    @Test
+    public void testSerializerSplitsAcrossRecordsWithAGrowableStream() throws IOException {
+        var allocator = new UnpooledByteBufAllocator(true);
+        var maxBytes = 1024;
+        var recordedStreams = new ArrayList<byte[]>();
+        var serializer = new StreamChannelConnectionCaptureSerializer<>("n", "c",
+                new OrderedStreamLifecyleManager<Void>() {
+                    @Override
+                    public CodedOutputStreamHolder createStream() {
+                        return new CodedOutputStreamAndByteBufWrapper(allocator, 64, maxBytes);
+                    }
+
+                    @Override
+                    protected CompletableFuture<Void> kickoffCloseStream(CodedOutputStreamHolder outputStreamHolder,
+                                                                         int index) {
+                        var osh = (CodedOutputStreamAndByteBufWrapper) outputStreamHolder;
+                        recordedStreams.add(osh.copyFilledBytes());
+                        osh.close();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                });
+
+        var payload = "abcdefghij".repeat(300);
+        var bb = Unpooled.wrappedBuffer(payload.getBytes(StandardCharsets.UTF_8));
+        serializer.addReadEvent(Instant.now(), bb);
+        serializer.flushCommitAndResetStream(true);
+        bb.release();
+
+        Assertions.assertTrue(recordedStreams.size() > 1);
+        var reassembled = new StringBuilder();
+        for (var recordBytes : recordedStreams) {
+            Assertions.assertTrue(recordBytes.length <= maxBytes);
+            for (var observation : TrafficStream.parseFrom(recordBytes).getSubStreamList()) {
+                if (observation.hasReadSegment()) {
+                    reassembled.append(observation.getReadSegment().getData().toStringUtf8());
+                }
+            }
+        }
+        Assertions.assertEquals(payload, reassembled.toString());
+        Assertions.assertEquals(0, allocator.metric().usedDirectMemory());
+    }
+}
@@ -0,0 +1,192 @@
+package org.opensearch.migrations.trafficcapture;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+class ResponseMetadataCaptureFactoryTest {
+
+    private static void addRead(IChannelConnectionCaptureSerializer<Void> offloader, Instant timestamp, String s)
+            throws IOException {
+        var bb = Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.UTF_8));
+        offloader.addReadEvent(timestamp, bb);
+        offloader.commitEndOfHttpMessageIndicator(timestamp);
+        bb.release();
+    }
+
+    private static void addPartialRead(IChannelConnectionCaptureSerializer<Void> offloader, Instant timestamp,
+                                       String s) throws IOException {
+        var bb = Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.UTF_8));
+        offloader.addReadEvent(timestamp, bb);
+        bb.release();
+    }
+
+    private static void addWrite(IChannelConnectionCaptureSerializer<Void> offloader, Instant timestamp, String s)
+            throws IOException {
+        var bb = Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.UTF_8));
+        offloader.addWriteEvent(timestamp, bb);
+        bb.release();
+    }
+
+    private static IChannelConnectionCaptureSerializer<Void> makeOffloader(
+            ConcurrentLinkedQueue<ByteBuffer> outputBuffers) {
+        var factory = new ResponseMetadataCaptureFactory<Void>(ctx -> new StreamChannelConnectionCaptureSerializer<>(
+                StreamChannelConnectionCaptureSerializerTest.TEST_NODE_ID_STRING,
+                StreamChannelConnectionCaptureSerializerTest.TEST_TRAFFIC_STREAM_ID_STRING,
+                new StreamChannelConnectionCaptureSerializerTest.StreamManager(1024 * 1024, outputBuffers)),
+                List.of("Content-Type"), true);
+        return factory.createOffloader(null);
+    }
+
+    @Test
+    public void testResponsesAreCapturedAsMetadataAsSoonAsTheyreKnownToBeComplete() throws Exception {
+        var outputBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        var offloader = makeOffloader(outputBuffers);
+        var t0 = Instant.parse("2024-01-01T00:00:00Z");
+
+        addRead(offloader, t0, "GET / HTTP/1.1\r\n\r\n");
+        var firstHead = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nX-Other: a\r\nContent-Length: 10\r\n\r\n";
+        addWrite(offloader, t0.plusMillis(1), firstHead + "01234");
+        addWrite(offloader, t0.plusMillis(2), "56789");
+
+        addRead(offloader, t0.plusMillis(3), "HEAD / HTTP/1.1\r\n\r\n");
+        addWrite(offloader, t0.plusMillis(4), "HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n");
+
+        addRead(offloader, t0.plusMillis(5), "GET /chunked HTTP/1.1\r\n\r\n");
+        addWrite(offloader, t0.plusMillis(6),
+                "HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 404 Not Found\r\nTransfer-Encoding: chunked\r\n\r\n");
+        addWrite(offloader, t0.plusMillis(7), "5\r\nhello\r\n0\r\n\r\n");
+        offloader.addCloseEvent(t0.plusMillis(8));
+        offloader.flushCommitAndResetStream(true).get();
+
+        Assertions.assertEquals(1, outputBuffers.size());
+        var observations = TrafficStream.parseFrom(outputBuffers.peek()).getSubStreamList();
+        Assertions.assertEquals(List.of(
+                        TrafficObservation.CaptureCase.READ, TrafficObservation.CaptureCase.ENDOFMESSAGEINDICATOR,
+                        TrafficObservation.CaptureCase.RESPONSEMETADATA,
+                        TrafficObservation.CaptureCase.READ, TrafficObservation.CaptureCase.ENDOFMESSAGEINDICATOR,
+                        TrafficObservation.CaptureCase.RESPONSEMETADATA,
+                        TrafficObservation.CaptureCase.READ, TrafficObservation.CaptureCase.ENDOFMESSAGEINDICATOR,
+                        TrafficObservation.CaptureCase.RESPONSEMETADATA,
+                        TrafficObservation.CaptureCase.CLOSE),
+                observations.stream().map(TrafficObservation::getCaptureCase).collect(Collectors.toList()));
+
+        var first = observations.get(2).getResponseMetadata();
+        Assertions.assertEquals(t0.plusMillis(1).toEpochMilli() * 1_000_000L,
+                observations.get(2).getTs().getSeconds() * 1_000_000_000L + observations.get(2).getTs().getNanos());
+        Assertions.assertEquals(2_000_000, first.getLastByteTs().getNanos());
+        Assertions.assertEquals("HTTP/1.1", first.getHttpVersion());
+        Assertions.assertEquals(200, first.getStatusCode());
+        Assertions.assertEquals("OK", first.getReasonPhrase());
+        Assertions.assertEquals(1, first.getHeadersCount());
+        Assertions.assertEquals("Content-Type", first.getHeaders(0).getName());
+        Assertions.assertEquals("application/json", first.getHeaders(0).getValue());
+        Assertions.assertEquals(firstHead.length() + 10, first.getByteLength());
+        var crc = new CRC32C();
+        crc.update("0123456789".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals((int) crc.getValue(), first.getBodyCrc32C());
+
+        var headResponse = observations.get(5).getResponseMetadata();
+        Assertions.assertEquals(200, headResponse.getStatusCode());
+        Assertions.assertEquals(0, headResponse.getHeadersCount());
+
+        var chunkedResponse = observations.get(8).getResponseMetadata();
+        Assertions.assertEquals(404, chunkedResponse.getStatusCode());
+        Assertions.assertEquals("Not Found", chunkedResponse.getReasonPhrase());
+        Assertions.assertEquals(7_000_000, chunkedResponse.getLastByteTs().getNanos());
+    }
+
+    /**
+     * Both requests arrive before either response is written, so each response has to be matched to the request
+     * that it answers rather than to the most recent one.
+     */
+    @Test
+    public void testPipelinedHeadRequestOnlyAffectsItsOwnResponse() throws Exception {
+        var outputBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        var offloader = makeOffloader(outputBuffers);
+        var t0 = Instant.parse("2024-01-01T00:00:00Z");
+
+        addRead(offloader, t0, "GET / HTTP/1.1\r\n\r\n");
+        addRead(offloader, t0.plusMillis(1), "HEAD / HTTP/1.1\r\n\r\n");
+        var getResponseHead = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\n";
+        addWrite(offloader, t0.plusMillis(2), getResponseHead);
+        addWrite(offloader, t0.plusMillis(3), "hello");
+        var headResponse = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\n";
+        addWrite(offloader, t0.plusMillis(4), headResponse);
+        offloader.addCloseEvent(t0.plusMillis(5));
+        offloader.flushCommitAndResetStream(true).get();
+
+        Assertions.assertEquals(1, outputBuffers.size());
+        var metadataObservations = TrafficStream.parseFrom(outputBuffers.peek()).getSubStreamList().stream()
+                .filter(TrafficObservation::hasResponseMetadata)
+                .map(TrafficObservation::getResponseMetadata)
+                .collect(Collectors.toList());
+        Assertions.assertEquals(2, metadataObservations.size());
+        var getMetadata = metadataObservations.get(0);
+        Assertions.assertEquals(getResponseHead.length() + 5, getMetadata.getByteLength());
+        Assertions.assertEquals(3_000_000, getMetadata.getLastByteTs().getNanos());
+        var crc = new CRC32C();
+        crc.update("hello".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals((int) crc.getValue(), getMetadata.getBodyCrc32C());
+        var headMetadata = metadataObservations.get(1);
+        Assertions.assertEquals(200, headMetadata.getStatusCode());
+        Assertions.assertEquals(headResponse.length(), headMetadata.getByteLength());
+        Assertions.assertEquals(4_000_000, headMetadata.getLastByteTs().getNanos());
+    }
+
+    /**
+     * The 100 Continue is written while the request body is still being read, so it's only the start of the
+     * response and mustn't be finished by the reads that follow it.
+     */
+    @Test
+    public void testResponseWrittenDuringAMultiReadRequestIsFinishedByTheNextRequest() throws Exception {
+        var outputBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        var offloader = makeOffloader(outputBuffers);
+        var t0 = Instant.parse("2024-01-01T00:00:00Z");
+
+        addPartialRead(offloader, t0,
+                "POST / HTTP/1.1\r\nContent-Length: 10\r\nExpect: 100-continue\r\n\r\n");
+        var interimResponse = "HTTP/1.1 100 Continue\r\n\r\n";
+        addWrite(offloader, t0.plusMillis(1), interimResponse);
+        addPartialRead(offloader, t0.plusMillis(2), "01234");
+        addRead(offloader, t0.plusMillis(3), "56789");
+        var finalResponse = "HTTP/1.1 201 Created\r\nTransfer-Encoding: chunked\r\n\r\n0\r\n\r\n";
+        addWrite(offloader, t0.plusMillis(4), finalResponse);
+
+        addRead(offloader, t0.plusMillis(5), "GET / HTTP/1.1\r\n\r\n");
+        addWrite(offloader, t0.plusMillis(6), "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n");
+        offloader.addCloseEvent(t0.plusMillis(7));
+        offloader.flushCommitAndResetStream(true).get();
+
+        Assertions.assertEquals(1, outputBuffers.size());
+        var observations = TrafficStream.parseFrom(outputBuffers.peek()).getSubStreamList();
+        var captureCases = observations.stream().map(TrafficObservation::getCaptureCase).collect(Collectors.toList());
+        Assertions.assertEquals(List.of(
+                        TrafficObservation.CaptureCase.READ, TrafficObservation.CaptureCase.READ,
+                        TrafficObservation.CaptureCase.READ, TrafficObservation.CaptureCase.ENDOFMESSAGEINDICATOR,
+                        TrafficObservation.CaptureCase.RESPONSEMETADATA,
+                        TrafficObservation.CaptureCase.READ, TrafficObservation.CaptureCase.ENDOFMESSAGEINDICATOR,
+                        TrafficObservation.CaptureCase.RESPONSEMETADATA,
+                        TrafficObservation.CaptureCase.CLOSE),
+                captureCases);
+
+        var postResponse = observations.get(4).getResponseMetadata();
+        Assertions.assertEquals(201, postResponse.getStatusCode());
+        Assertions.assertEquals(interimResponse.length() + finalResponse.length(), postResponse.getByteLength());
+        Assertions.assertEquals(t0.plusMillis(1).toEpochMilli() * 1_000_000L,
+                observations.get(4).getTs().getSeconds() * 1_000_000_000L + observations.get(4).getTs().getNanos());
+        Assertions.assertEquals(4_000_000, postResponse.getLastByteTs().getNanos());
+        Assertions.assertEquals(200, observations.get(7).getResponseMetadata().getStatusCode());
+    }
+}
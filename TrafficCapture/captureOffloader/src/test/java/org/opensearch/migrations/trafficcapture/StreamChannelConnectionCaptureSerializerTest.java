@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
@@ -26,11 +27,13 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.opensearch.migrations.trafficcapture.StreamChannelConnectionCaptureSerializerTest.StreamManager.NullStreamManager;
 import org.opensearch.migrations.trafficcapture.protos.CloseObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressionCodec;
 import org.opensearch.migrations.trafficcapture.protos.ConnectionExceptionObservation;
 import org.opensearch.migrations.trafficcapture.protos.EndOfMessageIndication;
 import org.opensearch.migrations.trafficcapture.protos.EndOfSegmentsIndication;
 import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
 import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservationCompression;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
 import org.opensearch.migrations.trafficcapture.protos.WriteObservation;
 
@@ -337,6 +340,56 @@ class StreamChannelConnectionCaptureSerializerTest {
             new StreamManager(getEstimatedTrafficStreamByteSize(0, 0), outputBuffersCreated));
     }
 
+    @Test
+    public void testCompressibleReadIsWrittenAsOneCompressedObservation()
+        throws IOException, ExecutionException, InterruptedException {
+        var packetBytes = FAKE_READ_PACKET_DATA.repeat(500).getBytes(StandardCharsets.UTF_8);
+        var outputBuffersCreated = new ConcurrentLinkedQueue<ByteBuffer>();
+        // Small enough that the uncompressed read would have to be split across several TrafficStreams
+        var serializer = new StreamChannelConnectionCaptureSerializer<>(TEST_NODE_ID_STRING,
+            TEST_TRAFFIC_STREAM_ID_STRING,
+            new StreamManager(getEstimatedTrafficStreamByteSize(1, packetBytes.length) / 4, outputBuffersCreated),
+            CompressionCodec.DEFLATE);
+
+        var bb = Unpooled.wrappedBuffer(packetBytes);
+        serializer.addReadEvent(REFERENCE_TIMESTAMP, bb);
+        serializer.commitEndOfHttpMessageIndicator(REFERENCE_TIMESTAMP);
+        serializer.flushCommitAndResetStream(true).get();
+        bb.release();
+
+        Assertions.assertEquals(1, outputBuffersCreated.size());
+        var trafficStream = TrafficStream.parseFrom(outputBuffersCreated.peek());
+        Assertions.assertEquals(2, trafficStream.getSubStreamCount());
+        var observation = trafficStream.getSubStream(0);
+        Assertions.assertTrue(observation.hasCompressedRead());
+        Assertions.assertEquals(CompressionCodec.DEFLATE, observation.getCompressedRead().getCodec());
+        Assertions.assertEquals(packetBytes.length, observation.getCompressedRead().getUncompressedLength());
+
+        var decompressed = TrafficObservationCompression.decompressObservation(observation);
+        Assertions.assertEquals(REFERENCE_TIMESTAMP.getEpochSecond(), decompressed.getTs().getSeconds());
+        Assertions.assertArrayEquals(packetBytes, decompressed.getRead().getData().toByteArray());
+    }
+
+    @Test
+    public void testIncompressibleWriteFallsBackToAnUncompressedObservation()
+        throws IOException, ExecutionException, InterruptedException {
+        var packetBytes = new byte[StreamChannelConnectionCaptureSerializer.MIN_BYTES_TO_COMPRESS * 2];
+        new Random(1).nextBytes(packetBytes);
+        var outputBuffersCreated = new ConcurrentLinkedQueue<ByteBuffer>();
+        var serializer = new StreamChannelConnectionCaptureSerializer<>(TEST_NODE_ID_STRING,
+            TEST_TRAFFIC_STREAM_ID_STRING, new StreamManager(1024 * 1024, outputBuffersCreated),
+            CompressionCodec.DEFLATE);
+
+        var bb = Unpooled.wrappedBuffer(packetBytes);
+        serializer.addWriteEvent(REFERENCE_TIMESTAMP, bb);
+        serializer.flushCommitAndResetStream(true).get();
+        bb.release();
+
+        var trafficStream = TrafficStream.parseFrom(outputBuffersCreated.peek());
+        Assertions.assertTrue(trafficStream.getSubStream(0).hasWrite());
+        Assertions.assertArrayEquals(packetBytes, trafficStream.getSubStream(0).getWrite().getData().toByteArray());
+    }
+
     private StreamChannelConnectionCaptureSerializer<Void> createSerializerWithTestHandler(
         ConcurrentLinkedQueue<ByteBuffer> outputBuffers, int bufferSize) {
         return new StreamChannelConnectionCaptureSerializer<>(TEST_NODE_ID_STRING, TEST_TRAFFIC_STREAM_ID_STRING,
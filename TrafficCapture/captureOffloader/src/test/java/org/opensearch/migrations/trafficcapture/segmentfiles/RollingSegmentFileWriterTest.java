@@ -0,0 +1,102 @@
+package org.opensearch.migrations.trafficcapture.segmentfiles;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class RollingSegmentFileWriterTest {
+
+    private static byte[] makeTrafficStreamBytes(String connectionId, int index) {
+        return TrafficStream.newBuilder().setNodeId("n").setConnectionId(connectionId).setNumber(index).build()
+                .toByteArray();
+    }
+
+    private static ArrayList<TrafficStream> readAllRecords(Path segment) throws Exception {
+        var trafficStreams = new ArrayList<TrafficStream>();
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            var contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            TrafficSegmentFiles.checkSegmentHeader(contents, segment);
+            int offset = TrafficSegmentFiles.SEGMENT_HEADER_SIZE;
+            ByteBuffer payload;
+            while ((payload = TrafficSegmentFiles.readRecordAt(contents, offset)) != null) {
+                trafficStreams.add(TrafficStream.parseFrom(payload));
+                offset += TrafficSegmentFiles.RECORD_HEADER_SIZE + payload.remaining();
+            }
+            Assertions.assertEquals(channel.size(), offset);
+        }
+        return trafficStreams;
+    }
+
+    @Test
+    public void testAppendsRollAcrossSegmentsAndAreIndexed(@TempDir Path directory) throws Exception {
+        var recordSize = TrafficSegmentFiles.RECORD_HEADER_SIZE + makeTrafficStreamBytes("c0", 0).length;
+        // room for 3 records per segment
+        var writer = new RollingSegmentFileWriter(directory,
+                TrafficSegmentFiles.SEGMENT_HEADER_SIZE + 3L * recordSize, Duration.ofHours(1));
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 7; ++i) {
+            futures.add(writer.append("c" + (i % 2), i, makeTrafficStreamBytes("c" + (i % 2), i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        writer.close();
+
+        var segments = TrafficSegmentFiles.listSegments(directory);
+        Assertions.assertEquals(3, segments.size());
+        int i = 0;
+        for (var segment : segments) {
+            var indexEntries = TrafficSegmentFiles.readIndexForSegment(segment);
+            var trafficStreams = readAllRecords(segment);
+            Assertions.assertEquals(trafficStreams.size(), indexEntries.size());
+            for (int j = 0; j < trafficStreams.size(); ++j, ++i) {
+                Assertions.assertEquals(i, trafficStreams.get(j).getNumber());
+                Assertions.assertEquals("c" + (i % 2), trafficStreams.get(j).getConnectionId());
+                Assertions.assertEquals("c" + (i % 2), indexEntries.get(j).getConnectionId());
+                Assertions.assertEquals(i, indexEntries.get(j).getTrafficStreamIndex());
+            }
+        }
+        Assertions.assertEquals(7, i);
+    }
+
+    @Test
+    public void testTornRecordIsTruncatedOnRestart(@TempDir Path directory) throws Exception {
+        var writer = new RollingSegmentFileWriter(directory, 1024 * 1024, Duration.ofHours(1));
+        writer.append("c", 1, makeTrafficStreamBytes("c", 1)).get(10, TimeUnit.SECONDS);
+        writer.append("c", 2, makeTrafficStreamBytes("c", 2)).get(10, TimeUnit.SECONDS);
+        writer.close();
+
+        var firstSegment = TrafficSegmentFiles.listSegments(directory).get(0);
+        var intactSize = Files.size(firstSegment);
+        try (var channel = FileChannel.open(firstSegment, StandardOpenOption.APPEND)) {
+            // the header of a record whose payload never made it to disk
+            channel.write(TrafficSegmentFiles.makeRecordHeader(makeTrafficStreamBytes("c", 3)));
+        }
+
+        writer = new RollingSegmentFileWriter(directory, 1024 * 1024, Duration.ofHours(1));
+        writer.append("c", 3, makeTrafficStreamBytes("c", 3)).get(10, TimeUnit.SECONDS);
+        writer.close();
+
+        Assertions.assertEquals(intactSize, Files.size(firstSegment));
+        Assertions.assertEquals(2, readAllRecords(firstSegment).size());
+        Assertions.assertEquals(2, TrafficSegmentFiles.readIndexForSegment(firstSegment).size());
+        var segments = TrafficSegmentFiles.listSegments(directory);
+        Assertions.assertEquals(2, segments.size());
+        Assertions.assertEquals(3, readAllRecords(segments.get(1)).get(0).getNumber());
+    }
+
+    @Test
+    public void testSegmentsThatCouldNotBeMappedAreRejected(@TempDir Path directory) {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RollingSegmentFileWriter(directory,
+                TrafficSegmentFiles.MAX_SEGMENT_BYTES + 1, Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,105 @@
+package org.opensearch.migrations.trafficcapture.protos;
+
+import com.google.protobuf.ByteString;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the data of Read and Write observations for the proxy and expands Compressed[Read|Write]Observations
+ * back into plain Read and Write observations for consumers.
+ */
+public class TrafficObservationCompression {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private TrafficObservationCompression() {}
+
+    public static class UnreadableCompressedObservationException extends RuntimeException {
+        public UnreadableCompressedObservationException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Compress the remaining bytes of data (without changing its position) with the given codec
+     */
+    public static byte[] compress(CompressionCodec codec, ByteBuffer data) {
+        if (codec != CompressionCodec.DEFLATE) {
+            throw new IllegalArgumentException("Compression with codec " + codec + " is not supported");
+        }
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data.duplicate());
+            deflater.finish();
+            var outputStream = new ByteArrayOutputStream(Math.max(64, data.remaining() / 4));
+            var chunk = new byte[CHUNK_SIZE];
+            while (!deflater.finished()) {
+                var len = deflater.deflate(chunk);
+                outputStream.write(chunk, 0, len);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] decompress(CompressionCodec codec, ByteString data, int uncompressedLength) {
+        if (codec != CompressionCodec.DEFLATE) {
+            throw new UnreadableCompressedObservationException(
+                    "Decompression with codec " + codec + " is not supported", null);
+        }
+        if (uncompressedLength < 0) {
+            throw new UnreadableCompressedObservationException(
+                    "Invalid uncompressed length of " + uncompressedLength, null);
+        }
+        var inflater = new Inflater(true);
+        try {
+            inflater.setInput(data.asReadOnlyByteBuffer());
+            var uncompressed = new byte[uncompressedLength];
+            var offset = 0;
+            while (offset < uncompressedLength && !inflater.finished()) {
+                var len = inflater.inflate(uncompressed, offset, uncompressedLength - offset);
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += len;
+            }
+            if (offset != uncompressedLength) {
+                throw new UnreadableCompressedObservationException("Expected " + uncompressedLength +
+                        " bytes after decompression, but only found " + offset, null);
+            }
+            return uncompressed;
+        } catch (DataFormatException e) {
+            throw new UnreadableCompressedObservationException("Compressed observation data is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return an equivalent observation with a plain read or write in place of a compressedRead or compressedWrite,
+     * or the original observation for all other types
+     */
+    public static TrafficObservation decompressObservation(TrafficObservation observation) {
+        if (observation.hasCompressedRead()) {
+            var compressed = observation.getCompressedRead();
+            var data = decompress(compressed.getCodec(), compressed.getData(), compressed.getUncompressedLength());
+            return TrafficObservation.newBuilder()
+                    .setTs(observation.getTs())
+                    .setRead(ReadObservation.newBuilder().setData(ByteString.copyFrom(data)).build())
+                    .build();
+        } else if (observation.hasCompressedWrite()) {
+            var compressed = observation.getCompressedWrite();
+            var data = decompress(compressed.getCodec(), compressed.getData(), compressed.getUncompressedLength());
+            return TrafficObservation.newBuilder()
+                    .setTs(observation.getTs())
+                    .setWrite(WriteObservation.newBuilder().setData(ByteString.copyFrom(data)).build())
+                    .build();
+        }
+        return observation;
+    }
+}
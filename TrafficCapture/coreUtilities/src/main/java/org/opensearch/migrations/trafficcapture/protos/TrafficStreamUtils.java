@@ -9,6 +9,17 @@ import java.util.stream.Collectors;
 
 public class TrafficStreamUtils {
 
+    /**
+     * Kafka record header that marks a record as holding more than one TrafficStream.  The value names the
+     * packing format.  Records without this header hold exactly one serialized TrafficStream.
+     */
+    public static final String TRAFFIC_STREAM_BATCH_FORMAT_HEADER = "trafficStreamBatchFormat";
+    /**
+     * A sequence of TrafficStreams, each preceded by its varint length, as written by
+     * {@link com.google.protobuf.MessageLite#writeDelimitedTo(java.io.OutputStream)}
+     */
+    public static final String LENGTH_DELIMITED_BATCH_FORMAT = "lengthDelimited";
+
     private TrafficStreamUtils() {}
 
     public static Instant instantFromProtoTimestamp(Timestamp timestampProto) {
@@ -45,6 +56,8 @@ public class TrafficStreamUtils {
             return tso.getWrite().getData().toByteArray();
         } else if (tso.hasWriteSegment()) {
             return tso.getWriteSegment().getData().toByteArray();
+        } else if (tso.hasCompressedRead() || tso.hasCompressedWrite()) {
+            return getByteArrayForDataOf(TrafficObservationCompression.decompressObservation(tso));
         } else {
             return null;
         }
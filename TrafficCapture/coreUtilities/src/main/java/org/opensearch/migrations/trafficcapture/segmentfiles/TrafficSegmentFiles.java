@@ -0,0 +1,244 @@
+package org.opensearch.migrations.trafficcapture.segmentfiles;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Describes the on-disk layout shared by the proxy's rolling segment file offloader and the replayer's segment file
+ * traffic source.
+ * <p>
+ * A capture directory holds a sequence of segment files, named by a monotonically increasing sequence number.
+ * Each segment begins with a fixed header and is followed by records of the form
+ * <pre>
+ *   int32 length | int32 crc32c(payload) | payload (one serialized TrafficStream)
+ * </pre>
+ * All integers are big-endian.  Records are only ever appended, so after a crash, everything up to the first
+ * record whose length or checksum doesn't check out is valid and everything from there on can be discarded.
+ * <p>
+ * Next to each segment is a small index file of (connectionId, TrafficStream index) to segment-offset entries.
+ * The index is purely derivative - it can always be rebuilt from its segment - so it's not made durable with the
+ * same care as the segment files.
+ * <p>
+ * A reader records how far it has committed in a checkpoint file within the same directory, so that it can resume
+ * from there after a restart.
+ * <p>
+ * Readers map a whole segment into one buffer and address records with int offsets, so segments are limited to
+ * {@link #MAX_SEGMENT_BYTES}.
+ */
+public class TrafficSegmentFiles {
+    public static final String SEGMENT_FILE_SUFFIX = ".tseg";
+    public static final String INDEX_FILE_SUFFIX = ".tidx";
+    public static final String CHECKPOINT_FILE_NAME = "committed.tchk";
+    public static final int FORMAT_VERSION = 1;
+    public static final int SEGMENT_MAGIC = 0x54534547; // "TSEG"
+    public static final int SEGMENT_HEADER_SIZE = 8;
+    public static final int RECORD_HEADER_SIZE = 8;
+    public static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    private static final int CHECKPOINT_SIZE = 8 + 4 + 4;
+    private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("^(\\d{20})" +
+            Pattern.quote(SEGMENT_FILE_SUFFIX) + "$");
+
+    private TrafficSegmentFiles() {}
+
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class IndexEntry {
+        private final String connectionId;
+        private final int trafficStreamIndex;
+        private final long segmentOffset;
+    }
+
+    /**
+     * A position within the sequence of segments, which is always the offset of a record or the end of a segment
+     */
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class Checkpoint {
+        private final long segmentSequenceNumber;
+        private final int segmentOffset;
+    }
+
+    public static Path segmentPath(Path directory, long sequenceNumber) {
+        return directory.resolve(String.format("%020d%s", sequenceNumber, SEGMENT_FILE_SUFFIX));
+    }
+
+    public static Path indexPathForSegment(Path segmentPath) {
+        var name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()) +
+                INDEX_FILE_SUFFIX);
+    }
+
+    public static long sequenceNumberOf(Path segmentPath) {
+        var matcher = SEGMENT_FILE_PATTERN.matcher(segmentPath.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(segmentPath + " is not a segment file");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * @return the segment files within directory, in the order that they were written
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(p -> SEGMENT_FILE_PATTERN.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(TrafficSegmentFiles::sequenceNumberOf))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static ByteBuffer makeSegmentHeader() {
+        return ByteBuffer.allocate(SEGMENT_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN)
+                .putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).flip();
+    }
+
+    public static ByteBuffer makeRecordHeader(byte[] payload) {
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN)
+                .putInt(payload.length).putInt(checksum(ByteBuffer.wrap(payload))).flip();
+    }
+
+    public static int checksum(ByteBuffer payload) {
+        var crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @throws IOException if the buffer doesn't start with a segment header for a version that this code can read
+     */
+    public static void checkSegmentHeader(ByteBuffer segment, Path pathForMessages) throws IOException {
+        if (segment.remaining() < SEGMENT_HEADER_SIZE) {
+            throw new IOException(pathForMessages + " is too short to be a segment file");
+        }
+        var magic = segment.getInt(segment.position());
+        var version = segment.getInt(segment.position() + 4);
+        if (magic != SEGMENT_MAGIC) {
+            throw new IOException(pathForMessages + " does not start with the segment file header");
+        }
+        if (version != FORMAT_VERSION) {
+            throw new IOException(pathForMessages + " has segment format version " + version +
+                    ", but only version " + FORMAT_VERSION + " is supported");
+        }
+    }
+
+    /**
+     * Read the record at the given (absolute) offset of segment.
+     * @return the payload of the record, as a slice of segment, or null if there isn't a complete, valid record
+     * at that position (either because the writer hasn't finished it yet or because it was torn by a crash)
+     */
+    public static ByteBuffer readRecordAt(ByteBuffer segment, int offset) {
+        if (segment.limit() - offset < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        var length = segment.getInt(offset);
+        var expectedChecksum = segment.getInt(offset + 4);
+        var payloadStart = offset + RECORD_HEADER_SIZE;
+        if (length <= 0 || length > segment.limit() - payloadStart) {
+            return null;
+        }
+        var payload = segment.duplicate().position(payloadStart).limit(payloadStart + length).slice();
+        return checksum(payload) == expectedChecksum ? payload : null;
+    }
+
+    public static byte[] encodeIndexEntry(IndexEntry entry) {
+        var idBytes = entry.getConnectionId().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + idBytes.length + 4 + 8).order(ByteOrder.BIG_ENDIAN)
+                .putShort((short) idBytes.length)
+                .put(idBytes)
+                .putInt(entry.getTrafficStreamIndex())
+                .putLong(entry.getSegmentOffset())
+                .array();
+    }
+
+    /**
+     * Decode all the complete entries from an index file.  A partial entry at the end (from a crash) is ignored.
+     */
+    public static List<IndexEntry> decodeIndexEntries(ByteBuffer indexContents) {
+        var buffer = indexContents.duplicate().order(ByteOrder.BIG_ENDIAN);
+        var entries = new ArrayList<IndexEntry>();
+        while (buffer.remaining() >= 2) {
+            var idLength = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+            if (buffer.remaining() < 2 + idLength + 4 + 8) {
+                break;
+            }
+            buffer.getShort();
+            var idBytes = new byte[idLength];
+            buffer.get(idBytes);
+            entries.add(new IndexEntry(new String(idBytes, StandardCharsets.UTF_8), buffer.getInt(),
+                    buffer.getLong()));
+        }
+        return entries;
+    }
+
+    /**
+     * @return the entries of the segment's index, or an empty list if it doesn't have one
+     */
+    public static List<IndexEntry> readIndexForSegment(Path segmentPath) throws IOException {
+        var indexPath = indexPathForSegment(segmentPath);
+        if (!Files.exists(indexPath)) {
+            return List.of();
+        }
+        return decodeIndexEntries(ByteBuffer.wrap(Files.readAllBytes(indexPath)));
+    }
+
+    /**
+     * Durably replace the directory's checkpoint.  The new checkpoint is written to a temporary file and then moved
+     * over the old one, so a crash leaves one or the other.
+     */
+    public static void writeCheckpoint(Path directory, Checkpoint checkpoint) throws IOException {
+        var contents = ByteBuffer.allocate(CHECKPOINT_SIZE).order(ByteOrder.BIG_ENDIAN)
+                .putLong(checkpoint.getSegmentSequenceNumber())
+                .putInt(checkpoint.getSegmentOffset());
+        contents.putInt(checksum(contents.duplicate().flip())).flip();
+        var tempPath = directory.resolve(CHECKPOINT_FILE_NAME + ".tmp");
+        try (var channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, directory.resolve(CHECKPOINT_FILE_NAME), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the directory's checkpoint, or empty if nothing has been committed yet
+     * @throws IOException if the checkpoint file can't be read or is corrupt
+     */
+    public static Optional<Checkpoint> readCheckpoint(Path directory) throws IOException {
+        var path = directory.resolve(CHECKPOINT_FILE_NAME);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        var contents = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.BIG_ENDIAN);
+        if (contents.remaining() != CHECKPOINT_SIZE ||
+                checksum(contents.duplicate().limit(CHECKPOINT_SIZE - 4)) != contents.getInt(CHECKPOINT_SIZE - 4)) {
+            throw new IOException(path + " is not a valid checkpoint");
+        }
+        return Optional.of(new Checkpoint(contents.getLong(0), contents.getInt(8)));
+    }
+}
@@ -0,0 +1,55 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.util.AsciiString;
+
+import java.util.Map;
+
+/**
+ * An immutable map from header names to values that is built once and then looked up for every header of every
+ * request.  Lookups are case-insensitive and don't allocate - names are hashed with the same ASCII
+ * case-insensitive hash that Netty's header maps use and are kept in an open-addressed table that is at most
+ * half full, so a lookup almost always probes a single slot.
+ */
+class CaseInsensitiveHeaderNameTable<T> {
+    private final AsciiString[] names;
+    private final Object[] values;
+    private final int mask;
+
+    /**
+     * @param entries must not contain names that differ only by case
+     */
+    CaseInsensitiveHeaderNameTable(Map<? extends CharSequence, T> entries) {
+        int capacity = Integer.highestOneBit(Math.max(1, entries.size()) * 4 - 1);
+        this.names = new AsciiString[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        entries.forEach((name, value) -> {
+            var slot = AsciiString.hashCode(name) & mask;
+            while (names[slot] != null) {
+                if (names[slot].contentEqualsIgnoreCase(name)) {
+                    throw new IllegalArgumentException("Header name " + name + " was given more than once");
+                }
+                slot = (slot + 1) & mask;
+            }
+            names[slot] = AsciiString.of(name);
+            values[slot] = value;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(CharSequence name) {
+        var slot = AsciiString.hashCode(name) & mask;
+        AsciiString candidate;
+        while ((candidate = names[slot]) != null) {
+            if (candidate.contentEqualsIgnoreCase(name)) {
+                return (T) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    boolean contains(CharSequence name) {
+        return get(name) != null;
+    }
+}
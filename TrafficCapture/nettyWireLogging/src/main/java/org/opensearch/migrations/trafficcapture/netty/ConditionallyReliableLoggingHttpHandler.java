@@ -3,9 +3,12 @@ package org.opensearch.migrations.trafficcapture.netty;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.util.ReferenceCountUtil;
+import lombok.Builder;
+import lombok.Getter;
 import lombok.Lombok;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
 import org.opensearch.migrations.trafficcapture.netty.tracing.IRootWireLoggingContext;
 import org.opensearch.migrations.trafficcapture.netty.tracing.IWireCaptureContexts;
@@ -16,6 +19,35 @@ import java.util.function.Predicate;
 @Slf4j
 public class ConditionallyReliableLoggingHttpHandler<T> extends LoggingHttpHandler<T> {
     private final Predicate<HttpRequest> shouldBlockPredicate;
+    /**
+     * When this is set, requests that match shouldBlockPredicate are forwarded right away and tracked by the
+     * journal rather than being held until their capture has been acknowledged.
+     */
+    private final UnacknowledgedCaptureJournal unacknowledgedCaptureJournal;
+    private boolean readsPaused;
+    /**
+     * Set while a request is held back until its capture has been acknowledged, so that handlers after this one
+     * (e.g. an aggregator that wants the rest of a message) can't read the next request in the meantime.
+     */
+    private boolean waitingOnBlockingOffload;
+
+    /**
+     * The optional collaborators of a ConditionallyReliableLoggingHttpHandler.  By default, matching requests are
+     * held until their capture has been acknowledged and memory isn't budgeted across connections.
+     */
+    @Builder
+    @Getter
+    public static class Options {
+        /**
+         * When set, mutating requests are forwarded without waiting for their capture to be acknowledged and are
+         * tracked by this journal instead
+         */
+        private final UnacknowledgedCaptureJournal unacknowledgedCaptureJournal;
+        /**
+         * When set, bounds the memory that all connections hold for capture that hasn't been offloaded yet
+         */
+        private final CaptureMemoryBudget memoryBudget;
+    }
 
     public ConditionallyReliableLoggingHttpHandler(@NonNull IRootWireLoggingContext rootContext,
                                                    @NonNull String nodeId, String connectionId,
@@ -23,18 +55,48 @@ public class ConditionallyReliableLoggingHttpHandler<T> extends LoggingHttpHandl
                                                    @NonNull RequestCapturePredicate requestCapturePredicate,
                                                    @NonNull Predicate<HttpRequest> headerPredicateForWhenToBlock)
     throws IOException {
-        super(rootContext, nodeId, connectionId, trafficOffloaderFactory, requestCapturePredicate);
+        this(rootContext, nodeId, connectionId, trafficOffloaderFactory, requestCapturePredicate,
+                headerPredicateForWhenToBlock, Options.builder().build());
+    }
+
+    public ConditionallyReliableLoggingHttpHandler(@NonNull IRootWireLoggingContext rootContext,
+                                                   @NonNull String nodeId, String connectionId,
+                                                   @NonNull IConnectionCaptureFactory<T> trafficOffloaderFactory,
+                                                   @NonNull RequestCapturePredicate requestCapturePredicate,
+                                                   @NonNull Predicate<HttpRequest> headerPredicateForWhenToBlock,
+                                                   @NonNull Options options)
+    throws IOException {
+        super(rootContext, nodeId, connectionId, trafficOffloaderFactory, requestCapturePredicate,
+                options.memoryBudget);
         this.shouldBlockPredicate = headerPredicateForWhenToBlock;
+        this.unacknowledgedCaptureJournal = options.unacknowledgedCaptureJournal;
     }
 
     @Override
     protected void channelFinishedReadingAnHttpMessage(ChannelHandlerContext ctx, Object msg,
                                                        boolean shouldCapture, HttpRequest httpRequest)
             throws Exception {
-        if (shouldCapture && shouldBlockPredicate.test(httpRequest)) {
+        if (shouldCapture && unacknowledgedCaptureJournal != null && shouldBlockPredicate.test(httpRequest)) {
+            var flushFuture = flushCapture();
+            flushFuture.whenComplete((result, t) -> {
+                if (t != null) {
+                    log.atWarn().setCause(t)
+                            .setMessage("Error offloading a request that was already forwarded to the service").log();
+                }
+            });
+            if (unacknowledgedCaptureJournal.add(flushFuture)) {
+                readsPaused = true;
+                unacknowledgedCaptureJournal.pauseUntilCaughtUp(() -> ctx.executor().execute(() -> {
+                    readsPaused = false;
+                    resumeReads(ctx);
+                }));
+            }
+            super.channelFinishedReadingAnHttpMessage(ctx, msg, shouldCapture, httpRequest);
+        } else if (shouldCapture && shouldBlockPredicate.test(httpRequest)) {
             ((IWireCaptureContexts.IRequestContext)messageContext).onBlockingRequest();
             messageContext = messageContext.createBlockingContext();
-            trafficOffloader.flushCommitAndResetStream(false).whenComplete((result, t) -> {
+            waitingOnBlockingOffload = true;
+            flushCapture().whenComplete((result, t) -> {
                 log.atInfo().setMessage(()->"Done flushing").log();
 
                 if (t != null) {
@@ -50,6 +112,11 @@ public class ConditionallyReliableLoggingHttpHandler<T> extends LoggingHttpHandl
                     super.channelFinishedReadingAnHttpMessage(ctx, msg, shouldCapture, httpRequest);
                 } catch (Exception e) {
                     throw Lombok.sneakyThrow(e);
+                } finally {
+                    ctx.executor().execute(() -> {
+                        waitingOnBlockingOffload = false;
+                        resumeReads(ctx);
+                    });
                 }
             });
         } else {
@@ -57,4 +124,13 @@ public class ConditionallyReliableLoggingHttpHandler<T> extends LoggingHttpHandl
             super.channelFinishedReadingAnHttpMessage(ctx, msg, shouldCapture, httpRequest);
         }
     }
+
+    /**
+     * Also hold back reads while the journal is over its limit or while a request is waiting on its capture to be
+     * acknowledged
+     */
+    @Override
+    protected boolean readsArePaused() {
+        return readsPaused || waitingOnBlockingOffload || super.readsArePaused();
+    }
 }
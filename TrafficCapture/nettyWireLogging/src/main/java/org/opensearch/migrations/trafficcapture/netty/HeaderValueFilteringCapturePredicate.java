@@ -2,28 +2,60 @@ package org.opensearch.migrations.trafficcapture.netty;
 
 
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.AsciiString;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
+/**
+ * Drops the capture of any request that has a header whose (first) value fully matches one of the regexes given
+ * for that header name.  Header names are case-insensitive and any number of regexes may be given for a header.
+ * The regexes for each header are compiled into one {@link HeaderValueMatcher} when the predicate is built.
+ */
 public class HeaderValueFilteringCapturePredicate extends RequestCapturePredicate {
-    private final Map<String, Pattern> headerToPredicateRegexMap;
+    private final AsciiString[] headerNames;
+    private final HeaderValueMatcher[] headerValueMatchers;
 
     public HeaderValueFilteringCapturePredicate(Map<String, String> suppressCaptureHeaderPairs) {
-        super(new PassThruHttpHeaders.HttpHeadersToPreserve(suppressCaptureHeaderPairs.keySet()
-                .toArray(String[]::new)));
-        headerToPredicateRegexMap = suppressCaptureHeaderPairs.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, kvp->Pattern.compile(kvp.getValue())));
+        this(suppressCaptureHeaderPairs.entrySet());
+    }
+
+    public HeaderValueFilteringCapturePredicate(Collection<Map.Entry<String, String>> suppressCaptureHeaderPairs) {
+        this(groupByHeaderName(suppressCaptureHeaderPairs));
+    }
+
+    private HeaderValueFilteringCapturePredicate(TreeMap<String, List<String>> headerToRegexesMap) {
+        super(new PassThruHttpHeaders.HttpHeadersToPreserve(headerToRegexesMap.keySet().toArray(String[]::new)));
+        headerNames = headerToRegexesMap.keySet().stream().map(AsciiString::of).toArray(AsciiString[]::new);
+        headerValueMatchers = headerToRegexesMap.values().stream().map(HeaderValueMatcher::new)
+                .toArray(HeaderValueMatcher[]::new);
+    }
+
+    private static TreeMap<String, List<String>>
+    groupByHeaderName(Collection<Map.Entry<String, String>> suppressCaptureHeaderPairs) {
+        var headerToRegexesMap = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        suppressCaptureHeaderPairs.forEach(kvp ->
+                headerToRegexesMap.computeIfAbsent(kvp.getKey(), k -> new ArrayList<>()).add(kvp.getValue()));
+        return headerToRegexesMap;
+    }
+
+    @Override
+    public boolean requiresDecodedRequests() {
+        return true;
     }
 
     @Override
     public CaptureDirective apply(HttpRequest request) {
-        return headerToPredicateRegexMap.entrySet().stream().anyMatch(kvp->
-                Optional.ofNullable(request.headers().get(kvp.getKey()))
-                        .map(v->kvp.getValue().matcher(v).matches())
-                        .orElse(false)
-        ) ? CaptureDirective.DROP : CaptureDirective.CAPTURE;
+        var headers = request.headers();
+        for (int i = 0; i < headerNames.length; ++i) {
+            var value = headers.get(headerNames[i]);
+            if (value != null && headerValueMatchers[i].matches(value)) {
+                return CaptureDirective.DROP;
+            }
+        }
+        return CaptureDirective.CAPTURE;
     }
 }
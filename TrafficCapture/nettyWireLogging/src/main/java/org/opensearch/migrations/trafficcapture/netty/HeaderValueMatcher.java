@@ -0,0 +1,130 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Tests a header value against any number of regexes (each of which must match the whole value), compiled once
+ * up front.  Most suppression rules are plain strings, prefixes, suffixes or substrings, so those are recognized
+ * when the matcher is built and checked with String comparisons (exact values via a hash set) instead of regexes.
+ * The rest are combined into a single alternation so that a value is scanned by one Matcher, which is reused for
+ * each thread rather than allocated for each request.
+ */
+class HeaderValueMatcher {
+    private static final String ANYTHING = ".*";
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Set<String> exactValues = new HashSet<>();
+    private final String[] prefixes;
+    private final String[] suffixes;
+    private final String[] substrings;
+    private final List<FastThreadLocal<Matcher>> remainingMatchers;
+
+    HeaderValueMatcher(Collection<String> regexes) {
+        var prefixList = new ArrayList<String>();
+        var suffixList = new ArrayList<String>();
+        var substringList = new ArrayList<String>();
+        var combinableRegexes = new ArrayList<String>();
+        var standaloneRegexes = new ArrayList<String>();
+        for (var regex : regexes) {
+            var startsWithAnything = regex.startsWith(ANYTHING);
+            var endsWithAnything = regex.endsWith(ANYTHING) && regex.length() >= (startsWithAnything ? 4 : 2);
+            var literal = regex.substring(startsWithAnything ? 2 : 0,
+                    regex.length() - (endsWithAnything ? 2 : 0));
+            if (!isLiteral(literal)) {
+                (hasGroupReferences(regex) ? standaloneRegexes : combinableRegexes).add(regex);
+            } else if (startsWithAnything && endsWithAnything) {
+                substringList.add(literal);
+            } else if (startsWithAnything) {
+                suffixList.add(literal);
+            } else if (endsWithAnything) {
+                prefixList.add(literal);
+            } else {
+                exactValues.add(literal);
+            }
+        }
+        this.prefixes = prefixList.toArray(String[]::new);
+        this.suffixes = suffixList.toArray(String[]::new);
+        this.substrings = substringList.toArray(String[]::new);
+        this.remainingMatchers = new ArrayList<>();
+        if (!combinableRegexes.isEmpty()) {
+            remainingMatchers.add(makeThreadLocalMatcher(Pattern.compile(combinableRegexes.stream()
+                    .map(r -> "(?:" + r + ")").collect(Collectors.joining("|")))));
+        }
+        standaloneRegexes.forEach(r -> remainingMatchers.add(makeThreadLocalMatcher(Pattern.compile(r))));
+    }
+
+    private static boolean isLiteral(String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if (REGEX_METACHARACTERS.indexOf(s.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Back-references are numbered by their group's position in the whole pattern, so they'd change meaning if
+     * the regex were put into an alternation after other regexes, and group names can't be repeated within one
+     * pattern.
+     */
+    private static boolean hasGroupReferences(String regex) {
+        for (int i = 0; i < regex.length() - 1; ++i) {
+            var next = regex.charAt(i + 1);
+            if (regex.charAt(i) == '\\') {
+                if (Character.isDigit(next) || next == 'k') {
+                    return true;
+                }
+                ++i;
+            } else if (regex.startsWith("(?<", i) && i + 3 < regex.length() &&
+                    Character.isLetter(regex.charAt(i + 3))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static FastThreadLocal<Matcher> makeThreadLocalMatcher(Pattern pattern) {
+        return new FastThreadLocal<>() {
+            @Override
+            protected Matcher initialValue() {
+                return pattern.matcher("");
+            }
+        };
+    }
+
+    boolean matches(String value) {
+        if (exactValues.contains(value)) {
+            return true;
+        }
+        for (var prefix : prefixes) {
+            if (value.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (var suffix : suffixes) {
+            if (value.endsWith(suffix)) {
+                return true;
+            }
+        }
+        for (var substring : substrings) {
+            if (value.contains(substring)) {
+                return true;
+            }
+        }
+        for (var threadLocalMatcher : remainingMatchers) {
+            if (threadLocalMatcher.get().reset(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,468 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectDecoder;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ByteProcessor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds where HTTP/1.1 requests end within a stream of ByteBufs without decoding them.  LoggingHttpHandler uses
+ * this instead of an HttpRequestDecoder when its RequestCapturePredicate doesn't look at requests, since all that
+ * it needs then are the request boundaries, and the decoder creates HttpRequest, HttpHeaders and HttpContent
+ * objects (and strings for every header) to find them.
+ * <p>
+ * The scanner walks the bytes in place.  It reports the same initial line length and header size that Netty's
+ * HttpObjectDecoder puts into an HttpMessageDecoderResult, frames bodies by Content-Length or chunked
+ * transfer-encoding, and enforces the decoder's default line and header size limits.  Like the decoder, once a
+ * request is malformed, no more requests will be found on the connection.
+ * <p>
+ * The only object made for each request is an HttpRequest without headers, for consumers of the parsed request
+ * (e.g. the blocking predicate of ConditionallyReliableLoggingHttpHandler) that only look at the initial line.
+ */
+@Slf4j
+class HttpRequestFramingScanner implements ByteProcessor {
+    private static final int INITIAL_LINE_BUFFER_SIZE = 256;
+
+    private static final HttpMethod[] COMMON_METHODS = {HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT,
+            HttpMethod.DELETE, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PATCH, HttpMethod.TRACE,
+            HttpMethod.CONNECT};
+    private static final HttpVersion[] COMMON_VERSIONS = {HttpVersion.HTTP_1_1, HttpVersion.HTTP_1_0};
+    private static final byte[][] COMMON_METHOD_NAMES = Arrays.stream(COMMON_METHODS)
+            .map(m -> m.name().getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+    private static final byte[][] COMMON_VERSION_NAMES = Arrays.stream(COMMON_VERSIONS)
+            .map(v -> v.text().getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNKED = "chunked".getBytes(StandardCharsets.US_ASCII);
+
+    private enum State {
+        SKIP_CONTROL_CHARS, INITIAL_LINE, HEADER_LINE, FIXED_LENGTH_BODY,
+        CHUNK_SIZE_LINE, CHUNK_DATA, CHUNK_DELIMITER, TRAILER_LINE, BAD_MESSAGE
+    }
+
+    private enum HeaderKind {
+        UNKNOWN, CONTENT_LENGTH, TRANSFER_ENCODING, OTHER
+    }
+
+    private final int maxInitialLineLength;
+    private final int maxHeaderSize;
+
+    boolean haveParsedFullRequest;
+    private HttpRequest currentRequest;
+    @Getter
+    private int initialLineLength;
+    @Getter
+    private int headerSize;
+
+    private State state = State.SKIP_CONTROL_CHARS;
+
+    // state for the line being scanned
+    private int lineLength;
+    private boolean lastByteWasCR;
+    private byte[] initialLineBytes = new byte[INITIAL_LINE_BUFFER_SIZE];
+
+    // state for the request being scanned
+    private HttpRequest pendingRequest;
+    private int pendingInitialLineLength;
+    private int pendingHeaderSize;
+    private long contentLength;
+    private boolean isChunked;
+    private long bodyBytesRemaining;
+
+    // state for the header line being scanned
+    private HeaderKind headerKind;
+    private int headerNameLength;
+    private boolean mayBeContentLength;
+    private boolean mayBeTransferEncoding;
+    private long valueTokenNumber;
+    private int valueTokenLength;
+    private boolean valueTokenEnded;
+    private boolean valueTokenMismatched;
+
+    HttpRequestFramingScanner() {
+        this(HttpObjectDecoder.DEFAULT_MAX_INITIAL_LINE_LENGTH, HttpObjectDecoder.DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    HttpRequestFramingScanner(int maxInitialLineLength, int maxHeaderSize) {
+        this.maxInitialLineLength = maxInitialLineLength;
+        this.maxHeaderSize = maxHeaderSize;
+        resetForNextRequest();
+    }
+
+    /**
+     * Scan the readable bytes of bb without changing its indices.  If a request was completed within them,
+     * haveParsedFullRequest will be set until resetCurrentRequest() is called.
+     */
+    public void scan(ByteBuf bb) {
+        int index = bb.readerIndex();
+        final int end = bb.writerIndex();
+        while (index < end) {
+            switch (state) {
+                case BAD_MESSAGE:
+                    return;
+                case FIXED_LENGTH_BODY:
+                case CHUNK_DATA:
+                    var bytesToSkip = (int) Math.min(bodyBytesRemaining, end - index);
+                    index += bytesToSkip;
+                    bodyBytesRemaining -= bytesToSkip;
+                    if (bodyBytesRemaining == 0) {
+                        if (state == State.CHUNK_DATA) {
+                            state = State.CHUNK_DELIMITER;
+                        } else {
+                            onRequestFinished();
+                        }
+                    }
+                    break;
+                default:
+                    var stoppedAt = bb.forEachByte(index, end - index, this);
+                    index = stoppedAt < 0 ? end : stoppedAt + 1;
+                    break;
+            }
+        }
+    }
+
+    public HttpRequest resetCurrentRequest() {
+        this.haveParsedFullRequest = false;
+        var old = currentRequest;
+        this.currentRequest = null;
+        return old;
+    }
+
+    /**
+     * Consumes one byte of a line (or of the control characters before a request).  This returns false, to
+     * stop ByteBuf.forEachByte(), once the scanner has moved into a state where the following bytes can be
+     * skipped without looking at them.
+     */
+    @Override
+    public boolean process(byte b) {
+        switch (state) {
+            case SKIP_CONTROL_CHARS:
+                if (Character.isISOControl((char) (b & 0xff)) || isWhitespace(b)) {
+                    return true;
+                }
+                state = State.INITIAL_LINE;
+                return processLineByte(b, maxInitialLineLength);
+            case INITIAL_LINE:
+            case CHUNK_SIZE_LINE:
+                return processLineByte(b, maxInitialLineLength);
+            case HEADER_LINE:
+            case TRAILER_LINE:
+                return processLineByte(b, maxHeaderSize - pendingHeaderSize);
+            case CHUNK_DELIMITER:
+                if (b == '\n') {
+                    state = State.CHUNK_SIZE_LINE;
+                }
+                return true;
+            default:
+                throw new IllegalStateException("Unexpected state for byte processing: " + state);
+        }
+    }
+
+    private boolean processLineByte(byte b, int maxLineLength) {
+        if (b != '\n') {
+            if (lineLength > maxLineLength) {
+                // there's no room left for the line feed that would end this line
+                return onBadMessage("line is longer than " + maxLineLength + " bytes");
+            }
+            if (state == State.INITIAL_LINE) {
+                appendToInitialLine(b);
+            } else if (state == State.HEADER_LINE) {
+                processHeaderByte(b);
+            } else if (state == State.CHUNK_SIZE_LINE) {
+                processChunkSizeByte(b);
+            }
+            lastByteWasCR = b == '\r';
+            ++lineLength;
+            return state != State.BAD_MESSAGE;
+        }
+        var length = lastByteWasCR ? lineLength - 1 : lineLength;
+        lineLength = 0;
+        lastByteWasCR = false;
+        if (length > maxLineLength) {
+            return onBadMessage("line is longer than " + maxLineLength + " bytes");
+        }
+        switch (state) {
+            case INITIAL_LINE:
+                return onInitialLineFinished(length);
+            case HEADER_LINE:
+                return onHeaderLineFinished(length);
+            case CHUNK_SIZE_LINE:
+                return onChunkSizeLineFinished();
+            case TRAILER_LINE:
+                if (length == 0) {
+                    onRequestFinished();
+                } else {
+                    pendingHeaderSize += length;
+                }
+                return true;
+            default:
+                throw new IllegalStateException("Unexpected state at the end of a line: " + state);
+        }
+    }
+
+    private void appendToInitialLine(byte b) {
+        if (lineLength == initialLineBytes.length) {
+            initialLineBytes = Arrays.copyOf(initialLineBytes, Math.min(initialLineBytes.length * 2,
+                    maxInitialLineLength + 2));
+        }
+        initialLineBytes[lineLength] = b;
+    }
+
+    private boolean onInitialLineFinished(int length) {
+        // split the same way that HttpObjectDecoder.splitInitialLine() does
+        var methodStart = skipWhitespace(0, length);
+        var methodEnd = findWhitespace(methodStart, length);
+        var uriStart = skipWhitespace(methodEnd, length);
+        var uriEnd = findWhitespace(uriStart, length);
+        var versionStart = skipWhitespace(uriEnd, length);
+        var versionEnd = length;
+        while (versionEnd > versionStart && isWhitespace(initialLineBytes[versionEnd - 1])) {
+            --versionEnd;
+        }
+        try {
+            pendingRequest = new DefaultHttpRequest(
+                    versionOf(versionStart, versionEnd),
+                    methodOf(methodStart, methodEnd),
+                    new String(initialLineBytes, uriStart, uriEnd - uriStart, StandardCharsets.ISO_8859_1),
+                    EmptyHttpHeaders.INSTANCE);
+        } catch (IllegalArgumentException e) {
+            return onBadMessage(e.getMessage());
+        }
+        pendingInitialLineLength = length;
+        state = State.HEADER_LINE;
+        resetHeaderLine();
+        return true;
+    }
+
+    private int skipWhitespace(int index, int end) {
+        while (index < end && isWhitespace(initialLineBytes[index])) {
+            ++index;
+        }
+        return index;
+    }
+
+    private int findWhitespace(int index, int end) {
+        while (index < end && !isWhitespace(initialLineBytes[index])) {
+            ++index;
+        }
+        return index;
+    }
+
+    private HttpMethod methodOf(int start, int end) {
+        for (int i = 0; i < COMMON_METHODS.length; ++i) {
+            if (initialLineBytesMatch(start, end, COMMON_METHOD_NAMES[i])) {
+                return COMMON_METHODS[i];
+            }
+        }
+        return HttpMethod.valueOf(new String(initialLineBytes, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+
+    private HttpVersion versionOf(int start, int end) {
+        for (int i = 0; i < COMMON_VERSIONS.length; ++i) {
+            if (initialLineBytesMatch(start, end, COMMON_VERSION_NAMES[i])) {
+                return COMMON_VERSIONS[i];
+            }
+        }
+        return HttpVersion.valueOf(new String(initialLineBytes, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+
+    private boolean initialLineBytesMatch(int start, int end, byte[] expected) {
+        return end - start == expected.length &&
+                Arrays.equals(initialLineBytes, start, end, expected, 0, expected.length);
+    }
+
+    private void processHeaderByte(byte b) {
+        if (headerKind == HeaderKind.UNKNOWN) {
+            if (lineLength == 0 && (b == ' ' || b == '\t')) {
+                // a folded continuation of the last header line
+                headerKind = HeaderKind.OTHER;
+            } else if (b == ':') {
+                headerKind = mayBeContentLength && headerNameLength == CONTENT_LENGTH.length ?
+                        HeaderKind.CONTENT_LENGTH :
+                        mayBeTransferEncoding && headerNameLength == TRANSFER_ENCODING.length ?
+                                HeaderKind.TRANSFER_ENCODING : HeaderKind.OTHER;
+            } else {
+                var lowerCaseByte = toLowerCase(b);
+                mayBeContentLength &= headerNameLength < CONTENT_LENGTH.length &&
+                        CONTENT_LENGTH[headerNameLength] == lowerCaseByte;
+                mayBeTransferEncoding &= headerNameLength < TRANSFER_ENCODING.length &&
+                        TRANSFER_ENCODING[headerNameLength] == lowerCaseByte;
+                ++headerNameLength;
+            }
+        } else if (headerKind == HeaderKind.CONTENT_LENGTH) {
+            processContentLengthValueByte(b);
+        } else if (headerKind == HeaderKind.TRANSFER_ENCODING) {
+            processTransferEncodingValueByte(b);
+        }
+    }
+
+    private void processContentLengthValueByte(byte b) {
+        if (b >= '0' && b <= '9') {
+            if (valueTokenEnded || valueTokenNumber > (Long.MAX_VALUE - (b - '0')) / 10) {
+                onBadMessage("invalid Content-Length");
+                return;
+            }
+            valueTokenNumber = valueTokenNumber * 10 + (b - '0');
+            ++valueTokenLength;
+        } else if (b == ',') {
+            finishContentLengthValueToken();
+        } else if (isOptionalWhitespace(b)) {
+            valueTokenEnded = valueTokenLength > 0;
+        } else {
+            onBadMessage("invalid Content-Length");
+        }
+    }
+
+    private void finishContentLengthValueToken() {
+        if (valueTokenLength == 0 || (contentLength >= 0 && contentLength != valueTokenNumber)) {
+            onBadMessage("invalid Content-Length");
+            return;
+        }
+        contentLength = valueTokenNumber;
+        resetValueToken();
+    }
+
+    private void processTransferEncodingValueByte(byte b) {
+        if (b == ',') {
+            finishTransferEncodingValueToken();
+        } else if (!isOptionalWhitespace(b)) {
+            if (valueTokenLength < CHUNKED.length && CHUNKED[valueTokenLength] == toLowerCase(b)) {
+                ++valueTokenLength;
+            } else {
+                valueTokenMismatched = true;
+            }
+        }
+    }
+
+    private void finishTransferEncodingValueToken() {
+        isChunked |= !valueTokenMismatched && valueTokenLength == CHUNKED.length;
+        resetValueToken();
+    }
+
+    private boolean onHeaderLineFinished(int length) {
+        if (length == 0) {
+            return onHeadersFinished();
+        }
+        if (headerKind == HeaderKind.CONTENT_LENGTH) {
+            finishContentLengthValueToken();
+        } else if (headerKind == HeaderKind.TRANSFER_ENCODING) {
+            finishTransferEncodingValueToken();
+        }
+        pendingHeaderSize += length;
+        resetHeaderLine();
+        return state != State.BAD_MESSAGE;
+    }
+
+    private boolean onHeadersFinished() {
+        if (isChunked) {
+            state = State.CHUNK_SIZE_LINE;
+            resetValueToken();
+            return true;
+        } else if (contentLength > 0) {
+            state = State.FIXED_LENGTH_BODY;
+            bodyBytesRemaining = contentLength;
+            return false;
+        } else {
+            onRequestFinished();
+            return true;
+        }
+    }
+
+    private void processChunkSizeByte(byte b) {
+        if (valueTokenEnded) {
+            return;
+        }
+        var digit = Character.digit(b, 16);
+        if (digit >= 0) {
+            if (valueTokenNumber > (Integer.MAX_VALUE - digit) / 16) {
+                onBadMessage("invalid chunk size");
+                return;
+            }
+            valueTokenNumber = valueTokenNumber * 16 + digit;
+            ++valueTokenLength;
+        } else if (b == ';' || isWhitespace(b) || Character.isISOControl((char) (b & 0xff))) {
+            // leading whitespace is trimmed and anything after the digits (like chunk extensions) is ignored
+            valueTokenEnded = valueTokenLength > 0 || b == ';';
+        } else {
+            onBadMessage("invalid chunk size");
+        }
+    }
+
+    private boolean onChunkSizeLineFinished() {
+        if (valueTokenLength == 0) {
+            return onBadMessage("missing chunk size");
+        }
+        var chunkSize = valueTokenNumber;
+        resetValueToken();
+        if (chunkSize == 0) {
+            state = State.TRAILER_LINE;
+            return true;
+        }
+        state = State.CHUNK_DATA;
+        bodyBytesRemaining = chunkSize;
+        return false;
+    }
+
+    private void onRequestFinished() {
+        haveParsedFullRequest = true;
+        currentRequest = pendingRequest;
+        initialLineLength = pendingInitialLineLength;
+        headerSize = pendingHeaderSize;
+        resetForNextRequest();
+    }
+
+    private boolean onBadMessage(String reason) {
+        log.atDebug().setMessage(() -> "Giving up on framing requests for the rest of this connection: " + reason)
+                .log();
+        state = State.BAD_MESSAGE;
+        return false;
+    }
+
+    private void resetForNextRequest() {
+        state = State.SKIP_CONTROL_CHARS;
+        pendingRequest = null;
+        pendingInitialLineLength = 0;
+        pendingHeaderSize = 0;
+        contentLength = -1;
+        isChunked = false;
+        bodyBytesRemaining = 0;
+        resetHeaderLine();
+    }
+
+    private void resetHeaderLine() {
+        headerKind = HeaderKind.UNKNOWN;
+        headerNameLength = 0;
+        mayBeContentLength = true;
+        mayBeTransferEncoding = true;
+        resetValueToken();
+    }
+
+    private void resetValueToken() {
+        valueTokenNumber = 0;
+        valueTokenLength = 0;
+        valueTokenEnded = false;
+        valueTokenMismatched = false;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return Character.isWhitespace((char) (b & 0xff));
+    }
+
+    private static boolean isOptionalWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
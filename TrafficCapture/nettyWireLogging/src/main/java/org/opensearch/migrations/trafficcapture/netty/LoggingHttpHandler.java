@@ -19,13 +19,16 @@ import lombok.Getter;
 import lombok.Lombok;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 import org.opensearch.migrations.trafficcapture.IChannelConnectionCaptureSerializer;
 import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.IOffloaderBackpressure;
 import org.opensearch.migrations.trafficcapture.netty.tracing.IRootWireLoggingContext;
 import org.opensearch.migrations.trafficcapture.netty.tracing.IWireCaptureContexts;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
@@ -40,16 +43,34 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
     static class CaptureState {
         byte captureIgnoreState = CaptureIgnoreState.CAPTURE;
         boolean liveReadObservationsInOffloader = false;
+        /**
+         * Set when the rest of the current request is being dropped because the capture memory budget is exceeded,
+         * so that a request predicate that runs later (once the headers have been decoded) can't turn it back on
+         */
+        boolean suppressedForMemory = false;
 
         boolean shouldCapture() {
             return captureIgnoreState == CaptureIgnoreState.CAPTURE;
         }
 
         public void setShouldCaptureForRequest(boolean b) {
-            captureIgnoreState = b ? CaptureIgnoreState.CAPTURE : CaptureIgnoreState.IGNORE_REQUEST;
+            captureIgnoreState = b && !suppressedForMemory ?
+                    CaptureIgnoreState.CAPTURE : CaptureIgnoreState.IGNORE_REQUEST;
+        }
+
+        public void suppressRequestForMemory() {
+            suppressedForMemory = true;
+            captureIgnoreState = CaptureIgnoreState.IGNORE_REQUEST;
+        }
+
+        public void startNextRequest() {
+            if (captureIgnoreState == CaptureIgnoreState.IGNORE_RESPONSE) {
+                captureIgnoreState = CaptureIgnoreState.CAPTURE;
+            }
         }
 
         public void advanceStateModelIntoResponseGather() {
+            suppressedForMemory = false;
             if (CaptureIgnoreState.CAPTURE != captureIgnoreState) {
                 captureIgnoreState = CaptureIgnoreState.IGNORE_RESPONSE;
             }
@@ -128,23 +149,75 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
 
     protected final IChannelConnectionCaptureSerializer<T> trafficOffloader;
 
+    /**
+     * Set only when the capture predicate needs to see decoded requests.  Otherwise, framingScanner is set.
+     */
     protected final EmbeddedChannel httpDecoderChannel;
 
+    private final HttpRequestFramingScanner framingScanner;
+
+    private final CaptureState captureState;
+
+    /**
+     * When set, the policy of this budget is applied to this connection whenever it's exceeded
+     */
+    private final CaptureMemoryBudget memoryBudget;
+    /**
+     * Roughly how much of this connection's capture is still in its offloader's buffer.  Streams that the
+     * offloader flushes on its own (e.g. because they filled up) aren't seen here.
+     */
+    private long capturedBytesSinceFlush;
+    /**
+     * Registered with memoryBudget while reads are paused for it, so that it can be cancelled if the channel closes
+     */
+    private Runnable resumeReadsForMemory;
+    /**
+     * When set, reads are paused whenever the offloader asks for them to be
+     */
+    private final IOffloaderBackpressure offloaderBackpressure;
+    /**
+     * Registered with offloaderBackpressure while reads are paused for it, so that it can be cancelled if the
+     * channel closes
+     */
+    private Runnable resumeReadsForOffloader;
+    private boolean readRequestedWhilePaused;
+
     protected IWireCaptureContexts.IHttpMessageContext messageContext;
 
     public LoggingHttpHandler(@NonNull IRootWireLoggingContext rootContext, String nodeId, String channelKey,
                               @NonNull IConnectionCaptureFactory<T> trafficOffloaderFactory,
                               @NonNull RequestCapturePredicate httpHeadersCapturePredicate)
     throws IOException {
+        this(rootContext, nodeId, channelKey, trafficOffloaderFactory, httpHeadersCapturePredicate, null);
+    }
+
+    /**
+     * @param memoryBudget when non-null, this connection flushes early, stops capturing, or stops reading
+     *                     (according to the budget's OverBudgetPolicy) while the budget is exceeded
+     */
+    public LoggingHttpHandler(@NonNull IRootWireLoggingContext rootContext, String nodeId, String channelKey,
+                              @NonNull IConnectionCaptureFactory<T> trafficOffloaderFactory,
+                              @NonNull RequestCapturePredicate httpHeadersCapturePredicate,
+                              CaptureMemoryBudget memoryBudget)
+    throws IOException {
+        this.memoryBudget = memoryBudget;
         var parentContext = rootContext.createConnectionContext(channelKey, nodeId);
         this.messageContext = parentContext.createInitialRequestContext();
 
         this.trafficOffloader = trafficOffloaderFactory.createOffloader(parentContext);
-        var captureState = new CaptureState();
-        httpDecoderChannel = new EmbeddedChannel(
-                new SimpleHttpRequestDecoder(httpHeadersCapturePredicate.getHeadersRequiredForMatcher(), captureState),
-                new SimpleDecodedHttpRequestHandler(httpHeadersCapturePredicate, captureState)
-        );
+        this.offloaderBackpressure = trafficOffloaderFactory.getBackpressure();
+        this.captureState = new CaptureState();
+        if (httpHeadersCapturePredicate.requiresDecodedRequests()) {
+            httpDecoderChannel = new EmbeddedChannel(
+                    new SimpleHttpRequestDecoder(httpHeadersCapturePredicate.getHeadersRequiredForMatcher(),
+                            captureState),
+                    new SimpleDecodedHttpRequestHandler(httpHeadersCapturePredicate, captureState)
+            );
+            framingScanner = null;
+        } else {
+            httpDecoderChannel = null;
+            framingScanner = new HttpRequestFramingScanner();
+        }
     }
 
     private IWireCaptureContexts.ICapturingConnectionContext getConnectionContext() {
@@ -173,6 +246,20 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
         });
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // nothing is left to resume, so don't leave this connection in the waiters of a shared budget or offloader
+        if (resumeReadsForMemory != null) {
+            memoryBudget.cancelPause(resumeReadsForMemory);
+            resumeReadsForMemory = null;
+        }
+        if (resumeReadsForOffloader != null) {
+            offloaderBackpressure.cancelResume(resumeReadsForOffloader);
+            resumeReadsForOffloader = null;
+        }
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         getConnectionContext().onRemoved();
@@ -192,6 +279,90 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
         super.handlerRemoved(ctx);
     }
 
+    /**
+     * Flush whatever has been captured for this connection so far (e.g. so that it can be acknowledged)
+     */
+    protected CompletableFuture<T> flushCapture() throws IOException {
+        capturedBytesSinceFlush = 0;
+        return trafficOffloader.flushCommitAndResetStream(false);
+    }
+
+    private boolean shouldSuppressCaptureForMemory() {
+        return memoryBudget != null &&
+                memoryBudget.getOverBudgetPolicy() == CaptureMemoryBudget.OverBudgetPolicy.SUPPRESS_CAPTURE &&
+                memoryBudget.isExceeded();
+    }
+
+    /**
+     * Called after bytes have been captured.  SUPPRESS_CAPTURE is handled before bytes are captured instead.
+     */
+    private void shedCaptureMemoryIfOverBudget(ChannelHandlerContext ctx) throws IOException {
+        if (memoryBudget == null || !memoryBudget.isExceeded()) {
+            return;
+        }
+        var policy = memoryBudget.getOverBudgetPolicy();
+        if (policy == CaptureMemoryBudget.OverBudgetPolicy.FLUSH_LARGEST) {
+            if (capturedBytesSinceFlush > 0 && capturedBytesSinceFlush >= memoryBudget.getMeanBufferedBytes()) {
+                getConnectionContext().onCaptureMemoryShed(policy);
+                flushCaptureEarly();
+            }
+        } else if (policy == CaptureMemoryBudget.OverBudgetPolicy.PAUSE_READS && resumeReadsForMemory == null) {
+            getConnectionContext().onCaptureMemoryShed(policy);
+            flushCaptureEarly();
+            resumeReadsForMemory = () -> ctx.executor().execute(() -> {
+                resumeReadsForMemory = null;
+                resumeReads(ctx);
+            });
+            memoryBudget.pauseUntilUnderBudget(resumeReadsForMemory);
+        }
+    }
+
+    private void pauseReadsIfOffloaderIsBackedUp(ChannelHandlerContext ctx) {
+        if (offloaderBackpressure == null || resumeReadsForOffloader != null ||
+                !offloaderBackpressure.shouldPauseReads()) {
+            return;
+        }
+        resumeReadsForOffloader = () -> ctx.executor().execute(() -> {
+            resumeReadsForOffloader = null;
+            resumeReads(ctx);
+        });
+        offloaderBackpressure.resumeWhenRelieved(resumeReadsForOffloader);
+    }
+
+    private void flushCaptureEarly() throws IOException {
+        flushCapture().whenComplete((v, t) -> {
+            if (t != null) {
+                log.atWarn().setCause(t).setMessage("Error offloading capture that was flushed early").log();
+            }
+        });
+    }
+
+    protected boolean readsArePaused() {
+        return resumeReadsForMemory != null || resumeReadsForOffloader != null;
+    }
+
+    /**
+     * Hold back reads while they're paused
+     */
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        if (readsArePaused()) {
+            readRequestedWhilePaused = true;
+        } else {
+            super.read(ctx);
+        }
+    }
+
+    protected void resumeReads(ChannelHandlerContext ctx) {
+        if (readsArePaused()) {
+            return;
+        }
+        if (readRequestedWhilePaused || ctx.channel().config().isAutoRead()) {
+            readRequestedWhilePaused = false;
+            ctx.read();
+        }
+    }
+
     protected void channelFinishedReadingAnHttpMessage(ChannelHandlerContext ctx, Object msg, boolean shouldCapture,
                                                        HttpRequest httpRequest) throws Exception {
         messageContext = messageContext.createWaitingForResponseContext();
@@ -203,16 +374,23 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
         IWireCaptureContexts.IRequestContext requestContext;
         if (!(messageContext instanceof IWireCaptureContexts.IRequestContext)) {
             messageContext = requestContext = messageContext.createNextRequestContext();
+            captureState.startNextRequest();
         } else {
             requestContext = (IWireCaptureContexts.IRequestContext) messageContext;
         }
 
         var timestamp = Instant.now();
-        var requestParsingHandler = getHandlerThatHoldsParsedHttpRequest();
         var bb = ((ByteBuf) msg);
-        httpDecoderChannel.writeInbound(bb.retainedDuplicate()); // the ByteBuf is consumed/release by this method
+        if (framingScanner != null) {
+            framingScanner.scan(bb);
+        } else {
+            httpDecoderChannel.writeInbound(bb.retainedDuplicate()); // the ByteBuf is consumed/release by this method
+        }
+        if (captureState.shouldCapture() && shouldSuppressCaptureForMemory()) {
+            getConnectionContext().onCaptureMemoryShed(memoryBudget.getOverBudgetPolicy());
+            captureState.suppressRequestForMemory();
+        }
 
-        var captureState = requestParsingHandler.captureState;
         var shouldCapture = captureState.shouldCapture();
         if (shouldCapture) {
             captureState.liveReadObservationsInOffloader = true;
@@ -224,18 +402,28 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
         }
 
         requestContext.onBytesRead(bb.readableBytes());
+        if (shouldCapture) {
+            getConnectionContext().onSampledBytes(bb.readableBytes());
+            capturedBytesSinceFlush += bb.readableBytes();
+        } else {
+            getConnectionContext().onUnsampledBytes(bb.readableBytes());
+        }
 
-
-        if (requestParsingHandler.haveParsedFullRequest) {
+        var haveParsedFullRequest = framingScanner != null ? framingScanner.haveParsedFullRequest :
+                getHandlerThatHoldsParsedHttpRequest().haveParsedFullRequest;
+        if (haveParsedFullRequest) {
             requestContext.onFullyParsedRequest();
-            var httpRequest = requestParsingHandler.resetCurrentRequest();
+            var httpRequest = framingScanner != null ? framingScanner.resetCurrentRequest() :
+                    getHandlerThatHoldsParsedHttpRequest().resetCurrentRequest();
             captureState.liveReadObservationsInOffloader = false;
             captureState.advanceStateModelIntoResponseGather();
 
             if (shouldCapture) {
-                var decoderResultLoose = httpRequest.decoderResult();
-                if (decoderResultLoose instanceof HttpMessageDecoderResult) {
-                    var decoderResult = (HttpMessageDecoderResult) decoderResultLoose;
+                if (framingScanner != null) {
+                    trafficOffloader.addEndOfFirstLineIndicator(framingScanner.getInitialLineLength());
+                    trafficOffloader.addEndOfHeadersIndicator(framingScanner.getHeaderSize());
+                } else if (httpRequest.decoderResult() instanceof HttpMessageDecoderResult) {
+                    var decoderResult = (HttpMessageDecoderResult) httpRequest.decoderResult();
                     trafficOffloader.addEndOfFirstLineIndicator(decoderResult.initialLineLength());
                     trafficOffloader.addEndOfHeadersIndicator(decoderResult.headerSize());
                 }
@@ -245,6 +433,10 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
         } else {
             super.channelRead(ctx, msg);
         }
+        if (shouldCapture) {
+            shedCaptureMemoryIfOverBudget(ctx);
+            pauseReadsIfOffloaderIsBackedUp(ctx);
+        }
     }
 
     @Override
@@ -257,8 +449,13 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
         }
 
         var bb = (ByteBuf) msg;
-        if (getHandlerThatHoldsParsedHttpRequest().captureState.shouldCapture()) {
+        if (captureState.shouldCapture()) {
             trafficOffloader.addWriteEvent(Instant.now(), bb);
+            getConnectionContext().onSampledBytes(bb.readableBytes());
+            capturedBytesSinceFlush += bb.readableBytes();
+            shedCaptureMemoryIfOverBudget(ctx);
+        } else {
+            getConnectionContext().onUnsampledBytes(bb.readableBytes());
         }
         responseContext.onBytesWritten(bb.readableBytes());
 
@@ -269,7 +466,9 @@ public class LoggingHttpHandler<T> extends ChannelDuplexHandler {
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         trafficOffloader.addExceptionCaughtEvent(Instant.now(), cause);
         messageContext.addCaughtException(cause);
-        httpDecoderChannel.close();
+        if (httpDecoderChannel != null) {
+            httpDecoderChannel.close();
+        }
         super.exceptionCaught(ctx, cause);
     }
 
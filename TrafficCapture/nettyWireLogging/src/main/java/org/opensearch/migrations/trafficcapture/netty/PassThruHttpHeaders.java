@@ -6,33 +6,34 @@ import io.netty.handler.codec.http.HttpHeaders;
 import lombok.NonNull;
 
 import java.util.Arrays;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
 public class PassThruHttpHeaders extends DefaultHttpHeaders {
 
-    /**
-     * Use the HttpHeaders class because it does case insensitive matches.
-     */
-    private final HttpHeaders mapWithCaseInsensitiveHeaders;
+    private final CaseInsensitiveHeaderNameTable<Boolean> headerNamesToTrack;
 
     public static class HttpHeadersToPreserve {
-        private final HttpHeaders caseInsensitiveHeadersMap;
+        private final CaseInsensitiveHeaderNameTable<Boolean> caseInsensitiveHeaderNames;
         public HttpHeadersToPreserve(String... extraHeaderNames) {
-            caseInsensitiveHeadersMap = new DefaultHttpHeaders();
+            // merge in a case-insensitive map so that names that differ only by case are only added once
+            var headerNames = new TreeMap<String, Boolean>(String.CASE_INSENSITIVE_ORDER);
             Stream.concat(Stream.of(HttpHeaderNames.CONTENT_LENGTH.toString(),
                                     HttpHeaderNames.CONTENT_TRANSFER_ENCODING.toString(),
+                                    HttpHeaderNames.TRANSFER_ENCODING.toString(),
                                     HttpHeaderNames.TRAILER.toString()),
                             Arrays.stream(extraHeaderNames))
-                    .forEach(h->caseInsensitiveHeadersMap.add(h, ""));
+                    .forEach(h->headerNames.put(h, true));
+            caseInsensitiveHeaderNames = new CaseInsensitiveHeaderNameTable<>(headerNames);
         }
     }
 
     public PassThruHttpHeaders(@NonNull HttpHeadersToPreserve headersToPreserve) {
-        this.mapWithCaseInsensitiveHeaders = headersToPreserve.caseInsensitiveHeadersMap;
+        this.headerNamesToTrack = headersToPreserve.caseInsensitiveHeaderNames;
     }
 
     private boolean headerNameShouldBeTracked(CharSequence name) {
-        return mapWithCaseInsensitiveHeaders.contains(name);
+        return headerNamesToTrack.contains(name);
     }
 
     @Override
@@ -22,6 +22,25 @@ public class RequestCapturePredicate implements Function<HttpRequest, RequestCap
         this.headersRequiredForMatcher = incoming;
     }
 
+    /**
+     * Whether {@link #apply} needs to be given decoded requests.  When it doesn't, handlers only need to find where
+     * requests end rather than decode them.  This base class captures every request without looking at it, so it
+     * doesn't.  Subclasses are assumed to look at requests unless they override this to say otherwise, since
+     * passing an undecoded request to one that does would silently change what it captures.
+     */
+    public boolean requiresDecodedRequests() {
+        return getClass() != RequestCapturePredicate.class;
+    }
+
+    /**
+     * Whether any of a new connection's traffic may be captured.  Connections that this rejects aren't given a
+     * capture handler at all, so nothing on them costs anything beyond forwarding it.  This base class accepts
+     * every connection.
+     */
+    public boolean shouldCaptureConnection(String connectionId) {
+        return true;
+    }
+
     @Override
     public CaptureDirective apply(HttpRequest request) {
         return CaptureDirective.CAPTURE;
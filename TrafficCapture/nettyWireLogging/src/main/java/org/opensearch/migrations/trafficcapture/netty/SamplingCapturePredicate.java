@@ -0,0 +1,93 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.handler.codec.http.HttpRequest;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Captures a fraction of the traffic that the wrapped predicate would capture.  With CONNECTION sampling, whole
+ * connections are captured or not depending upon a hash of their connection id, so that the sessions that are
+ * captured stay intact for replay and connections that aren't sampled cost next to nothing.  Since a connection
+ * is sampled when its hash falls below the rate, raising the rate only adds connections to those already being
+ * sampled.  With REQUEST sampling, each request that the wrapped predicate would capture is captured at random.
+ * <p>
+ * The rate can be changed at any time.  For CONNECTION sampling, it only affects connections that are opened
+ * after the change.
+ */
+public class SamplingCapturePredicate extends RequestCapturePredicate {
+
+    public enum SamplingMode {
+        CONNECTION, REQUEST
+    }
+
+    private final RequestCapturePredicate delegate;
+    @Getter
+    private final SamplingMode samplingMode;
+    private volatile double samplingRate;
+
+    public SamplingCapturePredicate(@NonNull RequestCapturePredicate delegate, @NonNull SamplingMode samplingMode,
+                                    double samplingRate) {
+        super(delegate.getHeadersRequiredForMatcher());
+        this.delegate = delegate;
+        this.samplingMode = samplingMode;
+        setSamplingRate(samplingRate);
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * @param samplingRate the fraction of traffic to capture, from 0 (nothing) to 1 (everything)
+     */
+    public void setSamplingRate(double samplingRate) {
+        if (!(samplingRate >= 0 && samplingRate <= 1)) {
+            throw new IllegalArgumentException("The sampling rate must be between 0 and 1, not " + samplingRate);
+        }
+        this.samplingRate = samplingRate;
+    }
+
+    @Override
+    public boolean requiresDecodedRequests() {
+        return samplingMode == SamplingMode.REQUEST || delegate.requiresDecodedRequests();
+    }
+
+    @Override
+    public boolean shouldCaptureConnection(String connectionId) {
+        if (!delegate.shouldCaptureConnection(connectionId)) {
+            return false;
+        }
+        return samplingMode != SamplingMode.CONNECTION || hashToUnitInterval(connectionId) < samplingRate;
+    }
+
+    @Override
+    public CaptureDirective apply(HttpRequest request) {
+        var directive = delegate.apply(request);
+        if (samplingMode == SamplingMode.REQUEST && directive == CaptureDirective.CAPTURE &&
+                ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            return CaptureDirective.DROP;
+        }
+        return directive;
+    }
+
+    /**
+     * Maps an id to [0, 1) with FNV-1a followed by a 64-bit finalizer.  This has to be stable across processes
+     * (unlike a random number) so that every proxy instance makes the same decision for the same id.
+     */
+    static double hashToUnitInterval(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); ++i) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        // the top 53 bits fill a double's mantissa exactly
+        return (h >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,83 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.trafficcapture.netty.tracing.IRootWireLoggingContext;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps account of the captured requests, across all connections of a proxy, that have been forwarded to the
+ * service before the offloader acknowledged their TrafficStreams.  The TrafficStreams themselves stay with the
+ * offloader (e.g. in the Kafka producer's buffers) until they're acknowledged, so bounding how many of these
+ * requests may be outstanding bounds both the memory held for them and how much capture could be lost in a crash.
+ * <p>
+ * Once more than maxUnacknowledgedRequests are outstanding, handlers are told to stop reading from their
+ * connections.  Their readers are resumed after the outstanding count falls back to half of that limit.
+ * The outstanding count and how long each acknowledgement took are published as metrics.
+ */
+@Slf4j
+public class UnacknowledgedCaptureJournal {
+    private final IRootWireLoggingContext rootContext;
+    @Getter
+    private final int maxUnacknowledgedRequests;
+    private final int resumeThreshold;
+    private final AtomicInteger unacknowledgedRequests = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> pausedReaders = new ConcurrentLinkedQueue<>();
+
+    public UnacknowledgedCaptureJournal(IRootWireLoggingContext rootContext, int maxUnacknowledgedRequests) {
+        if (maxUnacknowledgedRequests <= 0) {
+            throw new IllegalArgumentException("maxUnacknowledgedRequests must be positive");
+        }
+        this.rootContext = rootContext;
+        this.maxUnacknowledgedRequests = maxUnacknowledgedRequests;
+        this.resumeThreshold = maxUnacknowledgedRequests / 2;
+    }
+
+    public int getUnacknowledgedRequestCount() {
+        return unacknowledgedRequests.get();
+    }
+
+    /**
+     * Track a request until acknowledgementFuture completes (successfully or not).
+     * @return true if the journal is now over its limit and the caller should stop reading more requests until
+     * the runnable that it passes to pauseUntilCaughtUp() is called
+     */
+    public boolean add(CompletableFuture<?> acknowledgementFuture) {
+        final var startNanos = System.nanoTime();
+        var outstanding = unacknowledgedRequests.incrementAndGet();
+        rootContext.meterDeltaEvent(rootContext.getBlockingInstruments().unacknowledgedRequests, 1);
+        acknowledgementFuture.whenComplete((v, t) -> {
+            rootContext.meterHistogramMillis(rootContext.getBlockingInstruments().acknowledgementLag,
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+            rootContext.meterDeltaEvent(rootContext.getBlockingInstruments().unacknowledgedRequests, -1);
+            if (unacknowledgedRequests.decrementAndGet() <= resumeThreshold) {
+                resumePausedReaders();
+            }
+        });
+        return outstanding > maxUnacknowledgedRequests;
+    }
+
+    public void pauseUntilCaughtUp(Runnable resumeReading) {
+        rootContext.meterIncrementEvent(rootContext.getBlockingInstruments().readsPausedCounter);
+        pausedReaders.add(resumeReading);
+        // acknowledgements may have caught up before the reader was registered
+        if (unacknowledgedRequests.get() <= resumeThreshold) {
+            resumePausedReaders();
+        }
+    }
+
+    private void resumePausedReaders() {
+        Runnable resumeReading;
+        while ((resumeReading = pausedReaders.poll()) != null) {
+            try {
+                resumeReading.run();
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage("Couldn't resume reading for a connection").log();
+            }
+        }
+    }
+}
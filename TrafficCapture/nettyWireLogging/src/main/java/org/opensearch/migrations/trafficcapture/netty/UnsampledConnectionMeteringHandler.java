@@ -0,0 +1,45 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import lombok.NonNull;
+import org.opensearch.migrations.trafficcapture.netty.tracing.IRootWireLoggingContext;
+
+/**
+ * Takes the place of a logging handler on a connection whose traffic won't be captured at all, so that the
+ * traffic that was left out of the capture still shows up in the metrics.
+ */
+public class UnsampledConnectionMeteringHandler extends ChannelDuplexHandler {
+    private final IRootWireLoggingContext rootContext;
+
+    public UnsampledConnectionMeteringHandler(@NonNull IRootWireLoggingContext rootContext) {
+        this.rootContext = rootContext;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        rootContext.meterIncrementEvent(rootContext.getConnectionInstruments().unsampledConnectionsCounter);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        meterBytes(msg);
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        meterBytes(msg);
+        super.write(ctx, msg, promise);
+    }
+
+    private void meterBytes(Object msg) {
+        if (msg instanceof ByteBuf) {
+            rootContext.meterIncrementEvent(rootContext.getConnectionInstruments().unsampledBytesCounter,
+                    ((ByteBuf) msg).readableBytes());
+        }
+    }
+}
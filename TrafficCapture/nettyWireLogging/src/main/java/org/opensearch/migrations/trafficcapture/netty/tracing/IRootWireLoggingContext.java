@@ -1,5 +1,6 @@
 package org.opensearch.migrations.trafficcapture.netty.tracing;
 
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 import org.opensearch.migrations.trafficcapture.tracing.IRootOffloaderContext;
 
 public interface IRootWireLoggingContext extends IRootOffloaderContext {
@@ -16,4 +17,10 @@ public interface IRootWireLoggingContext extends IRootOffloaderContext {
 
     IWireCaptureContexts.ICapturingConnectionContext createConnectionContext(String channelKey, String nodeId);
 
+    /**
+     * Publish how many bytes are reserved against memoryBudget, and its limit, as gauges.  Connections report
+     * when they shed capture through {@link IWireCaptureContexts.ICapturingConnectionContext#onCaptureMemoryShed}.
+     */
+    void addCaptureMemoryBudgetGauges(CaptureMemoryBudget memoryBudget);
+
 }
@@ -3,6 +3,7 @@ package org.opensearch.migrations.trafficcapture.netty.tracing;
 import org.opensearch.migrations.tracing.IWithStartTimeAndAttributes;
 import org.opensearch.migrations.tracing.IWithTypedEnclosingScope;
 import org.opensearch.migrations.tracing.commoncontexts.IHttpTransactionContext;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 
 public abstract class IWireCaptureContexts {
 
@@ -24,6 +25,18 @@ public abstract class IWireCaptureContexts {
         public static final String FULL_REQUEST = "fullRequest";
         public static final String BYTES_READ = "bytesRead";
         public static final String BYTES_WRITTEN = "bytesWritten";
+
+        public static final String UNACKNOWLEDGED_REQUESTS = "unacknowledgedCapturedRequests";
+        public static final String ACKNOWLEDGEMENT_LAG = "captureAcknowledgementLag";
+        public static final String READS_PAUSED = "readsPausedForUnacknowledgedCaptures";
+
+        public static final String UNSAMPLED_CONNECTIONS = "unsampledConnections";
+        public static final String SAMPLED_BYTES = "sampledBytes";
+        public static final String UNSAMPLED_BYTES = "unsampledBytes";
+
+        public static final String CAPTURE_MEMORY_SHED = "captureMemoryShed";
+        public static final String CAPTURE_MEMORY_RESERVED = "captureMemoryReserved";
+        public static final String CAPTURE_MEMORY_BUDGET = "captureMemoryBudget";
     }
 
     public interface ICapturingConnectionContext
@@ -33,6 +46,15 @@ public abstract class IWireCaptureContexts {
         void onUnregistered();
 
         void onRemoved();
+
+        /** Bytes read or written on this connection that were passed on to be captured */
+        void onSampledBytes(int size);
+
+        /** Bytes read or written on this connection that weren't captured */
+        void onUnsampledBytes(int size);
+
+        /** This connection applied overBudgetPolicy because the capture memory budget was exceeded */
+        void onCaptureMemoryShed(CaptureMemoryBudget.OverBudgetPolicy overBudgetPolicy);
     }
 
     public interface IHttpMessageContext
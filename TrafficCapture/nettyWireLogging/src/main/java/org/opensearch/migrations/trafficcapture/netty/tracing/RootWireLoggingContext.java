@@ -1,8 +1,11 @@
 package org.opensearch.migrations.trafficcapture.netty.tracing;
 
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.Meter;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.opensearch.migrations.tracing.RootOtelContext;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 
 @Getter
 public class RootWireLoggingContext extends RootOtelContext implements IRootWireLoggingContext {
@@ -13,6 +16,8 @@ public class RootWireLoggingContext extends RootOtelContext implements IRootWire
     public final WireCaptureContexts.BlockingContext.MetricInstruments blockingInstruments;
     public final WireCaptureContexts.WaitingForResponseContext.MetricInstruments waitingForResponseInstruments;
     public final WireCaptureContexts.ResponseContext.MetricInstruments responseInstruments;
+    @Getter(AccessLevel.NONE)
+    private final Meter meter;
 
     public RootWireLoggingContext(OpenTelemetry openTelemetry) {
         this(openTelemetry, SCOPE_NAME);
@@ -20,7 +25,7 @@ public class RootWireLoggingContext extends RootOtelContext implements IRootWire
 
     public RootWireLoggingContext(OpenTelemetry openTelemetry, String scopeName) {
         super(scopeName, openTelemetry);
-        var meter = this.getMeterProvider().get(scopeName);
+        meter = this.getMeterProvider().get(scopeName);
         connectionInstruments = WireCaptureContexts.ConnectionContext.makeMetrics(meter);
         requestInstruments = WireCaptureContexts.RequestContext.makeMetrics(meter);
         blockingInstruments = WireCaptureContexts.BlockingContext.makeMetrics(meter);
@@ -32,4 +37,14 @@ public class RootWireLoggingContext extends RootOtelContext implements IRootWire
     public IWireCaptureContexts.ICapturingConnectionContext createConnectionContext(String channelKey, String nodeId) {
         return new WireCaptureContexts.ConnectionContext(this, channelKey, nodeId);
     }
+
+    @Override
+    public void addCaptureMemoryBudgetGauges(CaptureMemoryBudget memoryBudget) {
+        meter.gaugeBuilder(IWireCaptureContexts.MetricNames.CAPTURE_MEMORY_RESERVED).ofLongs()
+                .setUnit(WireCaptureContexts.BYTES_UNIT)
+                .buildWithCallback(m -> m.record(memoryBudget.getReservedBytes()));
+        meter.gaugeBuilder(IWireCaptureContexts.MetricNames.CAPTURE_MEMORY_BUDGET).ofLongs()
+                .setUnit(WireCaptureContexts.BYTES_UNIT)
+                .buildWithCallback(m -> m.record(memoryBudget.getLimitBytes()));
+    }
 }
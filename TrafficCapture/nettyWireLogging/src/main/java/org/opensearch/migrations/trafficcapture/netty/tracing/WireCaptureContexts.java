@@ -1,16 +1,22 @@
 package org.opensearch.migrations.trafficcapture.netty.tracing;
 
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
 import io.opentelemetry.api.metrics.Meter;
 import lombok.Getter;
 import lombok.NonNull;
 import org.opensearch.migrations.tracing.BaseNestedSpanContext;
 import org.opensearch.migrations.tracing.CommonScopedMetricInstruments;
 import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 
 public class WireCaptureContexts extends IWireCaptureContexts {
     public static final String COUNT_UNITS = "count";
     public static final String BYTES_UNIT = "bytes";
+    public static final AttributeKey<String> OVER_BUDGET_POLICY_ATTR = AttributeKey.stringKey("overBudgetPolicy");
 
 
     public static class ConnectionContext
@@ -30,6 +36,14 @@ public class WireCaptureContexts extends IWireCaptureContexts {
                 extends org.opensearch.migrations.trafficcapture.tracing.ConnectionContext.MetricInstruments {
             public final LongCounter unregisteredCounter;
             public final LongCounter removedCounter;
+            /**
+             * The connections that were never given a capture handler and their bytes, along with the bytes of
+             * captured connections that were or weren't captured, so that the effective sampling rate is visible
+             */
+            public final LongCounter unsampledConnectionsCounter;
+            public final LongCounter sampledBytesCounter;
+            public final LongCounter unsampledBytesCounter;
+            public final LongCounter captureMemoryShedCounter;
 
             public MetricInstruments(Meter meter, String activityMeter) {
                 super(meter, activityMeter);
@@ -37,6 +51,14 @@ public class WireCaptureContexts extends IWireCaptureContexts {
                         .counterBuilder(MetricNames.UNREGISTERED).setUnit(COUNT_UNITS).build();
                 removedCounter = meter
                         .counterBuilder(MetricNames.REMOVED).setUnit(COUNT_UNITS).build();
+                unsampledConnectionsCounter = meter
+                        .counterBuilder(MetricNames.UNSAMPLED_CONNECTIONS).setUnit(COUNT_UNITS).build();
+                sampledBytesCounter = meter
+                        .counterBuilder(MetricNames.SAMPLED_BYTES).setUnit(BYTES_UNIT).build();
+                unsampledBytesCounter = meter
+                        .counterBuilder(MetricNames.UNSAMPLED_BYTES).setUnit(BYTES_UNIT).build();
+                captureMemoryShedCounter = meter
+                        .counterBuilder(MetricNames.CAPTURE_MEMORY_SHED).setUnit(COUNT_UNITS).build();
             }
         }
 
@@ -64,6 +86,22 @@ public class WireCaptureContexts extends IWireCaptureContexts {
         public void onRemoved() {
             meterIncrementEvent(getMetrics().removedCounter);
         }
+
+        @Override
+        public void onSampledBytes(int size) {
+            meterIncrementEvent(getMetrics().sampledBytesCounter, size);
+        }
+
+        @Override
+        public void onUnsampledBytes(int size) {
+            meterIncrementEvent(getMetrics().unsampledBytesCounter, size);
+        }
+
+        @Override
+        public void onCaptureMemoryShed(CaptureMemoryBudget.OverBudgetPolicy overBudgetPolicy) {
+            meterIncrementEvent(getMetrics().captureMemoryShedCounter, 1,
+                    Attributes.builder().put(OVER_BUDGET_POLICY_ATTR, overBudgetPolicy.name()));
+        }
     }
 
     @Getter
@@ -190,9 +228,23 @@ public class WireCaptureContexts extends IWireCaptureContexts {
             return ACTIVITY_NAME;
         }
 
+        /**
+         * The instruments beyond the common ones are for requests that are forwarded without blocking and are
+         * tracked by an UnacknowledgedCaptureJournal instead.
+         */
         public static class MetricInstruments extends CommonScopedMetricInstruments {
+            public final LongUpDownCounter unacknowledgedRequests;
+            public final DoubleHistogram acknowledgementLag;
+            public final LongCounter readsPausedCounter;
+
             private MetricInstruments(Meter meter, String activityName) {
                 super(meter, activityName);
+                unacknowledgedRequests = meter
+                        .upDownCounterBuilder(MetricNames.UNACKNOWLEDGED_REQUESTS).setUnit(COUNT_UNITS).build();
+                acknowledgementLag = meter
+                        .histogramBuilder(MetricNames.ACKNOWLEDGEMENT_LAG).setUnit("ms").build();
+                readsPausedCounter = meter
+                        .counterBuilder(MetricNames.READS_PAUSED).setUnit(COUNT_UNITS).build();
             }
         }
 
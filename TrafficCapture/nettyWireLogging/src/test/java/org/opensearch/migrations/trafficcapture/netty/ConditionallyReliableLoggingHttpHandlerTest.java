@@ -3,6 +3,8 @@ package org.opensearch.migrations.trafficcapture.netty;
 import com.google.protobuf.CodedOutputStream;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
 import lombok.Getter;
 import lombok.SneakyThrows;
@@ -28,6 +30,7 @@ import java.io.IOException;
 import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -96,6 +99,19 @@ public class ConditionallyReliableLoggingHttpHandlerTest {
         }
     }
 
+    static class DeferredAcknowledgementStreamManager extends TestStreamManager {
+        final List<CompletableFuture<Object>> acknowledgements = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<Object>
+        kickoffCloseStream(CodedOutputStreamHolder outputStreamHolder, int index) {
+            super.kickoffCloseStream(outputStreamHolder, index);
+            var acknowledgement = new CompletableFuture<Object>();
+            acknowledgements.add(acknowledgement);
+            return acknowledgement;
+        }
+    }
+
     private static void writeMessageAndVerify(byte[] fullTrafficBytes, Consumer<EmbeddedChannel> channelWriter,
                                               boolean checkInstrumentation)
             throws IOException {
@@ -272,6 +288,55 @@ public class ConditionallyReliableLoggingHttpHandlerTest {
         }
     }
 
+    @Test
+    public void testThatUnacknowledgedRequestsAreForwardedUntilTheJournalIsFull() throws Exception {
+        try (var rootContext = new TestRootContext()) {
+            var streamManager = new DeferredAcknowledgementStreamManager();
+            var offloader = new StreamChannelConnectionCaptureSerializer("Test", "c", streamManager);
+            var journal = new UnacknowledgedCaptureJournal(rootContext, 1);
+            var readsPassedThrough = new AtomicInteger();
+            var channel = new EmbeddedChannel(
+                    new ChannelOutboundHandlerAdapter() {
+                        @Override
+                        public void read(ChannelHandlerContext ctx) {
+                            readsPassedThrough.incrementAndGet();
+                        }
+                    },
+                    new ConditionallyReliableLoggingHttpHandler(rootContext, "n", "c", ctx -> offloader,
+                            new RequestCapturePredicate(), x -> true,
+                            ConditionallyReliableLoggingHttpHandler.Options.builder()
+                                    .unacknowledgedCaptureJournal(journal)
+                                    .build()));
+            // issue reads explicitly, as the capture proxy does
+            channel.config().setAutoRead(false);
+            var readsBeforeRequests = readsPassedThrough.get();
+            var requestBytes = SimpleRequests.SMALL_POST.getBytes(StandardCharsets.UTF_8);
+
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes));
+            // forwarded even though the capture hasn't been acknowledged
+            Assertions.assertArrayEquals(requestBytes, consumeIntoArray(channel.readInbound()));
+            Assertions.assertEquals(1, journal.getUnacknowledgedRequestCount());
+            channel.read();
+            Assertions.assertEquals(readsBeforeRequests + 1, readsPassedThrough.get());
+
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes));
+            Assertions.assertArrayEquals(requestBytes, consumeIntoArray(channel.readInbound()));
+            Assertions.assertEquals(2, journal.getUnacknowledgedRequestCount());
+            // the journal is over its limit, so reads are held back until it catches up
+            channel.read();
+            Assertions.assertEquals(readsBeforeRequests + 1, readsPassedThrough.get());
+
+            // completing one acknowledgement kicks off the next TrafficStream, so the list grows while iterating
+            for (int i = 0; i < streamManager.acknowledgements.size(); ++i) {
+                streamManager.acknowledgements.get(i).complete(null);
+            }
+            channel.runPendingTasks();
+            Assertions.assertEquals(0, journal.getUnacknowledgedRequestCount());
+            Assertions.assertEquals(readsBeforeRequests + 2, readsPassedThrough.get());
+            channel.close();
+        }
+    }
+
     private static Stream<TrafficObservation> skipReadsBeforeDrop(List<TrafficObservation> observations) {
         var sawRequestDropped = new AtomicBoolean(false);
         return observations.stream().dropWhile(o->{
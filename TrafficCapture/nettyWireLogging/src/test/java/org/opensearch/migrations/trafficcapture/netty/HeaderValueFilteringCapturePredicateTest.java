@@ -0,0 +1,83 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Map;
+
+public class HeaderValueFilteringCapturePredicateTest {
+
+    private static final HeaderValueFilteringCapturePredicate PREDICATE = new HeaderValueFilteringCapturePredicate(
+            List.of(Map.entry("User-Agent", "healthcheck"),
+                    Map.entry("user-agent", "uploader.*"),
+                    Map.entry("USER-AGENT", ".*-probe"),
+                    Map.entry("user-agent", ".*bot.*"),
+                    Map.entry("user-agent", "curl/[0-9]+\\.[0-9]+"),
+                    Map.entry("user-agent", "(a+)-\\1"),
+                    Map.entry("x-tenant", "tenant-(1|2)")));
+
+    private static HttpRequest makeRequest(String headerName, String headerValue) {
+        var request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/",
+                new PassThruHttpHeaders(PREDICATE.getHeadersRequiredForMatcher()));
+        request.headers().add(headerName, headerValue);
+        return request;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "user-agent, healthcheck, DROP",
+            "User-Agent, healthcheck2, CAPTURE",
+            "user-agent, uploader/1.0, DROP",
+            "user-agent, my-uploader, CAPTURE",
+            "user-agent, lb-probe, DROP",
+            "user-agent, lb-probe-2, CAPTURE",
+            "user-agent, searchbot v1, DROP",
+            "user-agent, curl/7.88, DROP",
+            "user-agent, curl/7, CAPTURE",
+            "user-agent, aa-aa, DROP",
+            "user-agent, aa-a, CAPTURE",
+            "X-Tenant, tenant-2, DROP",
+            "x-tenant, tenant-3, CAPTURE",
+            "x-other, healthcheck, CAPTURE"
+    })
+    public void testRulesAreAppliedByHeaderName(String headerName, String headerValue,
+                                                RequestCapturePredicate.CaptureDirective expected) {
+        Assertions.assertEquals(expected, PREDICATE.apply(makeRequest(headerName, headerValue)));
+    }
+
+    @Test
+    public void testOnlyHeadersNeededForMatchingOrFramingArePreserved() {
+        var request = makeRequest("X-Tenant", "tenant-1");
+        request.headers().add("content-length", "5");
+        request.headers().add("Transfer-Encoding", "chunked");
+        request.headers().add("x-other", "something");
+        Assertions.assertEquals("tenant-1", request.headers().get("x-tenant"));
+        Assertions.assertEquals("5", request.headers().get("Content-Length"));
+        Assertions.assertEquals("chunked", request.headers().get("transfer-encoding"));
+        Assertions.assertNull(request.headers().get("x-other"));
+    }
+
+    @Test
+    public void testHeadersCanOnlyBeMatchedOnceRequestsAreDecoded() {
+        Assertions.assertTrue(PREDICATE.requiresDecodedRequests());
+        Assertions.assertFalse(new RequestCapturePredicate().requiresDecodedRequests());
+    }
+
+    @Test
+    public void testSubclassesThatDontSayOtherwiseAreGivenDecodedRequests() {
+        var predicate = new RequestCapturePredicate() {
+            @Override
+            public CaptureDirective apply(HttpRequest request) {
+                return request.method() == HttpMethod.GET ? CaptureDirective.DROP : CaptureDirective.CAPTURE;
+            }
+        };
+        Assertions.assertTrue(predicate.requiresDecodedRequests());
+    }
+}
@@ -0,0 +1,136 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMessageDecoderResult;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HttpRequestFramingScannerTest {
+
+    private static final String CHUNKED_POST = "POST /_bulk?refresh=true HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "transfer-encoding: gzip, Chunked\r\n" +
+            "Content-Length: 1000\r\n" +
+            "\r\n" +
+            "5;ext=1\r\n" +
+            "hello\r\n" +
+            "0006\r\n" +
+            " world\r\n" +
+            "0\r\n" +
+            "X-Trailer: done\r\n" +
+            "\r\n";
+
+    private static final String PIPELINED_GETS = "\r\nGET /a HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "HEAD /b HTTP/1.0\n" +
+            "Host: localhost\n" +
+            "X-Folded: first\n" +
+            "  second\n" +
+            "\n";
+
+    private static class RequestBoundary {
+        final String method;
+        final int initialLineLength;
+        final int headerSize;
+        final int endOffset;
+
+        RequestBoundary(String method, int initialLineLength, int headerSize, int endOffset) {
+            this.method = method;
+            this.initialLineLength = initialLineLength;
+            this.headerSize = headerSize;
+            this.endOffset = endOffset;
+        }
+
+        @Override
+        public String toString() {
+            return method + ":" + initialLineLength + ":" + headerSize + "@" + endOffset;
+        }
+    }
+
+    private static List<RequestBoundary> scanInPieces(String traffic, int pieceSize) {
+        var scanner = new HttpRequestFramingScanner();
+        var boundaries = new ArrayList<RequestBoundary>();
+        var bytes = traffic.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += pieceSize) {
+            var bb = Unpooled.wrappedBuffer(bytes, i, Math.min(pieceSize, bytes.length - i));
+            scanner.scan(bb);
+            Assertions.assertEquals(0, bb.readerIndex());
+            if (scanner.haveParsedFullRequest) {
+                var request = scanner.resetCurrentRequest();
+                boundaries.add(new RequestBoundary(request.method().name(), scanner.getInitialLineLength(),
+                        scanner.getHeaderSize(), i + bb.readableBytes()));
+            }
+        }
+        return boundaries;
+    }
+
+    private static List<RequestBoundary> decodeInPieces(String traffic, int pieceSize) {
+        var decoderChannel = new EmbeddedChannel(new HttpRequestDecoder());
+        var boundaries = new ArrayList<RequestBoundary>();
+        var bytes = traffic.getBytes(StandardCharsets.UTF_8);
+        HttpRequest lastRequest = null;
+        for (int i = 0; i < bytes.length; i += pieceSize) {
+            decoderChannel.writeInbound(Unpooled.wrappedBuffer(bytes, i, Math.min(pieceSize, bytes.length - i)));
+            Object msg;
+            RequestBoundary lastBoundaryInPiece = null;
+            while ((msg = decoderChannel.readInbound()) != null) {
+                // like LoggingHttpHandler, ignore the full request that the decoder makes for a bad message
+                if (msg instanceof HttpRequest) {
+                    lastRequest = (HttpRequest) msg;
+                } else if (msg instanceof LastHttpContent) {
+                    var decoderResult = (HttpMessageDecoderResult) lastRequest.decoderResult();
+                    lastBoundaryInPiece = new RequestBoundary(lastRequest.method().name(),
+                            decoderResult.initialLineLength(), decoderResult.headerSize(),
+                            Math.min(i + pieceSize, bytes.length));
+                }
+                if (msg instanceof HttpContent) {
+                    ReferenceCountUtil.release(msg);
+                }
+            }
+            // LoggingHttpHandler only ends one message per read
+            if (lastBoundaryInPiece != null) {
+                boundaries.add(lastBoundaryInPiece);
+            }
+        }
+        decoderChannel.finishAndReleaseAll();
+        return boundaries;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 7, 1024})
+    public void testBoundariesMatchTheHttpRequestDecoder(int pieceSize) {
+        for (var traffic : List.of(SimpleRequests.SMALL_POST + SimpleRequests.HEALTH_CHECK, CHUNKED_POST,
+                PIPELINED_GETS)) {
+            var expected = decodeInPieces(traffic, pieceSize);
+            Assertions.assertFalse(expected.isEmpty());
+            Assertions.assertEquals(expected.toString(), scanInPieces(traffic, pieceSize).toString());
+        }
+    }
+
+    @Test
+    public void testBadContentLengthStopsFraming() {
+        var traffic = "POST / HTTP/1.1\r\nContent-Length: 12x\r\n\r\n" + SimpleRequests.SMALL_POST;
+        Assertions.assertTrue(decodeInPieces(traffic, 1024).isEmpty());
+        Assertions.assertTrue(scanInPieces(traffic, 1024).isEmpty());
+    }
+
+    @Test
+    public void testOverlyLongHeadersStopFraming() {
+        var traffic = "GET / HTTP/1.1\r\nX-Big: " + "a".repeat(10 * 1024) + "\r\n\r\n" + SimpleRequests.SMALL_POST;
+        Assertions.assertTrue(decodeInPieces(traffic, 1024).isEmpty());
+        Assertions.assertTrue(scanInPieces(traffic, 1024).isEmpty());
+    }
+}
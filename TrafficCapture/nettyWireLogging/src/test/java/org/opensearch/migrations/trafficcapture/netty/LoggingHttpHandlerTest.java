@@ -0,0 +1,250 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.tracing.InMemoryInstrumentationBundle;
+import org.opensearch.migrations.tracing.commoncontexts.IConnectionContext;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
+import org.opensearch.migrations.trafficcapture.IChannelConnectionCaptureSerializer;
+import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.IOffloaderBackpressure;
+import org.opensearch.migrations.trafficcapture.StreamChannelConnectionCaptureSerializer;
+import org.opensearch.migrations.trafficcapture.netty.tracing.RootWireLoggingContext;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class LoggingHttpHandlerTest {
+
+    private static class ManualBackpressure implements IOffloaderBackpressure {
+        boolean backedUp;
+        final List<Runnable> pausedReaders = new ArrayList<>();
+
+        @Override
+        public boolean shouldPauseReads() {
+            return backedUp;
+        }
+
+        @Override
+        public void resumeWhenRelieved(Runnable resumeReading) {
+            pausedReaders.add(resumeReading);
+        }
+
+        @Override
+        public void cancelResume(Runnable resumeReading) {
+            pausedReaders.remove(resumeReading);
+        }
+
+        void relieve() {
+            backedUp = false;
+            pausedReaders.forEach(Runnable::run);
+            pausedReaders.clear();
+        }
+    }
+
+    private static byte[] consumeIntoArray(ByteBuf m) {
+        var bArr = new byte[m.readableBytes()];
+        m.readBytes(bArr);
+        m.release();
+        return bArr;
+    }
+
+    /**
+     * Makes a channel that issues reads explicitly, as the capture proxy does, and counts the reads that make it
+     * past the handler
+     */
+    private static EmbeddedChannel makeChannel(LoggingHttpHandler<Object> handler, AtomicInteger readsPassedThrough) {
+        var channel = new EmbeddedChannel(
+                new ChannelOutboundHandlerAdapter() {
+                    @Override
+                    public void read(ChannelHandlerContext ctx) {
+                        readsPassedThrough.incrementAndGet();
+                    }
+                },
+                handler);
+        channel.config().setAutoRead(false);
+        return channel;
+    }
+
+    private static IConnectionCaptureFactory<Object>
+    makeOffloaderFactory(ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager streamManager,
+                         IOffloaderBackpressure backpressure) {
+        return new IConnectionCaptureFactory<Object>() {
+            @Override
+            public IChannelConnectionCaptureSerializer<Object> createOffloader(IConnectionContext ctx) {
+                return new StreamChannelConnectionCaptureSerializer("Test", "c", streamManager);
+            }
+
+            @Override
+            public IOffloaderBackpressure getBackpressure() {
+                return backpressure;
+            }
+        };
+    }
+
+    private static List<TrafficObservation.CaptureCase>
+    getLastFlushedCaptureCases(ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager streamManager)
+            throws Exception {
+        return TrafficStream.parseFrom(streamManager.byteBufferAtomicReference.get()).getSubStreamList().stream()
+                .map(TrafficObservation::getCaptureCase)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testReadsArePausedWhileTheOffloaderIsBackedUp() throws Exception {
+        try (var instrumentationBundle = new InMemoryInstrumentationBundle(false, false)) {
+            var rootContext = new RootWireLoggingContext(instrumentationBundle.openTelemetrySdk);
+            var streamManager = new ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager();
+            var backpressure = new ManualBackpressure();
+            var readsPassedThrough = new AtomicInteger();
+            var channel = makeChannel(new LoggingHttpHandler<>(rootContext, "n", "c",
+                    makeOffloaderFactory(streamManager, backpressure), new RequestCapturePredicate()),
+                    readsPassedThrough);
+            var readsBeforeRequests = readsPassedThrough.get();
+            var requestBytes = SimpleRequests.SMALL_POST.getBytes(StandardCharsets.UTF_8);
+
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes));
+            Assertions.assertArrayEquals(requestBytes, consumeIntoArray(channel.readInbound()));
+            channel.read();
+            Assertions.assertEquals(readsBeforeRequests + 1, readsPassedThrough.get());
+
+            backpressure.backedUp = true;
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes));
+            Assertions.assertArrayEquals(requestBytes, consumeIntoArray(channel.readInbound()));
+            Assertions.assertEquals(1, backpressure.pausedReaders.size());
+            channel.read();
+            Assertions.assertEquals(readsBeforeRequests + 1, readsPassedThrough.get());
+
+            backpressure.relieve();
+            channel.runPendingTasks();
+            Assertions.assertEquals(readsBeforeRequests + 2, readsPassedThrough.get());
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testPausedReadsAreCancelledWhenTheChannelCloses() throws Exception {
+        try (var instrumentationBundle = new InMemoryInstrumentationBundle(false, false)) {
+            var rootContext = new RootWireLoggingContext(instrumentationBundle.openTelemetrySdk);
+            var streamManager = new ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager();
+            var backpressure = new ManualBackpressure();
+            var channel = makeChannel(new LoggingHttpHandler<>(rootContext, "n", "c",
+                    makeOffloaderFactory(streamManager, backpressure), new RequestCapturePredicate()),
+                    new AtomicInteger());
+
+            backpressure.backedUp = true;
+            channel.writeInbound(Unpooled.wrappedBuffer(SimpleRequests.SMALL_POST.getBytes(StandardCharsets.UTF_8)));
+            consumeIntoArray(channel.readInbound());
+            Assertions.assertEquals(1, backpressure.pausedReaders.size());
+
+            channel.close();
+            Assertions.assertEquals(0, backpressure.pausedReaders.size());
+        }
+    }
+
+    @Test
+    public void testRequestInProgressIsDroppedWhenTheMemoryBudgetIsExceededWithSuppressCapture()
+            throws Exception {
+        try (var instrumentationBundle = new InMemoryInstrumentationBundle(false, false)) {
+            var rootContext = new RootWireLoggingContext(instrumentationBundle.openTelemetrySdk);
+            var streamManager = new ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager();
+            var budget = new CaptureMemoryBudget(1024, CaptureMemoryBudget.OverBudgetPolicy.SUPPRESS_CAPTURE);
+            var channel = makeChannel(new LoggingHttpHandler<>(rootContext, "n", "c",
+                    makeOffloaderFactory(streamManager, null), new RequestCapturePredicate(), budget),
+                    new AtomicInteger());
+            var requestBytes = SimpleRequests.SMALL_POST.getBytes(StandardCharsets.UTF_8);
+            var splitIndex = requestBytes.length / 2;
+
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes, 0, splitIndex));
+            budget.reserveQueuedBytes(budget.getLimitBytes() + 1);
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes, splitIndex, requestBytes.length - splitIndex));
+            // the request is still forwarded, even though its capture was dropped
+            Assertions.assertArrayEquals(Arrays.copyOfRange(requestBytes, 0, splitIndex),
+                    consumeIntoArray(channel.readInbound()));
+            Assertions.assertArrayEquals(Arrays.copyOfRange(requestBytes, splitIndex, requestBytes.length),
+                    consumeIntoArray(channel.readInbound()));
+            // and requests that begin while the budget is still exceeded aren't captured at all
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes));
+            Assertions.assertArrayEquals(requestBytes, consumeIntoArray(channel.readInbound()));
+            channel.close();
+
+            Assertions.assertEquals(List.of(TrafficObservation.CaptureCase.READ,
+                            TrafficObservation.CaptureCase.REQUESTDROPPED,
+                            TrafficObservation.CaptureCase.CLOSE),
+                    getLastFlushedCaptureCases(streamManager));
+        }
+    }
+
+    @Test
+    public void testReadsArePausedWhileTheMemoryBudgetIsExceededWithPauseReads() throws Exception {
+        try (var instrumentationBundle = new InMemoryInstrumentationBundle(false, false)) {
+            var rootContext = new RootWireLoggingContext(instrumentationBundle.openTelemetrySdk);
+            var streamManager = new ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager();
+            var budget = new CaptureMemoryBudget(1024, CaptureMemoryBudget.OverBudgetPolicy.PAUSE_READS);
+            var readsPassedThrough = new AtomicInteger();
+            var channel = makeChannel(new LoggingHttpHandler<>(rootContext, "n", "c",
+                    makeOffloaderFactory(streamManager, null), new RequestCapturePredicate(), budget),
+                    readsPassedThrough);
+            var readsBeforeRequests = readsPassedThrough.get();
+            var requestBytes = SimpleRequests.SMALL_POST.getBytes(StandardCharsets.UTF_8);
+
+            budget.reserveQueuedBytes(budget.getLimitBytes() + 1);
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes));
+            Assertions.assertArrayEquals(requestBytes, consumeIntoArray(channel.readInbound()));
+            // what had been captured is flushed so that its memory can be given back
+            Assertions.assertEquals(1, streamManager.flushCount.get());
+            channel.read();
+            Assertions.assertEquals(readsBeforeRequests, readsPassedThrough.get());
+
+            budget.releaseQueuedBytes(budget.getLimitBytes() + 1);
+            channel.runPendingTasks();
+            Assertions.assertEquals(readsBeforeRequests + 1, readsPassedThrough.get());
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testPartialRequestIsFlushedWhenTheMemoryBudgetIsExceededWithFlushLargest() throws Exception {
+        try (var instrumentationBundle = new InMemoryInstrumentationBundle(false, false)) {
+            var rootContext = new RootWireLoggingContext(instrumentationBundle.openTelemetrySdk);
+            var streamManager = new ConditionallyReliableLoggingHttpHandlerTest.TestStreamManager();
+            var budget = new CaptureMemoryBudget(1024, CaptureMemoryBudget.OverBudgetPolicy.FLUSH_LARGEST);
+            var channel = makeChannel(new LoggingHttpHandler<>(rootContext, "n", "c",
+                    makeOffloaderFactory(streamManager, null), new RequestCapturePredicate(), budget),
+                    new AtomicInteger());
+            var requestBytes = SimpleRequests.SMALL_POST.getBytes(StandardCharsets.UTF_8);
+            var firstSplitIndex = requestBytes.length / 3;
+            var secondSplitIndex = requestBytes.length * 2 / 3;
+
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes, 0, firstSplitIndex));
+            consumeIntoArray(channel.readInbound());
+            Assertions.assertEquals(0, streamManager.flushCount.get());
+
+            budget.reserveQueuedBytes(budget.getLimitBytes() + 1);
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes, firstSplitIndex,
+                    secondSplitIndex - firstSplitIndex));
+            consumeIntoArray(channel.readInbound());
+            // flushed right away, rather than waiting for the end of the request
+            Assertions.assertEquals(1, streamManager.flushCount.get());
+            Assertions.assertEquals(List.of(TrafficObservation.CaptureCase.READ,
+                            TrafficObservation.CaptureCase.READ),
+                    getLastFlushedCaptureCases(streamManager));
+
+            channel.writeInbound(Unpooled.wrappedBuffer(requestBytes, secondSplitIndex,
+                    requestBytes.length - secondSplitIndex));
+            consumeIntoArray(channel.readInbound());
+            channel.close();
+        }
+    }
+}
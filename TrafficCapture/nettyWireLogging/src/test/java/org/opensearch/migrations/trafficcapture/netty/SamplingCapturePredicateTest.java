@@ -0,0 +1,65 @@
+package org.opensearch.migrations.trafficcapture.netty;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class SamplingCapturePredicateTest {
+
+    private static final int NUM_CONNECTIONS = 10_000;
+
+    private static long countSampledConnections(SamplingCapturePredicate predicate) {
+        return IntStream.range(0, NUM_CONNECTIONS)
+                .filter(i -> predicate.shouldCaptureConnection("connection-" + i)).count();
+    }
+
+    @Test
+    public void connectionSamplingIsStableAndOnlyAddsConnectionsAsTheRateRises() {
+        var predicate = new SamplingCapturePredicate(new RequestCapturePredicate(),
+                SamplingCapturePredicate.SamplingMode.CONNECTION, 0.1);
+        var sampledAtLowRate = countSampledConnections(predicate);
+        Assertions.assertEquals(NUM_CONNECTIONS * 0.1, sampledAtLowRate, NUM_CONNECTIONS * 0.02);
+        Assertions.assertEquals(sampledAtLowRate, countSampledConnections(predicate));
+
+        var lowRateSample = IntStream.range(0, NUM_CONNECTIONS)
+                .filter(i -> predicate.shouldCaptureConnection("connection-" + i)).toArray();
+        predicate.setSamplingRate(0.5);
+        for (var i : lowRateSample) {
+            Assertions.assertTrue(predicate.shouldCaptureConnection("connection-" + i));
+        }
+        Assertions.assertEquals(NUM_CONNECTIONS * 0.5, countSampledConnections(predicate), NUM_CONNECTIONS * 0.02);
+
+        predicate.setSamplingRate(0);
+        Assertions.assertEquals(0, countSampledConnections(predicate));
+        predicate.setSamplingRate(1);
+        Assertions.assertEquals(NUM_CONNECTIONS, countSampledConnections(predicate));
+        Assertions.assertFalse(predicate.requiresDecodedRequests());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> predicate.setSamplingRate(1.5));
+    }
+
+    @Test
+    public void requestSamplingNeverCapturesWhatTheWrappedPredicateDrops() {
+        var predicate = new SamplingCapturePredicate(
+                new HeaderValueFilteringCapturePredicate(List.of(Map.entry("user-agent", "healthcheck"))),
+                SamplingCapturePredicate.SamplingMode.REQUEST, 1.0);
+        Assertions.assertTrue(predicate.requiresDecodedRequests());
+        Assertions.assertTrue(predicate.shouldCaptureConnection("connection-0"));
+
+        var healthCheck = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/", new DefaultHttpHeaders());
+        healthCheck.headers().add("User-Agent", "healthcheck");
+        var search = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/_search",
+                new DefaultHttpHeaders());
+        Assertions.assertEquals(RequestCapturePredicate.CaptureDirective.DROP, predicate.apply(healthCheck));
+        Assertions.assertEquals(RequestCapturePredicate.CaptureDirective.CAPTURE, predicate.apply(search));
+
+        predicate.setSamplingRate(0.0);
+        Assertions.assertEquals(RequestCapturePredicate.CaptureDirective.DROP, predicate.apply(search));
+    }
+}
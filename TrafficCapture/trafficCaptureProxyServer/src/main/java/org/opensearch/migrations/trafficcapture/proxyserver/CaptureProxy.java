@@ -4,9 +4,14 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.OutputStream;
 import lombok.Lombok;
 import lombok.NonNull;
@@ -18,15 +23,31 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.config.SaslConfigs;
 import org.opensearch.common.settings.Settings;
 import org.opensearch.migrations.tracing.RootOtelContext;
+import org.opensearch.migrations.trafficcapture.AsyncConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 import org.opensearch.migrations.trafficcapture.CodedOutputStreamHolder;
 import org.opensearch.migrations.trafficcapture.FileConnectionCaptureFactory;
 import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.ResponseMetadataCaptureFactory;
 import org.opensearch.migrations.trafficcapture.StreamChannelConnectionCaptureSerializer;
 import org.opensearch.migrations.trafficcapture.StreamLifecycleManager;
+import org.opensearch.migrations.trafficcapture.kafkaoffloader.BoundedKafkaSender;
 import org.opensearch.migrations.trafficcapture.kafkaoffloader.KafkaCaptureFactory;
 import org.opensearch.migrations.trafficcapture.netty.HeaderValueFilteringCapturePredicate;
+import org.opensearch.migrations.trafficcapture.netty.RequestCapturePredicate;
+import org.opensearch.migrations.trafficcapture.netty.SamplingCapturePredicate;
+import org.opensearch.migrations.trafficcapture.netty.UnacknowledgedCaptureJournal;
+import org.opensearch.migrations.trafficcapture.protos.CompressionCodec;
 import org.opensearch.migrations.trafficcapture.proxyserver.netty.BacksideConnectionPool;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.BacksideDestinationSelector;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.ExpiringSubstitutableItemPool;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.MultiplexingBacksideConnectionPool;
 import org.opensearch.migrations.trafficcapture.proxyserver.netty.NettyScanningHttpProxy;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.NettyTransport;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.ProxyChannelInitializer;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.ProxySocketOptions;
+import org.opensearch.migrations.trafficcapture.segmentfiles.SegmentFileConnectionCaptureFactory;
+import org.opensearch.migrations.trafficcapture.segmentfiles.TrafficSegmentFiles;
 import org.opensearch.security.ssl.DefaultSecurityKeyStore;
 import org.opensearch.security.ssl.util.SSLConfigConstants;
 
@@ -36,23 +57,28 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Slf4j
 public class CaptureProxy {
 
     private static final String HTTPS_CONFIG_PREFIX = "plugins.security.ssl.http.";
+    private static final Duration SAMPLING_RATE_FILE_CHECK_INTERVAL = Duration.ofSeconds(5);
     public static final String DEFAULT_KAFKA_CLIENT_ID = "HttpCaptureProxyProducer";
 
     public static class Parameters {
@@ -61,6 +87,24 @@ public class CaptureProxy {
                 arity = 1,
                 description = "Directory to store trace files in.")
         public String traceDirectory;
+        @Parameter(required = false,
+                names = {"--segmentFileDirectory"},
+                arity = 1,
+                description = "Directory where TrafficStreams from all connections are appended to rolling segment " +
+                        "files.  The replayer can read this directory directly, without Kafka.")
+        public String segmentFileDirectory;
+        @Parameter(required = false,
+                names = {"--segmentFileMaxBytes"},
+                arity = 1,
+                description = "The size at which a new segment file is started.  This may be at most " +
+                        TrafficSegmentFiles.MAX_SEGMENT_BYTES + " bytes.")
+        public long segmentFileMaxBytes = 256L * 1024 * 1024;
+        @Parameter(required = false,
+                names = {"--segmentFileMaxAge"},
+                arity = 1,
+                description = "How long (as an ISO-8601 duration) a segment file may be appended to before a new " +
+                        "one is started.")
+        public String segmentFileMaxAge = "PT5M";
         @Parameter(required = false,
                 names = {"--noCapture"},
                 arity = 0,
@@ -86,26 +130,160 @@ public class CaptureProxy {
             arity = 0,
             description = "Enables SASL Kafka properties required for connecting to MSK with IAM auth.")
         public boolean mskAuthEnabled = false;
+        @Parameter(required = false,
+                names = {"--kafkaBatchLingerTime"},
+                arity = 1,
+                description = "When set (as an ISO-8601 duration, e.g. PT0.005S), TrafficStreams from different " +
+                        "connections are packed together into shared Kafka records.  A batch is sent once it is " +
+                        "full or once its first TrafficStream has waited this long.  Only replayers that " +
+                        "understand batched records can consume them.")
+        public String kafkaBatchLingerTime;
+        @Parameter(required = false,
+                names = {"--kafkaMaxBatchBytes"},
+                arity = 1,
+                description = "When batching is enabled, the number of bytes at which a batch is sent without " +
+                        "waiting for the linger time.  Defaults to (and is capped by) the maximum record size.")
+        public int kafkaMaxBatchBytes = -1;
+        @Parameter(required = false,
+                names = {"--kafkaSendQueueDepth"},
+                arity = 1,
+                description = "The number of records that may be waiting to be handed to the Kafka producer " +
+                        "before --kafkaSendQueueFullPolicy is applied.")
+        public int kafkaSendQueueDepth = BoundedKafkaSender.DEFAULT_QUEUE_DEPTH;
+        @Parameter(required = false,
+                names = {"--kafkaSendQueueFullPolicy"},
+                arity = 1,
+                description = "What to do when the Kafka send queue backs up.  PAUSE_READS stops connections " +
+                        "from reading from their clients once the queue is 3/4 full, until it has drained to half " +
+                        "full.  DROP discards records that don't fit and counts them, and FAIL fails the capture " +
+                        "for that connection.")
+        public BoundedKafkaSender.QueueFullPolicy kafkaSendQueueFullPolicy =
+                BoundedKafkaSender.QueueFullPolicy.PAUSE_READS;
+        @Parameter(required = false,
+                names = {"--captureCompressionCodec"},
+                arity = 1,
+                description = "Codec used to compress the bytes of captured reads and writes (UNCOMPRESSED or " +
+                        "DEFLATE).  Compressed observations are only written when they are smaller and fit in " +
+                        "one TrafficStream.  Only replayers that understand compressed observations can read them.")
+        public CompressionCodec captureCompressionCodec = CompressionCodec.UNCOMPRESSED;
+        @Parameter(required = false,
+                names = {"--captureResponseMetadataOnly"},
+                arity = 0,
+                description = "Capture only the status line, some headers, the length and the timing of each " +
+                        "response instead of the whole response.  Requests are still captured in full.  Only " +
+                        "replayers that understand response metadata observations can read these captures.")
+        public boolean captureResponseMetadataOnly;
+        @Parameter(required = false,
+                names = {"--captureResponseMetadataHeaders"},
+                description = "With --captureResponseMetadataOnly, the names of the response headers to capture.")
+        public List<String> captureResponseMetadataHeaders =
+                new ArrayList<>(ResponseMetadataCaptureFactory.DEFAULT_HEADERS_TO_KEEP);
+        @Parameter(required = false,
+                names = {"--captureResponseBodyHashes"},
+                arity = 0,
+                description = "With --captureResponseMetadataOnly, also capture a CRC-32C of each response body.")
+        public boolean captureResponseBodyHashes;
+        @Parameter(required = false,
+                names = {"--maxUnacknowledgedCapturedRequests"},
+                arity = 1,
+                description = "When set, mutating requests (POST, PUT, DELETE, PATCH) are forwarded to the " +
+                        "destination without waiting for their capture to be acknowledged.  Once more than this " +
+                        "many of those requests are waiting on acknowledgements, the proxy stops reading new " +
+                        "requests until half of them have been acknowledged.  When this is not set, each " +
+                        "mutating request is held until its capture has been acknowledged.")
+        public int maxUnacknowledgedCapturedRequests = -1;
+        @Parameter(required = false,
+                names = {"--captureSerializerThreads"},
+                arity = 1,
+                description = "When set, captured traffic is handed off to this many threads to be serialized and " +
+                        "offloaded instead of being serialized by the threads that forward the traffic.")
+        public int captureSerializerThreads = 0;
+        @Parameter(required = false,
+                names = {"--captureSerializerQueueSize"},
+                arity = 1,
+                description = "With --captureSerializerThreads, how many capture events each forwarding thread may " +
+                        "have waiting to be serialized before it waits for the serializers.  Must be a power of 2.")
+        public int captureSerializerQueueSize = AsyncConnectionCaptureFactory.DEFAULT_RING_CAPACITY;
         @Parameter(required = false,
                 names = {"--sslConfigFile"},
                 arity = 1,
                 description = "YAML configuration of the HTTPS settings.  When this is not set, the proxy will not use TLS.")
         public String sslConfigFilePath;
+        @Parameter(required = false,
+                names = {"--sslProvider"},
+                arity = 1,
+                description = "The TLS implementation to use for connections to the destination and, when " +
+                        "--sslConfigFile gives a PEM certificate and key (pemcert_filepath and pemkey_filepath), " +
+                        "for client connections.  Either JDK or OPENSSL.  OPENSSL uses netty-tcnative, which is " +
+                        "much cheaper per handshake, and falls back to JDK if it isn't available on this platform.")
+        public SslProvider sslProvider = SslProvider.JDK;
+        @Parameter(required = false,
+                names = {"--sslSessionCacheSize"},
+                arity = 1,
+                description = "How many TLS sessions to keep so that returning connections can resume them rather " +
+                        "than doing a full handshake.  0 keeps the TLS implementation's default.")
+        public long sslSessionCacheSize = 0;
+        @Parameter(required = false,
+                names = {"--sslSessionTimeout"},
+                arity = 1,
+                description = "How long a cached TLS session may be resumed for.  PT0S keeps the TLS " +
+                        "implementation's default.")
+        public String sslSessionTimeout = "PT0S";
         @Parameter(required = false,
                 names = {"--maxTrafficBufferSize"},
                 arity = 1,
                 description = "The maximum number of bytes that will be written to a single TrafficStream object.")
         public int maximumTrafficStreamSize = 1024*1024;
+        @Parameter(required = false,
+                names = {"--captureMemoryBudget"},
+                arity = 1,
+                description = "The most bytes that all connections together may hold for capture that hasn't been " +
+                        "offloaded yet (TrafficStream buffers and Kafka records waiting to be sent).  When this " +
+                        "isn't positive, only --maxTrafficBufferSize bounds each connection.  Only Kafka " +
+                        "offloading is accounted for.")
+        public long captureMemoryBudgetBytes = 0;
+        @Parameter(required = false,
+                names = {"--captureMemoryOverBudgetPolicy"},
+                arity = 1,
+                description = "What connections do while --captureMemoryBudget is exceeded.  FLUSH_LARGEST " +
+                        "offloads the larger buffers early, SUPPRESS_CAPTURE stops capturing requests (marking " +
+                        "any that were cut short as dropped) and PAUSE_READS stops reading from clients.")
+        public CaptureMemoryBudget.OverBudgetPolicy captureMemoryOverBudgetPolicy =
+                CaptureMemoryBudget.OverBudgetPolicy.FLUSH_LARGEST;
         @Parameter(required = false,
             names = {"--insecureDestination"},
             arity = 0,
             description = "Do not check the destination server's certificate")
         public boolean allowInsecureConnectionsToBackside;
-        @Parameter(required = true,
+        @Parameter(required = false,
                 names = {"--destinationUri"},
                 arity = 1,
-                description = "URI of the server that the proxy is capturing traffic for.")
-        public String backsideUriString;
+                description = "URI of the server that the proxy is capturing traffic for.  This may be repeated " +
+                        "to spread connections over several servers (e.g. the coordinating nodes of a cluster), " +
+                        "all of which must use the same scheme.")
+        public List<String> backsideUriStrings = new ArrayList<>();
+        @Parameter(required = false,
+                names = {"--destinationsFile"},
+                arity = 1,
+                description = "A file of destination URIs, one per line, to use instead of --destinationUri.  The " +
+                        "file is reloaded whenever it changes.")
+        public String destinationsFile;
+        @Parameter(required = false,
+                names = {"--destinationsFileCheckInterval"},
+                arity = 1,
+                description = "How often to check --destinationsFile for changes.")
+        public String destinationsFileCheckInterval = "PT5S";
+        @Parameter(required = false,
+                names = {"--destinationFailuresBeforeEjection"},
+                arity = 1,
+                description = "How many connection attempts in a row to a destination must fail before it's " +
+                        "taken out of the rotation.")
+        public int destinationFailuresBeforeEjection = BacksideDestinationSelector.DEFAULT_FAILURES_BEFORE_EJECTION;
+        @Parameter(required = false,
+                names = {"--destinationEjectionTime"},
+                arity = 1,
+                description = "How long a failing destination is taken out of the rotation for.")
+        public String destinationEjectionTime = BacksideDestinationSelector.DEFAULT_EJECTION_TIME.toString();
         @Parameter(required = true,
                 names = {"--listenPort"},
                 arity = 1,
@@ -116,6 +294,50 @@ public class CaptureProxy {
                 arity = 1,
                 description = "How many threads netty should create in its event loop group")
         public int numThreads = 1;
+        @Parameter(required = false,
+                names = {"--transport"},
+                arity = 1,
+                description = "The socket implementation for netty to use (NIO, EPOLL or IO_URING).  EPOLL is " +
+                        "only available on Linux and IO_URING also requires the netty io_uring incubator jar to " +
+                        "be on the classpath.  When the requested transport isn't available, the proxy falls " +
+                        "back to the next one in the order IO_URING, EPOLL, NIO.")
+        public NettyTransport transport = NettyTransport.NIO;
+        @Parameter(required = false,
+                names = {"--numAcceptThreads"},
+                arity = 1,
+                description = "How many sockets to listen on, each with its own accepting thread.  When this is " +
+                        "more than 1, the sockets are bound with SO_REUSEPORT so that the kernel spreads new " +
+                        "connections across them.")
+        public int numAcceptThreads = 1;
+        @Parameter(required = false,
+                names = {"--tcpNoDelay"},
+                arity = 1,
+                description = "Whether to disable Nagle's algorithm (TCP_NODELAY) for client and destination " +
+                        "connections.")
+        public boolean tcpNoDelay = ProxySocketOptions.DEFAULT.isTcpNoDelay();
+        @Parameter(required = false,
+                names = {"--socketReceiveBufferSize"},
+                arity = 1,
+                description = "SO_RCVBUF for client and destination connections.  When this isn't positive, " +
+                        "the OS default is used.")
+        public int socketReceiveBufferSize = ProxySocketOptions.DEFAULT.getReceiveBufferSize();
+        @Parameter(required = false,
+                names = {"--socketSendBufferSize"},
+                arity = 1,
+                description = "SO_SNDBUF for client and destination connections.  When this isn't positive, " +
+                        "the OS default is used.")
+        public int socketSendBufferSize = ProxySocketOptions.DEFAULT.getSendBufferSize();
+        @Parameter(required = false,
+                names = {"--writeBufferLowWaterMark"},
+                arity = 1,
+                description = "Once a connection's pending writes have exceeded the high water mark, the number " +
+                        "of bytes that they must drop below before the connection is writable again.")
+        public int writeBufferLowWaterMark = ProxySocketOptions.DEFAULT.getWriteBufferLowWaterMark();
+        @Parameter(required = false,
+                names = {"--writeBufferHighWaterMark"},
+                arity = 1,
+                description = "The number of bytes of pending writes at which a connection stops being writable.")
+        public int writeBufferHighWaterMark = ProxySocketOptions.DEFAULT.getWriteBufferHighWaterMark();
         @Parameter(required = false,
         names = {"--destinationConnectionPoolSize"},
         arity = 1,
@@ -130,6 +352,39 @@ public class CaptureProxy {
                         "how long after connection should the be recycled " +
                         "(closed with a new connection taking its place)")
         public String destinationConnectionPoolTimeout = "PT30S";
+        @Parameter(required = false,
+                names = {"--maxAdaptiveDestinationConnectionPoolSize"},
+                arity = 1,
+                description = "When set, each thread's destination connection pool is resized according to how " +
+                        "quickly new connections are being requested and how long they take to establish, " +
+                        "between destinationConnectionPoolSize and this many connections.")
+        public int maxAdaptiveDestinationConnectionPoolSize = 0;
+        @Parameter(required = false,
+                names = {"--adaptiveDestinationConnectionPoolInterval"},
+                arity = 1,
+                description = "With --maxAdaptiveDestinationConnectionPoolSize, how often each thread's " +
+                        "destination connection pool is resized.")
+        public String adaptiveDestinationConnectionPoolInterval = "PT1S";
+        @Parameter(required = false,
+                names = {"--multiplexedDestinationConnectionsPerThread"},
+                arity = 1,
+                description = "When set, client connections no longer each get their own connection to the " +
+                        "destination.  Instead, complete requests are sent over up to this many keep-alive " +
+                        "connections for each thread, which are shared by all of that thread's clients.")
+        public int multiplexedDestinationConnectionsPerThread = 0;
+        @Parameter(required = false,
+                names = {"--maxPipelinedRequestsPerDestinationConnection"},
+                arity = 1,
+                description = "With --multiplexedDestinationConnectionsPerThread, how many requests may be " +
+                        "outstanding on one destination connection.  1 disables pipelining, so requests wait for " +
+                        "a free connection once every connection is busy.")
+        public int maxPipelinedRequestsPerDestinationConnection = 1;
+        @Parameter(required = false,
+                names = {"--maxMultiplexedRequestBytes"},
+                arity = 1,
+                description = "With --multiplexedDestinationConnectionsPerThread, the largest request body that " +
+                        "the proxy will buffer before sending a request.  Larger requests are rejected with a 413.")
+        public int maxMultiplexedRequestBytes = 100 * 1024 * 1024;
         @Parameter(required = false,
         names = {"--otelCollectorEndpoint"},
         arity = 1,
@@ -141,8 +396,29 @@ public class CaptureProxy {
                 arity = 2,
                 description = "The header name (which will be interpreted in a case-insensitive manner) and a regex " +
                         "pattern.  When the incoming request has a header that matches the regex, it will be passed " +
-                        "through to the service but will NOT be captured.  E.g. user-agent 'healthcheck'.")
+                        "through to the service but will NOT be captured.  E.g. user-agent 'healthcheck'.  This " +
+                        "may be repeated, including with the same header name.")
         public List<String> suppressCaptureHeaderPairs = new ArrayList<>();
+        @Parameter(required = false,
+                names = {"--captureSamplingRate"},
+                arity = 1,
+                description = "The fraction of traffic, from 0 to 1, to capture.  Traffic that isn't sampled is " +
+                        "still forwarded.")
+        public double captureSamplingRate = 1.0;
+        @Parameter(required = false,
+                names = {"--captureSamplingMode"},
+                arity = 1,
+                description = "CONNECTION samples whole connections by a hash of their id, which keeps sessions " +
+                        "intact and makes unsampled connections almost free.  REQUEST samples requests at random.")
+        public SamplingCapturePredicate.SamplingMode captureSamplingMode =
+                SamplingCapturePredicate.SamplingMode.CONNECTION;
+        @Parameter(required = false,
+                names = {"--captureSamplingRateFile"},
+                arity = 1,
+                description = "A file holding the capture sampling rate, which is checked every few seconds so that " +
+                        "the rate can be changed while the proxy is running.  It overrides --captureSamplingRate " +
+                        "once it's been read.")
+        public String captureSamplingRateFile;
     }
 
     static Parameters parseArgs(String[] args) {
@@ -151,10 +427,21 @@ public class CaptureProxy {
         try {
             jCommander.parse(args);
             // Exactly one these 3 options are required.  See that exactly one is set by summing up their presence
-            if (Stream.of(p.traceDirectory, p.kafkaConnection, (p.noCapture?"":null))
+            if (Stream.of(p.traceDirectory, p.segmentFileDirectory, p.kafkaConnection, (p.noCapture?"":null))
                     .mapToInt(s->s!=null?1:0).sum() != 1) {
-                throw new ParameterException("Expected exactly one of '--traceDirectory', '--kafkaConnection', or " +
-                    "'--noCapture' to be set");
+                throw new ParameterException("Expected exactly one of '--traceDirectory', " +
+                    "'--segmentFileDirectory', '--kafkaConnection', or '--noCapture' to be set");
+            }
+            if (p.backsideUriStrings.isEmpty() == (p.destinationsFile == null)) {
+                throw new ParameterException("Expected either '--destinationUri' or '--destinationsFile' to be set");
+            }
+            if (p.sslProvider != SslProvider.JDK && p.sslProvider != SslProvider.OPENSSL) {
+                throw new ParameterException("Expected '--sslProvider' to be " + SslProvider.JDK + " or " +
+                        SslProvider.OPENSSL);
+            }
+            if (p.segmentFileMaxBytes <= 0 || p.segmentFileMaxBytes > TrafficSegmentFiles.MAX_SEGMENT_BYTES) {
+                throw new ParameterException("Expected '--segmentFileMaxBytes' to be positive and no more than " +
+                        TrafficSegmentFiles.MAX_SEGMENT_BYTES);
             }
             return p;
         } catch (ParameterException e) {
@@ -247,14 +534,28 @@ public class CaptureProxy {
     }
 
     protected static IConnectionCaptureFactory
-    getConnectionCaptureFactory(Parameters params, RootCaptureContext rootContext) throws IOException {
+    getConnectionCaptureFactory(Parameters params, RootCaptureContext rootContext,
+                                CaptureMemoryBudget captureMemoryBudget) throws IOException {
         var nodeId = getNodeId();
         // Resist the urge for now though until it comes in as a request/need.
         if (params.traceDirectory != null) {
             return new FileConnectionCaptureFactory(nodeId, params.traceDirectory, params.maximumTrafficStreamSize);
+        } else if (params.segmentFileDirectory != null) {
+            return new SegmentFileConnectionCaptureFactory(nodeId, Paths.get(params.segmentFileDirectory),
+                    params.maximumTrafficStreamSize, params.segmentFileMaxBytes,
+                    Duration.parse(params.segmentFileMaxAge));
         } else if (params.kafkaConnection != null) {
-            return new KafkaCaptureFactory(rootContext,
-                    nodeId, new KafkaProducer<>(buildKafkaProperties(params)), params.maximumTrafficStreamSize);
+            var batchLingerTime = Optional.ofNullable(params.kafkaBatchLingerTime).map(Duration::parse).orElse(null);
+            var sender = new BoundedKafkaSender<String, byte[]>(rootContext,
+                    new KafkaProducer<>(buildKafkaProperties(params)), params.kafkaSendQueueDepth,
+                    params.kafkaSendQueueFullPolicy);
+            return new KafkaCaptureFactory(rootContext, nodeId, sender, params.maximumTrafficStreamSize,
+                    KafkaCaptureFactory.Options.builder()
+                            .batchLingerTime(batchLingerTime)
+                            .maxBatchBytes(params.kafkaMaxBatchBytes)
+                            .dataCompressionCodec(params.captureCompressionCodec)
+                            .memoryBudget(captureMemoryBudget)
+                            .build());
         } else if (params.noCapture) {
             return getNullConnectionCaptureFactory();
         } else {
@@ -286,11 +587,133 @@ public class CaptureProxy {
         return serverUri;
     }
 
-    protected static SslContext loadBacksideSslContext(URI serverUri, boolean allowInsecureConnections) throws
-        SSLException {
+    protected static RequestCapturePredicate getRequestCapturePredicate(Parameters params) {
+        var headerCapturePredicate = params.suppressCaptureHeaderPairs.isEmpty() ? new RequestCapturePredicate() :
+                new HeaderValueFilteringCapturePredicate(
+                        convertPairListToEntries(params.suppressCaptureHeaderPairs));
+        if (params.captureSamplingRate >= 1.0 && params.captureSamplingRateFile == null) {
+            return headerCapturePredicate;
+        }
+        var samplingPredicate = new SamplingCapturePredicate(headerCapturePredicate, params.captureSamplingMode,
+                params.captureSamplingRate);
+        if (params.captureSamplingRateFile != null) {
+            watchSamplingRateFile(samplingPredicate, Paths.get(params.captureSamplingRateFile));
+        }
+        return samplingPredicate;
+    }
+
+    private static void watchSamplingRateFile(SamplingCapturePredicate samplingPredicate, Path rateFile) {
+        var watcher = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("samplingRateFile", true));
+        watcher.scheduleWithFixedDelay(() -> {
+            try {
+                var rate = Double.parseDouble(Files.readString(rateFile).trim());
+                if (rate != samplingPredicate.getSamplingRate()) {
+                    samplingPredicate.setSamplingRate(rate);
+                    log.atInfo().setMessage(() -> "Capture sampling rate is now " + rate).log();
+                }
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage(() -> "Keeping the capture sampling rate at " +
+                        samplingPredicate.getSamplingRate() + " since " + rateFile + " couldn't be read").log();
+            }
+        }, 0, SAMPLING_RATE_FILE_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    protected static BacksideDestinationSelector getDestinationSelector(Parameters params) throws IOException {
+        var ejectionTime = Duration.parse(params.destinationEjectionTime);
+        if (params.destinationsFile != null) {
+            var destinationsFile = Paths.get(params.destinationsFile);
+            var selector = new BacksideDestinationSelector(
+                    BacksideDestinationSelector.readDestinationsFile(destinationsFile),
+                    params.destinationFailuresBeforeEjection, ejectionTime);
+            selector.watchDestinationsFile(destinationsFile, Duration.parse(params.destinationsFileCheckInterval));
+            return selector;
+        }
+        var destinations = params.backsideUriStrings.stream()
+                .map(CaptureProxy::convertStringToUri)
+                .collect(Collectors.toList());
+        return new BacksideDestinationSelector(destinations, params.destinationFailuresBeforeEjection, ejectionTime);
+    }
+
+    protected static SslProvider resolveSslProvider(SslProvider requested) {
+        if (SslProvider.isAvailable(requested)) {
+            return requested;
+        }
+        log.atWarn().setCause(OpenSsl.unavailabilityCause())
+                .setMessage(() -> requested + " TLS is not available, falling back to " + SslProvider.JDK).log();
+        return SslProvider.JDK;
+    }
+
+    private static SslContextBuilder applySessionSettings(SslContextBuilder builder, Parameters params) {
+        return builder
+                .sessionCacheSize(params.sslSessionCacheSize)
+                .sessionTimeout(Duration.parse(params.sslSessionTimeout).toSeconds());
+    }
+
+    /**
+     * The OpenSearch security plugin only builds JDK engines on current JVMs, so when a native provider is
+     * requested and the certificate and key are PEM files, the context is built here instead, from the same
+     * client auth mode, trusted CAs, protocols and ciphers that the plugin would have used.  Keystore
+     * configurations are still handled by the plugin.  Either way, sessions are cached by the one context that
+     * every engine comes from, so clients can resume them.
+     */
+    protected static Supplier<SSLEngine> getFrontsideSslEngineSupplier(Parameters params, SslProvider sslProvider)
+            throws SSLException {
+        if (params.sslConfigFilePath == null) {
+            return null;
+        }
+        var settings = getSettings(params.sslConfigFilePath);
+        var configDirectory = Paths.get(params.sslConfigFilePath).toAbsolutePath().getParent();
+        if (sslProvider != SslProvider.JDK) {
+            var pemCertPath = settings.get(HTTPS_CONFIG_PREFIX + "pemcert_filepath");
+            var pemKeyPath = settings.get(HTTPS_CONFIG_PREFIX + "pemkey_filepath");
+            if (pemCertPath != null && pemKeyPath != null) {
+                var sslContextBuilder = applySessionSettings(SslContextBuilder.forServer(
+                        configDirectory.resolve(pemCertPath).toFile(),
+                        configDirectory.resolve(pemKeyPath).toFile(),
+                        settings.get(HTTPS_CONFIG_PREFIX + "pemkey_password")), params)
+                        .sslProvider(sslProvider)
+                        // the security plugin's default
+                        .clientAuth(ClientAuth.valueOf(settings.get(HTTPS_CONFIG_PREFIX + "clientauth_mode",
+                                ClientAuth.OPTIONAL.name()).toUpperCase(Locale.ROOT)));
+                var trustedCasPath = settings.get(HTTPS_CONFIG_PREFIX + "pemtrustedcas_filepath");
+                if (trustedCasPath != null) {
+                    sslContextBuilder.trustManager(configDirectory.resolve(trustedCasPath).toFile());
+                }
+                var enabledProtocols = settings.getAsList(HTTPS_CONFIG_PREFIX + "enabled_protocols");
+                if (!enabledProtocols.isEmpty()) {
+                    sslContextBuilder.protocols(enabledProtocols);
+                }
+                var enabledCiphers = settings.getAsList(HTTPS_CONFIG_PREFIX + "enabled_ciphers");
+                if (!enabledCiphers.isEmpty()) {
+                    sslContextBuilder.ciphers(enabledCiphers);
+                }
+                var sslContext = sslContextBuilder.build();
+                return () -> sslContext.newEngine(ByteBufAllocator.DEFAULT);
+            }
+            log.atWarn().setMessage(() -> "Client connections will use the JDK's TLS since " + sslProvider +
+                    " is only supported for PEM certificates and keys").log();
+        }
+        var sks = new DefaultSecurityKeyStore(settings, configDirectory);
+        sks.initHttpSSLConfig();
+        return () -> {
+            try {
+                return sks.createHTTPSSLEngine();
+            } catch (Exception e) {
+                throw Lombok.sneakyThrow(e);
+            }
+        };
+    }
+
+    /**
+     * Connections to the destination resume their previous sessions as long as engines are created for the
+     * destination's host and port, which is how BacksideConnectionPool creates them.
+     */
+    protected static SslContext loadBacksideSslContext(URI serverUri, Parameters params, SslProvider sslProvider)
+            throws SSLException {
         if (serverUri.getScheme().equalsIgnoreCase("https")) {
-            var sslContextBuilder = SslContextBuilder.forClient();
-            if (allowInsecureConnections) {
+            var sslContextBuilder = applySessionSettings(SslContextBuilder.forClient(), params)
+                    .sslProvider(sslProvider);
+            if (params.allowInsecureConnectionsToBackside) {
                 sslContextBuilder.trustManager(InsecureTrustManagerFactory.INSTANCE);
             }
             return sslContextBuilder.build();
@@ -299,12 +722,12 @@ public class CaptureProxy {
         }
     }
 
-    protected static Map<String, String> convertPairListToMap(List<String> list) {
-        var map = new TreeMap<String, String>();
+    protected static List<Map.Entry<String, String>> convertPairListToEntries(List<String> list) {
+        var entries = new ArrayList<Map.Entry<String, String>>();
         for (int i=0; i<list.size(); i+=2) {
-            map.put(list.get(i), list.get(i+1));
+            entries.add(Map.entry(list.get(i), list.get(i+1)));
         }
-        return map;
+        return entries;
     }
 
     public static void main(String[] args) throws InterruptedException, IOException {
@@ -312,46 +735,87 @@ public class CaptureProxy {
         System.err.println("Got args: "+ String.join("; ", args));
 
         var params = parseArgs(args);
-        var backsideUri = convertStringToUri(params.backsideUriString);
+        var destinationSelector = getDestinationSelector(params);
+        var backsideUri = destinationSelector.getDestinations().get(0).getUri();
 
         var rootContext = new RootCaptureContext(
                 RootOtelContext.initializeOpenTelemetryWithCollectorOrAsNoop(params.otelCollectorEndpoint, "capture"));
 
-        var sksOp = Optional.ofNullable(params.sslConfigFilePath)
-                .map(sslConfigFile->new DefaultSecurityKeyStore(getSettings(sslConfigFile),
-                        Paths.get(sslConfigFile).toAbsolutePath().getParent()));
-
-        sksOp.ifPresent(DefaultSecurityKeyStore::initHttpSSLConfig);
-        var proxy = new NettyScanningHttpProxy(params.frontsidePort);
+        var sslProvider = resolveSslProvider(params.sslProvider);
+        var sslEngineSupplier = getFrontsideSslEngineSupplier(params, sslProvider);
+        var transport = NettyTransport.resolve(params.transport);
+        var socketOptions = new ProxySocketOptions(params.tcpNoDelay, params.socketReceiveBufferSize,
+                params.socketSendBufferSize, params.writeBufferLowWaterMark, params.writeBufferHighWaterMark);
+        var proxy = new NettyScanningHttpProxy(params.frontsidePort, transport, socketOptions,
+                params.numAcceptThreads);
+        AsyncConnectionCaptureFactory<Object> asyncCaptureFactory = null;
+        IConnectionCaptureFactory<Object> underlyingCaptureFactory = null;
         try {
-            var pooledConnectionTimeout = params.destinationConnectionPoolSize == 0 ? Duration.ZERO :
+            var adaptiveSizingPolicy = params.maxAdaptiveDestinationConnectionPoolSize <= 0 ? null :
+                    new ExpiringSubstitutableItemPool.AdaptiveSizingPolicy(params.destinationConnectionPoolSize,
+                            params.maxAdaptiveDestinationConnectionPoolSize,
+                            Duration.parse(params.adaptiveDestinationConnectionPoolInterval));
+            var pooledConnectionTimeout =
+                    params.destinationConnectionPoolSize == 0 && adaptiveSizingPolicy == null ? Duration.ZERO :
                     Duration.parse(params.destinationConnectionPoolTimeout);
-            var backsideConnectionPool = new BacksideConnectionPool(backsideUri,
-                    loadBacksideSslContext(backsideUri, params.allowInsecureConnectionsToBackside),
-                    params.destinationConnectionPoolSize, pooledConnectionTimeout);
-            Supplier<SSLEngine> sslEngineSupplier = sksOp.map(sks -> (Supplier<SSLEngine>) () -> {
-                try {
-                    return sks.createHTTPSSLEngine();
-                } catch (Exception e) {
-                    throw Lombok.sneakyThrow(e);
-                }
-            }).orElse(null);
-            var headerCapturePredicate =
-                    new HeaderValueFilteringCapturePredicate(convertPairListToMap(params.suppressCaptureHeaderPairs));
-            proxy.start(rootContext, backsideConnectionPool, params.numThreads, sslEngineSupplier,
-                    getConnectionCaptureFactory(params, rootContext), headerCapturePredicate);
+            var backsideConnectionPool = new BacksideConnectionPool(destinationSelector,
+                    loadBacksideSslContext(backsideUri, params, sslProvider),
+                    params.destinationConnectionPoolSize, pooledConnectionTimeout, transport, socketOptions,
+                    adaptiveSizingPolicy, rootContext);
+            var multiplexingConnectionPool = params.multiplexedDestinationConnectionsPerThread <= 0 ? null :
+                    new MultiplexingBacksideConnectionPool(backsideConnectionPool,
+                            params.multiplexedDestinationConnectionsPerThread,
+                            params.maxPipelinedRequestsPerDestinationConnection, params.maxMultiplexedRequestBytes);
+            var headerCapturePredicate = getRequestCapturePredicate(params);
+            var unacknowledgedCaptureJournal = params.maxUnacknowledgedCapturedRequests <= 0 ? null :
+                    new UnacknowledgedCaptureJournal(rootContext, params.maxUnacknowledgedCapturedRequests);
+            var captureMemoryBudget = params.captureMemoryBudgetBytes <= 0 ? null :
+                    new CaptureMemoryBudget(params.captureMemoryBudgetBytes, params.captureMemoryOverBudgetPolicy);
+            if (captureMemoryBudget != null) {
+                rootContext.addCaptureMemoryBudgetGauges(captureMemoryBudget);
+            }
+            IConnectionCaptureFactory<Object> connectionCaptureFactory = underlyingCaptureFactory =
+                    getConnectionCaptureFactory(params, rootContext, captureMemoryBudget);
+            if (params.captureResponseMetadataOnly) {
+                connectionCaptureFactory = new ResponseMetadataCaptureFactory<>(connectionCaptureFactory,
+                        params.captureResponseMetadataHeaders, params.captureResponseBodyHashes);
+            }
+            if (params.captureSerializerThreads > 0) {
+                connectionCaptureFactory = asyncCaptureFactory = new AsyncConnectionCaptureFactory<>(
+                        connectionCaptureFactory, params.captureSerializerThreads,
+                        params.captureSerializerQueueSize);
+            }
+            proxy.start(rootContext, backsideConnectionPool, params.numThreads, connectionCaptureFactory,
+                    headerCapturePredicate, ProxyChannelInitializer.Options.builder()
+                            .sslEngineSupplier(sslEngineSupplier)
+                            .unacknowledgedCaptureJournal(unacknowledgedCaptureJournal)
+                            .multiplexingBacksideConnectionPool(multiplexingConnectionPool)
+                            .captureMemoryBudget(captureMemoryBudget)
+                            .build());
         } catch (Exception e) {
             log.atError().setCause(e).setMessage("Caught exception while setting up the server and rethrowing").log();
             throw e;
         }
+        final var asyncCaptureFactoryToClose = asyncCaptureFactory;
+        final var underlyingCaptureFactoryToClose = underlyingCaptureFactory;
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 System.err.println("Received shutdown signal.  Trying to shutdown cleanly");
                 proxy.stop();
+                destinationSelector.close();
+                if (asyncCaptureFactoryToClose != null) {
+                    asyncCaptureFactoryToClose.close();
+                }
+                // after the serializer threads have drained, so that everything they wrote still gets offloaded
+                if (underlyingCaptureFactoryToClose instanceof AutoCloseable) {
+                    ((AutoCloseable) underlyingCaptureFactoryToClose).close();
+                }
                 System.err.println("Done stopping the proxy.");
             } catch (InterruptedException e) {
                 System.err.println("Caught InterruptedException while shutting down, resetting interrupt status: "+e);
                 Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("Caught exception while closing the capture offloader: "+e);
             }
         }));
         // This loop just gives the main() function something to do while the netty event loops
@@ -6,12 +6,16 @@ import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.IRootKafk
 import org.opensearch.migrations.trafficcapture.kafkaoffloader.tracing.KafkaRecordContext;
 import org.opensearch.migrations.trafficcapture.netty.tracing.RootWireLoggingContext;
 import org.opensearch.migrations.trafficcapture.netty.tracing.WireCaptureContexts;
+import org.opensearch.migrations.trafficcapture.proxyserver.netty.IRootBacksideConnectionPoolContext;
 
-public class RootCaptureContext extends RootWireLoggingContext implements IRootKafkaOffloaderContext {
+public class RootCaptureContext extends RootWireLoggingContext
+        implements IRootKafkaOffloaderContext, IRootBacksideConnectionPoolContext {
 
     public static final String SCOPE_NAME = "captureProxy";
     @Getter
     public final KafkaRecordContext.MetricInstruments kafkaOffloadingInstruments;
+    @Getter
+    public final IRootBacksideConnectionPoolContext.MetricInstruments backsideConnectionPoolInstruments;
 
     public RootCaptureContext(OpenTelemetry openTelemetry) {
         this(openTelemetry, SCOPE_NAME);
@@ -21,5 +25,6 @@ public class RootCaptureContext extends RootWireLoggingContext implements IRootK
         super(openTelemetry, scopeName);
         var meter = this.getMeterProvider().get(scopeName);
         kafkaOffloadingInstruments = KafkaRecordContext.makeMetrics(meter);
+        backsideConnectionPoolInstruments = IRootBacksideConnectionPoolContext.makeMetrics(meter);
     }
 }
@@ -1,6 +1,5 @@
 package org.opensearch.migrations.trafficcapture.proxyserver.netty;
 
-import io.netty.channel.socket.nio.NioSocketChannel;
 import org.slf4j.event.Level;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelDuplexHandler;
@@ -12,24 +11,60 @@ import io.netty.channel.EventLoop;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.concurrent.FastThreadLocal;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.net.ssl.SSLEngine;
 import java.net.URI;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class BacksideConnectionPool {
-    private final URI backsideUri;
+    private static final Duration POOL_METRICS_INTERVAL = Duration.ofSeconds(5);
+
+    private final BacksideDestinationSelector destinations;
     private final SslContext backsideSslContext;
     private final FastThreadLocal<ExpiringSubstitutableItemPool<ChannelFuture, Void>> connectionCacheForEachThread;
     private final Duration inactivityTimeout;
     private final int poolSize;
+    private final NettyTransport transport;
+    private final ProxySocketOptions socketOptions;
+    private final ExpiringSubstitutableItemPool.AdaptiveSizingPolicy adaptiveSizingPolicy;
+    private final IRootBacksideConnectionPoolContext rootContext;
 
     public BacksideConnectionPool(URI backsideUri, SslContext backsideSslContext,
                                   int poolSize, Duration inactivityTimeout) {
-        this.backsideUri = backsideUri;
+        this(backsideUri, backsideSslContext, poolSize, inactivityTimeout,
+                NettyTransport.NIO, ProxySocketOptions.DEFAULT);
+    }
+
+    /**
+     * @param transport must be the transport of the event loops that connections are requested for
+     */
+    public BacksideConnectionPool(URI backsideUri, SslContext backsideSslContext,
+                                  int poolSize, Duration inactivityTimeout,
+                                  @NonNull NettyTransport transport, @NonNull ProxySocketOptions socketOptions) {
+        this(new BacksideDestinationSelector(backsideUri), backsideSslContext, poolSize, inactivityTimeout,
+                transport, socketOptions, null, null);
+    }
+
+    /**
+     * @param adaptiveSizingPolicy when non-null, each event loop's pool starts with poolSize connections and is
+     *                             then resized to match how quickly that event loop is asking for connections
+     * @param rootContext when non-null, connection latencies and the activity of the pools are metered to it
+     */
+    public BacksideConnectionPool(@NonNull BacksideDestinationSelector destinations, SslContext backsideSslContext,
+                                  int poolSize, Duration inactivityTimeout,
+                                  @NonNull NettyTransport transport, @NonNull ProxySocketOptions socketOptions,
+                                  ExpiringSubstitutableItemPool.AdaptiveSizingPolicy adaptiveSizingPolicy,
+                                  IRootBacksideConnectionPoolContext rootContext) {
+        this.transport = transport;
+        this.adaptiveSizingPolicy = adaptiveSizingPolicy;
+        this.rootContext = rootContext;
+        this.socketOptions = socketOptions;
+        this.destinations = destinations;
         this.backsideSslContext = backsideSslContext;
         this.connectionCacheForEachThread = new FastThreadLocal<>();
         this.inactivityTimeout = inactivityTimeout;
@@ -37,7 +72,7 @@ public class BacksideConnectionPool {
     }
 
     public ChannelFuture getOutboundConnectionFuture(EventLoop eventLoop) {
-        if (poolSize == 0) {
+        if (poolSize == 0 && adaptiveSizingPolicy == null) {
             return buildConnectionFuture(eventLoop);
         }
         return getExpiringWarmChannelPool(eventLoop).getAvailableOrNewItem();
@@ -52,10 +87,17 @@ public class BacksideConnectionPool {
                             eventLoop,
                             () -> buildConnectionFuture(eventLoop),
                             x->x.channel().close(), poolSize, Duration.ZERO);
+            if (adaptiveSizingPolicy != null) {
+                thisContextsConnectionCache.enableAdaptiveSizing(adaptiveSizingPolicy);
+            }
             if (log.isInfoEnabled()) {
                 logProgressAtInterval(Level.INFO, eventLoop,
                         thisContextsConnectionCache, Duration.ofSeconds(30));
             }
+            if (rootContext != null) {
+                meterPoolStatsAtInterval(eventLoop, thisContextsConnectionCache,
+                        new ExpiringSubstitutableItemPool.Stats());
+            }
             connectionCacheForEachThread.set(thisContextsConnectionCache);
         }
 
@@ -71,22 +113,69 @@ public class BacksideConnectionPool {
         }, frequency.toMillis(), TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Reports what changed in a pool since its previous report.  This runs on the pool's event loop.
+     */
+    private void meterPoolStatsAtInterval(EventLoop eventLoop,
+                                          ExpiringSubstitutableItemPool<ChannelFuture, Void> channelPool,
+                                          ExpiringSubstitutableItemPool.Stats previousStats) {
+        eventLoop.schedule(() -> {
+            var stats = channelPool.getStats();
+            var instruments = rootContext.getBacksideConnectionPoolInstruments();
+            rootContext.meterIncrementEvent(instruments.poolHitsCounter,
+                    stats.getNHotGets() - previousStats.getNHotGets());
+            rootContext.meterIncrementEvent(instruments.poolMissesCounter,
+                    stats.getNColdGets() - previousStats.getNColdGets());
+            rootContext.meterIncrementEvent(instruments.poolExpiredCounter,
+                    stats.getNItemsExpired() - previousStats.getNItemsExpired());
+            rootContext.meterIncrementEvent(instruments.poolShedCounter,
+                    stats.getNItemsShed() - previousStats.getNItemsShed());
+            rootContext.meterDeltaEvent(instruments.poolSize, stats.getPoolSize() - previousStats.getPoolSize());
+            meterPoolStatsAtInterval(eventLoop, channelPool, stats);
+        }, POOL_METRICS_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
     private ChannelFuture buildConnectionFuture(EventLoop eventLoop) {
         // Start the connection attempt.
         Bootstrap b = new Bootstrap();
         b.group(eventLoop)
-                .channel(NioSocketChannel.class)
+                .channel(transport.getSocketChannelClass())
                 .handler(new ChannelDuplexHandler())
                 .option(ChannelOption.AUTO_READ, false);
-        var f = b.connect(backsideUri.getHost(), backsideUri.getPort());
+        socketOptions.applyTo(b);
+        var destination = destinations.select();
+        var startTime = Instant.now();
+        var f = b.connect(destination.getUri().getHost(), destination.getUri().getPort());
+        destination.onConnectionOpening();
+        f.channel().closeFuture().addListener(closeFuture -> destination.onConnectionClosed());
         var rval = new DefaultChannelPromise(f.channel());
+        rval.addListener(connectedFuture -> {
+            var instruments = rootContext == null ? null : rootContext.getBacksideConnectionPoolInstruments();
+            if (connectedFuture.isSuccess()) {
+                var latency = Duration.between(startTime, Instant.now());
+                destinations.onConnected(destination, latency);
+                if (instruments != null) {
+                    rootContext.meterHistogramMillis(instruments.connectLatency, latency);
+                }
+            } else {
+                var ejected = destinations.onConnectFailed(destination);
+                if (instruments != null) {
+                    rootContext.meterIncrementEvent(instruments.connectFailuresCounter);
+                    if (ejected) {
+                        rootContext.meterIncrementEvent(instruments.destinationEjectionsCounter);
+                    }
+                }
+            }
+        });
         f.addListener((ChannelFutureListener) connectFuture -> {
             if (connectFuture.isSuccess()) {
                 // connection complete start to read first data
                 log.debug("Done setting up backend channel & it was successful (" + connectFuture.channel() + ")");
                 if (backsideSslContext != null) {
                     var pipeline = connectFuture.channel().pipeline();
-                    SSLEngine sslEngine = backsideSslContext.newEngine(connectFuture.channel().alloc());
+                    // sessions are cached per peer, so naming the peer is what lets this resume an earlier session
+                    SSLEngine sslEngine = backsideSslContext.newEngine(connectFuture.channel().alloc(),
+                            destination.getUri().getHost(), destination.getUri().getPort());
                     sslEngine.setUseClientMode(true);
                     var sslHandler =  new SslHandler(sslEngine);
                     pipeline.addFirst("ssl", sslHandler);
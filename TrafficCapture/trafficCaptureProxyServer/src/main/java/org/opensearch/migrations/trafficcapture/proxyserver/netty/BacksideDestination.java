@@ -0,0 +1,89 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One of the servers that the proxy can forward connections to, along with what's been observed of it.  These
+ * are shared by every event loop, so everything that changes is kept in atomics.
+ */
+public class BacksideDestination {
+    /** Each new connect latency moves the smoothed latency by 1/N of the difference */
+    private static final int LATENCY_SMOOTHING_DIVISOR = 8;
+
+    @Getter
+    private final URI uri;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    /** 0 until the first connection has been made */
+    private final AtomicLong smoothedConnectNanos = new AtomicLong();
+    private volatile long ejectedUntilNanos;
+
+    BacksideDestination(URI uri) {
+        this.uri = uri;
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public Duration getSmoothedConnectLatency() {
+        return Duration.ofNanos(smoothedConnectNanos.get());
+    }
+
+    long getSmoothedConnectNanos() {
+        return smoothedConnectNanos.get();
+    }
+
+    boolean isEjectedAt(long nowNanos) {
+        return ejectedUntilNanos - nowNanos > 0;
+    }
+
+    long getEjectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    void onConnectionOpening() {
+        openConnections.incrementAndGet();
+    }
+
+    void onConnectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    void onConnected(Duration latency) {
+        consecutiveFailures.set(0);
+        var sample = Math.max(1, latency.toNanos());
+        smoothedConnectNanos.updateAndGet(previous -> previous == 0 ? sample :
+                previous + (sample - previous) / LATENCY_SMOOTHING_DIVISOR);
+    }
+
+    /**
+     * @return true iff this failure is the one that got the destination ejected
+     */
+    boolean onConnectFailed(int failuresBeforeEjection, Duration ejectionTime, long nowNanos) {
+        if (consecutiveFailures.incrementAndGet() < failuresBeforeEjection || isEjectedAt(nowNanos)) {
+            return false;
+        }
+        // once a destination has been ejected, it stays at the threshold so that a failure of the first
+        // connection after it comes back ejects it again right away
+        ejectedUntilNanos = nowNanos + ejectionTime.toNanos();
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BacksideDestination{" + uri +
+                ", openConnections=" + openConnections +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", smoothedConnectLatency=" + getSmoothedConnectLatency() + "}";
+    }
+}
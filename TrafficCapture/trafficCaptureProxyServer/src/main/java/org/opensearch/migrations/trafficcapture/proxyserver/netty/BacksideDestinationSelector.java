@@ -0,0 +1,200 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads new backside connections over a set of destinations, such as the coordinating nodes of the source
+ * cluster, so that the proxy doesn't need yet another load balancer in front of them.  Each connection goes to
+ * the destination with the lowest (open connections + 1) * smoothed connect latency, which is least-connections
+ * weighted by how quickly each destination has been accepting connections.  Ties are broken in rotation.
+ * <p>
+ * Health checks are passive.  A destination that fails failuresBeforeEjection connection attempts in a row is
+ * left out for ejectionTime, after which the next connection is a trial - one more failure ejects it again.  If
+ * every destination is ejected, the one that's due back soonest is used rather than failing outright.
+ * <p>
+ * The destinations can be replaced at any time (see watchDestinationsFile), in which case destinations that
+ * remain keep what's been observed about them.  Connections to destinations that are removed aren't closed.
+ */
+@Slf4j
+public class BacksideDestinationSelector implements AutoCloseable {
+    public static final int DEFAULT_FAILURES_BEFORE_EJECTION = 3;
+    public static final Duration DEFAULT_EJECTION_TIME = Duration.ofSeconds(30);
+
+    private final int failuresBeforeEjection;
+    private final Duration ejectionTime;
+    private final AtomicInteger rotation = new AtomicInteger();
+    private volatile List<BacksideDestination> destinations;
+    private ScheduledExecutorService fileWatcher;
+
+    public BacksideDestinationSelector(@NonNull URI destination) {
+        this(List.of(destination), DEFAULT_FAILURES_BEFORE_EJECTION, DEFAULT_EJECTION_TIME);
+    }
+
+    public BacksideDestinationSelector(@NonNull List<URI> destinations, int failuresBeforeEjection,
+                                       @NonNull Duration ejectionTime) {
+        if (failuresBeforeEjection <= 0) {
+            throw new IllegalArgumentException("failuresBeforeEjection must be positive");
+        }
+        this.failuresBeforeEjection = failuresBeforeEjection;
+        this.ejectionTime = ejectionTime;
+        setDestinations(destinations);
+    }
+
+    public List<BacksideDestination> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * Replaces the destinations that new connections will be made to.
+     */
+    public void setDestinations(@NonNull List<URI> uris) {
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("There must be at least one destination");
+        }
+        // the TLS setup for backside connections is decided once, from the scheme
+        var scheme = destinations == null ? uris.get(0).getScheme() : destinations.get(0).getUri().getScheme();
+        if (!uris.stream().allMatch(uri -> scheme.equalsIgnoreCase(uri.getScheme()))) {
+            throw new IllegalArgumentException("Every destination must use the " + scheme + " scheme");
+        }
+        var previous = destinations == null ? Collections.<URI, BacksideDestination>emptyMap() :
+                destinations.stream().collect(Collectors.toMap(BacksideDestination::getUri, Function.identity()));
+        destinations = uris.stream().distinct()
+                .map(uri -> previous.getOrDefault(uri, new BacksideDestination(uri)))
+                .collect(Collectors.toUnmodifiableList());
+        log.atInfo().setMessage(() -> "Destinations are now " + destinations).log();
+    }
+
+    public BacksideDestination select() {
+        var current = destinations;
+        var now = System.nanoTime();
+        var size = current.size();
+        var start = Math.floorMod(rotation.getAndIncrement(), size);
+        var unknownLatencyNanos = current.stream().mapToLong(BacksideDestination::getSmoothedConnectNanos)
+                .filter(n -> n > 0).min().orElse(1);
+        BacksideDestination best = null;
+        double bestScore = Double.MAX_VALUE;
+        BacksideDestination soonestBack = null;
+        for (int i = 0; i < size; ++i) {
+            var destination = current.get((start + i) % size);
+            if (destination.isEjectedAt(now)) {
+                if (soonestBack == null ||
+                        destination.getEjectedUntilNanos() - soonestBack.getEjectedUntilNanos() < 0) {
+                    soonestBack = destination;
+                }
+                continue;
+            }
+            // a destination without a sample yet is assumed to be as quick as the quickest one so that it gets tried
+            var latency = destination.getSmoothedConnectNanos();
+            var score = (destination.getOpenConnections() + 1.0) * (latency > 0 ? latency : unknownLatencyNanos);
+            if (score < bestScore) {
+                best = destination;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : soonestBack;
+    }
+
+    void onConnected(BacksideDestination destination, Duration latency) {
+        destination.onConnected(latency);
+    }
+
+    /**
+     * @return true iff the destination has just been ejected
+     */
+    boolean onConnectFailed(BacksideDestination destination) {
+        var ejected = destination.onConnectFailed(failuresBeforeEjection, ejectionTime, System.nanoTime());
+        if (ejected) {
+            log.atWarn().setMessage(() -> "Ejecting " + destination.getUri() + " for " + ejectionTime + " after " +
+                    destination.getConsecutiveFailures() + " consecutive connection failures").log();
+        }
+        return ejected;
+    }
+
+    /**
+     * Reads the destinations from a file, then rereads it whenever its modification time changes.  The file
+     * has one URI per line.  Blank lines and anything after a '#' are ignored.  If the file can't be read or
+     * has no valid destinations, the current destinations are kept.
+     */
+    public synchronized void watchDestinationsFile(@NonNull Path file, @NonNull Duration checkInterval)
+            throws IOException {
+        if (fileWatcher != null) {
+            throw new IllegalStateException("Already watching a destinations file");
+        }
+        setDestinations(readDestinationsFile(file));
+        var lastModified = new FileTime[]{Files.getLastModifiedTime(file)};
+        fileWatcher = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("destinationsFile", true));
+        fileWatcher.scheduleWithFixedDelay(() -> {
+            try {
+                var modified = Files.getLastModifiedTime(file);
+                if (!modified.equals(lastModified[0])) {
+                    lastModified[0] = modified;
+                    setDestinations(readDestinationsFile(file));
+                }
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage(() -> "Keeping the current destinations since " + file +
+                        " couldn't be reloaded").log();
+            }
+        }, checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public static List<URI> readDestinationsFile(Path file) throws IOException {
+        var uris = new ArrayList<URI>();
+        for (var line : Files.readAllLines(file)) {
+            var commentStart = line.indexOf('#');
+            var uriString = (commentStart >= 0 ? line.substring(0, commentStart) : line).trim();
+            if (!uriString.isEmpty()) {
+                uris.add(parseDestination(uriString));
+            }
+        }
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("No destinations were found in " + file);
+        }
+        return uris;
+    }
+
+    public static URI parseDestination(String uriString) {
+        URI uri;
+        try {
+            uri = new URI(uriString);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Couldn't parse destination " + uriString, e);
+        }
+        if (uri.getPort() < 0) {
+            throw new IllegalArgumentException("Port not present for URI: " + uri);
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Hostname not present for URI: " + uri);
+        }
+        if (uri.getScheme() == null) {
+            throw new IllegalArgumentException("Scheme (http|https) is not present for URI: " + uri);
+        }
+        return uri;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fileWatcher != null) {
+            fileWatcher.shutdownNow();
+            fileWatcher = null;
+        }
+    }
+}
@@ -3,9 +3,11 @@ package org.opensearch.migrations.trafficcapture.proxyserver.netty;
 import io.netty.channel.EventLoop;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
@@ -27,6 +29,10 @@ import java.util.function.Supplier;
  *
  * This class does not use locking.  Instead, it is assumed that one of these will be created for
  * each netty event loop.
+ *
+ * The number of items can either be managed by the caller (see increaseCapacity) or, once
+ * enableAdaptiveSizing has been called, be periodically resized to what the recent rate of gets
+ * and the time that it takes to build an item call for.
  */
 @Slf4j
 public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
@@ -51,6 +57,42 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
 
     public static class PoolClosedException extends RuntimeException { }
 
+    /**
+     * Controls how a pool resizes itself.  The target size is the number of gets that are expected to arrive
+     * while one replacement item is being built (the smoothed arrival rate multiplied by the smoothed build time),
+     * scaled by headroom and clamped to [minPoolSize, maxPoolSize].  The smoothed arrival rate jumps up as soon as
+     * gets arrive more quickly, including an extrapolation of a rising rate one evaluation interval ahead, so that
+     * items are already warm as a burst builds.  When gets slow down, it only falls by decayWeight of the
+     * difference each interval.  Whenever the target drops, ready items beyond it are closed right away rather
+     * than being held until they expire.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class AdaptiveSizingPolicy {
+        public static final double DEFAULT_HEADROOM = 2.0;
+        public static final double DEFAULT_DECAY_WEIGHT = 0.5;
+
+        private final int minPoolSize;
+        private final int maxPoolSize;
+        @NonNull
+        private final Duration evaluationInterval;
+        private final double headroom;
+        /** The fraction (0, 1] of a drop in the arrival rate that's taken up by each evaluation */
+        private final double decayWeight;
+
+        public AdaptiveSizingPolicy(int minPoolSize, int maxPoolSize, @NonNull Duration evaluationInterval) {
+            this(minPoolSize, maxPoolSize, evaluationInterval, DEFAULT_HEADROOM, DEFAULT_DECAY_WEIGHT);
+        }
+
+        int getTargetPoolSize(double arrivalsPerSecond, Duration buildTime) {
+            var buildSeconds = buildTime.toNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+            // rounded rather than rounded up so that a rate that has decayed to almost nothing can reach 0
+            var target = (int) Math.min(Integer.MAX_VALUE, Math.round(arrivalsPerSecond * buildSeconds * headroom));
+            return Math.max(minPoolSize, Math.min(maxPoolSize, target));
+        }
+    }
+
     public static class Stats {
         @Getter
         private long nItemsCreated;
@@ -64,6 +106,16 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         Duration totalDurationBuildingItems = Duration.ZERO;
         @Getter
         Duration totalWaitTimeForCallers = Duration.ZERO;
+        @Getter
+        private long nItemsShed; // closed before expiring because the pool shrank
+        @Getter
+        private int poolSize;
+        /** Exponentially weighted moving average of the time to build an item */
+        @Getter
+        private Duration smoothedBuildTime = Duration.ZERO;
+        /** What the adaptive sizing currently takes the rate of gets to be, 0 when it isn't enabled */
+        @Getter
+        private double smoothedArrivalsPerSecond;
 
         public Stats() {}
 
@@ -84,6 +136,10 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         public Stats(Stats o) {
             this(o.nItemsCreated, o.nItemsExpired, o.nHotGets, o.nColdGets,
                     o.totalDurationBuildingItems, o.totalWaitTimeForCallers);
+            this.nItemsShed = o.nItemsShed;
+            this.poolSize = o.poolSize;
+            this.smoothedBuildTime = o.smoothedBuildTime;
+            this.smoothedArrivalsPerSecond = o.smoothedArrivalsPerSecond;
         }
 
         @Override
@@ -93,6 +149,10 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
                     .add("nHotGets=" + nHotGets)
                     .add("nColdGets=" + nColdGets)
                     .add("nExpiredItems=" + nItemsExpired)
+                    .add("nShedItems=" + nItemsShed)
+                    .add("poolSize=" + poolSize)
+                    .add("smoothedArrivalsPerSecond=" + smoothedArrivalsPerSecond)
+                    .add("smoothedBuildTime=" + smoothedBuildTime)
                     .add("avgDurationBuildingItems=" + averageBuildTime())
                     .add("avgWaitTimeForCallers=" + averageWaitTime())
                     .toString();
@@ -118,6 +178,8 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
 
         private void itemBuilt(Duration delta) {
             totalDurationBuildingItems = totalDurationBuildingItems.plus(delta);
+            smoothedBuildTime = nItemsCreated == 0 ? delta :
+                    smoothedBuildTime.plus(delta.minus(smoothedBuildTime).dividedBy(BUILD_TIME_SMOOTHING_DIVISOR));
             nItemsCreated++;
         }
         private  void addWaitTime(Duration delta) {
@@ -139,8 +201,15 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         private void addExpiredItem() {
             nItemsExpired++;
         }
+
+        private void addShedItem() {
+            nItemsShed++;
+        }
     }
 
+    /** Each new build time moves the smoothed build time by 1/N of the difference */
+    private static final int BUILD_TIME_SMOOTHING_DIVISOR = 8;
+
     // Store in-progress futures that were the result of item builds in their "in-order"
     // creation time so that if the readyItems is empty, we can return a future that is
     // more likely to complete.
@@ -154,6 +223,9 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
     private GenericFutureListener<F> shuffleInProgressToReady;
     private final Stats stats;
     private int poolSize;
+    private AdaptiveSizingPolicy adaptiveSizingPolicy;
+    private long totalGetsAtLastResize;
+    private double arrivalsPerSecondAtLastResize;
 
     public ExpiringSubstitutableItemPool(@NonNull Duration inactivityTimeout,
                                          @NonNull EventLoop eventLoop,
@@ -186,7 +258,10 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         this.shuffleInProgressToReady =
         f -> {
             inProgressItems.remove(f);
-            if (f.isSuccess()) {
+            if (f.isSuccess() && readyItems.size() + inProgressItems.size() >= poolSize) {
+                // the pool has shrunk since this item was started
+                shedItem(f);
+            } else if (f.isSuccess()) {
                 readyItems.add(new Entry<>(f));
                 scheduleNextExpirationSweep(inactivityTimeout);
             } else {
@@ -201,15 +276,23 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
     public Stats getStats() {
         // make a copy on the original thread making changes, which will be up to date at the time of capture and
         // immutable for future accessors, making it thread-safe
-        var copiedStats = eventLoop.submit(()->{
-            log.atTrace().setMessage(()->"copying stats ("+System.identityHashCode(stats)+")="+stats).log();
-            return new Stats(stats);
-        }).get();
+        if (eventLoop.inEventLoop()) {
+            // waiting on a task submitted to our own event loop would never finish
+            return copyStats();
+        }
+        var copiedStats = eventLoop.submit(this::copyStats).get();
         log.atTrace()
                 .setMessage(()->"Got copied value of (" + System.identityHashCode(copiedStats) + ")="+copiedStats).log();
         return copiedStats;
     }
 
+    private Stats copyStats() {
+        log.atTrace().setMessage(()->"copying stats ("+System.identityHashCode(stats)+")="+stats).log();
+        var copiedStats = new Stats(stats);
+        copiedStats.poolSize = poolSize;
+        return copiedStats;
+    }
+
     public int increaseCapacity(int itemsToLoad) {
         return increaseCapacityWithSchedule(itemsToLoad, Duration.ZERO);
     }
@@ -220,6 +303,75 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         return poolSize;
     }
 
+    /**
+     * Sets the number of items that the pool will keep.  Growing starts loading the new items right away.
+     * Shrinking closes (via the expiration callback) ready items, oldest first, until the pool is within its
+     * new size.  Items that are still being built are closed as they finish if the pool is still too big.
+     * This must be called from the pool's event loop.
+     */
+    public void setPoolSize(int newPoolSize) {
+        assert eventLoop.inEventLoop() : "the pool size must only be changed from the pool's event loop";
+        if (newPoolSize < 0) {
+            throw new IllegalArgumentException("The pool size must not be negative");
+        }
+        var itemsToLoad = newPoolSize - poolSize;
+        poolSize = newPoolSize;
+        for (int i = 0; i < itemsToLoad; ++i) {
+            beginLoadingNewItemIfNecessary();
+        }
+        while (!readyItems.isEmpty() && readyItems.size() + inProgressItems.size() > poolSize) {
+            shedItem(readyItems.poll().future);
+        }
+    }
+
+    /**
+     * Starts periodically resizing the pool according to policy, beginning from its current size clamped to the
+     * policy's bounds.  This can be called from any thread.
+     */
+    public void enableAdaptiveSizing(@NonNull AdaptiveSizingPolicy policy) {
+        eventLoop.execute(() -> {
+            var alreadyScheduled = adaptiveSizingPolicy != null;
+            adaptiveSizingPolicy = policy;
+            totalGetsAtLastResize = stats.getTotalGets();
+            setPoolSize(Math.max(policy.getMinPoolSize(), Math.min(policy.getMaxPoolSize(), poolSize)));
+            if (!alreadyScheduled) {
+                scheduleNextResize();
+            }
+        });
+    }
+
+    private void scheduleNextResize() {
+        eventLoop.schedule(this::resizeFromRecentDemand,
+                adaptiveSizingPolicy.getEvaluationInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void resizeFromRecentDemand() {
+        if (inactivityTimeout.isZero()) {
+            return;
+        }
+        var policy = adaptiveSizingPolicy;
+        var totalGets = stats.getTotalGets();
+        var intervalSeconds = policy.getEvaluationInterval().toNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+        var arrivalsPerSecond = (totalGets - totalGetsAtLastResize) / intervalSeconds;
+        // if the rate is climbing, assume that it'll keep climbing by as much over the next interval
+        var expectedArrivalsPerSecond =
+                arrivalsPerSecond + Math.max(0, arrivalsPerSecond - arrivalsPerSecondAtLastResize);
+        var smoothed = stats.smoothedArrivalsPerSecond;
+        stats.smoothedArrivalsPerSecond = expectedArrivalsPerSecond >= smoothed ? expectedArrivalsPerSecond :
+                smoothed + policy.getDecayWeight() * (expectedArrivalsPerSecond - smoothed);
+        totalGetsAtLastResize = totalGets;
+        arrivalsPerSecondAtLastResize = arrivalsPerSecond;
+
+        var targetPoolSize = policy.getTargetPoolSize(stats.smoothedArrivalsPerSecond, stats.smoothedBuildTime);
+        if (targetPoolSize != poolSize) {
+            log.atDebug().setMessage(() -> "Resizing pool from " + poolSize + " to " + targetPoolSize +
+                    " for " + stats.smoothedArrivalsPerSecond + " gets/s and a build time of " +
+                    stats.smoothedBuildTime).log();
+            setPoolSize(targetPoolSize);
+        }
+        scheduleNextResize();
+    }
+
     public F getAvailableOrNewItem() {
         if (inactivityTimeout.isZero()) {
             throw new PoolClosedException();
@@ -292,6 +444,12 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         }
     }
 
+    private void shedItem(F item) {
+        stats.addShedItem();
+        log.debug("Shedding " + item);
+        onExpirationConsumer.accept(item);
+    }
+
     private void beginLoadingNewItemIfNecessary() {
         if (inactivityTimeout.isZero()) {
             throw new PoolClosedException();
@@ -323,6 +481,7 @@ public class ExpiringSubstitutableItemPool<F extends Future<U>, U> {
         sb.append(", onExpirationConsumer=").append(onExpirationConsumer);
         sb.append(", eventLoop=").append(eventLoop);
         sb.append(", inactivityTimeout=").append(inactivityTimeout);
+        sb.append(", adaptiveSizingPolicy=").append(adaptiveSizingPolicy);
         sb.append(", stats=").append(stats);
         sb.append('}');
         return sb.toString();
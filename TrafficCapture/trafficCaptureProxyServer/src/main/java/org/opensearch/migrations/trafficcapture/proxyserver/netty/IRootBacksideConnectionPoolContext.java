@@ -0,0 +1,58 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
+import io.opentelemetry.api.metrics.Meter;
+import lombok.NonNull;
+import org.opensearch.migrations.tracing.CommonMetricInstruments;
+import org.opensearch.migrations.tracing.IRootOtelContext;
+
+public interface IRootBacksideConnectionPoolContext extends IRootOtelContext {
+    String ACTIVITY_NAME = "destinationConnectionPool";
+
+    class MetricNames {
+        private MetricNames() {}
+        public static final String POOL_HITS = "destinationConnectionPoolHits";
+        public static final String POOL_MISSES = "destinationConnectionPoolMisses";
+        public static final String POOL_EXPIRED = "destinationConnectionPoolExpired";
+        public static final String POOL_SHED = "destinationConnectionPoolShed";
+        public static final String POOL_SIZE = "destinationConnectionPoolSize";
+        public static final String CONNECT_LATENCY = "destinationConnectLatency";
+        public static final String CONNECT_FAILURES = "destinationConnectFailures";
+        public static final String DESTINATION_EJECTIONS = "destinationEjections";
+    }
+
+    /**
+     * The pool counts are gathered by each event loop's pool and are reported periodically as deltas.  The pool
+     * size is the sum of the current sizes of every event loop's pool.
+     */
+    class MetricInstruments extends CommonMetricInstruments {
+        public final LongCounter poolHitsCounter;
+        public final LongCounter poolMissesCounter;
+        public final LongCounter poolExpiredCounter;
+        public final LongCounter poolShedCounter;
+        public final LongUpDownCounter poolSize;
+        public final DoubleHistogram connectLatency;
+        public final LongCounter connectFailuresCounter;
+        public final LongCounter destinationEjectionsCounter;
+
+        private MetricInstruments(Meter meter, String activityName) {
+            super(meter, activityName);
+            poolHitsCounter = meter.counterBuilder(MetricNames.POOL_HITS).build();
+            poolMissesCounter = meter.counterBuilder(MetricNames.POOL_MISSES).build();
+            poolExpiredCounter = meter.counterBuilder(MetricNames.POOL_EXPIRED).build();
+            poolShedCounter = meter.counterBuilder(MetricNames.POOL_SHED).build();
+            poolSize = meter.upDownCounterBuilder(MetricNames.POOL_SIZE).build();
+            connectLatency = meter.histogramBuilder(MetricNames.CONNECT_LATENCY).setUnit("ms").build();
+            connectFailuresCounter = meter.counterBuilder(MetricNames.CONNECT_FAILURES).build();
+            destinationEjectionsCounter = meter.counterBuilder(MetricNames.DESTINATION_EJECTIONS).build();
+        }
+    }
+
+    static @NonNull MetricInstruments makeMetrics(Meter meter) {
+        return new MetricInstruments(meter, ACTIVITY_NAME);
+    }
+
+    MetricInstruments getBacksideConnectionPoolInstruments();
+}
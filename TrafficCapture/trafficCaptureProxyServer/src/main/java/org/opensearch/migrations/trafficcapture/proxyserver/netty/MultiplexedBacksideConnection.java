@@ -0,0 +1,163 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+
+/**
+ * A keep-alive connection to the destination that carries the requests of any of the clients on its event loop.
+ * Requests are written whole, so that several may be pipelined on the connection, and since HTTP/1.1 responses
+ * come back in the order that their requests were sent, each response is routed to the client at the head of
+ * the outstanding queue.
+ */
+@Slf4j
+class MultiplexedBacksideConnection extends ChannelInboundHandlerAdapter {
+    private final MultiplexingBacksideConnectionPool.EventLoopConnections owner;
+    private final Channel channel;
+    private final ArrayDeque<MultiplexedExchange> outstandingExchanges = new ArrayDeque<>();
+    private boolean connected;
+    /** Set once the connection is closing or the service has said that it will close it */
+    private boolean retiring;
+    private boolean inInformationalResponse;
+
+    MultiplexedBacksideConnection(MultiplexingBacksideConnectionPool.EventLoopConnections owner, Channel channel) {
+        this.owner = owner;
+        this.channel = channel;
+    }
+
+    int getOutstandingCount() {
+        return outstandingExchanges.size();
+    }
+
+    boolean canAcceptRequests() {
+        return !retiring;
+    }
+
+    void onConnected() {
+        connected = true;
+        channel.pipeline().addLast(new HttpClientCodec(), this);
+        channel.config().setAutoRead(true);
+        outstandingExchanges.forEach(this::writeRequest);
+        channel.flush();
+    }
+
+    void onConnectFailed(Throwable cause) {
+        log.atWarn().setCause(cause).setMessage("Couldn't connect to the destination for multiplexed requests")
+                .log();
+        retire();
+    }
+
+    void send(MultiplexedExchange exchange) {
+        if (retiring) {
+            // e.g. a warm connection that had already failed, and so failed as soon as it was opened
+            exchange.fail();
+            return;
+        }
+        outstandingExchanges.add(exchange);
+        if (connected) {
+            writeRequest(exchange);
+            channel.flush();
+        }
+    }
+
+    private void writeRequest(MultiplexedExchange exchange) {
+        channel.write(exchange.takeRequest()).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                log.atDebug().setCause(f.cause()).setMessage("Closing a destination connection after a failed write")
+                        .log();
+                f.channel().close();
+            }
+        });
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        var exchange = outstandingExchanges.peek();
+        if (exchange == null) {
+            log.atWarn().setMessage(() -> "Closing " + channel + " after receiving an unsolicited response").log();
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+            return;
+        }
+        if (msg instanceof HttpResponse) {
+            var response = (HttpResponse) msg;
+            inInformationalResponse = response.status().codeClass() == HttpStatusClass.INFORMATIONAL &&
+                    !response.status().equals(HttpResponseStatus.SWITCHING_PROTOCOLS);
+            if (!inInformationalResponse) {
+                exchange.onResponseStarted();
+                if (!HttpUtil.isKeepAlive(response)) {
+                    // nothing more can be sent on this connection, but what's already been sent may still be answered
+                    retiring = true;
+                }
+                if (exchange.isCloseFrontsideAfterResponse()) {
+                    HttpUtil.setKeepAlive(response, false);
+                }
+            }
+        }
+        if (msg instanceof LastHttpContent && !inInformationalResponse) {
+            outstandingExchanges.poll();
+            var frontsideChannel = exchange.getFrontsideChannel();
+            frontsideChannel.writeAndFlush(msg).addListener((ChannelFutureListener) f -> {
+                if (exchange.isCloseFrontsideAfterResponse() || !f.isSuccess()) {
+                    f.channel().close();
+                }
+            });
+            exchange.onResponseFinished();
+            if (retiring) {
+                if (outstandingExchanges.isEmpty()) {
+                    ctx.close();
+                }
+            } else {
+                owner.onCapacityAvailable(this);
+            }
+        } else {
+            exchange.getFrontsideChannel().write(msg);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        var exchange = outstandingExchanges.peek();
+        if (exchange != null) {
+            exchange.getFrontsideChannel().flush();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        log.atDebug().setMessage(() -> "Multiplexed destination connection " + channel + " closed with " +
+                outstandingExchanges.size() + " outstanding requests").log();
+        retire();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.atWarn().setCause(cause).setMessage(() -> "Closing multiplexed destination connection " + channel).log();
+        ctx.close();
+    }
+
+    /**
+     * Removes this connection from its pool and fails every request that hasn't been fully answered.
+     */
+    private void retire() {
+        retiring = true;
+        owner.onConnectionClosed(this, connected);
+        MultiplexedExchange exchange;
+        while ((exchange = outstandingExchanges.poll()) != null) {
+            exchange.fail();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,81 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import lombok.Getter;
+
+/**
+ * One client request that's been (or is waiting to be) sent over a shared backside connection, along with where
+ * its response goes.  Everything here is only touched from the event loop of the client's channel, which is
+ * also the event loop of the backside connection.
+ */
+class MultiplexedExchange {
+    @Getter
+    private final Channel frontsideChannel;
+    private FullHttpRequest request;
+    /** Whether the client asked for its connection to be closed after this response */
+    @Getter
+    private final boolean closeFrontsideAfterResponse;
+    private final Runnable onResponseFinished;
+    @Getter
+    private boolean responseStarted;
+    private boolean finished;
+
+    MultiplexedExchange(Channel frontsideChannel, FullHttpRequest request, boolean closeFrontsideAfterResponse,
+                        Runnable onResponseFinished) {
+        this.frontsideChannel = frontsideChannel;
+        this.request = request;
+        this.closeFrontsideAfterResponse = closeFrontsideAfterResponse;
+        this.onResponseFinished = onResponseFinished;
+    }
+
+    /**
+     * Hands over the request to be written to a backside connection.  This can only be called once.
+     */
+    FullHttpRequest takeRequest() {
+        var rval = request;
+        request = null;
+        return rval;
+    }
+
+    void onResponseStarted() {
+        responseStarted = true;
+    }
+
+    void onResponseFinished() {
+        if (!finished) {
+            finished = true;
+            onResponseFinished.run();
+        }
+    }
+
+    /**
+     * The backside connection that this was sent to (or was going to be sent to) failed.  If nothing of the
+     * response has gone back to the client yet, it gets a 502.  Either way, the client's connection is closed
+     * since there's no way to know whether the service acted on the request.
+     */
+    void fail() {
+        ReferenceCountUtil.release(takeRequest());
+        finished = true;
+        if (!frontsideChannel.isActive()) {
+            return;
+        }
+        if (responseStarted) {
+            frontsideChannel.close();
+        } else {
+            var response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.BAD_GATEWAY,
+                    Unpooled.EMPTY_BUFFER);
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            frontsideChannel.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.FastThreadLocal;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares a few keep-alive connections to the destination among all the client connections of an event loop, so
+ * that many mostly idle clients don't each hold a connection (and a TLS session) open to the destination.
+ * Complete requests are dispatched to the connection with the fewest outstanding requests.  A new connection is
+ * opened when every connection is busy and the event loop has fewer than maxConnectionsPerThread of them.
+ * Requests are pipelined onto busy connections up to maxOutstandingRequestsPerConnection (1 disables pipelining)
+ * and past that, they wait for a connection to free up.
+ * <p>
+ * Connections are made with a BacksideConnectionPool, so they're set up in the same way (and can come from the
+ * same warm pool) as the connections that are otherwise dedicated to one client.
+ */
+public class MultiplexingBacksideConnectionPool {
+    private final BacksideConnectionPool connectionFactory;
+    private final int maxConnectionsPerThread;
+    private final int maxOutstandingRequestsPerConnection;
+    @Getter
+    private final int maxRequestContentLength;
+    private final FastThreadLocal<EventLoopConnections> connectionsForEachThread = new FastThreadLocal<>();
+    private final AtomicLong openedConnectionCount = new AtomicLong();
+
+    public MultiplexingBacksideConnectionPool(@NonNull BacksideConnectionPool connectionFactory,
+                                              int maxConnectionsPerThread,
+                                              int maxOutstandingRequestsPerConnection,
+                                              int maxRequestContentLength) {
+        if (maxConnectionsPerThread <= 0 || maxOutstandingRequestsPerConnection <= 0) {
+            throw new IllegalArgumentException("The number of connections and of outstanding requests for each " +
+                    "connection must be positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxConnectionsPerThread = maxConnectionsPerThread;
+        this.maxOutstandingRequestsPerConnection = maxOutstandingRequestsPerConnection;
+        this.maxRequestContentLength = maxRequestContentLength;
+    }
+
+    /**
+     * @return how many connections to the destination have been opened, across all event loops, since this was made
+     */
+    public long getOpenedConnectionCount() {
+        return openedConnectionCount.get();
+    }
+
+    /**
+     * Must be called from eventLoop, which must be the event loop of the exchange's client channel.
+     */
+    void dispatch(EventLoop eventLoop, MultiplexedExchange exchange) {
+        var connections = connectionsForEachThread.get();
+        if (connections == null) {
+            connections = new EventLoopConnections(eventLoop);
+            connectionsForEachThread.set(connections);
+        }
+        connections.dispatch(exchange);
+    }
+
+    /**
+     * The connections and waiting requests of one event loop.  Only accessed from that event loop.
+     */
+    class EventLoopConnections {
+        private final EventLoop eventLoop;
+        private final List<MultiplexedBacksideConnection> connections = new ArrayList<>();
+        private final ArrayDeque<MultiplexedExchange> waitingExchanges = new ArrayDeque<>();
+
+        EventLoopConnections(EventLoop eventLoop) {
+            this.eventLoop = eventLoop;
+        }
+
+        void dispatch(MultiplexedExchange exchange) {
+            var connection = selectConnection();
+            if (connection == null) {
+                waitingExchanges.add(exchange);
+            } else {
+                connection.send(exchange);
+            }
+        }
+
+        private MultiplexedBacksideConnection selectConnection() {
+            MultiplexedBacksideConnection leastOutstanding = null;
+            for (var connection : connections) {
+                if (connection.canAcceptRequests() &&
+                        connection.getOutstandingCount() < maxOutstandingRequestsPerConnection &&
+                        (leastOutstanding == null ||
+                                connection.getOutstandingCount() < leastOutstanding.getOutstandingCount())) {
+                    leastOutstanding = connection;
+                }
+            }
+            if ((leastOutstanding == null || leastOutstanding.getOutstandingCount() > 0) &&
+                    connections.size() < maxConnectionsPerThread) {
+                return openConnection();
+            }
+            return leastOutstanding;
+        }
+
+        private MultiplexedBacksideConnection openConnection() {
+            var connectFuture = connectionFactory.getOutboundConnectionFuture(eventLoop);
+            openedConnectionCount.incrementAndGet();
+            var connection = new MultiplexedBacksideConnection(this, connectFuture.channel());
+            connections.add(connection);
+            connectFuture.addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    connection.onConnected();
+                } else {
+                    connection.onConnectFailed(f.cause());
+                }
+            });
+            return connection;
+        }
+
+        void onCapacityAvailable(MultiplexedBacksideConnection connection) {
+            while (!waitingExchanges.isEmpty() && connection.canAcceptRequests() &&
+                    connection.getOutstandingCount() < maxOutstandingRequestsPerConnection) {
+                connection.send(waitingExchanges.poll());
+            }
+        }
+
+        /**
+         * @param wasConnected false if the connection was never established, in which case the destination is
+         *                     taken to be unreachable and the requests waiting for a connection are failed too
+         */
+        void onConnectionClosed(MultiplexedBacksideConnection connection, boolean wasConnected) {
+            if (!connections.remove(connection)) {
+                return;
+            }
+            if (!wasConnected) {
+                MultiplexedExchange exchange;
+                while ((exchange = waitingExchanges.poll()) != null) {
+                    exchange.fail();
+                }
+                return;
+            }
+            // requests that were waiting for room would otherwise only move once another connection frees up
+            while (!waitingExchanges.isEmpty()) {
+                var replacement = selectConnection();
+                if (replacement == null) {
+                    break;
+                }
+                replacement.send(waitingExchanges.poll());
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+
+/**
+ * The counterpart of FrontsideHandler for when client connections share destination connections.  It sits
+ * after an HttpServerCodec and an HttpObjectAggregator and hands each complete request to the
+ * MultiplexingBacksideConnectionPool.  A client's requests are sent one at a time, so that its responses can't
+ * come back out of order from different destination connections.  More is only read from the client once
+ * there's no request of its still waiting for a response.
+ */
+@Slf4j
+public class MultiplexingFrontsideHandler extends ChannelInboundHandlerAdapter {
+    private final MultiplexingBacksideConnectionPool backsideConnectionPool;
+    private final ArrayDeque<FullHttpRequest> queuedRequests = new ArrayDeque<>();
+    private boolean awaitingResponse;
+
+    public MultiplexingFrontsideHandler(MultiplexingBacksideConnectionPool backsideConnectionPool) {
+        this.backsideConnectionPool = backsideConnectionPool;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        ctx.channel().read();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof FullHttpRequest)) {
+            log.atWarn().setMessage(() -> "Dropping unexpected message " + msg + " on " + ctx.channel()).log();
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        var request = (FullHttpRequest) msg;
+        if (request.decoderResult().isFailure()) {
+            log.atDebug().setCause(request.decoderResult().cause())
+                    .setMessage(() -> "Closing " + ctx.channel() + " after receiving a malformed request").log();
+            request.release();
+            var response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.BAD_REQUEST,
+                    Unpooled.EMPTY_BUFFER);
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            ctx.channel().writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        queuedRequests.add(request);
+        dispatchNextRequest(ctx);
+    }
+
+    private void dispatchNextRequest(ChannelHandlerContext ctx) {
+        if (awaitingResponse) {
+            return;
+        }
+        var request = queuedRequests.poll();
+        if (request == null) {
+            ctx.channel().read();
+            return;
+        }
+        awaitingResponse = true;
+        // The destination connection is shared, so it has to stay open even if this client wants its own
+        // connection to be closed.  The client's connection is closed once its response has been sent instead.
+        var closeAfterResponse = !HttpUtil.isKeepAlive(request);
+        HttpUtil.setKeepAlive(request, true);
+        // the aggregator already answered any 100-continue expectation
+        HttpUtil.set100ContinueExpected(request, false);
+        backsideConnectionPool.dispatch(ctx.channel().eventLoop(),
+                new MultiplexedExchange(ctx.channel(), request, closeAfterResponse, () -> {
+                    awaitingResponse = false;
+                    if (!closeAfterResponse) {
+                        dispatchNextRequest(ctx);
+                    }
+                }));
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        queuedRequests.forEach(ReferenceCountUtil::release);
+        queuedRequests.clear();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.atDebug().setCause(cause).setMessage(() -> "Closing " + ctx.channel() + " after an exception").log();
+        ctx.close();
+    }
+}
@@ -4,25 +4,51 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
 import org.opensearch.migrations.trafficcapture.netty.RequestCapturePredicate;
 import org.opensearch.migrations.trafficcapture.netty.tracing.IRootWireLoggingContext;
 
 import javax.net.ssl.SSLEngine;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
+@Slf4j
 public class NettyScanningHttpProxy {
     protected final int proxyPort;
+    protected final NettyTransport transport;
+    protected final ProxySocketOptions socketOptions;
+    protected final int numAcceptThreads;
     protected Channel mainChannel;
+    protected final List<Channel> additionalAcceptChannels = new ArrayList<>();
     protected EventLoopGroup workerGroup;
     protected EventLoopGroup bossGroup;
 
     public NettyScanningHttpProxy(int proxyPort) {
+        this(proxyPort, NettyTransport.NIO, ProxySocketOptions.DEFAULT, 1);
+    }
+
+    /**
+     * @param transport should already have been resolved (see {@link NettyTransport#resolve}) and should be the
+     *                  same transport that the BacksideConnectionPool given to start() was made with, since the
+     *                  backside connections run on the same event loops as the frontside ones
+     * @param numAcceptThreads when more than one, that many listening sockets are bound to the port with
+     *                         SO_REUSEPORT, each with its own accepting thread, so that the kernel spreads new
+     *                         connections across them
+     */
+    public NettyScanningHttpProxy(int proxyPort, @NonNull NettyTransport transport,
+                                  @NonNull ProxySocketOptions socketOptions, int numAcceptThreads) {
+        if (numAcceptThreads < 1) {
+            throw new IllegalArgumentException("numAcceptThreads must be at least 1");
+        }
         this.proxyPort = proxyPort;
+        this.transport = transport;
+        this.socketOptions = socketOptions;
+        this.numAcceptThreads = numAcceptThreads;
     }
 
     public int getProxyPort() {
@@ -35,26 +61,63 @@ public class NettyScanningHttpProxy {
                       Supplier<SSLEngine> sslEngineSupplier,
                       IConnectionCaptureFactory<Object> connectionCaptureFactory,
                       @NonNull RequestCapturePredicate requestCapturePredicate) throws InterruptedException {
-        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("captureProxyPoolBoss"));
-        workerGroup = new NioEventLoopGroup(numThreads, new DefaultThreadFactory("captureProxyPoolWorker"));
+        start(rootContext, backsideConnectionPool, numThreads, connectionCaptureFactory, requestCapturePredicate,
+                ProxyChannelInitializer.Options.builder().sslEngineSupplier(sslEngineSupplier).build());
+    }
+
+    /**
+     * @param options how each client connection is set up (see {@link ProxyChannelInitializer.Options})
+     */
+    public void start(IRootWireLoggingContext rootContext,
+                      BacksideConnectionPool backsideConnectionPool,
+                      int numThreads,
+                      IConnectionCaptureFactory<Object> connectionCaptureFactory,
+                      @NonNull RequestCapturePredicate requestCapturePredicate,
+                      @NonNull ProxyChannelInitializer.Options options)
+            throws InterruptedException {
+        bossGroup = transport.newEventLoopGroup(numAcceptThreads, new DefaultThreadFactory("captureProxyPoolBoss"));
+        workerGroup = transport.newEventLoopGroup(numThreads, new DefaultThreadFactory("captureProxyPoolWorker"));
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         try {
-            mainChannel = serverBootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ProxyChannelInitializer<>(rootContext, backsideConnectionPool, sslEngineSupplier,
-                            connectionCaptureFactory, requestCapturePredicate))
-                    .childOption(ChannelOption.AUTO_READ, false)
-                    .bind(proxyPort).sync().channel();
+            serverBootstrap.group(bossGroup, workerGroup)
+                    .channel(transport.getServerChannelClass())
+                    .childHandler(new ProxyChannelInitializer<>(rootContext, backsideConnectionPool,
+                            connectionCaptureFactory, requestCapturePredicate, options))
+                    .childOption(ChannelOption.AUTO_READ, false);
+            socketOptions.applyToAcceptedChannels(serverBootstrap);
+            if (numAcceptThreads > 1) {
+                serverBootstrap.option(transport.getReusePortOption(), true);
+            }
+            mainChannel = serverBootstrap.bind(proxyPort).sync().channel();
+            // each bind registers its listening socket with the next boss event loop.  Subsequent binds use the
+            // first one's port in case an ephemeral port was requested.
+            var boundPort = ((InetSocketAddress) mainChannel.localAddress()).getPort();
+            for (int i = 1; i < numAcceptThreads; ++i) {
+                additionalAcceptChannels.add(serverBootstrap.bind(boundPort).sync().channel());
+            }
+            log.atInfo().setMessage(() -> "Listening on port " + boundPort + " with the " + transport +
+                    " transport and " + numAcceptThreads + " accepting socket(s); " + socketOptions).log();
         } catch (Exception e) {
+            closeAcceptChannels();
             workerGroup.shutdownGracefully();
             bossGroup.shutdownGracefully();
             throw e;
         }
     }
 
+    private void closeAcceptChannels() {
+        additionalAcceptChannels.forEach(Channel::close);
+        if (mainChannel != null) {
+            mainChannel.close();
+        }
+    }
+
     public void stop() throws InterruptedException {
-        mainChannel.close();
+        closeAcceptChannels();
         try {
+            for (var channel : additionalAcceptChannels) {
+                channel.closeFuture().sync();
+            }
             mainChannel.closeFuture().sync();
         } finally {
             workerGroup.shutdownGracefully();
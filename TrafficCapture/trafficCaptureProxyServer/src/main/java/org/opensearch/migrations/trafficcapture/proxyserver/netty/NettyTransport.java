@@ -0,0 +1,191 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioChannelOption;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.StandardSocketOptions;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The socket implementations that the proxy can run its event loops and channels with.  The native transports
+ * cut the number of syscalls (and the garbage) per read and write compared to NIO, but they're only present on
+ * some platforms, so {@link #resolve} picks the requested transport or, if its native library isn't available,
+ * the next best one.
+ * <p>
+ * io_uring lives in Netty's incubator artifact (netty-incubator-transport-native-io_uring).  It isn't a
+ * compile-time dependency, so it's loaded reflectively and is only available when that jar is on the classpath.
+ */
+@Slf4j
+public enum NettyTransport {
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return null;
+        }
+
+        @Override
+        NettyTransport fallback() {
+            return null;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int numThreads, ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(numThreads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> getServerChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> getSocketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> getReusePortOption() {
+            return NioChannelOption.of(StandardSocketOptions.SO_REUSEPORT);
+        }
+    },
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return Epoll.unavailabilityCause();
+        }
+
+        @Override
+        NettyTransport fallback() {
+            return NIO;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int numThreads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(numThreads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> getServerChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> getSocketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> getReusePortOption() {
+            return EpollChannelOption.SO_REUSEPORT;
+        }
+    },
+    IO_URING {
+        private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+        private Class<?> loadClass(String simpleName) throws ClassNotFoundException {
+            return Class.forName(IO_URING_PACKAGE + simpleName, true, NettyTransport.class.getClassLoader());
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return unavailabilityCause() == null;
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            try {
+                return (Throwable) loadClass("IOUring").getMethod("unavailabilityCause").invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return e;
+            }
+        }
+
+        @Override
+        NettyTransport fallback() {
+            return EPOLL;
+        }
+
+        @Override
+        @SneakyThrows
+        public EventLoopGroup newEventLoopGroup(int numThreads, ThreadFactory threadFactory) {
+            return (EventLoopGroup) loadClass("IOUringEventLoopGroup")
+                    .getConstructor(int.class, ThreadFactory.class)
+                    .newInstance(numThreads, threadFactory);
+        }
+
+        @Override
+        @SneakyThrows
+        @SuppressWarnings("unchecked")
+        public Class<? extends ServerChannel> getServerChannelClass() {
+            return (Class<? extends ServerChannel>) loadClass("IOUringServerSocketChannel");
+        }
+
+        @Override
+        @SneakyThrows
+        @SuppressWarnings("unchecked")
+        public Class<? extends Channel> getSocketChannelClass() {
+            return (Class<? extends Channel>) loadClass("IOUringSocketChannel");
+        }
+
+        @Override
+        @SneakyThrows
+        @SuppressWarnings("unchecked")
+        public ChannelOption<Boolean> getReusePortOption() {
+            return (ChannelOption<Boolean>) loadClass("IOUringChannelOption").getField("SO_REUSEPORT").get(null);
+        }
+    };
+
+    public abstract boolean isAvailable();
+
+    abstract Throwable unavailabilityCause();
+
+    abstract NettyTransport fallback();
+
+    public abstract EventLoopGroup newEventLoopGroup(int numThreads, ThreadFactory threadFactory);
+
+    public abstract Class<? extends ServerChannel> getServerChannelClass();
+
+    public abstract Class<? extends Channel> getSocketChannelClass();
+
+    public abstract ChannelOption<Boolean> getReusePortOption();
+
+    /**
+     * @return the requested transport if it can be used on this host, otherwise the first of its fallbacks
+     * (io_uring, then epoll, then NIO) that can be
+     */
+    public static NettyTransport resolve(NettyTransport requested) {
+        var transport = requested;
+        while (!transport.isAvailable()) {
+            final var unavailableTransport = transport;
+            final var fallback = transport.fallback();
+            log.atWarn().setCause(unavailableTransport.unavailabilityCause())
+                    .setMessage(() -> unavailableTransport + " transport is not available, falling back to " +
+                            fallback).log();
+            transport = fallback;
+        }
+        return transport;
+    }
+}
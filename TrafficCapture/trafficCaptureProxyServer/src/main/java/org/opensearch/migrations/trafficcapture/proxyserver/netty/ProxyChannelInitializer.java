@@ -3,12 +3,19 @@ package org.opensearch.migrations.trafficcapture.proxyserver.netty;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.ssl.SslHandler;
+import lombok.Builder;
+import lombok.Getter;
 import lombok.NonNull;
+import org.opensearch.migrations.trafficcapture.CaptureMemoryBudget;
 import org.opensearch.migrations.trafficcapture.IConnectionCaptureFactory;
 import org.opensearch.migrations.trafficcapture.netty.ConditionallyReliableLoggingHttpHandler;
 import org.opensearch.migrations.trafficcapture.netty.RequestCapturePredicate;
+import org.opensearch.migrations.trafficcapture.netty.UnacknowledgedCaptureJournal;
+import org.opensearch.migrations.trafficcapture.netty.UnsampledConnectionMeteringHandler;
 import org.opensearch.migrations.trafficcapture.netty.tracing.IRootWireLoggingContext;
 
 import javax.net.ssl.SSLEngine;
@@ -21,17 +28,59 @@ public class ProxyChannelInitializer<T> extends ChannelInitializer<SocketChannel
     protected final IRootWireLoggingContext rootContext;
     protected final BacksideConnectionPool backsideConnectionPool;
     protected final RequestCapturePredicate requestCapturePredicate;
+    protected final UnacknowledgedCaptureJournal unacknowledgedCaptureJournal;
+    protected final MultiplexingBacksideConnectionPool multiplexingBacksideConnectionPool;
+    protected final CaptureMemoryBudget captureMemoryBudget;
+
+    /**
+     * The optional parts of how each client connection is set up.  By default, connections are plaintext, each one
+     * gets its own destination connection from the BacksideConnectionPool, mutating requests are held until their
+     * capture has been acknowledged, and capture memory isn't budgeted across connections.
+     */
+    @Builder
+    @Getter
+    public static class Options {
+        private final Supplier<SSLEngine> sslEngineSupplier;
+        /**
+         * When set, mutating requests are forwarded without waiting for their capture to be acknowledged and are
+         * tracked by this journal instead
+         */
+        private final UnacknowledgedCaptureJournal unacknowledgedCaptureJournal;
+        /**
+         * When set, client requests are decoded and sent over connections from this pool, which are shared by the
+         * clients of each event loop, instead of over a connection from the BacksideConnectionPool that's
+         * dedicated to the client
+         */
+        private final MultiplexingBacksideConnectionPool multiplexingBacksideConnectionPool;
+        /**
+         * When set, bounds the memory that all connections hold for capture that hasn't been offloaded yet (see
+         * {@link CaptureMemoryBudget.OverBudgetPolicy})
+         */
+        private final CaptureMemoryBudget captureMemoryBudget;
+    }
 
     public ProxyChannelInitializer(IRootWireLoggingContext rootContext,
                                    BacksideConnectionPool backsideConnectionPool,
                                    Supplier<SSLEngine> sslEngineSupplier,
                                    IConnectionCaptureFactory<T> connectionCaptureFactory,
                                    @NonNull RequestCapturePredicate requestCapturePredicate) {
+        this(rootContext, backsideConnectionPool, connectionCaptureFactory, requestCapturePredicate,
+                Options.builder().sslEngineSupplier(sslEngineSupplier).build());
+    }
+
+    public ProxyChannelInitializer(IRootWireLoggingContext rootContext,
+                                   BacksideConnectionPool backsideConnectionPool,
+                                   IConnectionCaptureFactory<T> connectionCaptureFactory,
+                                   @NonNull RequestCapturePredicate requestCapturePredicate,
+                                   @NonNull Options options) {
         this.rootContext = rootContext;
         this.backsideConnectionPool = backsideConnectionPool;
-        this.sslEngineProvider = sslEngineSupplier;
+        this.sslEngineProvider = options.sslEngineSupplier;
         this.connectionCaptureFactory = connectionCaptureFactory;
         this.requestCapturePredicate = requestCapturePredicate;
+        this.unacknowledgedCaptureJournal = options.unacknowledgedCaptureJournal;
+        this.multiplexingBacksideConnectionPool = options.multiplexingBacksideConnectionPool;
+        this.captureMemoryBudget = options.captureMemoryBudget;
     }
 
     public boolean shouldGuaranteeMessageOffloading(HttpRequest httpRequest) {
@@ -50,9 +99,24 @@ public class ProxyChannelInitializer<T> extends ChannelInitializer<SocketChannel
         }
 
         var connectionId = ch.id().asLongText();
-        ch.pipeline().addLast(new ConditionallyReliableLoggingHttpHandler<>(rootContext,
-                "", connectionId, connectionCaptureFactory, requestCapturePredicate,
-                this::shouldGuaranteeMessageOffloading));
-        ch.pipeline().addLast(new FrontsideHandler(backsideConnectionPool));
+        if (requestCapturePredicate.shouldCaptureConnection(connectionId)) {
+            ch.pipeline().addLast(new ConditionallyReliableLoggingHttpHandler<>(rootContext,
+                    "", connectionId, connectionCaptureFactory, requestCapturePredicate,
+                    this::shouldGuaranteeMessageOffloading, ConditionallyReliableLoggingHttpHandler.Options.builder()
+                            .unacknowledgedCaptureJournal(unacknowledgedCaptureJournal)
+                            .memoryBudget(captureMemoryBudget)
+                            .build()));
+        } else {
+            ch.pipeline().addLast(new UnsampledConnectionMeteringHandler(rootContext));
+        }
+        if (multiplexingBacksideConnectionPool != null) {
+            // these come after the capture handler so that it still sees (and records) the bytes on the wire
+            ch.pipeline().addLast(new HttpServerCodec());
+            ch.pipeline().addLast(
+                    new HttpObjectAggregator(multiplexingBacksideConnectionPool.getMaxRequestContentLength()));
+            ch.pipeline().addLast(new MultiplexingFrontsideHandler(multiplexingBacksideConnectionPool));
+        } else {
+            ch.pipeline().addLast(new FrontsideHandler(backsideConnectionPool));
+        }
     }
 }
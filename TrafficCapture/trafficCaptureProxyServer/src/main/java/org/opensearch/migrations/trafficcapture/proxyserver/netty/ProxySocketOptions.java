@@ -0,0 +1,59 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Socket settings for both the client (frontside) connections that the proxy accepts and the connections that
+ * it makes to the destination (backside).  Buffer sizes that aren't positive are left to the OS (including its
+ * auto-tuning).  The write buffer water marks control when a channel stops being writable, which is what
+ * bounds how much the proxy buffers for a peer that's slower to read than the other side is to write.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ProxySocketOptions {
+    public static final ProxySocketOptions DEFAULT = new ProxySocketOptions(true, 0, 0,
+            WriteBufferWaterMark.DEFAULT.low(), WriteBufferWaterMark.DEFAULT.high());
+
+    private final boolean tcpNoDelay;
+    private final int receiveBufferSize;
+    private final int sendBufferSize;
+    private final int writeBufferLowWaterMark;
+    private final int writeBufferHighWaterMark;
+
+    public ServerBootstrap applyToAcceptedChannels(ServerBootstrap serverBootstrap) {
+        serverBootstrap
+                .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                        new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
+        if (receiveBufferSize > 0) {
+            // accepted sockets inherit the listening socket's receive buffer, which has to be set before the
+            // handshake for a TCP window larger than 64KB to be negotiated
+            serverBootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        return serverBootstrap;
+    }
+
+    public Bootstrap applyTo(Bootstrap bootstrap) {
+        bootstrap
+                .option(ChannelOption.TCP_NODELAY, tcpNoDelay)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                        new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
+        if (receiveBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        return bootstrap;
+    }
+}
@@ -1,12 +1,20 @@
 package org.opensearch.migrations.trafficcapture.proxyserver;
 
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.config.SaslConfigs;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Properties;
 
 public class CaptureProxySetupTest {
@@ -59,4 +67,44 @@ public class CaptureProxySetupTest {
         // Settings needed for other passed arguments (i.e. --enableMSKAuth) are ignored by property file
         Assertions.assertEquals("SASL_SSL", props.get(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG));
     }
+
+    @Test
+    public void testSslProviderFallsBackToJdkWhenOpenSslIsUnavailable() {
+        Assertions.assertEquals(SslProvider.JDK, CaptureProxy.resolveSslProvider(SslProvider.JDK));
+        Assertions.assertEquals(OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK,
+                CaptureProxy.resolveSslProvider(SslProvider.OPENSSL));
+    }
+
+    @Test
+    public void testOpenSslPemContextAppliesTheHttpsSettings(@TempDir Path configDirectory) throws Exception {
+        Assumptions.assumeTrue(OpenSsl.isAvailable());
+        var certificate = new SelfSignedCertificate();
+        try {
+            var sslConfigFile = configDirectory.resolve("sslConfig.yml");
+            Files.write(sslConfigFile, List.of(
+                    "plugins.security.ssl.http.enabled: true",
+                    "plugins.security.ssl.http.pemcert_filepath: " + certificate.certificate().getAbsolutePath(),
+                    "plugins.security.ssl.http.pemkey_filepath: " + certificate.privateKey().getAbsolutePath(),
+                    "plugins.security.ssl.http.pemtrustedcas_filepath: " +
+                            certificate.certificate().getAbsolutePath(),
+                    "plugins.security.ssl.http.clientauth_mode: REQUIRE",
+                    "plugins.security.ssl.http.enabled_protocols: TLSv1.2",
+                    "plugins.security.ssl.http.enabled_ciphers: TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"));
+            var parameters = CaptureProxy.parseArgs(new String[]{"--destinationUri", "invalid:9200",
+                    "--listenPort", "80", "--noCapture", "--sslConfigFile", sslConfigFile.toString(),
+                    "--sslProvider", "OPENSSL"});
+
+            var engine = CaptureProxy.getFrontsideSslEngineSupplier(parameters, SslProvider.OPENSSL).get();
+            Assertions.assertTrue(engine.getClass().getSimpleName().contains("OpenSsl"));
+            Assertions.assertTrue(engine.getNeedClientAuth());
+            var enabledProtocols = List.of(engine.getEnabledProtocols());
+            Assertions.assertTrue(enabledProtocols.contains("TLSv1.2"));
+            Assertions.assertFalse(enabledProtocols.contains("TLSv1.3"));
+            var enabledCiphers = List.of(engine.getEnabledCipherSuites());
+            Assertions.assertTrue(enabledCiphers.contains("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"));
+            Assertions.assertFalse(enabledCiphers.contains("TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384"));
+        } finally {
+            certificate.delete();
+        }
+    }
 }
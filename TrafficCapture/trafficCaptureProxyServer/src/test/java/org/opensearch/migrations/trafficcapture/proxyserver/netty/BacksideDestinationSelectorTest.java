@@ -0,0 +1,79 @@
+package org.opensearch.migrations.trafficcapture.proxyserver.netty;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class BacksideDestinationSelectorTest {
+    private static final URI NODE_A = URI.create("http://nodeA:9200");
+    private static final URI NODE_B = URI.create("http://nodeB:9200");
+    private static final URI NODE_C = URI.create("http://nodeC:9200");
+
+    @Test
+    void connectionsGoToTheLeastLoadedDestinations() {
+        var selector = new BacksideDestinationSelector(List.of(NODE_A, NODE_B, NODE_C), 3, Duration.ofMinutes(1));
+        var picked = new HashSet<URI>();
+        for (int i = 0; i < 3; ++i) {
+            var destination = selector.select();
+            destination.onConnectionOpening();
+            picked.add(destination.getUri());
+        }
+        Assertions.assertEquals(3, picked.size());
+
+        // with the same number of connections, the destination that's quicker to connect to is preferred
+        var destinations = selector.getDestinations();
+        selector.onConnected(destinations.get(0), Duration.ofMillis(50));
+        selector.onConnected(destinations.get(1), Duration.ofMillis(1));
+        selector.onConnected(destinations.get(2), Duration.ofMillis(50));
+        Assertions.assertEquals(NODE_B, selector.select().getUri());
+
+        // ... until it has enough more connections than the others
+        for (int i = 0; i < 100; ++i) {
+            destinations.get(1).onConnectionOpening();
+        }
+        Assertions.assertNotEquals(NODE_B, selector.select().getUri());
+    }
+
+    @Test
+    void failingDestinationsAreEjectedUntilEveryoneIsFailing() {
+        var selector = new BacksideDestinationSelector(List.of(NODE_A, NODE_B), 2, Duration.ofMinutes(1));
+        var nodeA = selector.getDestinations().get(0);
+        var nodeB = selector.getDestinations().get(1);
+        Assertions.assertFalse(selector.onConnectFailed(nodeA));
+        Assertions.assertTrue(selector.onConnectFailed(nodeA));
+        for (int i = 0; i < 10; ++i) {
+            Assertions.assertEquals(NODE_B, selector.select().getUri());
+        }
+
+        selector.onConnectFailed(nodeB);
+        Assertions.assertTrue(selector.onConnectFailed(nodeB));
+        // when everything is ejected, the destination that was ejected first is the first to be tried again
+        Assertions.assertEquals(NODE_A, selector.select().getUri());
+    }
+
+    @Test
+    void destinationsThatAreStillListedKeepTheirStateAcrossReloads(@TempDir Path tempDir) throws Exception {
+        var file = tempDir.resolve("destinations");
+        Files.writeString(file, "# the coordinating nodes\n" + NODE_A + "\n\n" + NODE_B + "  # in another zone\n");
+        var selector = new BacksideDestinationSelector(BacksideDestinationSelector.readDestinationsFile(file),
+                3, Duration.ofMinutes(1));
+        var nodeB = selector.getDestinations().get(1);
+        nodeB.onConnectionOpening();
+
+        selector.setDestinations(List.of(NODE_B, NODE_C));
+        Assertions.assertEquals(List.of(NODE_B, NODE_C),
+                selector.getDestinations().stream().map(BacksideDestination::getUri).collect(Collectors.toList()));
+        Assertions.assertSame(nodeB, selector.getDestinations().get(0));
+        Assertions.assertEquals(1, selector.getDestinations().get(0).getOpenConnections());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> selector.setDestinations(List.of(URI.create("https://nodeD:9200"))));
+    }
+}
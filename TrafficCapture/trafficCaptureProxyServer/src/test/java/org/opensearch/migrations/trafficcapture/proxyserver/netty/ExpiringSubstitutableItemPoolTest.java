@@ -138,6 +138,50 @@ class ExpiringSubstitutableItemPoolTest {
                 pool.getStats().averageBuildTime().toMillis());
     }
 
+    @Test
+    void adaptiveSizingGrowsWithDemandAndShedsWhenItDrops() throws Exception {
+        var eventLoop = new NioEventLoopGroup(1, new DefaultThreadFactory("testAdaptivePool"));
+        var builtItemCursor = new AtomicInteger();
+        var shedItems = new AtomicInteger();
+        var pool = new ExpiringSubstitutableItemPool<Future<Integer>,Integer>(
+                Duration.ofMinutes(1), eventLoop.next(),
+                () -> {
+                    var rval = new DefaultPromise<Integer>(eventLoop.next());
+                    eventLoop.schedule(() -> rval.setSuccess(builtItemCursor.incrementAndGet()),
+                            SUPPLY_WORK_TIME.toMillis(), TimeUnit.MILLISECONDS);
+                    return rval;
+                },
+                item -> shedItems.incrementAndGet());
+        final int MAX_POOL_SIZE = 10;
+        pool.enableAdaptiveSizing(new ExpiringSubstitutableItemPool.AdaptiveSizingPolicy(0, MAX_POOL_SIZE,
+                Duration.ofMillis(100)));
+
+        // ~200 gets/s with a 100ms build time calls for more items than the pool is allowed to have
+        var stopTime = Instant.now().plus(Duration.ofSeconds(1));
+        while (Instant.now().isBefore(stopTime)) {
+            getNextItem(pool);
+            Thread.sleep(5);
+        }
+        var busyStats = pool.getStats();
+        log.info("Stats while busy: " + busyStats);
+        Assertions.assertEquals(MAX_POOL_SIZE, busyStats.getPoolSize());
+        Assertions.assertTrue(busyStats.getNHotGets() > 0);
+        Assertions.assertTrue(busyStats.getSmoothedBuildTime().toMillis() >= SUPPLY_WORK_TIME.toMillis());
+
+        // with no more gets, the pool should empty out long before any of its items would have expired
+        var deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (pool.getStats().getPoolSize() > 0 && Instant.now().isBefore(deadline)) {
+            Thread.sleep(100);
+        }
+        var idleStats = pool.getStats();
+        log.info("Stats once idle: " + idleStats);
+        Assertions.assertEquals(0, idleStats.getPoolSize());
+        Assertions.assertEquals(0, idleStats.getNItemsExpired());
+        Assertions.assertTrue(idleStats.getNItemsShed() > 0);
+        Assertions.assertEquals(idleStats.getNItemsShed(), shedItems.get());
+        eventLoop.shutdownGracefully().sync();
+    }
+
     private static Integer getNextItem(ExpiringSubstitutableItemPool<Future<Integer>,Integer> pool)
             throws InterruptedException, ExecutionException {
         return pool.getEventLoop().next().schedule(()->pool.getAvailableOrNewItem(),
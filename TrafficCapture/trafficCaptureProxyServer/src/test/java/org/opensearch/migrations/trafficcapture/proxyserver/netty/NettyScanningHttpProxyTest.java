@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 
 @Slf4j
@@ -133,6 +134,81 @@ class NettyScanningHttpProxyTest {
         }
     }
 
+    @Test
+    public void testRoundTripsWithNativeTransportAndMultipleAcceptThreads() throws
+            IOException,
+            PortFinder.ExceededMaxPortAssigmentAttemptException
+    {
+        final int NUM_CONNECTIONS = 4;
+        var captureFactory = new InMemoryConnectionCaptureFactory(TEST_NODE_ID_STRING, 1024*1024, () -> {});
+        var inMemoryInstrumentationBundle = new InMemoryInstrumentationBundle(true, true);
+        var rootCtx = new RootWireLoggingContext(inMemoryInstrumentationBundle.openTelemetrySdk);
+        // falls back to NIO wherever the native transports aren't available
+        var servers = startServers(rootCtx, captureFactory, NettyTransport.resolve(NettyTransport.IO_URING), 2, 0);
+        try {
+            var nettyEndpoint = URI.create("http://localhost:" + servers.v1().getProxyPort() + "/");
+            for (int i=0; i<NUM_CONNECTIONS; ++i) {
+                try (var client = new SimpleHttpClientForTesting()) {
+                    Assertions.assertEquals(UPSTREAM_SERVER_RESPONSE_BODY,
+                            makeTestRequestViaClient(client, nettyEndpoint));
+                }
+            }
+        } finally {
+            try {
+                servers.v1().stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    public void testClientsShareMultiplexedDestinationConnections() throws
+            IOException,
+            InterruptedException,
+            PortFinder.ExceededMaxPortAssigmentAttemptException
+    {
+        final int NUM_CLIENTS = 3;
+        final int NUM_INTERACTIONS = 3;
+        var capturesClosed = new CountDownLatch(NUM_CLIENTS);
+        var captureFactory = new InMemoryConnectionCaptureFactory(TEST_NODE_ID_STRING, 1024*1024,
+                capturesClosed::countDown);
+        var inMemoryInstrumentationBundle = new InMemoryInstrumentationBundle(true, true);
+        var rootCtx = new RootWireLoggingContext(inMemoryInstrumentationBundle.openTelemetrySdk);
+        var multiplexingPool = new AtomicReference<MultiplexingBacksideConnectionPool>();
+        var servers = startServers(rootCtx, captureFactory, NettyTransport.NIO, 1, 1, multiplexingPool::set);
+        try {
+            var nettyEndpoint = URI.create("http://localhost:" + servers.v1().getProxyPort() + "/");
+            var clients = new ArrayList<SimpleHttpClientForTesting>();
+            for (int c=0; c<NUM_CLIENTS; ++c) {
+                clients.add(new SimpleHttpClientForTesting());
+            }
+            for (int i=0; i<NUM_INTERACTIONS; ++i) {
+                for (var client : clients) {
+                    Assertions.assertEquals(UPSTREAM_SERVER_RESPONSE_BODY,
+                            makeTestRequestViaClient(client, nettyEndpoint));
+                }
+            }
+            for (var client : clients) {
+                client.close();
+            }
+            capturesClosed.await();
+            var recordedTrafficStreams = captureFactory.getRecordedTrafficStreamsStream()
+                    .toArray(TrafficStream[]::new);
+            Assertions.assertEquals(NUM_CLIENTS, recordedTrafficStreams.length);
+            for (var trafficStream : recordedTrafficStreams) {
+                var coalescedTrafficList = coalesceObservations(trafficStream);
+                Assertions.assertEquals(NUM_INTERACTIONS*2, coalescedTrafficList.size());
+                Assertions.assertEquals(normalizeMessage(EXPECTED_REQUEST_STRING),
+                        normalizeMessage(new String(coalescedTrafficList.get(0), StandardCharsets.UTF_8)));
+            }
+            // with one accept thread, every client is on the same event loop and one connection serves them all
+            Assertions.assertEquals(1, multiplexingPool.get().getOpenedConnectionCount());
+        } finally {
+            servers.v1().stop();
+        }
+    }
+
     private static String normalizeMessage(String s) {
         return s.replaceAll("Date: .*", "Date: SOMETHING");
     }
@@ -176,6 +252,24 @@ class NettyScanningHttpProxyTest {
     private static Tuple<NettyScanningHttpProxy, Integer>
     startServers(RootWireLoggingContext rootCtx, IConnectionCaptureFactory connectionCaptureFactory) throws
             PortFinder.ExceededMaxPortAssigmentAttemptException
+    {
+        return startServers(rootCtx, connectionCaptureFactory, NettyTransport.NIO, 1, 0);
+    }
+
+    private static Tuple<NettyScanningHttpProxy, Integer>
+    startServers(RootWireLoggingContext rootCtx, IConnectionCaptureFactory connectionCaptureFactory,
+                 NettyTransport transport, int numAcceptThreads, int multiplexedConnectionsPerThread) throws
+            PortFinder.ExceededMaxPortAssigmentAttemptException
+    {
+        return startServers(rootCtx, connectionCaptureFactory, transport, numAcceptThreads,
+                multiplexedConnectionsPerThread, pool -> {});
+    }
+
+    private static Tuple<NettyScanningHttpProxy, Integer>
+    startServers(RootWireLoggingContext rootCtx, IConnectionCaptureFactory connectionCaptureFactory,
+                 NettyTransport transport, int numAcceptThreads, int multiplexedConnectionsPerThread,
+                 Consumer<MultiplexingBacksideConnectionPool> onMultiplexingPoolCreated) throws
+            PortFinder.ExceededMaxPortAssigmentAttemptException
     {
         var nshp = new AtomicReference<NettyScanningHttpProxy>();
         var upstreamTestServer = new AtomicReference<SimpleHttpServer>();
@@ -198,13 +292,19 @@ class NettyScanningHttpProxyTest {
         }
 
         PortFinder.retryWithNewPortUntilNoThrow(port -> {
-            nshp.set(new NettyScanningHttpProxy(port));
+            nshp.set(new NettyScanningHttpProxy(port, transport, ProxySocketOptions.DEFAULT, numAcceptThreads));
             try {
                 var connectionPool = new BacksideConnectionPool(testServerUri, null,
-                        10, Duration.ofSeconds(10));
+                        10, Duration.ofSeconds(10), transport, ProxySocketOptions.DEFAULT);
 
-                nshp.get().start(rootCtx, connectionPool, 1, null,
-                        connectionCaptureFactory, new RequestCapturePredicate());
+                var multiplexingPool = multiplexedConnectionsPerThread <= 0 ? null :
+                        new MultiplexingBacksideConnectionPool(connectionPool, multiplexedConnectionsPerThread, 1,
+                                1024 * 1024);
+                onMultiplexingPoolCreated.accept(multiplexingPool);
+                nshp.get().start(rootCtx, connectionPool, 1, connectionCaptureFactory,
+                        new RequestCapturePredicate(), ProxyChannelInitializer.Options.builder()
+                                .multiplexingBacksideConnectionPool(multiplexingPool)
+                                .build());
                 System.out.println("proxy port = " + port);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
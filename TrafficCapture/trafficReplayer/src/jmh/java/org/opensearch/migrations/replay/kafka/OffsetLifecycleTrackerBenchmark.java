@@ -0,0 +1,66 @@
+package org.opensearch.migrations.replay.kafka;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks outstanding records for one partition the way that a fast replay does: every offset of a poll is added,
+ * and then the records are committed in a roughly random order, since requests on different connections finish
+ * independently of each other.  Run with ./gradlew :trafficReplayer:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OffsetLifecycleTrackerBenchmark {
+    @Param({"1000", "10000", "50000"})
+    public int outstandingRecords;
+
+    private long[] completionOrder;
+
+    @Setup
+    public void setup() {
+        var random = new Random(1);
+        completionOrder = new long[outstandingRecords];
+        for (int i = 0; i < outstandingRecords; ++i) {
+            completionOrder[i] = i;
+        }
+        for (int i = outstandingRecords - 1; i > 0; --i) {
+            var j = random.nextInt(i + 1);
+            var tmp = completionOrder[i];
+            completionOrder[i] = completionOrder[j];
+            completionOrder[j] = tmp;
+        }
+    }
+
+    @Benchmark
+    public void bitsetRingTracker(Blackhole blackhole) {
+        var tracker = new OffsetLifecycleTracker(1);
+        for (int i = 0; i < outstandingRecords; ++i) {
+            tracker.add(i);
+        }
+        for (var offset : completionOrder) {
+            blackhole.consume(tracker.removeAndReturnNewHead(offset));
+        }
+    }
+
+    @Benchmark
+    public void priorityQueueTracker(Blackhole blackhole) {
+        var tracker = new PriorityQueueOffsetLifecycleTracker();
+        for (int i = 0; i < outstandingRecords; ++i) {
+            tracker.add(i);
+        }
+        for (var offset : completionOrder) {
+            blackhole.consume(tracker.removeAndReturnNewHead(offset));
+        }
+    }
+}
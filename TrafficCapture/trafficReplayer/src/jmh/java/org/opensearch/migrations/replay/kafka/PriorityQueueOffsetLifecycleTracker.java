@@ -0,0 +1,36 @@
+package org.opensearch.migrations.replay.kafka;
+
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * The PriorityQueue based implementation that OffsetLifecycleTracker used to have, kept as a baseline for
+ * {@link OffsetLifecycleTrackerBenchmark}.
+ */
+class PriorityQueueOffsetLifecycleTracker {
+    private final PriorityQueue<Long> pQueue = new PriorityQueue<>();
+    private long cursorHighWatermark;
+
+    void add(long offset) {
+        synchronized (pQueue) {
+            cursorHighWatermark = offset;
+            pQueue.add(offset);
+        }
+    }
+
+    Optional<Long> removeAndReturnNewHead(long offsetToRemove) {
+        synchronized (pQueue) {
+            var topCursor = pQueue.peek();
+            pQueue.remove(offsetToRemove);
+            if (topCursor == null) {
+                throw new IllegalStateException("pQueue looks to have been empty by the time we tried to remove " +
+                        offsetToRemove);
+            }
+            if (offsetToRemove == topCursor) {
+                return Optional.of(Optional.ofNullable(pQueue.peek()).orElse(cursorHighWatermark + 1));
+            } else {
+                return Optional.empty();
+            }
+        }
+    }
+}
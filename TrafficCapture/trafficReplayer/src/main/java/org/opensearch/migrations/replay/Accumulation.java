@@ -3,7 +3,7 @@ package org.opensearch.migrations.replay;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
-import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
 
 import java.time.Instant;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -45,8 +45,8 @@ public class Accumulation {
     int startingSourceRequestIndex;
     private boolean hasBeenExpired;
 
-    public Accumulation(ITrafficStreamKey key, TrafficStream ts) {
-        this(key, ts.getPriorRequestsReceived()+(ts.hasLastObservationWasUnterminatedRead()?1:0),
+    public Accumulation(ITrafficStreamWithKey ts) {
+        this(ts.getKey(), ts.getPriorRequestsReceived()+(ts.hasLastObservationWasUnterminatedRead()?1:0),
                 ts.getLastObservationWasUnterminatedRead());
     }
 
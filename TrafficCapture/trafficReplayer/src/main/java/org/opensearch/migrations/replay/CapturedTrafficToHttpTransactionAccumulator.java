@@ -9,6 +9,7 @@ import org.opensearch.migrations.replay.traffic.expiration.BehavioralPolicy;
 import org.opensearch.migrations.replay.traffic.expiration.ExpiringTrafficStreamMap;
 import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
 import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservationCompression;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
 
@@ -20,6 +21,7 @@ import java.util.Optional;
 import java.util.StringJoiner;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * This class consumes TrafficObservation objects, which will be predominated by reads and writes that
@@ -48,7 +50,7 @@ import java.util.function.Consumer;
  * responses may not have been completely received.
  */
 @Slf4j
-public class CapturedTrafficToHttpTransactionAccumulator {
+public class CapturedTrafficToHttpTransactionAccumulator implements TrafficStreamAccumulator {
 
     public static final Duration EXPIRATION_GRANULARITY = Duration.ofSeconds(1);
     private final ExpiringTrafficStreamMap liveStreams;
@@ -130,11 +132,17 @@ public class CapturedTrafficToHttpTransactionAccumulator {
         }
     };
 
+    @Override
     public int numberOfConnectionsCreated() { return liveStreams.numberOfConnectionsCreated(); }
+    @Override
     public int numberOfRequestsOnReusedConnections() { return reusedKeepAliveCounter.get(); }
+    @Override
     public int numberOfConnectionsClosed() { return closedConnectionCounter.get(); }
+    @Override
     public int numberOfConnectionExceptions() { return exceptionConnectionCounter.get(); }
+    @Override
     public int numberOfConnectionsExpired() { return connectionsExpiredCounter.get(); }
+    @Override
     public int numberOfRequestsTerminatedUponAccumulatorClose() {
         return requestsTerminatedUponAccumulatorCloseCounter.get();
     }
@@ -155,16 +163,32 @@ public class CapturedTrafficToHttpTransactionAccumulator {
                 .toString();
     }
 
+    @Override
     public void accept(ITrafficStreamWithKey trafficStreamAndKey) {
-        var yetToBeSequencedTrafficStream = trafficStreamAndKey.getStream();
-        log.atTrace().setMessage(() -> "Got trafficStream: " + summarizeTrafficStream(yetToBeSequencedTrafficStream)).log();
-        var partitionId = yetToBeSequencedTrafficStream.getNodeId();
-        var connectionId = yetToBeSequencedTrafficStream.getConnectionId();
         var tsk = trafficStreamAndKey.getKey();
+        var partitionId = tsk.getNodeId();
+        var connectionId = tsk.getConnectionId();
+        TrafficStream trafficStream;
+        List<TrafficObservation> observations;
+        try {
+            trafficStream = trafficStreamAndKey.getStream();
+            observations = decompressObservations(trafficStream);
+        } catch (IllegalStateException e) {
+            // like records that can't be parsed at all, a stream whose observations can't be parsed is skipped
+            log.atError().setCause(e).setMessage(() -> "Dropping TrafficStream " + tsk +
+                    " because its observations couldn't be parsed").log();
+            listener.onTrafficStreamIgnored(tsk);
+            return;
+        } catch (TrafficObservationCompression.UnreadableCompressedObservationException |
+                 IllegalArgumentException e) {
+            log.atError().setCause(e).setMessage(() -> "Dropping TrafficStream " + tsk +
+                    " because its compressed observations couldn't be decompressed").log();
+            listener.onTrafficStreamIgnored(tsk);
+            return;
+        }
+        log.atTrace().setMessage(() -> "Got trafficStream: " + summarizeTrafficStream(trafficStream)).log();
         var accum = liveStreams.getOrCreateWithoutExpiration(tsk, k -> createInitialAccumulation(trafficStreamAndKey));
-        var trafficStream = trafficStreamAndKey.getStream();
-        for (int i = 0; i < trafficStream.getSubStreamCount(); ++i) {
-            var o = trafficStream.getSubStreamList().get(i);
+        for (var o : observations) {
             var connectionStatus = addObservationToAccumulation(accum, tsk, o);
             if (CONNECTION_STATUS.CLOSED == connectionStatus) {
                 log.atInfo().setMessage(() -> "Connection terminated: removing " + partitionId + ":" + connectionId +
@@ -183,21 +207,35 @@ public class CapturedTrafficToHttpTransactionAccumulator {
         }
     }
 
+    /**
+     * Expands compressed reads and writes before any of the stream is accumulated, so that a stream that can't be
+     * expanded is skipped as a whole and so that the rest of the state machine only ever sees plain Read and Write
+     * observations
+     */
+    private static List<TrafficObservation> decompressObservations(TrafficStream trafficStream) {
+        return trafficStream.getSubStreamList().stream()
+                .map(TrafficObservationCompression::decompressObservation)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Only uses the stream's header fields, except when the full stream is logged
+     */
     private Accumulation createInitialAccumulation(ITrafficStreamWithKey streamWithKey) {
-        var stream = streamWithKey.getStream();
         var key = streamWithKey.getKey();
 
         if (key.getTrafficStreamIndex() == 0 &&
-                (stream.getPriorRequestsReceived() > 0 || stream.getLastObservationWasUnterminatedRead())) {
+                (streamWithKey.getPriorRequestsReceived() > 0 ||
+                        streamWithKey.getLastObservationWasUnterminatedRead())) {
             log.atWarn().setMessage(()->"Encountered a TrafficStream object with inconsistent values between " +
-                    "the prior request count (" + stream.getPriorRequestsReceived() + ", " +
-                    "lastObservationWasUnterminatedRead (" + stream.getLastObservationWasUnterminatedRead() +
+                    "the prior request count (" + streamWithKey.getPriorRequestsReceived() + ", " +
+                    "lastObservationWasUnterminatedRead (" + streamWithKey.getLastObservationWasUnterminatedRead() +
                     ") and the index (" + key.getTrafficStreamIndex() +
                     ").  Traffic Observations will be ignored until Reads after the next EndOfMessage" +
-                    " are encountered.   Full stream object=" + stream).log();
+                    " are encountered.   Full stream object=" + streamWithKey.getStream()).log();
         }
 
-        return new Accumulation(streamWithKey.getKey(), stream);
+        return new Accumulation(streamWithKey);
     }
 
     private enum CONNECTION_STATUS {
@@ -225,7 +263,7 @@ public class CapturedTrafficToHttpTransactionAccumulator {
     private Optional<CONNECTION_STATUS> handleObservationForSkipState(Accumulation accum, TrafficObservation observation) {
         assert !observation.hasClose() : "close will be handled earlier in handleCloseObservationThatAffectEveryState";
         if (accum.state == Accumulation.State.IGNORING_LAST_REQUEST) {
-            if (observation.hasWrite() || observation.hasWriteSegment() ||
+            if (observation.hasWrite() || observation.hasWriteSegment() || observation.hasResponseMetadata() ||
                     observation.hasEndOfMessageIndicator()) {
                 accum.state = Accumulation.State.WAITING_FOR_NEXT_READ_CHUNK;
             } else if (observation.hasRequestDropped()) {
@@ -294,7 +332,7 @@ public class CapturedTrafficToHttpTransactionAccumulator {
             }
             var rrPair = accum.getOrCreateTransactionPair(trafficStreamKey, originTimestamp);
             log.atTrace().setMessage(() -> "Adding request data for accum[" + connectionId + "]=" + accum).log();
-            rrPair.addRequestData(timestamp, observation.getRead().getData().toByteArray());
+            rrPair.addRequestData(timestamp, observation.getRead().getData());
             log.atTrace().setMessage(() -> "Added request data for accum[" + connectionId + "]=" + accum).log();
         } else if (observation.hasEndOfMessageIndicator()) {
             assert accum.hasRrPair();
@@ -306,8 +344,8 @@ public class CapturedTrafficToHttpTransactionAccumulator {
                 rrPair.requestData = new HttpMessageAndTimestamp.Request(timestamp);
                 requestCounter.incrementAndGet();
             }
-            rrPair.addRequestData(timestamp, observation.getRead().getData().toByteArray());
-            rrPair.requestData.addSegment(observation.getReadSegment().getData().toByteArray());
+            rrPair.addRequestData(timestamp, observation.getRead().getData());
+            rrPair.requestData.addSegment(observation.getReadSegment().getData());
             log.atTrace().setMessage(()->"Added request segment for accum[" + connectionId + "]=" + accum).log();
         } else if (observation.hasSegmentEnd()) {
             var rrPair = accum.getRrPair();
@@ -334,7 +372,7 @@ public class CapturedTrafficToHttpTransactionAccumulator {
         if (observation.hasWrite()) {
             var rrPair = accum.getRrPair();
             log.atTrace().setMessage(() -> "Adding response data for accum[" + connectionId + "]=" + accum).log();
-            rrPair.addResponseData(timestamp, observation.getWrite().getData().toByteArray());
+            rrPair.addResponseData(timestamp, observation.getWrite().getData());
             log.atTrace().setMessage(() -> "Added response data for accum[" + connectionId + "]=" + accum).log();
         } else if (observation.hasWriteSegment()) {
             log.atTrace().setMessage(() -> "Adding response segment for accum[" + connectionId + "]=" + accum).log();
@@ -342,8 +380,13 @@ public class CapturedTrafficToHttpTransactionAccumulator {
             if (rrPair.responseData == null) {
                 rrPair.responseData = new HttpMessageAndTimestamp.Response(timestamp);
             }
-            rrPair.responseData.addSegment(observation.getWriteSegment().getData().toByteArray());
+            rrPair.responseData.addSegment(observation.getWriteSegment().getData());
             log.atTrace().setMessage(() -> "Added response segment for accum[" + connectionId + "]=" + accum).log();
+        } else if (observation.hasResponseMetadata()) {
+            var rrPair = accum.getRrPair();
+            log.atTrace().setMessage(() -> "Adding response metadata for accum[" + connectionId + "]=" + accum)
+                    .log();
+            rrPair.addResponseMetadata(timestamp, observation.getResponseMetadata());
         } else if (observation.hasSegmentEnd()) {
             var rrPair = accum.getRrPair();
             assert rrPair.responseData.hasInProgressSegment();
@@ -419,6 +462,7 @@ public class CapturedTrafficToHttpTransactionAccumulator {
         accumulation.resetForNextRequest();
     }
 
+    @Override
     public void close() {
         liveStreams.values().forEach(accum -> {
             requestsTerminatedUponAccumulatorCloseCounter.incrementAndGet();
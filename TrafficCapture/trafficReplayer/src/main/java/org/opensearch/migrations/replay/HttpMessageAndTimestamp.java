@@ -1,15 +1,16 @@
 package org.opensearch.migrations.replay;
 
-import io.netty.buffer.Unpooled;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.Lombok;
+import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.migrations.replay.datatypes.RawPackets;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -29,11 +30,29 @@ public class HttpMessageAndTimestamp {
     }
 
     public static class Response extends HttpMessageAndTimestamp {
+        /**
+         * Set instead of any packet bytes when only the metadata of the source response was captured
+         */
+        @Getter
+        private ResponseMetadataObservation metadata;
+
         public Response(Instant firstPacketTimestamp) {
             super(firstPacketTimestamp);
         }
+
+        public Response(Instant firstPacketTimestamp, @NonNull ResponseMetadataObservation metadata) {
+            super(firstPacketTimestamp);
+            this.metadata = metadata;
+            setLastPacketTimestamp(metadata.hasLastByteTs() ?
+                    TrafficStreamUtils.instantFromProtoTimestamp(metadata.getLastByteTs()) : firstPacketTimestamp);
+        }
+
         @Override
         public String toString() {
+            if (metadata != null) {
+                return "HttpMessageAndTimestamp{firstPacketTimestamp=" + getFirstPacketTimestamp() +
+                        ", lastPacketTimestamp=" + getLastPacketTimestamp() + ", metadata=[" + metadata + "]}";
+            }
             return super.format(Optional.of(HttpByteBufFormatter.HttpMessageType.REQUEST));
         }
     }
@@ -45,7 +64,10 @@ public class HttpMessageAndTimestamp {
     private Instant lastPacketTimestamp;
 
     public final RawPackets packetBytes;
-    ByteArrayOutputStream currentSegmentBytes;
+    /**
+     * Segments are concatenated as a rope, which shares the memory of each segment rather than copying them
+     */
+    ByteString currentSegmentBytes;
 
     public HttpMessageAndTimestamp(Instant firstPacketTimestamp) {
         this.firstPacketTimestamp = firstPacketTimestamp;
@@ -60,6 +82,10 @@ public class HttpMessageAndTimestamp {
         packetBytes.add(b);
     }
 
+    public void add(ByteString b) {
+        packetBytes.add(b);
+    }
+
     public Stream<byte[]> stream() {
         return packetBytes.stream();
     }
@@ -67,7 +93,7 @@ public class HttpMessageAndTimestamp {
     public String format(Optional<HttpByteBufFormatter.HttpMessageType> messageTypeOp) {
         var packetBytesAsStr = messageTypeOp.map(mt-> HttpByteBufFormatter.httpPacketBytesToString(mt, packetBytes))
                 .orElseGet(()-> HttpByteBufFormatter.httpPacketBufsToString(
-                        packetBytes.stream().map(Unpooled::wrappedBuffer),
+                        packetBytes.streamByteBufs(),
                         Utils.MAX_PAYLOAD_SIZE_TO_PRINT, true));
         final StringBuilder sb = new StringBuilder("HttpMessageAndTimestamp{");
         sb.append("firstPacketTimestamp=").append(firstPacketTimestamp);
@@ -78,18 +104,15 @@ public class HttpMessageAndTimestamp {
     }
 
     public void addSegment(byte[] data) {
-        if (currentSegmentBytes == null) {
-            currentSegmentBytes = new ByteArrayOutputStream();
-        }
-        try {
-            currentSegmentBytes.write(data);
-        } catch (IOException e) {
-            throw Lombok.sneakyThrow(e);
-        }
+        addSegment(UnsafeByteOperations.unsafeWrap(data));
+    }
+
+    public void addSegment(ByteString data) {
+        currentSegmentBytes = currentSegmentBytes == null ? data : currentSegmentBytes.concat(data);
     }
 
     public void finalizeRequestSegments(Instant timestamp) {
-        packetBytes.add(currentSegmentBytes.toByteArray());
+        packetBytes.add(currentSegmentBytes);
         this.lastPacketTimestamp = timestamp;
         currentSegmentBytes = null;
     }
@@ -5,8 +5,10 @@ import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.HttpHeaders;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.replay.datatypes.RawPackets;
 import org.opensearch.migrations.replay.datatypes.TransformedPackets;
 import org.opensearch.migrations.replay.tracing.IReplayContexts;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
 
 import java.time.Duration;
 import java.util.Base64;
@@ -31,6 +33,8 @@ import java.util.stream.Stream;
 public class ParsedHttpMessagesAsDicts {
     public static final String STATUS_CODE_KEY = "Status-Code";
     public static final String RESPONSE_TIME_MS_KEY = "response_time_ms";
+    public static final String RESPONSE_BYTE_LENGTH_KEY = "response_byte_length";
+    public static final String BODY_CRC32C_KEY = "body_crc32c";
 
     public final Optional<Map<String, Object>> sourceRequestOp;
     public final Optional<Map<String, Object>> sourceResponseOp;
@@ -65,12 +69,19 @@ public class ParsedHttpMessagesAsDicts {
 
     private static Optional<Map<String, Object>> getSourceResponseOp(SourceTargetCaptureTuple tuple,
                                                                      Optional<RequestResponsePacketPair> sourcePairOp) {
-        return sourcePairOp.flatMap(p ->
-                Optional.ofNullable(p.responseData).flatMap(d -> Optional.ofNullable(d.packetBytes))
-                        .map(d -> convertResponse(tuple.context, d,
-                                // TODO: These durations are not measuring the same values!
-                                Duration.between(tuple.sourcePair.requestData.getLastPacketTimestamp(),
-                                        tuple.sourcePair.responseData.getLastPacketTimestamp()))));
+        return sourcePairOp.flatMap(p -> Optional.ofNullable(p.responseData).map(responseData -> {
+            // TODO: These durations are not measuring the same values!
+            var latency = Duration.between(p.requestData.getLastPacketTimestamp(),
+                    responseData.getLastPacketTimestamp());
+            if (responseData instanceof HttpMessageAndTimestamp.Response &&
+                    ((HttpMessageAndTimestamp.Response) responseData).getMetadata() != null) {
+                return convertResponseMetadata(((HttpMessageAndTimestamp.Response) responseData).getMetadata(),
+                        latency);
+            }
+            return Optional.ofNullable(responseData.packetBytes)
+                    .map(d -> convertResponse(tuple.context, d, latency))
+                    .orElse(null);
+        }));
     }
 
     private static Optional<Map<String, Object>>
@@ -103,6 +114,9 @@ public class ParsedHttpMessagesAsDicts {
 
 
     private static Stream<ByteBuf> byteToByteBufStream(List<byte[]> incoming) {
+        if (incoming instanceof RawPackets) {
+            return ((RawPackets) incoming).streamByteBufs();
+        }
         return incoming.stream().map(Unpooled::wrappedBuffer);
     }
 
@@ -149,6 +163,26 @@ public class ParsedHttpMessagesAsDicts {
         });
     }
 
+    /**
+     * Makes the same map that convertResponse() would for a response that was captured as metadata only, except
+     * that the body is replaced with the number of bytes that the response had and, if it was captured, a hash
+     * of its body.  Only the headers that were chosen for capture are present.
+     */
+    private static Map<String, Object> convertResponseMetadata(@NonNull ResponseMetadataObservation metadata,
+                                                               Duration latency) {
+        var map = new LinkedHashMap<String, Object>();
+        map.put("HTTP-Version", metadata.getHttpVersion());
+        map.put(STATUS_CODE_KEY, metadata.getStatusCode());
+        map.put("Reason-Phrase", metadata.getReasonPhrase());
+        map.put(RESPONSE_TIME_MS_KEY, latency.toMillis());
+        map.put(RESPONSE_BYTE_LENGTH_KEY, metadata.getByteLength());
+        if (metadata.hasBodyCrc32C()) {
+            map.put(BODY_CRC32C_KEY, Integer.toUnsignedString(metadata.getBodyCrc32C(), 16));
+        }
+        metadata.getHeadersList().forEach(h -> map.put(h.getName(), h.getValue()));
+        return map;
+    }
+
     private static Map<String, Object> convertResponse(@NonNull IReplayContexts.ITupleHandlingContext context,
                                                        @NonNull List<byte[]> data, Duration latency) {
         return makeSafeMap(context, () -> {
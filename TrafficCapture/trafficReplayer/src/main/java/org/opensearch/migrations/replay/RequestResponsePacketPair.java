@@ -1,6 +1,8 @@
 package org.opensearch.migrations.replay;
 
 import com.google.common.base.Objects;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.migrations.replay.datatypes.ISourceTrafficChannelKey;
@@ -9,8 +11,8 @@ import org.opensearch.migrations.replay.datatypes.UniqueReplayerRequestKey;
 import org.opensearch.migrations.replay.tracing.IReplayContexts;
 import org.opensearch.migrations.tracing.IScopedInstrumentationAttributes;
 import org.opensearch.migrations.tracing.IWithTypedEnclosingScope;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
 
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -79,8 +81,12 @@ public class RequestResponsePacketPair {
     }
 
     public void addRequestData(Instant packetTimeStamp, byte[] data) {
+        addRequestData(packetTimeStamp, UnsafeByteOperations.unsafeWrap(data));
+    }
+
+    public void addRequestData(Instant packetTimeStamp, ByteString data) {
         if (log.isTraceEnabled()) {
-            log.trace(this + " Adding request data: " + new String(data, StandardCharsets.UTF_8));
+            log.trace(this + " Adding request data: " + data.toStringUtf8());
         }
         if (requestData == null) {
             requestData = new HttpMessageAndTimestamp.Request(packetTimeStamp);
@@ -90,8 +96,12 @@ public class RequestResponsePacketPair {
     }
 
     public void addResponseData(Instant packetTimeStamp, byte[] data) {
+        addResponseData(packetTimeStamp, UnsafeByteOperations.unsafeWrap(data));
+    }
+
+    public void addResponseData(Instant packetTimeStamp, ByteString data) {
         if (log.isTraceEnabled()) {
-            log.trace(this + " Adding response data: " + new String(data, StandardCharsets.UTF_8));
+            log.trace(this + " Adding response data: " + data.toStringUtf8());
         }
         if (responseData == null) {
             responseData = new HttpMessageAndTimestamp.Response(packetTimeStamp);
@@ -100,6 +110,11 @@ public class RequestResponsePacketPair {
         responseData.setLastPacketTimestamp(packetTimeStamp);
     }
 
+    public void addResponseMetadata(Instant firstByteTimestamp, ResponseMetadataObservation metadata) {
+        log.atTrace().setMessage(() -> this + " Adding response metadata: " + metadata).log();
+        responseData = new HttpMessageAndTimestamp.Response(firstByteTimestamp, metadata);
+    }
+
     public void holdTrafficStream(ITrafficStreamKey trafficStreamKey) {
         if (trafficStreamKeysBeingHeld == null) {
             trafficStreamKeysBeingHeld = new ArrayList<>();
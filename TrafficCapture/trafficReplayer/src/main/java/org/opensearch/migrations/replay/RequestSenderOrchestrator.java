@@ -13,6 +13,7 @@ import org.opensearch.migrations.replay.datatypes.UniqueReplayerRequestKey;
 import org.opensearch.migrations.replay.tracing.IReplayContexts;
 import org.opensearch.migrations.replay.util.DiagnosticTrackableCompletableFuture;
 import org.opensearch.migrations.replay.util.StringTrackableCompletableFuture;
+import org.opensearch.migrations.replay.util.TimingWheelScheduler;
 import org.slf4j.event.Level;
 
 import java.time.Duration;
@@ -20,6 +21,7 @@ import java.time.Instant;
 import java.util.Iterator;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -30,9 +32,33 @@ import java.util.stream.Stream;
 public class RequestSenderOrchestrator {
 
     public final ClientConnectionPool clientConnectionPool;
+    /**
+     * Transforms, transmits and closes are scheduled on a timing wheel for each event loop rather than through
+     * netty's own scheduler, whose heap of tasks gets expensive when there are millions of them pending.
+     */
+    private final ConcurrentHashMap<EventLoop, TimingWheelScheduler> eventLoopToTimingWheelMap;
 
     public RequestSenderOrchestrator(ClientConnectionPool clientConnectionPool) {
         this.clientConnectionPool = clientConnectionPool;
+        this.eventLoopToTimingWheelMap = new ConcurrentHashMap<>();
+    }
+
+    private TimingWheelScheduler getTimingWheel(EventLoop eventLoop) {
+        return eventLoopToTimingWheelMap.computeIfAbsent(eventLoop, TimingWheelScheduler::new);
+    }
+
+    /**
+     * Schedules the task on the event loop's timing wheel and records how late it actually ran
+     */
+    private void scheduleOnTimingWheel(EventLoop eventLoop, IReplayContexts.IChannelKeyContext ctx,
+                                       ChannelTaskType taskType, Instant atTime, Runnable task) {
+        var timingWheel = getTimingWheel(eventLoop);
+        var deadlineEpochNanos = TimingWheelScheduler.toEpochNanos(atTime);
+        timingWheel.schedule(deadlineEpochNanos, () -> {
+            ctx.addScheduleSkew(taskType,
+                    Duration.ofNanos(timingWheel.currentEpochNanos() - deadlineEpochNanos));
+            task.run();
+        });
     }
 
     public <T> DiagnosticTrackableCompletableFuture<String, T>
@@ -50,9 +76,10 @@ public class RequestSenderOrchestrator {
         // of the underlying network connection itself, so it's fair to be able to do this without
         // first needing to wait for a connection to succeed.  In fact, making them more independent
         // means that the work item being enqueued is less likely to cause a connection timeout.
-        connectionSession.eventLoop.schedule(()-> {
+        scheduleOnTimingWheel(connectionSession.eventLoop, ctx.getChannelKeyContext(), ChannelTaskType.TRANSFORM,
+                timestamp, () -> {
                     scheduledContext.close();
-                    return task.get().map(f -> f.whenComplete((v, t) -> {
+                    task.get().map(f -> f.whenComplete((v, t) -> {
                                 if (t != null) {
                                     finalTunneledResponse.future.completeExceptionally(t);
                                 } else {
@@ -60,8 +87,7 @@ public class RequestSenderOrchestrator {
                                 }
                             }),
                             () -> "");
-                },
-                getDelayFromNowMs(timestamp), TimeUnit.MILLISECONDS);
+                });
         return finalTunneledResponse;
     }
 
@@ -163,15 +189,14 @@ public class RequestSenderOrchestrator {
         var eventLoop = channelFutureAndRequestSchedule.eventLoop;
 
         if (schedule.isEmpty()) {
-            var scheduledFuture =
-                    eventLoop.schedule(task.runnable, getDelayFromNowMs(atTime), TimeUnit.MILLISECONDS);
-            scheduledFuture.addListener(f->{
-                if (!f.isSuccess()) {
-                    log.atError().setCause(f.cause()).setMessage(()->"Error running the scheduled task: " + ctx +
-                            " interaction: " + channelInteraction).log();
-                } else {
+            scheduleOnTimingWheel(eventLoop, ctx, task.kind, atTime, () -> {
+                try {
+                    task.runnable.run();
                     log.atInfo().setMessage(()->"scheduled task has finished for " + ctx + " interaction: " +
                             channelInteraction).log();
+                } catch (Exception e) {
+                    log.atError().setCause(e).setMessage(()->"Error running the scheduled task: " + ctx +
+                            " interaction: " + channelInteraction).log();
                 }
             });
         } else {
@@ -190,11 +215,12 @@ public class RequestSenderOrchestrator {
             log.atDebug().setMessage(()->channelInteraction.toString() + " responseFuture completed - checking "
                     + schedule + " for the next item to schedule").log();
             Optional.ofNullable(schedule.peekFirstItem()).ifPresent(kvp-> {
-                var runnable = kvp.getValue().runnable;
-                var sf = eventLoop.schedule(runnable, getDelayFromNowMs(kvp.getKey()), TimeUnit.MILLISECONDS);
-                sf.addListener(sfp->{
-                    if (!sfp.isSuccess()) {
-                        log.atWarn().setCause(sfp.cause()).setMessage(()->"Scheduled future did not successfully run " +
+                var nextTask = kvp.getValue();
+                scheduleOnTimingWheel(eventLoop, ctx, nextTask.kind, kvp.getKey(), () -> {
+                    try {
+                        nextTask.runnable.run();
+                    } catch (Exception e) {
+                        log.atWarn().setCause(e).setMessage(()->"Scheduled future did not successfully run " +
                                 channelInteraction).log();
                     }
                 });
@@ -206,10 +232,6 @@ public class RequestSenderOrchestrator {
         return Instant.now();
     }
 
-    private long getDelayFromNowMs(Instant to) {
-        return Math.max(0, Duration.between(now(), to).toMillis());
-    }
-
     // TODO - rewrite this - the recursion (at least as it is) is terribly confusing
     private void sendNextPartAndContinue(NettyPacketToHttpConsumer packetReceiver,
                                          EventLoop eventLoop, Iterator<ByteBuf> iterator,
@@ -0,0 +1,208 @@
+package org.opensearch.migrations.replay;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+/**
+ * Spreads the work of reconstructing transactions from TrafficStreams over several threads.  Each shard owns a
+ * CapturedTrafficToHttpTransactionAccumulator (and so its own ExpiringTrafficStreamMap) that's only ever touched
+ * by that shard's thread.  TrafficStreams are routed by their node and connection id, so every stream for a
+ * connection lands on the same shard and is handed to it through a FIFO queue, in the order that it was read.
+ * <p>
+ * The callbacks that the shards fire need to be thread-safe, but the ones that the TrafficReplayer uses already are,
+ * since they're called back from the netty threads as well.  Commits aren't affected by the order that shards get
+ * to their work because the traffic source only commits up to the oldest offset that's still outstanding.
+ * <p>
+ * Expiration advances independently for each shard, off of the timestamps of the streams that it has seen.  A
+ * shard that hasn't received anything recently won't expire its connections until it does (or until it's closed).
+ */
+@Slf4j
+public class ShardedTrafficStreamAccumulator implements TrafficStreamAccumulator {
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_SHARD = 256;
+    private static final long ENQUEUE_RETRY_INTERVAL_MS = 100;
+
+    private final Shard[] shards;
+    private final AtomicReference<Throwable> firstFailureRef = new AtomicReference<>();
+    private boolean closed;
+
+    private class Shard {
+        private final CapturedTrafficToHttpTransactionAccumulator accumulator;
+        private final BlockingQueue<Runnable> workQueue;
+        private final Thread thread;
+        private boolean finished;
+
+        Shard(CapturedTrafficToHttpTransactionAccumulator accumulator, int queueCapacity,
+              DefaultThreadFactory threadFactory) {
+            this.accumulator = accumulator;
+            this.workQueue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = threadFactory.newThread(this::runUntilFinished);
+        }
+
+        private void runUntilFinished() {
+            while (!finished) {
+                Runnable work;
+                try {
+                    work = workQueue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.atWarn().setMessage(() -> "Accumulation thread " + Thread.currentThread().getName() +
+                            " was interrupted before it was closed").log();
+                    return;
+                }
+                try {
+                    work.run();
+                } catch (Throwable t) {
+                    log.atError().setCause(t).setMessage("Failed while accumulating TrafficStreams").log();
+                    firstFailureRef.compareAndSet(null, t);
+                }
+            }
+        }
+    }
+
+    public ShardedTrafficStreamAccumulator(int numShards, Duration minTimeout, String hintStringToConfigureTimeout,
+                                           AccumulationCallbacks accumulationCallbacks) {
+        this(numShards, DEFAULT_QUEUE_CAPACITY_PER_SHARD, minTimeout, hintStringToConfigureTimeout,
+                accumulationCallbacks);
+    }
+
+    /**
+     * @param queueCapacityPerShard how many TrafficStreams can be waiting for each shard before accept() blocks
+     */
+    public ShardedTrafficStreamAccumulator(int numShards, int queueCapacityPerShard,
+                                           Duration minTimeout, String hintStringToConfigureTimeout,
+                                           AccumulationCallbacks accumulationCallbacks) {
+        if (numShards <= 0) {
+            throw new IllegalArgumentException("numShards must be positive");
+        }
+        var threadFactory = new DefaultThreadFactory("trafficStreamAccumulator", true);
+        this.shards = new Shard[numShards];
+        for (int i = 0; i < numShards; ++i) {
+            shards[i] = new Shard(new CapturedTrafficToHttpTransactionAccumulator(minTimeout,
+                    hintStringToConfigureTimeout, accumulationCallbacks), queueCapacityPerShard, threadFactory);
+        }
+        for (var shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    int getShardIndex(ITrafficStreamWithKey trafficStreamAndKey) {
+        var key = trafficStreamAndKey.getKey();
+        return Math.floorMod(Objects.hash(key.getNodeId(), key.getConnectionId()), shards.length);
+    }
+
+    private void rethrowIfAnyShardFailed() {
+        var failure = firstFailureRef.get();
+        if (failure != null) {
+            throw new IllegalStateException("A TrafficStream accumulation thread failed", failure);
+        }
+    }
+
+    /**
+     * Waits for room in the shard's queue for as long as the shard's thread is still running to take work off of it
+     *
+     * @return false if the thread has exited, in which case the work wasn't queued
+     */
+    private static boolean enqueue(Shard shard, Runnable work) throws InterruptedException {
+        while (!shard.workQueue.offer(work, ENQUEUE_RETRY_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (!shard.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands the stream to its shard, blocking while that shard's queue is full.  This must only be called from one
+     * thread (the one reading from the traffic source), otherwise the order of streams within a connection would
+     * be lost.
+     */
+    @Override
+    @SneakyThrows
+    public void accept(ITrafficStreamWithKey trafficStreamAndKey) {
+        if (closed) {
+            throw new IllegalStateException("Can't accept TrafficStreams after the accumulator has been closed");
+        }
+        rethrowIfAnyShardFailed();
+        var shard = shards[getShardIndex(trafficStreamAndKey)];
+        if (!enqueue(shard, () -> shard.accumulator.accept(trafficStreamAndKey))) {
+            throw new IllegalStateException("The accumulation thread " + shard.thread.getName() + " has exited");
+        }
+    }
+
+    /**
+     * Lets each shard work through everything that was queued to it and then close its accumulator (on its own
+     * thread) before waiting for all of the shard threads to exit.  Failures from the shards are rethrown by the
+     * next call to accept(), but not from here, since this is called while cleaning up (and they've been logged).
+     */
+    @Override
+    @SneakyThrows
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (var shard : shards) {
+            var queued = enqueue(shard, () -> {
+                shard.finished = true;
+                shard.accumulator.close();
+            });
+            if (!queued) {
+                log.atWarn().setMessage(() -> "Accumulation thread " + shard.thread.getName() + " exited before " +
+                        "it was closed, so its accumulator won't be closed").log();
+            }
+        }
+        for (var shard : shards) {
+            shard.thread.join();
+        }
+    }
+
+    private int sumOverShards(ToIntFunction<CapturedTrafficToHttpTransactionAccumulator> counter) {
+        return Arrays.stream(shards).mapToInt(s -> counter.applyAsInt(s.accumulator)).sum();
+    }
+
+    @Override
+    public int numberOfConnectionsCreated() {
+        return sumOverShards(CapturedTrafficToHttpTransactionAccumulator::numberOfConnectionsCreated);
+    }
+
+    @Override
+    public int numberOfRequestsOnReusedConnections() {
+        return sumOverShards(CapturedTrafficToHttpTransactionAccumulator::numberOfRequestsOnReusedConnections);
+    }
+
+    @Override
+    public int numberOfConnectionsClosed() {
+        return sumOverShards(CapturedTrafficToHttpTransactionAccumulator::numberOfConnectionsClosed);
+    }
+
+    @Override
+    public int numberOfConnectionExceptions() {
+        return sumOverShards(CapturedTrafficToHttpTransactionAccumulator::numberOfConnectionExceptions);
+    }
+
+    @Override
+    public int numberOfConnectionsExpired() {
+        return sumOverShards(CapturedTrafficToHttpTransactionAccumulator::numberOfConnectionsExpired);
+    }
+
+    @Override
+    public int numberOfRequestsTerminatedUponAccumulatorClose() {
+        return sumOverShards(
+                CapturedTrafficToHttpTransactionAccumulator::numberOfRequestsTerminatedUponAccumulatorClose);
+    }
+}
@@ -13,8 +13,20 @@ import java.util.concurrent.atomic.AtomicReference;
 @Slf4j
 public class TimeShifter {
 
-    private final AtomicReference<Instant> sourceTimeStart = new AtomicReference<>();
-    private AtomicReference<Instant> systemTimeStart = new AtomicReference<>();
+    /**
+     * The two starting points are always published together so that no caller can see one without the other
+     */
+    private static class Baseline {
+        final Instant sourceTimeStart;
+        final Instant systemTimeStart;
+
+        Baseline(Instant sourceTimeStart, Instant systemTimeStart) {
+            this.sourceTimeStart = sourceTimeStart;
+            this.systemTimeStart = systemTimeStart;
+        }
+    }
+
+    private final AtomicReference<Baseline> baselineRef = new AtomicReference<>();
 
     private final double rateMultiplier;
     private final Duration realtimeOffset;
@@ -33,34 +45,35 @@ public class TimeShifter {
         this.realtimeOffset = realtimeOffset;
     }
 
+    /**
+     * This is called for every request, possibly from several threads at once.  Only the first call sets the
+     * baseline.  Moving it afterward would shift the times of everything that's already been scheduled.
+     */
     public void setFirstTimestamp(Instant sourceTime) {
-        var didSet = sourceTimeStart.compareAndSet(null, sourceTime);
-        if (didSet) {
-            var didSetSystemStart = systemTimeStart.compareAndSet(null, Instant.now());
-            assert didSetSystemStart : "expected to always start systemTimeStart immediately after sourceTimeStart ";
-        }
+        var didSet = baselineRef.compareAndSet(null, new Baseline(sourceTime, Instant.now()));
         log.atLevel(didSet ? Level.INFO : Level.TRACE)
             .setMessage("Set baseline source timestamp for all future interactions to {}")
             .addArgument(sourceTime).log();
     }
 
     Instant transformSourceTimeToRealTime(Instant sourceTime) {
-        if (sourceTimeStart.get() == null) {
+        var baseline = baselineRef.get();
+        if (baseline == null) {
             throw new IllegalStateException("setFirstTimestamp has not yet been called");
         }
         // realtime = systemTimeStart + ((sourceTime-sourceTimeStart) / rateMultiplier) + targetOffset
-        return systemTimeStart.get()
+        return baseline.systemTimeStart
                 .plus(Duration.ofMillis((long)
-                        (Duration.between(sourceTimeStart.get(), sourceTime).toMillis() / rateMultiplier)))
+                        (Duration.between(baseline.sourceTimeStart, sourceTime).toMillis() / rateMultiplier)))
                 .plus(realtimeOffset);
     }
 
     Optional<Instant> transformRealTimeToSourceTime(Instant realTime) {
-        return Optional.ofNullable(sourceTimeStart.get())
-            .map(start ->
+        return Optional.ofNullable(baselineRef.get())
+            .map(baseline ->
                 // sourceTime = sourceTimeStart + (realTime-systemTimeStart-targetOffset) * rateMultiplier
-                start.plus(Duration.ofMillis((long)
-                    (Duration.between(systemTimeStart.get(),
+                baseline.sourceTimeStart.plus(Duration.ofMillis((long)
+                    (Duration.between(baseline.systemTimeStart,
                             realTime.minus(realtimeOffset)).toMillis() * rateMultiplier))));
     }
 
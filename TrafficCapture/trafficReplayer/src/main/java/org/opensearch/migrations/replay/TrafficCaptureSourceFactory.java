@@ -3,13 +3,16 @@ package org.opensearch.migrations.replay;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.migrations.replay.kafka.KafkaBehavioralPolicy;
 import org.opensearch.migrations.replay.kafka.KafkaTrafficCaptureSource;
+import org.opensearch.migrations.replay.kafka.ParallelKafkaTrafficCaptureSource;
 import org.opensearch.migrations.replay.tracing.RootReplayerContext;
 import org.opensearch.migrations.replay.traffic.source.BlockingTrafficSource;
 import org.opensearch.migrations.replay.traffic.source.ISimpleTrafficCaptureSource;
 import org.opensearch.migrations.replay.traffic.source.InputStreamOfTraffic;
+import org.opensearch.migrations.replay.traffic.source.SegmentFileTrafficCaptureSource;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.time.Duration;
 
@@ -21,7 +24,8 @@ public class TrafficCaptureSourceFactory {
     public static BlockingTrafficSource
     createTrafficCaptureSource(RootReplayerContext ctx,
                                TrafficReplayer.Parameters appParams, Duration bufferTimeWindow) throws IOException {
-        return new BlockingTrafficSource(createUnbufferedTrafficCaptureSource(ctx, appParams), bufferTimeWindow);
+        return new BlockingTrafficSource(createUnbufferedTrafficCaptureSource(ctx, appParams), bufferTimeWindow,
+                appParams.prefetchChunks, appParams.numDecodeThreads);
     }
 
     public static ISimpleTrafficCaptureSource
@@ -29,17 +33,33 @@ public class TrafficCaptureSourceFactory {
                                          TrafficReplayer.Parameters appParams) throws IOException {
         boolean isKafkaActive = TrafficReplayer.validateRequiredKafkaParams(appParams.kafkaTrafficBrokers, appParams.kafkaTrafficTopic, appParams.kafkaTrafficGroupId);
         boolean isInputFileActive = appParams.inputFilename != null;
+        boolean isSegmentDirectoryActive = appParams.inputSegmentDirectory != null;
 
-        if (isInputFileActive && isKafkaActive) {
-            throw new IllegalArgumentException("Only one traffic source can be specified, detected options for input file as well as Kafka");
+        if ((isInputFileActive ? 1 : 0) + (isKafkaActive ? 1 : 0) + (isSegmentDirectoryActive ? 1 : 0) > 1) {
+            throw new IllegalArgumentException("Only one traffic source can be specified, detected options for " +
+                    "more than one of an input file, an input segment directory, and Kafka");
         }
 
-        if (isKafkaActive) {
+        if (isKafkaActive && appParams.kafkaTrafficNumConsumers < 1) {
+            throw new IllegalArgumentException("--kafka-traffic-num-consumers must be at least 1, but was " +
+                    appParams.kafkaTrafficNumConsumers);
+        }
+
+        if (isKafkaActive && appParams.kafkaTrafficNumConsumers > 1) {
+            return ParallelKafkaTrafficCaptureSource.buildKafkaSources(ctx,
+                    appParams.kafkaTrafficBrokers, appParams.kafkaTrafficTopic,
+                    appParams.kafkaTrafficGroupId, appParams.kafkaTrafficEnableMSKAuth,
+                    appParams.kafkaTrafficPropertyFile,
+                    Clock.systemUTC(), new KafkaBehavioralPolicy(), appParams.kafkaTrafficNumConsumers);
+        } else if (isKafkaActive) {
             return KafkaTrafficCaptureSource.buildKafkaSource(ctx,
                     appParams.kafkaTrafficBrokers, appParams.kafkaTrafficTopic,
                     appParams.kafkaTrafficGroupId, appParams.kafkaTrafficEnableMSKAuth,
                     appParams.kafkaTrafficPropertyFile,
                     Clock.systemUTC(), new KafkaBehavioralPolicy());
+        } else if (isSegmentDirectoryActive) {
+            return new SegmentFileTrafficCaptureSource(ctx, Paths.get(appParams.inputSegmentDirectory),
+                    appParams.followInputSegments);
         } else {
             return new InputStreamOfTraffic(ctx,
                     isInputFileActive ? new FileInputStream(appParams.inputFilename) : System.in);
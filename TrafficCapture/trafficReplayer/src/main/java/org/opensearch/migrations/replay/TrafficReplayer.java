@@ -3,7 +3,8 @@ package org.opensearch.migrations.replay;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -251,6 +252,17 @@ public class TrafficReplayer implements AutoCloseable {
                 arity=1,
                 description = "input file to read the request/response traces for the source cluster")
         String inputFilename;
+        @Parameter(required = false,
+                names = {"--input-segment-directory"},
+                arity=1,
+                description = "directory of segment files written by a capture proxy's segment file offloader")
+        String inputSegmentDirectory;
+        @Parameter(required = false,
+                names = {"--follow-input-segments"},
+                arity=0,
+                description = "keep waiting for new data to be written to the input segment directory instead of " +
+                        "finishing once the last segment has been read")
+        boolean followInputSegments;
         @Parameter(required = false,
                 names = {"-t", PACKET_TIMEOUT_SECONDS_PARAMETER_NAME},
                 arity = 1,
@@ -279,6 +291,27 @@ public class TrafficReplayer implements AutoCloseable {
                 arity = 1,
                 description = "Number of threads to use to send requests from.")
         int numClientThreads = 0;
+        @Parameter(required = false,
+                names = {"--num-accumulation-threads"},
+                arity = 1,
+                description = "Number of threads to reconstruct requests and responses from the captured traffic " +
+                        "with.  TrafficStreams are sharded across them by connection.  0 (the default) does the " +
+                        "work on the thread that reads from the traffic source.")
+        int numAccumulationThreads = 0;
+        @Parameter(required = false,
+                names = {"--prefetch-chunks"},
+                arity = 1,
+                description = "Number of chunks to read ahead of the accumulator from the traffic source, while " +
+                        "still respecting the lookahead time.  0 (the default) only reads a chunk once the previous " +
+                        "one has been handed off.")
+        int prefetchChunks = 0;
+        @Parameter(required = false,
+                names = {"--num-decode-threads"},
+                arity = 1,
+                description = "Number of threads to parse prefetched TrafficStreams with.  0 (the default) parses " +
+                        "them on the thread that reads from the traffic source.  Only used when --prefetch-chunks " +
+                        "is greater than 0.")
+        int numDecodeThreads = 0;
 
         @Parameter(required = false,
             names = {"--kafka-traffic-brokers"},
@@ -305,6 +338,12 @@ public class TrafficReplayer implements AutoCloseable {
             arity=1,
             description = "File path for Kafka properties file to use for additional or overriden Kafka properties")
         String kafkaTrafficPropertyFile;
+        @Parameter(required = false,
+            names = {"--kafka-traffic-num-consumers"},
+            arity=1,
+            description = "Number of Kafka consumers (each with its own polling thread) to read the topic's " +
+                    "partitions with in parallel.  They all join the same consumer group.")
+        int kafkaTrafficNumConsumers = 1;
 
         @Parameter(required = false,
                 names = {"--otelCollectorEndpoint"},
@@ -403,7 +442,7 @@ public class TrafficReplayer implements AutoCloseable {
             var tupleWriter = new TupleParserChainConsumer(new ResultsToLogsConsumer());
             var timeShifter = new TimeShifter(params.speedupFactor);
             tr.setupRunAndWaitForReplayWithShutdownChecks(Duration.ofSeconds(params.observedPacketConnectionTimeout),
-                    blockingTrafficSource, timeShifter, tupleWriter);
+                    blockingTrafficSource, timeShifter, tupleWriter, params.numAccumulationThreads);
             log.info("Done processing TrafficStreams");
         }
     }
@@ -506,14 +545,32 @@ public class TrafficReplayer implements AutoCloseable {
                                                  TimeShifter timeShifter,
                                                  Consumer<SourceTargetCaptureTuple> resultTupleConsumer)
             throws InterruptedException, ExecutionException {
+        setupRunAndWaitForReplayToFinish(observedPacketConnectionTimeout, trafficSource, timeShifter,
+                resultTupleConsumer, 0);
+    }
+
+    /**
+     * @param numAccumulationThreads when positive, TrafficStreams are accumulated by that many threads (see
+     *                               ShardedTrafficStreamAccumulator) rather than by the thread reading them
+     */
+    public void setupRunAndWaitForReplayToFinish(Duration observedPacketConnectionTimeout,
+                                                 BlockingTrafficSource trafficSource,
+                                                 TimeShifter timeShifter,
+                                                 Consumer<SourceTargetCaptureTuple> resultTupleConsumer,
+                                                 int numAccumulationThreads)
+            throws InterruptedException, ExecutionException {
 
         var senderOrchestrator = new RequestSenderOrchestrator(clientConnectionPool);
         var replayEngine = new ReplayEngine(senderOrchestrator, trafficSource, timeShifter);
 
-        CapturedTrafficToHttpTransactionAccumulator trafficToHttpTransactionAccumulator =
+        var timeoutHint = "(see " + PACKET_TIMEOUT_SECONDS_PARAMETER_NAME + ")";
+        var accumulationCallbacks =
+                new TrafficReplayerAccumulationCallbacks(replayEngine, resultTupleConsumer, trafficSource);
+        TrafficStreamAccumulator trafficToHttpTransactionAccumulator = numAccumulationThreads > 0 ?
+                new ShardedTrafficStreamAccumulator(numAccumulationThreads, observedPacketConnectionTimeout,
+                        timeoutHint, accumulationCallbacks) :
                 new CapturedTrafficToHttpTransactionAccumulator(observedPacketConnectionTimeout,
-                        "(see " + PACKET_TIMEOUT_SECONDS_PARAMETER_NAME + ")",
-                        new TrafficReplayerAccumulationCallbacks(replayEngine, resultTupleConsumer, trafficSource));
+                        timeoutHint, accumulationCallbacks);
         try {
             pullCaptureFromSourceToAccumulator(trafficSource, trafficToHttpTransactionAccumulator);
         } catch (InterruptedException ex) {
@@ -530,7 +587,7 @@ public class TrafficReplayer implements AutoCloseable {
     }
 
     protected void wrapUpWorkAndEmitSummary(ReplayEngine replayEngine,
-                                            CapturedTrafficToHttpTransactionAccumulator trafficToHttpTransactionAccumulator)
+                                            TrafficStreamAccumulator trafficToHttpTransactionAccumulator)
             throws ExecutionException, InterruptedException {
         final var primaryLogLevel = Level.INFO;
         final var secondaryLogLevel = Level.WARN;
@@ -575,10 +632,20 @@ public class TrafficReplayer implements AutoCloseable {
                                                            BlockingTrafficSource trafficSource,
                                                            TimeShifter timeShifter,
                                                            Consumer<SourceTargetCaptureTuple> resultTupleConsumer)
+    throws TerminationException, ExecutionException, InterruptedException {
+        setupRunAndWaitForReplayWithShutdownChecks(observedPacketConnectionTimeout, trafficSource, timeShifter,
+                resultTupleConsumer, 0);
+    }
+
+    public void setupRunAndWaitForReplayWithShutdownChecks(Duration observedPacketConnectionTimeout,
+                                                           BlockingTrafficSource trafficSource,
+                                                           TimeShifter timeShifter,
+                                                           Consumer<SourceTargetCaptureTuple> resultTupleConsumer,
+                                                           int numAccumulationThreads)
     throws TerminationException, ExecutionException, InterruptedException {
         try {
             setupRunAndWaitForReplayToFinish(observedPacketConnectionTimeout, trafficSource,
-                    timeShifter, resultTupleConsumer);
+                    timeShifter, resultTupleConsumer, numAccumulationThreads);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new TerminationException(shutdownReasonRef.get(), e);
@@ -880,7 +947,7 @@ public class TrafficReplayer implements AutoCloseable {
                             IReplayContexts.IReplayerHttpTransactionContext ctx) {
         return transformAndSendRequest(inputRequestTransformerFactory, replayEngine, ctx,
                 request.getFirstPacketTimestamp(), request.getLastPacketTimestamp(),
-                request.packetBytes::stream);
+                request.packetBytes::streamByteBufs);
     }
 
     public static DiagnosticTrackableCompletableFuture<String, TransformedTargetRequestAndResponse>
@@ -888,7 +955,7 @@ public class TrafficReplayer implements AutoCloseable {
                             ReplayEngine replayEngine,
                             IReplayContexts.IReplayerHttpTransactionContext ctx,
                             @NonNull Instant start, @NonNull Instant end,
-                            Supplier<Stream<byte[]>> packetsSupplier)
+                            Supplier<Stream<ByteBuf>> packetsSupplier)
     {
         try {
             var transformationCompleteFuture = replayEngine.scheduleTransformationWork(ctx, start, ()->
@@ -920,10 +987,10 @@ public class TrafficReplayer implements AutoCloseable {
     }
 
     private static <R> DiagnosticTrackableCompletableFuture<String, R>
-    transformAllData(IPacketFinalizingConsumer<R> packetHandler, Supplier<Stream<byte[]>> packetSupplier) {
+    transformAllData(IPacketFinalizingConsumer<R> packetHandler, Supplier<Stream<ByteBuf>> packetSupplier) {
         try {
             var logLabel = packetHandler.getClass().getSimpleName();
-            var packets = packetSupplier.get().map(Unpooled::wrappedBuffer);
+            var packets = packetSupplier.get();
             packets.forEach(packetData -> {
                 log.atDebug().setMessage(() -> logLabel + " sending " + packetData.readableBytes() +
                         " bytes to the packetHandler").log();
@@ -935,7 +1002,13 @@ public class TrafficReplayer implements AutoCloseable {
         } catch (Exception e) {
             log.atInfo().setCause(e).setMessage("Encountered an exception while transforming the http request.  " +
                     "The base64 gzipped traffic stream, for later diagnostic purposes, is: " +
-                    Utils.packetsToCompressedTrafficStream(packetSupplier.get())).log();
+                    Utils.packetsToCompressedTrafficStream(packetSupplier.get().map(bb -> {
+                        try {
+                            return ByteBufUtil.getBytes(bb);
+                        } finally {
+                            bb.release();
+                        }
+                    }))).log();
             throw e;
         }
     }
@@ -985,10 +1058,19 @@ public class TrafficReplayer implements AutoCloseable {
         shutdown(null).get();
     }
 
+    private static String summarizeTrafficStream(ITrafficStreamWithKey trafficStreamWithKey) {
+        try {
+            return TrafficStreamUtils.summarizeTrafficStream(trafficStreamWithKey.getStream());
+        } catch (IllegalStateException e) {
+            // the accumulator will report and drop the stream
+            return trafficStreamWithKey.getKey() + " [unparseable]";
+        }
+    }
+
     @SneakyThrows
     public void pullCaptureFromSourceToAccumulator(
             ITrafficCaptureSource trafficChunkStream,
-            CapturedTrafficToHttpTransactionAccumulator trafficToHttpTransactionAccumulator)
+            TrafficStreamAccumulator trafficToHttpTransactionAccumulator)
             throws InterruptedException {
         while (true) {
             log.trace("Reading next chunk from TrafficStream supplier");
@@ -1011,8 +1093,10 @@ public class TrafficReplayer implements AutoCloseable {
                 }
             }
             if (log.isInfoEnabled()) {
+                // summarizing the observations would parse every stream here, so that's only done for debugging
+                var summarizeObservations = log.isDebugEnabled();
                 Optional.of(trafficStreams.stream()
-                                .map(ts -> TrafficStreamUtils.summarizeTrafficStream(ts.getStream()))
+                                .map(ts -> summarizeObservations ? summarizeTrafficStream(ts) : ts.getKey().toString())
                                 .collect(Collectors.joining(";")))
                         .filter(s -> !s.isEmpty())
                         .ifPresent(s -> log.atInfo().log("TrafficStream Summary: {" + s + "}"));
@@ -0,0 +1,24 @@
+package org.opensearch.migrations.replay;
+
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
+
+/**
+ * Something that TrafficStreams can be fed into to be reconstructed into http transactions, along with the
+ * counters that the replayer reports once it's done.
+ */
+public interface TrafficStreamAccumulator extends AutoCloseable {
+    void accept(ITrafficStreamWithKey trafficStreamAndKey);
+
+    /**
+     * Fires the callbacks for whatever is still being accumulated (as CLOSED_PREMATURELY) and releases it.
+     */
+    @Override
+    void close();
+
+    int numberOfConnectionsCreated();
+    int numberOfRequestsOnReusedConnections();
+    int numberOfConnectionsClosed();
+    int numberOfConnectionExceptions();
+    int numberOfConnectionsExpired();
+    int numberOfRequestsTerminatedUponAccumulatorClose();
+}
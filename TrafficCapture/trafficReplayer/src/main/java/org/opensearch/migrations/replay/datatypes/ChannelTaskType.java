@@ -1,5 +1,9 @@
 package org.opensearch.migrations.replay.datatypes;
 
 public enum ChannelTaskType {
-    TRANSMIT, CLOSE
+    TRANSMIT, CLOSE,
+    /**
+     * Work done on behalf of a connection that doesn't use the connection itself (e.g. transforming a request)
+     */
+    TRANSFORM
 }
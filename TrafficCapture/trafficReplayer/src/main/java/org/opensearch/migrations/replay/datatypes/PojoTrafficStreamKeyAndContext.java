@@ -42,7 +42,7 @@ public class PojoTrafficStreamKeyAndContext extends PojoTrafficStreamKey {
         this(stream.getNodeId(), stream.getConnectionId(), TrafficStreamUtils.getTrafficStreamIndex(stream));
     }
 
-    private PojoTrafficStreamKeyAndContext(String nodeId, String connectionId, int index) {
+    protected PojoTrafficStreamKeyAndContext(String nodeId, String connectionId, int index) {
         super(nodeId, connectionId, index);
     }
 
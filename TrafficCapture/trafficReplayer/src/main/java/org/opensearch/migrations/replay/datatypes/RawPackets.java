@@ -1,24 +1,72 @@
 package org.opensearch.migrations.replay.datatypes;
 
-import lombok.EqualsAndHashCode;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.stream.Stream;
 
+/**
+ * The packets of a captured http message.  They're kept as the protobuf ByteStrings that were read from the
+ * TrafficStreams, which share the memory of the buffers that the TrafficStreams were parsed from (and of each other,
+ * once segments have been concatenated), so accumulating a message doesn't copy any of its bytes.
+ * {@link #streamByteBufs()} wraps those same bytes for the replay path without copying them.  Reading packets as
+ * byte arrays, through the List interface, makes a copy of each one.
+ */
+public class RawPackets extends AbstractList<byte[]> {
+    private final ArrayList<ByteString> packets = new ArrayList<>();
+
+    public void add(ByteString packet) {
+        packets.add(packet);
+    }
+
+    /**
+     * The array is taken as is, so it must not be modified afterward
+     */
+    @Override
+    public boolean add(byte[] packet) {
+        packets.add(UnsafeByteOperations.unsafeWrap(packet));
+        return true;
+    }
+
+    @Override
+    public byte[] get(int index) {
+        return packets.get(index).toByteArray();
+    }
+
+    @Override
+    public int size() {
+        return packets.size();
+    }
+
+    public Stream<ByteString> streamByteStrings() {
+        return packets.stream();
+    }
+
+    /**
+     * @return a new (read-only) ByteBuf for each packet, sharing the packet's memory.  The caller owns each of them.
+     */
+    public Stream<ByteBuf> streamByteBufs() {
+        return packets.stream().map(RawPackets::wrapWithoutCopying);
+    }
+
+    public static ByteBuf wrapWithoutCopying(ByteString byteString) {
+        return Unpooled.wrappedBuffer(byteString.asReadOnlyByteBufferList().toArray(ByteBuffer[]::new));
+    }
 
-public class RawPackets extends ArrayList<byte[]> {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof RawPackets)) { return false; }
-        RawPackets that = (RawPackets) o;
-        if (size() != that.size()) { return false; }
-
-        for (int i = 0; i < size(); i++) {
-            if (!Arrays.equals(get(i), that.get(i))) {
-                return false;
-            }
-        }
-        return true;
+        return packets.equals(((RawPackets) o).packets);
+    }
+
+    @Override
+    public int hashCode() {
+        return packets.hashCode();
     }
 }
@@ -0,0 +1,193 @@
+package org.opensearch.migrations.replay.datatypes;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.opensearch.migrations.replay.util.TrafficChannelKeyFormatter;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A TrafficStream that hasn't been fully parsed yet.  Only the fields that identify the stream (and where it falls
+ * within its connection) are read up front, which is enough to build its key and contexts.  The observations are
+ * skipped over without being decoded until {@link #getStream()} is first called.
+ * <p>
+ * The full parse aliases the serialized bytes, so the payloads of the observations share memory with the buffer
+ * that the stream was read from instead of being copied.  The serialized bytes must not be modified afterward.
+ */
+@Getter
+public class SerializedTrafficStream implements ISourceTrafficChannelKey {
+    private static final int CONNECTION_ID_TAG =
+            (TrafficStream.CONNECTIONID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int NODE_ID_TAG =
+            (TrafficStream.NODEID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int NUMBER_TAG =
+            (TrafficStream.NUMBER_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int NUMBER_OF_THIS_LAST_CHUNK_TAG =
+            (TrafficStream.NUMBEROFTHISLASTCHUNK_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int PRIOR_REQUESTS_RECEIVED_TAG =
+            (TrafficStream.PRIORREQUESTSRECEIVED_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int LAST_OBSERVATION_WAS_UNTERMINATED_READ_TAG =
+            (TrafficStream.LASTOBSERVATIONWASUNTERMINATEDREAD_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+
+    private final ByteString serializedBytes;
+    private String nodeId = "";
+    private String connectionId = "";
+    private int trafficStreamIndex;
+    private boolean lastChunk;
+    private int priorRequestsReceived;
+    private boolean lastObservationWasUnterminatedRead;
+    @Getter(AccessLevel.NONE)
+    private boolean lastObservationWasUnterminatedReadSet;
+    @Getter(AccessLevel.NONE)
+    private volatile TrafficStream parsedStream;
+
+    private SerializedTrafficStream(ByteString serializedBytes) {
+        this.serializedBytes = serializedBytes;
+    }
+
+    /**
+     * Reads the identifying fields of the TrafficStream in serializedBytes, skipping over its observations.
+     */
+    public static SerializedTrafficStream readHeader(ByteString serializedBytes)
+            throws InvalidProtocolBufferException {
+        var rval = new SerializedTrafficStream(serializedBytes);
+        try {
+            var codedInput = serializedBytes.newCodedInput();
+            while (true) {
+                var tag = codedInput.readTag();
+                switch (tag) {
+                    case 0:
+                        return rval;
+                    case CONNECTION_ID_TAG:
+                        rval.connectionId = codedInput.readStringRequireUtf8();
+                        break;
+                    case NODE_ID_TAG:
+                        rval.nodeId = codedInput.readStringRequireUtf8();
+                        break;
+                    case NUMBER_TAG:
+                        rval.trafficStreamIndex = codedInput.readInt32();
+                        rval.lastChunk = false;
+                        break;
+                    case NUMBER_OF_THIS_LAST_CHUNK_TAG:
+                        rval.trafficStreamIndex = codedInput.readInt32();
+                        rval.lastChunk = true;
+                        break;
+                    case PRIOR_REQUESTS_RECEIVED_TAG:
+                        rval.priorRequestsReceived = codedInput.readInt32();
+                        break;
+                    case LAST_OBSERVATION_WAS_UNTERMINATED_READ_TAG:
+                        rval.lastObservationWasUnterminatedRead = codedInput.readBool();
+                        rval.lastObservationWasUnterminatedReadSet = true;
+                        break;
+                    default:
+                        // the observations (and anything else) are skipped without being decoded
+                        if (!codedInput.skipField(tag)) {
+                            return rval;
+                        }
+                }
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+    }
+
+    /**
+     * Reads the next length-delimited TrafficStream from inputStream, copying its serialized form into a buffer of
+     * its own.
+     * @return the stream or null if inputStream was already at its end
+     */
+    public static SerializedTrafficStream readDelimitedFrom(InputStream inputStream) throws IOException {
+        var firstByte = inputStream.read();
+        if (firstByte == -1) {
+            return null;
+        }
+        var size = CodedInputStream.readRawVarint32(firstByte, inputStream);
+        var buffer = inputStream.readNBytes(size);
+        if (buffer.length < size) {
+            throw new InvalidProtocolBufferException("Expected a TrafficStream of " + size +
+                    " bytes, but the input ended after " + buffer.length + " bytes");
+        }
+        return readHeader(UnsafeByteOperations.unsafeWrap(buffer));
+    }
+
+    /**
+     * Splits a buffer of back-to-back length-delimited TrafficStreams.  The returned streams share serializedBytes.
+     */
+    public static List<SerializedTrafficStream> readAllDelimited(ByteString serializedBytes)
+            throws InvalidProtocolBufferException {
+        var rval = new ArrayList<SerializedTrafficStream>();
+        try {
+            var codedInput = serializedBytes.newCodedInput();
+            while (!codedInput.isAtEnd()) {
+                var size = codedInput.readRawVarint32();
+                var start = codedInput.getTotalBytesRead();
+                codedInput.skipRawBytes(size);
+                rval.add(readHeader(serializedBytes.substring(start, start + size)));
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+        return rval;
+    }
+
+    /**
+     * @return true iff lastObservationWasUnterminatedRead was set, like TrafficStream.hasLastObservationWasUnterminatedRead
+     */
+    public boolean hasLastObservationWasUnterminatedRead() {
+        return lastObservationWasUnterminatedReadSet;
+    }
+
+    /**
+     * @return the number of bytes that this stream takes up when it's written with a length prefix
+     */
+    public int getDelimitedSize() {
+        return CodedOutputStream.computeUInt32SizeNoTag(serializedBytes.size()) + serializedBytes.size();
+    }
+
+    /**
+     * Parses the full stream the first time that it's called.
+     * @throws IllegalStateException if the observations couldn't be parsed
+     */
+    public TrafficStream getStream() {
+        var stream = parsedStream;
+        if (stream == null) {
+            synchronized (this) {
+                stream = parsedStream;
+                if (stream == null) {
+                    stream = parseWithAliasing();
+                    parsedStream = stream;
+                }
+            }
+        }
+        return stream;
+    }
+
+    private TrafficStream parseWithAliasing() {
+        try {
+            var codedInput = serializedBytes.newCodedInput();
+            codedInput.enableAliasing(true);
+            return TrafficStream.parseFrom(codedInput);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse the TrafficStream for " + this, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return TrafficChannelKeyFormatter.format(nodeId, connectionId, trafficStreamIndex);
+    }
+}
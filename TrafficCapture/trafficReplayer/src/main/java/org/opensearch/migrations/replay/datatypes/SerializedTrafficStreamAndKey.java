@@ -0,0 +1,37 @@
+package org.opensearch.migrations.replay.datatypes;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+/**
+ * Defers parsing the TrafficStream's observations until {@link #getStream()} is first called, which lets sources
+ * hand off streams before they've been fully decoded.
+ */
+@AllArgsConstructor
+@Getter
+public class SerializedTrafficStreamAndKey implements ITrafficStreamWithKey {
+    public final SerializedTrafficStream serializedStream;
+    public final ITrafficStreamKey key;
+
+    @Override
+    public TrafficStream getStream() {
+        return serializedStream.getStream();
+    }
+
+    @Override
+    public int getPriorRequestsReceived() {
+        return serializedStream.getPriorRequestsReceived();
+    }
+
+    @Override
+    public boolean hasLastObservationWasUnterminatedRead() {
+        return serializedStream.hasLastObservationWasUnterminatedRead();
+    }
+
+    @Override
+    public boolean getLastObservationWasUnterminatedRead() {
+        return serializedStream.isLastObservationWasUnterminatedRead();
+    }
+}
@@ -1,58 +1,72 @@
 package org.opensearch.migrations.replay.datatypes;
 
+import org.opensearch.migrations.replay.util.TimingWheelScheduler;
+
 import java.time.Instant;
 import java.util.AbstractMap;
 import java.util.ArrayDeque;
 import java.util.Map;
 import java.util.StringJoiner;
-import java.util.TreeMap;
 
+/**
+ * The tasks scheduled for a connection, in the order that they should run.  Tasks for a connection are always
+ * appended in time order (since TrafficStreams for a connection are accumulated in order), so this is a FIFO
+ * rather than a sorted map.  Times are kept as epoch nanoseconds.
+ */
 public class TimeToResponseFulfillmentFutureMap {
 
-    TreeMap<Instant, ArrayDeque<ChannelTask>> timeToRunnableMap = new TreeMap<>();
+    private static class ScheduledTask {
+        final long startEpochNanos;
+        final ChannelTask task;
+
+        ScheduledTask(long startEpochNanos, ChannelTask task) {
+            this.startEpochNanos = startEpochNanos;
+            this.task = task;
+        }
+    }
+
+    private final ArrayDeque<ScheduledTask> scheduledTasks = new ArrayDeque<>();
+    private int pendingTransmissionCount;
+
+    private static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(0, epochNanos);
+    }
 
     public void appendTask(Instant start, ChannelTask task) {
-        assert timeToRunnableMap.keySet().stream().allMatch(t->!t.isAfter(start));
-        var existing = timeToRunnableMap.computeIfAbsent(start, k->new ArrayDeque<>());
-        existing.offer(task);
+        var startEpochNanos = TimingWheelScheduler.toEpochNanos(start);
+        assert scheduledTasks.isEmpty() || scheduledTasks.peekLast().startEpochNanos <= startEpochNanos;
+        scheduledTasks.offer(new ScheduledTask(startEpochNanos, task));
+        if (task.kind == ChannelTaskType.TRANSMIT) {
+            ++pendingTransmissionCount;
+        }
     }
 
     public Map.Entry<Instant, ChannelTask> peekFirstItem() {
-        var e = timeToRunnableMap.firstEntry();
-        return e == null ? null : new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue().peek());
+        var e = scheduledTasks.peek();
+        return e == null ? null : new AbstractMap.SimpleEntry<>(toInstant(e.startEpochNanos), e.task);
     }
 
     public Instant removeFirstItem() {
-        var e = timeToRunnableMap.firstEntry();
-        if (e != null) {
-            var q = e.getValue();
-            q.remove();
-            if (q.isEmpty()) {
-                timeToRunnableMap.remove(e.getKey());
-            }
-            return e.getKey();
-        } else {
+        var e = scheduledTasks.poll();
+        if (e == null) {
             return null;
         }
+        if (e.task.kind == ChannelTaskType.TRANSMIT) {
+            --pendingTransmissionCount;
+        }
+        return toInstant(e.startEpochNanos);
     }
 
     public boolean isEmpty() {
-        return timeToRunnableMap.isEmpty();
+        return scheduledTasks.isEmpty();
     }
 
     public boolean hasPendingTransmissions() {
-        if (timeToRunnableMap.isEmpty()) {
-            return false;
-        } else {
-            return timeToRunnableMap.values().stream()
-                    .flatMap(d->d.stream())
-                    .filter(ct->ct.kind==ChannelTaskType.TRANSMIT)
-                    .findAny().isPresent();
-        }
+        return pendingTransmissionCount > 0;
     }
 
     public long calculateSizeSlowly() {
-        return timeToRunnableMap.values().stream().map(ArrayDeque::size).mapToInt(x->x).sum();
+        return scheduledTasks.size();
     }
 
     @Override
@@ -61,14 +75,14 @@ public class TimeToResponseFulfillmentFutureMap {
     }
 
     private String formatBookends() {
-        if (timeToRunnableMap.isEmpty()) {
+        if (scheduledTasks.isEmpty()) {
             return "";
-        } else if (timeToRunnableMap.size() == 1) {
-            return timeToRunnableMap.firstKey().toString();
+        } else if (scheduledTasks.size() == 1) {
+            return toInstant(scheduledTasks.peekFirst().startEpochNanos).toString();
         } else {
             return new StringJoiner("...")
-                    .add(timeToRunnableMap.firstKey().toString())
-                    .add(timeToRunnableMap.lastKey().toString())
+                    .add(toInstant(scheduledTasks.peekFirst().startEpochNanos).toString())
+                    .add(toInstant(scheduledTasks.peekLast().startEpochNanos).toString())
                     .toString();
         }
     }
@@ -5,4 +5,14 @@ public interface KafkaCommitOffsetData {
     long getOffset();
     int getGeneration();
 
+    /**
+     * Called as each TrafficStream that was read from this offset is committed.  A Kafka record may hold more
+     * than one TrafficStream when the capture proxy batches them, in which case the record's offset can only
+     * be released once every one of those TrafficStreams has been committed.
+     *
+     * @return true when this was the last outstanding TrafficStream for the record
+     */
+    default boolean markTrafficStreamCommitted() {
+        return true;
+    }
 }
@@ -1,41 +1,46 @@
 package org.opensearch.migrations.replay.kafka;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
-import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamAndKey;
+import org.opensearch.migrations.replay.datatypes.SerializedTrafficStream;
+import org.opensearch.migrations.replay.datatypes.SerializedTrafficStreamAndKey;
 import org.opensearch.migrations.replay.tracing.ChannelContextManager;
 import org.opensearch.migrations.replay.tracing.ITrafficSourceContexts;
 import org.opensearch.migrations.replay.tracing.ReplayContexts;
 import org.opensearch.migrations.replay.tracing.RootReplayerContext;
 import org.opensearch.migrations.replay.traffic.source.ISimpleTrafficCaptureSource;
 import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
-import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Adapt a Kafka stream into a TrafficCaptureSource.
@@ -198,43 +203,97 @@ public class KafkaTrafficCaptureSource implements ISimpleTrafficCaptureSource {
         log.atTrace().setMessage("readNextTrafficStreamSynchronously()").log();
         try {
             return trackingKafkaConsumer.getNextBatchOfRecords(context, (offsetData,kafkaRecord) -> {
-                        try {
-                            TrafficStream ts = TrafficStream.parseFrom(kafkaRecord.value());
-                            var trafficStreamsSoFar = trafficStreamsRead.incrementAndGet();
-                            log.atTrace().setMessage(()->"Parsed traffic stream #" + trafficStreamsSoFar +
-                                            ": " + offsetData + " " + ts).log();
-                            var key = new TrafficStreamKeyWithKafkaRecordId(
-                                    tsk -> {
-                                        var channelKeyCtx = channelContextManager.retainOrCreateContext(tsk);
-                                        return channelContextManager.getGlobalContext()
-                                                .createTrafficStreamContextForKafkaSource(channelKeyCtx, kafkaRecord.key(),
-                                                kafkaRecord.serializedKeySize() + kafkaRecord.serializedValueSize());
-                                    },
-                                    ts, offsetData);
-                            return (ITrafficStreamWithKey) new PojoTrafficStreamAndKey(ts, key);
-                        } catch (InvalidProtocolBufferException e) {
-                            // Assume the behavioralPolicy instance does any logging that the host may be interested in
-                            RuntimeException recordError = behavioralPolicy.onInvalidKafkaRecord(kafkaRecord, e);
-                            if (recordError != null) {
-                                throw recordError;
-                            } else {
-                                return null;
-                            }
-                        }
-            }).filter(Objects::nonNull).collect(Collectors.<ITrafficStreamWithKey>toList());
+                try {
+                    return isBatchedRecord(kafkaRecord) ?
+                            parseBatchedRecord(offsetData, kafkaRecord) :
+                            Stream.of(makeTrafficStreamWithKey(offsetData, kafkaRecord,
+                                    SerializedTrafficStream.readHeader(
+                                            UnsafeByteOperations.unsafeWrap(kafkaRecord.value())),
+                                    kafkaRecord.serializedKeySize() + kafkaRecord.serializedValueSize(), null));
+                } catch (InvalidProtocolBufferException e) {
+                    // Assume the behavioralPolicy instance does any logging that the host may be interested in
+                    RuntimeException recordError = behavioralPolicy.onInvalidKafkaRecord(kafkaRecord, e);
+                    if (recordError != null) {
+                        throw recordError;
+                    } else {
+                        return Stream.<ITrafficStreamWithKey>empty();
+                    }
+                }
+            }).flatMap(s -> s).collect(Collectors.<ITrafficStreamWithKey>toList());
         } catch (Exception e) {
             log.atError().setCause(e).setMessage("Terminating Kafka traffic stream due to exception").log();
             throw e;
         }
     }
 
+    private static boolean isBatchedRecord(ConsumerRecord<String, byte[]> kafkaRecord)
+            throws InvalidProtocolBufferException {
+        var formatHeader = kafkaRecord.headers().lastHeader(TrafficStreamUtils.TRAFFIC_STREAM_BATCH_FORMAT_HEADER);
+        if (formatHeader == null) {
+            return false;
+        }
+        var format = new String(formatHeader.value(), StandardCharsets.UTF_8);
+        if (!TrafficStreamUtils.LENGTH_DELIMITED_BATCH_FORMAT.equals(format)) {
+            throw new InvalidProtocolBufferException("Unknown TrafficStream batch format (" + format +
+                    ") for record " + kafkaRecord.key());
+        }
+        return true;
+    }
+
+    /**
+     * Unpack a record that the capture proxy filled with several length-delimited TrafficStreams.  Each
+     * TrafficStream gets its own key, but they all share the record's offset, which will only be committed once
+     * every one of them has been committed.
+     */
+    private Stream<ITrafficStreamWithKey> parseBatchedRecord(KafkaCommitOffsetData offsetData,
+                                                             ConsumerRecord<String, byte[]> kafkaRecord)
+            throws InvalidProtocolBufferException {
+        var trafficStreams =
+                SerializedTrafficStream.readAllDelimited(UnsafeByteOperations.unsafeWrap(kafkaRecord.value()));
+        if (trafficStreams.isEmpty()) {
+            throw new InvalidProtocolBufferException("Batched record " + kafkaRecord.key() +
+                    " did not contain any TrafficStreams");
+        }
+        var streamsLeftToCommit = new AtomicInteger(trafficStreams.size());
+        var keySize = kafkaRecord.serializedKeySize();
+        return trafficStreams.stream()
+                .map(ts -> makeTrafficStreamWithKey(offsetData, kafkaRecord, ts,
+                        keySize + ts.getDelimitedSize(), streamsLeftToCommit));
+    }
+
+    /**
+     * Only the stream's identifying fields have been read at this point.  Its observations are parsed (aliasing
+     * the record's value) when the stream is first used, which keeps that work off of the Kafka consumer's thread.
+     */
+    private ITrafficStreamWithKey makeTrafficStreamWithKey(KafkaCommitOffsetData offsetData,
+                                                           ConsumerRecord<String, byte[]> kafkaRecord,
+                                                           SerializedTrafficStream ts,
+                                                           int sizeInRecord,
+                                                           AtomicInteger trafficStreamsInRecordLeftToCommit) {
+        var trafficStreamsSoFar = trafficStreamsRead.incrementAndGet();
+        log.atTrace().setMessage(()->"Read traffic stream #" + trafficStreamsSoFar +
+                ": " + offsetData + " " + ts).log();
+        var key = new TrafficStreamKeyWithKafkaRecordId(
+                tsk -> {
+                    var channelKeyCtx = channelContextManager.retainOrCreateContext(tsk);
+                    return channelContextManager.getGlobalContext()
+                            .createTrafficStreamContextForKafkaSource(channelKeyCtx, kafkaRecord.key(), sizeInRecord);
+                },
+                ts, ts.getTrafficStreamIndex(), offsetData, trafficStreamsInRecordLeftToCommit, this);
+        return new SerializedTrafficStreamAndKey(ts, key);
+    }
+
     @Override
     public CommitResult commitTrafficStream(ITrafficStreamKey trafficStreamKey) {
         if (!(trafficStreamKey instanceof TrafficStreamKeyWithKafkaRecordId)) {
             throw new IllegalArgumentException("Expected key of type "+TrafficStreamKeyWithKafkaRecordId.class+
                     " but received "+trafficStreamKey+" (of type="+trafficStreamKey.getClass()+")");
         }
-        return trackingKafkaConsumer.commitKafkaKey(trafficStreamKey, (TrafficStreamKeyWithKafkaRecordId) trafficStreamKey);
+        var kafkaKey = (TrafficStreamKeyWithKafkaRecordId) trafficStreamKey;
+        if (kafkaKey.getOwningSource() != null && kafkaKey.getOwningSource() != this) {
+            throw new IllegalArgumentException("Key " + trafficStreamKey + " was read by a different source");
+        }
+        return trackingKafkaConsumer.commitKafkaKey(trafficStreamKey, kafkaKey);
     }
 
     @Override
@@ -3,74 +3,147 @@ package org.opensearch.migrations.replay.kafka;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Optional;
-import java.util.PriorityQueue;
 import java.util.StringJoiner;
 
 /**
- * This uses a PriorityQueue to find the MINIMUM offset that has yet to be 'committed'.
+ * This finds the MINIMUM offset that has yet to be 'committed'.
  * This class assumes that add() will be called with ascending offsets and that
  * removeAndReturnNewHead may be called in any order.  removeAndReturnNewHead returns
  * the new commit offset for the partition that this object is associated with.
  * It's also assumed that callers MUST call removeAndReturnNewHead for every offset
  * that was previously added for commit points to be advanced.
+ * <p>
+ * Outstanding offsets are kept as bits in a ring buffer that covers the window from the lowest outstanding offset
+ * (the head) to the highest offset that has been added.  Adding and removing an offset just sets or clears its bit.
+ * When the head is removed, the new head is found by scanning forward a word (64 offsets) at a time, so the cost of
+ * advancing the head is proportional to how far it moves, divided by 64.  Offsets that were never added (Kafka
+ * offsets can have gaps) simply never have their bits set.  The ring grows if the window outgrows it.
  */
 @Slf4j
 class OffsetLifecycleTracker {
-    private final PriorityQueue<Long> pQueue = new PriorityQueue<>();
+    private static final int INITIAL_CAPACITY_BITS = 1024;
+
+    /**
+     * Bit (offset & offsetMask) is set while offset is outstanding.  Only offsets within
+     * [headOffset, cursorHighWatermark] can be set, so the ring never needs to be cleared.
+     */
+    private long[] outstandingBits;
+    private long offsetMask;
+    private long headOffset;
+    private int size;
     private long cursorHighWatermark;
     final int consumerConnectionGeneration;
 
     OffsetLifecycleTracker(int generation) {
         this.consumerConnectionGeneration = generation;
+        this.outstandingBits = new long[INITIAL_CAPACITY_BITS / Long.SIZE];
+        this.offsetMask = INITIAL_CAPACITY_BITS - 1;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
     }
 
-    boolean isEmpty() {
-        return pQueue.isEmpty();
+    synchronized int size() {
+        return size;
     }
 
-    int size() {
-        return pQueue.size();
+    synchronized void add(long offset) {
+        assert size == 0 || offset > cursorHighWatermark :
+                "Expected offsets to be added in ascending order, but " + offset + " came after " + cursorHighWatermark;
+        if (size == 0) {
+            headOffset = offset;
+        } else if (offset - headOffset > offsetMask) {
+            grow(offset - headOffset + 1);
+        }
+        cursorHighWatermark = offset;
+        setBit(offset);
+        ++size;
     }
 
-    void add(long offset) {
-        synchronized (pQueue) {
-            cursorHighWatermark = offset;
-            pQueue.add(offset);
+    synchronized Optional<Long> removeAndReturnNewHead(long offsetToRemove) {
+        if (size == 0) {
+            throw new IllegalStateException("Tracker looks to have been empty by the time we tried to remove " +
+                    offsetToRemove);
         }
+        var topCursor = headOffset;
+        var wasOutstanding = offsetToRemove >= headOffset && offsetToRemove <= cursorHighWatermark &&
+                clearBit(offsetToRemove);
+        assert wasOutstanding : "Expected all live records to have an entry and for them to be removed only once";
+        if (!wasOutstanding) {
+            return Optional.empty();
+        }
+        --size;
+        if (offsetToRemove == topCursor) {
+            // when nothing is left, the most recent cursor was previously popped
+            headOffset = size == 0 ? cursorHighWatermark + 1 : findNextOutstanding(offsetToRemove + 1);
+            log.atDebug().setMessage("Commit called for " + offsetToRemove +
+                    ", and new topCursor=" + headOffset).log();
+            return Optional.of(headOffset);
+        } else {
+            log.atDebug().setMessage("Commit called for " + offsetToRemove + ", but topCursor=" + topCursor).log();
+            return Optional.empty();
+        }
+    }
+
+    private void setBit(long offset) {
+        var bitIndex = offset & offsetMask;
+        outstandingBits[(int) (bitIndex >>> 6)] |= 1L << bitIndex;
     }
 
-    Optional<Long> removeAndReturnNewHead(long offsetToRemove) {
-        synchronized (pQueue) {
-            var topCursor = pQueue.peek();
-            assert topCursor != null :
-                    "Expected pQueue to be non-empty but it was when asked to remove " + offsetToRemove;
-            var didRemove = pQueue.remove(offsetToRemove);
-            assert didRemove : "Expected all live records to have an entry and for them to be removed only once";
-            if (topCursor == null) {
-                throw new IllegalStateException("pQueue looks to have been empty by the time we tried to remove " +
-                        offsetToRemove);
+    /**
+     * @return true iff the bit had been set
+     */
+    private boolean clearBit(long offset) {
+        var bitIndex = offset & offsetMask;
+        var wordIndex = (int) (bitIndex >>> 6);
+        var bit = 1L << bitIndex;
+        var wasSet = (outstandingBits[wordIndex] & bit) != 0;
+        outstandingBits[wordIndex] &= ~bit;
+        return wasSet;
+    }
+
+    /**
+     * @return the lowest outstanding offset that is at least fromOffset.  There must be one.
+     */
+    private long findNextOutstanding(long fromOffset) {
+        var offset = fromOffset;
+        while (true) {
+            assert offset <= cursorHighWatermark;
+            var bitIndex = offset & offsetMask;
+            var bitsFromOffset = outstandingBits[(int) (bitIndex >>> 6)] >>> bitIndex;
+            if (bitsFromOffset != 0) {
+                return offset + Long.numberOfTrailingZeros(bitsFromOffset);
             }
-            if (offsetToRemove == topCursor) {
-                topCursor = Optional.ofNullable(pQueue.peek())
-                        .orElse(cursorHighWatermark + 1); // most recent cursor was previously popped
-                log.atDebug().setMessage("Commit called for " + offsetToRemove +
-                        ", and new topCursor=" + topCursor).log();
-                return Optional.of(topCursor);
-            } else {
-                log.atDebug().setMessage("Commit called for " + offsetToRemove + ", but topCursor=" + topCursor).log();
-                return Optional.empty();
+            // move to the start of the next word
+            offset += Long.SIZE - (bitIndex & (Long.SIZE - 1));
+        }
+    }
+
+    private void grow(long minimumCapacityBits) {
+        var newCapacityBits = Long.highestOneBit(minimumCapacityBits - 1) << 1;
+        if (newCapacityBits / Long.SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many offsets (" + minimumCapacityBits + ") are outstanding");
+        }
+        var oldBits = outstandingBits;
+        var oldMask = offsetMask;
+        outstandingBits = new long[(int) (newCapacityBits / Long.SIZE)];
+        offsetMask = newCapacityBits - 1;
+        for (var offset = headOffset; offset <= cursorHighWatermark; ++offset) {
+            var oldBitIndex = offset & oldMask;
+            if ((oldBits[(int) (oldBitIndex >>> 6)] & (1L << oldBitIndex)) != 0) {
+                setBit(offset);
             }
         }
     }
 
     @Override
-    public String toString() {
-        synchronized (pQueue) {
-            return new StringJoiner(", ", OffsetLifecycleTracker.class.getSimpleName() + "[", "]")
-                    .add("pQueue=" + pQueue)
-                    .add("cursorHighWatermark=" + cursorHighWatermark)
-                    .add("consumerConnectionGeneration=" + consumerConnectionGeneration)
-                    .toString();
-        }
+    public synchronized String toString() {
+        return new StringJoiner(", ", OffsetLifecycleTracker.class.getSimpleName() + "[", "]")
+                .add("size=" + size)
+                .add("headOffset=" + headOffset)
+                .add("cursorHighWatermark=" + cursorHighWatermark)
+                .add("consumerConnectionGeneration=" + consumerConnectionGeneration)
+                .toString();
     }
 }
@@ -0,0 +1,154 @@
+package org.opensearch.migrations.replay.kafka;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
+import org.opensearch.migrations.replay.tracing.ITrafficSourceContexts;
+import org.opensearch.migrations.replay.tracing.RootReplayerContext;
+import org.opensearch.migrations.replay.traffic.source.ISimpleTrafficCaptureSource;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Reads from several KafkaTrafficCaptureSources at once.  Each one has its own KafkaConsumer (in the same consumer
+ * group), polling thread and TrackingKafkaConsumer, so Kafka spreads the topic's partitions across them and they
+ * poll and deserialize their partitions in parallel.  Since all of the TrafficStreams for a connection are in one
+ * partition, they still come out of one source, in order.
+ * <p>
+ * Every source always has one read in flight.  readNextTrafficStreamChunk() returns the chunk from whichever read
+ * finishes first (checking the sources round-robin when several are ready) and then starts another read for that
+ * source.  Commits go back to the source that read the TrafficStream (which its key records), and that source does
+ * its own offset tracking.
+ * <p>
+ * Reads that are in flight outlive the call that started them, so each one is given a read context of its own
+ * rather than the caller's.
+ */
+@Slf4j
+public class ParallelKafkaTrafficCaptureSource implements ISimpleTrafficCaptureSource {
+    private final RootReplayerContext globalContext;
+    private final List<KafkaTrafficCaptureSource> sources;
+    private final CompletableFuture<List<ITrafficStreamWithKey>>[] pendingReads;
+    private int nextSourceToCheck;
+
+    @SuppressWarnings("unchecked")
+    public ParallelKafkaTrafficCaptureSource(@NonNull RootReplayerContext globalContext,
+                                             @NonNull List<KafkaTrafficCaptureSource> sources) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("At least one source is required");
+        }
+        this.globalContext = globalContext;
+        this.sources = sources;
+        this.pendingReads = new CompletableFuture[sources.size()];
+    }
+
+    public static ParallelKafkaTrafficCaptureSource buildKafkaSources(@NonNull RootReplayerContext globalContext,
+                                                                      @NonNull String brokers,
+                                                                      @NonNull String topic,
+                                                                      @NonNull String groupId,
+                                                                      boolean enableMSKAuth,
+                                                                      String propertyFilePath,
+                                                                      @NonNull Clock clock,
+                                                                      @NonNull KafkaBehavioralPolicy behavioralPolicy,
+                                                                      int numConsumers)
+            throws IOException
+    {
+        if (numConsumers < 1) {
+            throw new IllegalArgumentException("numConsumers (" + numConsumers + ") must be at least 1");
+        }
+        var sources = new ArrayList<KafkaTrafficCaptureSource>();
+        for (int i = 0; i < numConsumers; ++i) {
+            sources.add(KafkaTrafficCaptureSource.buildKafkaSource(globalContext, brokers, topic, groupId,
+                    enableMSKAuth, propertyFilePath, clock, behavioralPolicy));
+        }
+        return new ParallelKafkaTrafficCaptureSource(globalContext, sources);
+    }
+
+    /**
+     * Like the sources that this wraps, this must not be called again until the previously returned future is done.
+     */
+    @Override
+    public CompletableFuture<List<ITrafficStreamWithKey>>
+    readNextTrafficStreamChunk(Supplier<ITrafficSourceContexts.IReadChunkContext> contextSupplier) {
+        for (int i = 0; i < pendingReads.length; ++i) {
+            if (pendingReads[i] == null) {
+                pendingReads[i] = startRead(sources.get(i));
+            }
+        }
+        for (int j = 0; j < pendingReads.length; ++j) {
+            var i = (nextSourceToCheck + j) % pendingReads.length;
+            if (pendingReads[i].isDone()) {
+                var finishedRead = pendingReads[i];
+                pendingReads[i] = null;
+                nextSourceToCheck = (i + 1) % pendingReads.length;
+                return finishedRead;
+            }
+        }
+        return CompletableFuture.anyOf(pendingReads)
+                .handle((v, t) -> null)
+                .thenCompose(v -> readNextTrafficStreamChunk(contextSupplier));
+    }
+
+    private CompletableFuture<List<ITrafficStreamWithKey>> startRead(KafkaTrafficCaptureSource source) {
+        var readContext = globalContext.createReadChunkContext();
+        return source.readNextTrafficStreamChunk(() -> readContext)
+                .whenComplete((chunk, t) -> readContext.close());
+    }
+
+    @Override
+    public CommitResult commitTrafficStream(ITrafficStreamKey trafficStreamKey) throws IOException {
+        var owningSource = trafficStreamKey instanceof TrafficStreamKeyWithKafkaRecordId ?
+                ((TrafficStreamKeyWithKafkaRecordId) trafficStreamKey).getOwningSource() : null;
+        if (owningSource == null || !sources.contains(owningSource)) {
+            throw new IllegalArgumentException("None of these sources read " + trafficStreamKey);
+        }
+        return owningSource.commitTrafficStream(trafficStreamKey);
+    }
+
+    @Override
+    public void touch(ITrafficSourceContexts.IBackPressureBlockContext context) {
+        var now = Instant.now();
+        for (var source : sources) {
+            if (source.getNextRequiredTouch().filter(t -> !t.isAfter(now)).isPresent()) {
+                source.touch(context);
+            }
+        }
+    }
+
+    /**
+     * @return the earliest time that any of the sources needs to be touched by
+     */
+    @Override
+    public Optional<Instant> getNextRequiredTouch() {
+        return sources.stream()
+                .map(KafkaTrafficCaptureSource::getNextRequiredTouch)
+                .flatMap(Optional::stream)
+                .min(Comparator.naturalOrder());
+    }
+
+    @Override
+    public void close() throws Exception {
+        Exception firstException = null;
+        for (var source : sources) {
+            try {
+                source.close();
+            } catch (Exception e) {
+                log.atWarn().setCause(e).setMessage(() -> "Exception while closing " + source).log();
+                if (firstException == null) {
+                    firstException = e;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+}
@@ -307,6 +307,15 @@ public class TrackingKafkaConsumer implements ConsumerRebalanceListener {
 
         var k = new TopicPartition(topic, p);
 
+        if (!kafkaTsk.markTrafficStreamCommitted()) {
+            // Other TrafficStreams from the same (batched) record are still outstanding.  Hold onto this key so
+            // that its callback fires once the record's offset is finally committed.
+            synchronized (commitDataLock) {
+                addKeyContextForEventualCommit(streamKey, kafkaTsk, k);
+            }
+            return ITrafficCaptureSource.CommitResult.BlockedByOtherCommits;
+        }
+
         newHeadValue = tracker.removeAndReturnNewHead(kafkaTsk.getOffset());
         return newHeadValue.map(o -> {
             var v = new OffsetAndMetadata(o);
@@ -1,13 +1,17 @@
 package org.opensearch.migrations.replay.kafka;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import org.opensearch.migrations.replay.datatypes.ISourceTrafficChannelKey;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
 import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamKeyAndContext;
 import org.opensearch.migrations.replay.tracing.IReplayContexts;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
 
 import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 @EqualsAndHashCode(callSuper = true)
@@ -16,23 +20,68 @@ class TrafficStreamKeyWithKafkaRecordId extends PojoTrafficStreamKeyAndContext i
     private final int generation;
     private final int partition;
     private final long offset;
+    /**
+     * Shared by all of the keys for TrafficStreams that were packed into the same (batched) Kafka record, or null
+     * when the record held only this TrafficStream
+     */
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger trafficStreamsInRecordLeftToCommit;
+    /**
+     * The source whose consumer read this TrafficStream and that it must be committed back to, or null if it
+     * wasn't read by a KafkaTrafficCaptureSource.  Generations are only unique within one consumer, so keys from
+     * different consumers stay distinct even when all of their other fields match.
+     */
+    private final KafkaTrafficCaptureSource owningSource;
 
     TrafficStreamKeyWithKafkaRecordId(Function<ITrafficStreamKey, IReplayContexts.IKafkaRecordContext> contextFactory,
                                       TrafficStream trafficStream, KafkaCommitOffsetData ok) {
-        this(contextFactory, trafficStream, ok.getGeneration(), ok.getPartition(), ok.getOffset());
+        this(contextFactory, trafficStream, ok, null);
+    }
+
+    TrafficStreamKeyWithKafkaRecordId(Function<ITrafficStreamKey, IReplayContexts.IKafkaRecordContext> contextFactory,
+                                      TrafficStream trafficStream, KafkaCommitOffsetData ok,
+                                      AtomicInteger trafficStreamsInRecordLeftToCommit) {
+        this(contextFactory, new ISourceTrafficChannelKey.PojoImpl(trafficStream.getNodeId(), trafficStream.getConnectionId()),
+                TrafficStreamUtils.getTrafficStreamIndex(trafficStream), ok, trafficStreamsInRecordLeftToCommit, null);
+    }
+
+    TrafficStreamKeyWithKafkaRecordId(Function<ITrafficStreamKey, IReplayContexts.IKafkaRecordContext> contextFactory,
+                                      ISourceTrafficChannelKey channelKey, int trafficStreamIndex,
+                                      KafkaCommitOffsetData ok,
+                                      AtomicInteger trafficStreamsInRecordLeftToCommit,
+                                      KafkaTrafficCaptureSource owningSource) {
+        this(contextFactory, channelKey, trafficStreamIndex, ok.getGeneration(), ok.getPartition(), ok.getOffset(),
+                trafficStreamsInRecordLeftToCommit, owningSource);
     }
 
     TrafficStreamKeyWithKafkaRecordId(Function<ITrafficStreamKey, IReplayContexts.IKafkaRecordContext> contextFactory,
                                       TrafficStream trafficStream,
                                       int generation, int partition, long offset) {
-        super(trafficStream);
+        this(contextFactory, new ISourceTrafficChannelKey.PojoImpl(trafficStream.getNodeId(), trafficStream.getConnectionId()),
+                TrafficStreamUtils.getTrafficStreamIndex(trafficStream), generation, partition, offset, null, null);
+    }
+
+    private TrafficStreamKeyWithKafkaRecordId(Function<ITrafficStreamKey, IReplayContexts.IKafkaRecordContext> contextFactory,
+                                              ISourceTrafficChannelKey channelKey, int trafficStreamIndex,
+                                              int generation, int partition, long offset,
+                                              AtomicInteger trafficStreamsInRecordLeftToCommit,
+                                              KafkaTrafficCaptureSource owningSource) {
+        super(channelKey.getNodeId(), channelKey.getConnectionId(), trafficStreamIndex);
         this.generation = generation;
         this.partition = partition;
         this.offset = offset;
+        this.trafficStreamsInRecordLeftToCommit = trafficStreamsInRecordLeftToCommit;
+        this.owningSource = owningSource;
         var kafkaContext = contextFactory.apply(this);
         this.setTrafficStreamsContext(kafkaContext.createTrafficLifecyleContext(this));
     }
 
+    @Override
+    public boolean markTrafficStreamCommitted() {
+        return trafficStreamsInRecordLeftToCommit == null || trafficStreamsInRecordLeftToCommit.decrementAndGet() == 0;
+    }
+
     @Override
     public String toString() {
         return new StringJoiner("|")
@@ -46,20 +46,30 @@ public class ChannelContextManager implements Function<ITrafficStreamKey, IRepla
         return retainOrCreateContext(tsk);
     }
 
+    /**
+     * Retains and releases are done within the map's per-key compute functions since they can be called from
+     * several threads at once (the traffic source's reader, the accumulation threads and the netty threads).
+     */
     public IReplayContexts.IChannelKeyContext retainOrCreateContext(ITrafficStreamKey tsk) {
-        return connectionToChannelContextMap.computeIfAbsent(tsk.getConnectionId(),
-                k -> new RefCountedContext(globalContext.createChannelContext(tsk))).retain();
+        var retainedContext = new IReplayContexts.IChannelKeyContext[1];
+        connectionToChannelContextMap.compute(tsk.getConnectionId(), (k, refCountedCtx) -> {
+            var rval = refCountedCtx != null ? refCountedCtx :
+                    new RefCountedContext(globalContext.createChannelContext(tsk));
+            retainedContext[0] = rval.retain();
+            return rval;
+        });
+        return retainedContext[0];
     }
 
     public IReplayContexts.IChannelKeyContext releaseContextFor(IReplayContexts.IChannelKeyContext ctx) {
-        var connId = ctx.getConnectionId();
-        var refCountedCtx = connectionToChannelContextMap.get(connId);
-        assert ctx == refCountedCtx.context;
-        var finalRelease = refCountedCtx.release();
-        if (finalRelease) {
-            ctx.close();
-            connectionToChannelContextMap.remove(connId);
-        }
+        connectionToChannelContextMap.computeIfPresent(ctx.getConnectionId(), (k, refCountedCtx) -> {
+            assert ctx == refCountedCtx.context;
+            if (refCountedCtx.release()) {
+                ctx.close();
+                return null;
+            }
+            return refCountedCtx;
+        });
         return ctx;
     }
 }
@@ -2,12 +2,14 @@ package org.opensearch.migrations.replay.tracing;
 
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.AttributesBuilder;
+import org.opensearch.migrations.replay.datatypes.ChannelTaskType;
 import org.opensearch.migrations.replay.datatypes.ISourceTrafficChannelKey;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
 import org.opensearch.migrations.replay.datatypes.UniqueReplayerRequestKey;
 import org.opensearch.migrations.tracing.IScopedInstrumentationAttributes;
 import org.opensearch.migrations.tracing.IWithTypedEnclosingScope;
 
+import java.time.Duration;
 import java.time.Instant;
 
 public abstract class IReplayContexts {
@@ -53,6 +55,7 @@ public abstract class IReplayContexts {
         public static final String TRANSFORM_CHUNKS_IN = "transformChunksIn";
         public static final String TRANSFORM_CHUNKS_OUT = "transformChunksOut";
         public static final String NETTY_SCHEDULE_LAG = "scheduleLag";
+        public static final String SCHEDULE_SKEW = "scheduleSkew";
         public static final String SOURCE_TO_TARGET_REQUEST_LAG = "lagBetweenSourceAndTargetRequests";
         public static final String ACTIVE_CHANNELS_YET_TO_BE_FULLY_DISCARDED = "activeReplayerChannels";
         public static final String FAILED_CONNECTION_ATTEMPTS = "failedConnectionAttempts";
@@ -71,6 +74,7 @@ public abstract class IReplayContexts {
             extends IAccumulationScope,
                     org.opensearch.migrations.tracing.commoncontexts.IConnectionContext {
         String ACTIVITY_NAME = ActivityNames.CHANNEL;
+        AttributeKey<String> SCHEDULED_TASK_TYPE_KEY = AttributeKey.stringKey("taskType");
 
         @Override
         default String getActivityName() {
@@ -92,6 +96,11 @@ public abstract class IReplayContexts {
         ISocketContext createSocketContext();
 
         void addFailedChannelCreation();
+
+        /**
+         * @param skew how long after its scheduled time a task for this channel actually started to run
+         */
+        void addScheduleSkew(ChannelTaskType taskType, Duration skew);
     }
 
     public interface ISocketContext extends IAccumulationScope, IWithTypedEnclosingScope<IChannelKeyContext> {
@@ -11,6 +11,7 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.replay.datatypes.ChannelTaskType;
 import org.opensearch.migrations.replay.datatypes.ISourceTrafficChannelKey;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
 import org.opensearch.migrations.replay.datatypes.UniqueReplayerRequestKey;
@@ -98,12 +99,14 @@ public abstract class ReplayContexts extends IReplayContexts {
         public static class MetricInstruments extends CommonScopedMetricInstruments {
             final LongUpDownCounter activeChannelCounter;
             final LongCounter failedConnectionAttempts;
+            final DoubleHistogram scheduleSkew;
 
             private MetricInstruments(Meter meter, String activityName) {
                 super(meter, activityName);
                 activeChannelCounter = meter
                         .upDownCounterBuilder(MetricNames.ACTIVE_CHANNELS_YET_TO_BE_FULLY_DISCARDED).build();
                 failedConnectionAttempts = meter.counterBuilder(MetricNames.FAILED_CONNECTION_ATTEMPTS).build();
+                scheduleSkew = meter.histogramBuilder(MetricNames.SCHEDULE_SKEW).setUnit("ms").build();
             }
         }
 
@@ -130,6 +133,12 @@ public abstract class ReplayContexts extends IReplayContexts {
         public void addFailedChannelCreation() {
             meterIncrementEvent(getMetrics().failedConnectionAttempts);
         }
+
+        @Override
+        public void addScheduleSkew(ChannelTaskType taskType, Duration skew) {
+            meterHistogramMillis(getMetrics().scheduleSkew, skew,
+                    Attributes.builder().put(SCHEDULED_TASK_TYPE_KEY, taskType.name()));
+        }
     }
 
     public static class KafkaRecordContext
@@ -307,7 +316,7 @@ public abstract class ReplayContexts extends IReplayContexts {
         @Override
         public IReplayContexts.IScheduledContext createScheduledContext(Instant timestamp) {
             return new ReplayContexts.ScheduledContext(this,
-                    Duration.between(Instant.now(), timestamp).toNanos());
+                    System.nanoTime() + Duration.between(Instant.now(), timestamp).toNanos());
         }
 
         @Override
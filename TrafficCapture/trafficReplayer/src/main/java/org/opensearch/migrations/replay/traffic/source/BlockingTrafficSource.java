@@ -17,14 +17,19 @@ import java.time.Instant;
 import java.util.Comparator;
 import java.util.List;
 import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * The BlockingTrafficSource class implements ITrafficCaptureSource and wraps another instance.
@@ -38,6 +43,15 @@ import java.util.function.Supplier;
  * This class is designed to only be threadsafe for any number of callers to call stopReadsPast
  * and independently for one caller to call readNextTrafficStreamChunk() and to wait for the result
  * to complete before another caller calls it again.
+ *
+ * When prefetchChunks is greater than 0, chunks are read from the underlying source by a background
+ * thread before they're asked for, so that reading from the source, parsing the TrafficStreams and
+ * accumulating them can overlap.  Up to prefetchChunks chunks are held that haven't been handed to
+ * the caller yet.  Their TrafficStreams are parsed by a pool of numDecodeThreads threads (or by the
+ * reading thread when that's 0) and are still handed out in the order that they were read.  The
+ * stopReadsPast barrier is honored before each read, but since the timestamps of a chunk are only
+ * known once it has been parsed, reads can run past the barrier by as many chunks as are being parsed.
+ * The underlying source is touched while the reading thread waits for the caller to make room.
  */
 @Slf4j
 public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlowController {
@@ -52,8 +66,35 @@ public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlo
     @Getter
     private final Duration bufferTimeWindow;
     private final ExecutorService executorForBlockingActivity;
+    private final int prefetchChunks;
+    /**
+     * Parses prefetched chunks.  Null when prefetching is off or when parsing is done on the reading thread.
+     */
+    private final ExecutorService decodeExecutor;
+    /**
+     * Prefetched chunks, in the order that they were read.  Each one is added before its read begins.
+     */
+    private final BlockingQueue<CompletableFuture<List<ITrafficStreamWithKey>>> prefetchedChunks;
+    /**
+     * One permit for each chunk that can be read ahead of the caller
+     */
+    private final Semaphore prefetchSlots;
+    private final AtomicReference<Supplier<ITrafficSourceContexts.IReadChunkContext>> readContextSupplierRef;
+    private final AtomicBoolean prefetchStarted;
+    /**
+     * Set once the underlying source has failed (usually with an EOFException), after which nothing more is read
+     */
+    private volatile Throwable prefetchTerminalCause;
 
     public BlockingTrafficSource(ISimpleTrafficCaptureSource underlying, Duration bufferTimeWindow) {
+        this(underlying, bufferTimeWindow, 0, 0);
+    }
+
+    public BlockingTrafficSource(ISimpleTrafficCaptureSource underlying, Duration bufferTimeWindow,
+                                 int prefetchChunks, int numDecodeThreads) {
+        if (prefetchChunks < 0 || numDecodeThreads < 0) {
+            throw new IllegalArgumentException("prefetchChunks and numDecodeThreads must not be negative");
+        }
         this.underlyingSource = underlying;
         this.stopReadingAtRef = new AtomicReference<>(Instant.EPOCH);
         this.lastTimestampSecondsRef = new AtomicReference<>(Instant.EPOCH);
@@ -62,6 +103,15 @@ public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlo
         this.executorForBlockingActivity =
                 Executors.newSingleThreadExecutor(new DefaultThreadFactory(
                         "BlockingTrafficSource-executorForBlockingActivity-"+System.identityHashCode(this)));
+        this.prefetchChunks = prefetchChunks;
+        this.decodeExecutor = prefetchChunks > 0 && numDecodeThreads > 0 ?
+                Executors.newFixedThreadPool(numDecodeThreads, new DefaultThreadFactory(
+                        "BlockingTrafficSource-decode-"+System.identityHashCode(this))) :
+                null;
+        this.prefetchedChunks = new LinkedBlockingQueue<>();
+        this.prefetchSlots = new Semaphore(prefetchChunks);
+        this.readContextSupplierRef = new AtomicReference<>();
+        this.prefetchStarted = new AtomicBoolean();
     }
 
     /**
@@ -94,6 +144,9 @@ public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlo
      */
     public CompletableFuture<List<ITrafficStreamWithKey>>
     readNextTrafficStreamChunk(Supplier<ITrafficSourceContexts.IReadChunkContext> readChunkContextSupplier) {
+        if (prefetchChunks > 0) {
+            return takeNextPrefetchedChunk(readChunkContextSupplier);
+        }
         var readContext = readChunkContextSupplier.get();
         log.debug("BlockingTrafficSource::readNext");
         var trafficStreamListFuture = CompletableFuture
@@ -107,19 +160,151 @@ public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlo
             if (t != null) {
                 return;
             }
-            var maxLocallyObservedTimestamp = v.stream()
-                    .flatMap(tswk -> tswk.getStream().getSubStreamList().stream())
-                    .map(TrafficObservation::getTs)
-                    .max(Comparator.comparingLong(Timestamp::getSeconds)
-                            .thenComparingInt(Timestamp::getNanos))
-                    .map(TrafficStreamUtils::instantFromProtoTimestamp)
-                    .orElse(Instant.EPOCH);
-            Utils.setIfLater(lastTimestampSecondsRef, maxLocallyObservedTimestamp);
-            log.atTrace().setMessage(() -> "end of readNextTrafficStreamChunk trigger...lastTimestampSecondsRef="
-                    + lastTimestampSecondsRef.get()).log();
+            updateLastTimestampFrom(v);
         });
     }
 
+    private void updateLastTimestampFrom(List<ITrafficStreamWithKey> trafficStreams) {
+        var maxLocallyObservedTimestamp = trafficStreams.stream()
+                .flatMap(BlockingTrafficSource::getObservationsIfParseable)
+                .map(TrafficObservation::getTs)
+                .max(Comparator.comparingLong(Timestamp::getSeconds)
+                        .thenComparingInt(Timestamp::getNanos))
+                .map(TrafficStreamUtils::instantFromProtoTimestamp)
+                .orElse(Instant.EPOCH);
+        Utils.setIfLater(lastTimestampSecondsRef, maxLocallyObservedTimestamp);
+        log.atTrace().setMessage(() -> "end of readNextTrafficStreamChunk trigger...lastTimestampSecondsRef="
+                + lastTimestampSecondsRef.get()).log();
+    }
+
+    /**
+     * A stream that can't be parsed shouldn't fail the rest of its chunk.  The accumulator reports and drops it.
+     */
+    private static Stream<TrafficObservation> getObservationsIfParseable(ITrafficStreamWithKey trafficStream) {
+        try {
+            return trafficStream.getStream().getSubStreamList().stream();
+        } catch (IllegalStateException e) {
+            return Stream.empty();
+        }
+    }
+
+    private CompletableFuture<List<ITrafficStreamWithKey>>
+    takeNextPrefetchedChunk(Supplier<ITrafficSourceContexts.IReadChunkContext> readChunkContextSupplier) {
+        readContextSupplierRef.set(readChunkContextSupplier);
+        if (!prefetchStarted.getAndSet(true)) {
+            executorForBlockingActivity.execute(this::prefetchChunks);
+        }
+        var nextChunk = prefetchedChunks.poll();
+        if (nextChunk == null) {
+            var terminalCause = prefetchTerminalCause;
+            if (terminalCause != null) {
+                return CompletableFuture.failedFuture(terminalCause);
+            }
+            try {
+                // the reading thread adds a chunk before it does anything that could take a while
+                nextChunk = prefetchedChunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        prefetchSlots.release();
+        return nextChunk;
+    }
+
+    /**
+     * Runs on executorForBlockingActivity until the underlying source fails or this is closed.  Reads are done one
+     * at a time, since sources don't support concurrent reads, but parsing the chunks that were read is not.
+     */
+    private void prefetchChunks() {
+        // the chunk that has been handed to the caller, but not yet to a reader or parser that will complete it
+        CompletableFuture<List<ITrafficStreamWithKey>> unfinishedChunk = null;
+        try {
+            while (true) {
+                var readContext = readContextSupplierRef.get().get();
+                var chunkFuture = new CompletableFuture<List<ITrafficStreamWithKey>>();
+                try {
+                    acquirePrefetchSlotWhileKeepingSourceAlive(readContext);
+                    prefetchedChunks.add(chunkFuture);
+                    unfinishedChunk = chunkFuture;
+                    blockIfNeeded(readContext);
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    List<ITrafficStreamWithKey> trafficStreams;
+                    try {
+                        trafficStreams = underlyingSource.readNextTrafficStreamChunk(() -> readContext).get();
+                    } catch (ExecutionException e) {
+                        prefetchTerminalCause = e.getCause();
+                        chunkFuture.completeExceptionally(e.getCause());
+                        return;
+                    }
+                    if (decodeExecutor == null) {
+                        completeWithDecodedChunk(chunkFuture, trafficStreams);
+                    } else {
+                        decodeExecutor.execute(() -> completeWithDecodedChunk(chunkFuture, trafficStreams));
+                    }
+                    unfinishedChunk = null;
+                } finally {
+                    readContext.close();
+                }
+            }
+        } catch (InterruptedException e) {
+            log.atDebug().setMessage("Stopped prefetching traffic stream chunks").log();
+            prefetchedChunks.forEach(f -> f.cancel(false));
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.atError().setCause(e).setMessage("Stopped prefetching traffic stream chunks").log();
+            prefetchTerminalCause = e;
+            // the caller may already be waiting on the chunk that was being read, so that's the one to fail
+            if (unfinishedChunk != null) {
+                unfinishedChunk.completeExceptionally(e);
+            } else {
+                prefetchedChunks.add(CompletableFuture.failedFuture(e));
+            }
+        }
+    }
+
+    /**
+     * Parsing the TrafficStreams is usually the most expensive part of handling a chunk, which is why this runs
+     * on the decode threads (when there are any).
+     */
+    private void completeWithDecodedChunk(CompletableFuture<List<ITrafficStreamWithKey>> chunkFuture,
+                                          List<ITrafficStreamWithKey> trafficStreams) {
+        try {
+            updateLastTimestampFrom(trafficStreams);
+            chunkFuture.complete(trafficStreams);
+        } catch (Exception e) {
+            chunkFuture.completeExceptionally(e);
+        }
+    }
+
+    private void acquirePrefetchSlotWhileKeepingSourceAlive(ITrafficSourceContexts.IReadChunkContext readContext)
+            throws InterruptedException {
+        ITrafficSourceContexts.IBackPressureBlockContext blockContext = null;
+        try {
+            while (true) {
+                var nextTouchOp = underlyingSource.getNextRequiredTouch();
+                if (nextTouchOp.isEmpty()) {
+                    prefetchSlots.acquire();
+                    return;
+                }
+                var waitIntervalMs = Duration.between(Instant.now(), nextTouchOp.get()).toMillis();
+                if (waitIntervalMs > 0 && prefetchSlots.tryAcquire(waitIntervalMs, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+                if (blockContext == null) {
+                    blockContext = readContext.createBackPressureContext();
+                }
+                underlyingSource.touch(blockContext);
+            }
+        } finally {
+            if (blockContext != null) {
+                blockContext.close();
+            }
+        }
+    }
+
     /**
      * This could be rewritten as a fully asynchronous function that uses times, but for a single
      * thread in the application, it isn't worth it.  It's also easier to debug the state machine
@@ -188,9 +373,16 @@ public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlo
 
     @Override
     public void close() throws Exception {
+        if (prefetchChunks > 0) {
+            // the reading thread may be blocked on the barrier or on the caller, so it needs to be interrupted
+            executorForBlockingActivity.shutdownNow();
+            executorForBlockingActivity.awaitTermination(1, TimeUnit.MINUTES);
+            if (decodeExecutor != null) {
+                decodeExecutor.shutdown();
+            }
+        }
         underlyingSource.close();
         executorForBlockingActivity.shutdown();
-
     }
 
     @Override
@@ -200,6 +392,7 @@ public class BlockingTrafficSource implements ITrafficCaptureSource, BufferedFlo
                 .add("lastTimestampSecondsRef=" + lastTimestampSecondsRef)
                 .add("stopReadingAtRef=" + stopReadingAtRef)
                 .add("readGate=" + readGate)
+                .add("prefetchedChunks=" + prefetchedChunks.size())
                 .toString();
     }
 }
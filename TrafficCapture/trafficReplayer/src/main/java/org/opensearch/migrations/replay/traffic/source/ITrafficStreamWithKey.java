@@ -7,4 +7,20 @@ public interface ITrafficStreamWithKey {
     ITrafficStreamKey getKey();
 
     TrafficStream getStream();
+
+    /**
+     * The following are the stream's header fields.  Implementations that parse streams lazily can return them
+     * without having to parse the observations.
+     */
+    default int getPriorRequestsReceived() {
+        return getStream().getPriorRequestsReceived();
+    }
+
+    default boolean hasLastObservationWasUnterminatedRead() {
+        return getStream().hasLastObservationWasUnterminatedRead();
+    }
+
+    default boolean getLastObservationWasUnterminatedRead() {
+        return getStream().getLastObservationWasUnterminatedRead();
+    }
 }
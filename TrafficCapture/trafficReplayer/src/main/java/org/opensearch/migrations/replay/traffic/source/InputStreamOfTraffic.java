@@ -3,14 +3,14 @@ package org.opensearch.migrations.replay.traffic.source;
 import lombok.Lombok;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
-import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamAndKey;
 import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamKeyAndContext;
+import org.opensearch.migrations.replay.datatypes.SerializedTrafficStream;
+import org.opensearch.migrations.replay.datatypes.SerializedTrafficStreamAndKey;
 import org.opensearch.migrations.replay.tracing.ChannelContextManager;
 import org.opensearch.migrations.replay.tracing.IReplayContexts;
 import org.opensearch.migrations.replay.tracing.ITrafficSourceContexts;
 import org.opensearch.migrations.replay.tracing.ReplayContexts;
 import org.opensearch.migrations.replay.tracing.RootReplayerContext;
-import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -41,25 +41,26 @@ public class InputStreamOfTraffic implements ISimpleTrafficCaptureSource {
 
     /**
      * Returns a CompletableFuture to a TrafficStream object or sets the cause exception to an
-     * EOFException if the input has been exhausted.
+     * EOFException if the input has been exhausted.  Only the stream's identifying fields are parsed
+     * here; its observations are parsed when the stream is first used.
      */
     @Override
     public CompletableFuture<List<ITrafficStreamWithKey>>
     readNextTrafficStreamChunk(Supplier<ITrafficSourceContexts.IReadChunkContext> contextSupplier) {
         return CompletableFuture.supplyAsync(() -> {
-            var builder = TrafficStream.newBuilder();
+            SerializedTrafficStream ts;
             try {
-                if (!builder.mergeDelimitedFrom(inputStream)) {
+                ts = SerializedTrafficStream.readDelimitedFrom(inputStream);
+                if (ts == null) {
                     throw new EOFException();
                 }
             } catch (Exception e) {
                 throw Lombok.sneakyThrow(e);
             }
-            var ts = builder.build();
             trafficStreamsRead.incrementAndGet();
-            log.trace("Parsed traffic stream #{}: {}", trafficStreamsRead.get(), ts);
-            return List.<ITrafficStreamWithKey>of(new PojoTrafficStreamAndKey(ts,
-                    PojoTrafficStreamKeyAndContext.build(ts, tsk-> {
+            log.trace("Read traffic stream #{}: {}", trafficStreamsRead.get(), ts);
+            return List.<ITrafficStreamWithKey>of(new SerializedTrafficStreamAndKey(ts,
+                    PojoTrafficStreamKeyAndContext.build(ts, ts.getTrafficStreamIndex(), tsk-> {
                         var channelCtx = channelContextManager.retainOrCreateContext(tsk);
                         return channelContextManager.getGlobalContext()
                                 .createTrafficStreamContextForStreamSource(channelCtx, tsk);
@@ -0,0 +1,299 @@
+package org.opensearch.migrations.replay.traffic.source;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Lombok;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
+import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamAndKey;
+import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamKeyAndContext;
+import org.opensearch.migrations.replay.tracing.ChannelContextManager;
+import org.opensearch.migrations.replay.tracing.ITrafficSourceContexts;
+import org.opensearch.migrations.replay.tracing.RootReplayerContext;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.segmentfiles.TrafficSegmentFiles;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Reads the segment files written by the capture proxy's segment file offloader (see {@link TrafficSegmentFiles}).
+ * <p>
+ * Segments are memory-mapped and read in sequence order.  When followNewData is set, this source keeps polling
+ * the newest segment (and the directory, for new segments) for records that the proxy is still writing, so that
+ * it can replay a live capture.  Otherwise, reaching the end of the last segment ends the stream of traffic
+ * with an EOFException, as it would for {@link InputStreamOfTraffic}.
+ * <p>
+ * Commits are tracked in a checkpoint file in the same directory, which holds the position of the oldest
+ * TrafficStream that hasn't been committed yet (or the end of what has been read, if they all have been).  It's
+ * written at most once per {@link #CHECKPOINT_INTERVAL} and when the source is closed.  A restarted replayer
+ * resumes from the checkpoint, so TrafficStreams committed after the last checkpoint was written are replayed
+ * again, but nothing before it is.
+ */
+@Slf4j
+public class SegmentFileTrafficCaptureSource implements ISimpleTrafficCaptureSource {
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(100);
+    public static final Duration CHECKPOINT_INTERVAL = Duration.ofSeconds(1);
+    private static final int MAX_TRAFFIC_STREAMS_PER_CHUNK = 256;
+
+    private final Path directory;
+    private final boolean followNewData;
+    private final Duration pollInterval;
+    private final ChannelContextManager channelContextManager;
+    private final ExecutorService readerExecutor;
+
+    // Only accessed from the readerExecutor's thread
+    private Path currentSegmentPath;
+    private FileChannel currentSegmentChannel;
+    private MappedByteBuffer currentSegmentContents;
+    private int currentOffset;
+    private boolean checkpointLoaded;
+    private TrafficSegmentFiles.Checkpoint resumeCheckpoint;
+
+    private final Object commitLock = new Object();
+    // Everything below is only accessed while holding commitLock
+    /** The positions of TrafficStreams that have been read but not committed, in the order that they were read */
+    private final LinkedHashMap<String, TrafficSegmentFiles.Checkpoint> uncommittedPositions = new LinkedHashMap<>();
+    private TrafficSegmentFiles.Checkpoint endOfReadPosition;
+    private TrafficSegmentFiles.Checkpoint lastWrittenCheckpoint;
+    private long lastCheckpointWriteNanos;
+
+    public SegmentFileTrafficCaptureSource(RootReplayerContext context, Path directory, boolean followNewData) {
+        this(context, directory, followNewData, DEFAULT_POLL_INTERVAL);
+    }
+
+    public SegmentFileTrafficCaptureSource(RootReplayerContext context, Path directory, boolean followNewData,
+                                           Duration pollInterval) {
+        this.channelContextManager = new ChannelContextManager(context);
+        this.directory = directory;
+        this.followNewData = followNewData;
+        this.pollInterval = pollInterval;
+        this.readerExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("segmentFileReader", true));
+    }
+
+    /**
+     * Returns a CompletableFuture to the next TrafficStreams or sets the cause exception to an EOFException if
+     * all segments have been read and followNewData is false.
+     */
+    @Override
+    public CompletableFuture<List<ITrafficStreamWithKey>>
+    readNextTrafficStreamChunk(Supplier<ITrafficSourceContexts.IReadChunkContext> contextSupplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                while (true) {
+                    var trafficStreams = readAvailableTrafficStreams();
+                    if (!trafficStreams.isEmpty()) {
+                        return trafficStreams;
+                    } else if (!followNewData) {
+                        throw new EOFException();
+                    }
+                    Thread.sleep(pollInterval.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Lombok.sneakyThrow(e);
+            } catch (IOException e) {
+                throw Lombok.sneakyThrow(e);
+            }
+        }, readerExecutor).exceptionally(e -> {
+            var ecf = new CompletableFuture<List<ITrafficStreamWithKey>>();
+            ecf.completeExceptionally(e.getCause());
+            return ecf.join();
+        });
+    }
+
+    private List<ITrafficStreamWithKey> readAvailableTrafficStreams() throws IOException {
+        var trafficStreams = new ArrayList<ITrafficStreamWithKey>();
+        while (trafficStreams.size() < MAX_TRAFFIC_STREAMS_PER_CHUNK) {
+            if (currentSegmentContents == null && !openNextSegment()) {
+                break;
+            }
+            var payload = TrafficSegmentFiles.readRecordAt(currentSegmentContents, currentOffset);
+            if (payload != null) {
+                var sequenceNumber = TrafficSegmentFiles.sequenceNumberOf(currentSegmentPath);
+                var recordOffset = currentOffset;
+                currentOffset += TrafficSegmentFiles.RECORD_HEADER_SIZE + payload.remaining();
+                var trafficStreamWithKey = makeTrafficStreamWithKey(TrafficStream.parseFrom(payload));
+                synchronized (commitLock) {
+                    uncommittedPositions.put(positionKey(trafficStreamWithKey.getKey()),
+                            new TrafficSegmentFiles.Checkpoint(sequenceNumber, recordOffset));
+                    endOfReadPosition = new TrafficSegmentFiles.Checkpoint(sequenceNumber, currentOffset);
+                }
+                trafficStreams.add(trafficStreamWithKey);
+            } else if (currentSegmentChannel.size() > currentSegmentContents.limit()) {
+                // the writer has appended more since this was mapped
+                mapCurrentSegment();
+            } else if (hasLaterSegment()) {
+                if (currentOffset < currentSegmentContents.limit()) {
+                    final var skippedOffset = currentOffset;
+                    log.atWarn().setMessage(() -> "Skipping an incomplete record at offset " + skippedOffset +
+                            " of " + currentSegmentPath + " since a newer segment has been started").log();
+                }
+                closeCurrentSegment();
+            } else {
+                break;
+            }
+        }
+        return trafficStreams;
+    }
+
+    private ITrafficStreamWithKey makeTrafficStreamWithKey(TrafficStream ts) {
+        return new PojoTrafficStreamAndKey(ts, PojoTrafficStreamKeyAndContext.build(ts, tsk -> {
+            var channelCtx = channelContextManager.retainOrCreateContext(tsk);
+            return channelContextManager.getGlobalContext().createTrafficStreamContextForStreamSource(channelCtx, tsk);
+        }));
+    }
+
+    private boolean hasLaterSegment() throws IOException {
+        var currentSequenceNumber = TrafficSegmentFiles.sequenceNumberOf(currentSegmentPath);
+        return TrafficSegmentFiles.listSegments(directory).stream()
+                .anyMatch(p -> TrafficSegmentFiles.sequenceNumberOf(p) > currentSequenceNumber);
+    }
+
+    private static String positionKey(ITrafficStreamKey tsk) {
+        return tsk.getNodeId() + "." + tsk.getConnectionId() + "." + tsk.getTrafficStreamIndex();
+    }
+
+    private boolean openNextSegment() throws IOException {
+        if (!checkpointLoaded) {
+            resumeCheckpoint = TrafficSegmentFiles.readCheckpoint(directory).orElse(null);
+            checkpointLoaded = true;
+            if (resumeCheckpoint != null) {
+                log.atInfo().setMessage(() -> "Resuming from " + resumeCheckpoint + " in " + directory).log();
+            }
+        }
+        long lastSequenceNumber;
+        if (currentSegmentPath != null) {
+            lastSequenceNumber = TrafficSegmentFiles.sequenceNumberOf(currentSegmentPath);
+        } else {
+            // Segments from before the checkpoint have been fully committed.  If the checkpoint's own segment has
+            // been removed since, start with the one after it.
+            lastSequenceNumber = resumeCheckpoint == null ? -1 : resumeCheckpoint.getSegmentSequenceNumber() - 1;
+        }
+        var nextSegment = TrafficSegmentFiles.listSegments(directory).stream()
+                .filter(p -> TrafficSegmentFiles.sequenceNumberOf(p) > lastSequenceNumber)
+                .findFirst();
+        if (nextSegment.isEmpty()) {
+            return false;
+        }
+        currentSegmentPath = nextSegment.get();
+        currentSegmentChannel = FileChannel.open(currentSegmentPath, StandardOpenOption.READ);
+        mapCurrentSegment();
+        if (currentSegmentContents.limit() < TrafficSegmentFiles.SEGMENT_HEADER_SIZE) {
+            // The header hasn't been written yet.  Come back to this segment later.
+            closeCurrentSegment();
+            currentSegmentPath = lastSequenceNumber < 0 ? null :
+                    TrafficSegmentFiles.segmentPath(directory, lastSequenceNumber);
+            return false;
+        }
+        TrafficSegmentFiles.checkSegmentHeader(currentSegmentContents, currentSegmentPath);
+        currentOffset = TrafficSegmentFiles.SEGMENT_HEADER_SIZE;
+        if (resumeCheckpoint != null) {
+            var sequenceNumber = TrafficSegmentFiles.sequenceNumberOf(currentSegmentPath);
+            if (resumeCheckpoint.getSegmentSequenceNumber() == sequenceNumber) {
+                currentOffset = findResumeOffset(resumeCheckpoint.getSegmentOffset());
+            }
+            resumeCheckpoint = null;
+        }
+        log.atInfo().setMessage(() -> "Reading TrafficStreams from " + currentSegmentPath).log();
+        return true;
+    }
+
+    /**
+     * Checkpoints are only taken at record boundaries, but records can't be found from an arbitrary offset, so make
+     * sure that this one still is one by walking forward to it from the nearest record that the segment's index
+     * lists.  If it doesn't land on the checkpoint, the whole segment is replayed again rather than risk starting
+     * from the middle of a record.
+     */
+    private int findResumeOffset(int checkpointOffset) throws IOException {
+        int offset = TrafficSegmentFiles.SEGMENT_HEADER_SIZE;
+        for (var entry : TrafficSegmentFiles.readIndexForSegment(currentSegmentPath)) {
+            if (entry.getSegmentOffset() <= checkpointOffset && entry.getSegmentOffset() > offset) {
+                offset = (int) entry.getSegmentOffset();
+            }
+        }
+        ByteBuffer payload;
+        while (offset < checkpointOffset &&
+                (payload = TrafficSegmentFiles.readRecordAt(currentSegmentContents, offset)) != null) {
+            offset += TrafficSegmentFiles.RECORD_HEADER_SIZE + payload.remaining();
+        }
+        if (offset != checkpointOffset) {
+            log.atWarn().setMessage(() -> "Offset " + checkpointOffset + " of " + currentSegmentPath +
+                    " isn't the start of a record.  Reading the segment from its beginning instead.").log();
+            return TrafficSegmentFiles.SEGMENT_HEADER_SIZE;
+        }
+        return offset;
+    }
+
+    private void mapCurrentSegment() throws IOException {
+        var size = currentSegmentChannel.size();
+        if (size > TrafficSegmentFiles.MAX_SEGMENT_BYTES) {
+            throw new IOException(currentSegmentPath + " is " + size + " bytes, which is more than the " +
+                    TrafficSegmentFiles.MAX_SEGMENT_BYTES + " bytes that a segment can have");
+        }
+        currentSegmentContents = currentSegmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    private void closeCurrentSegment() throws IOException {
+        currentSegmentContents = null;
+        if (currentSegmentChannel != null) {
+            currentSegmentChannel.close();
+            currentSegmentChannel = null;
+        }
+    }
+
+    @Override
+    public CommitResult commitTrafficStream(ITrafficStreamKey trafficStreamKey) {
+        channelContextManager.releaseContextFor(trafficStreamKey.getTrafficStreamsContext().getLogicalEnclosingScope());
+        synchronized (commitLock) {
+            uncommittedPositions.remove(positionKey(trafficStreamKey));
+            if (lastWrittenCheckpoint == null ||
+                    System.nanoTime() - lastCheckpointWriteNanos >= CHECKPOINT_INTERVAL.toNanos()) {
+                writeCheckpoint();
+            }
+        }
+        return CommitResult.Immediate;
+    }
+
+    /**
+     * Must be called while holding commitLock
+     */
+    private void writeCheckpoint() {
+        var checkpoint = uncommittedPositions.isEmpty() ? endOfReadPosition :
+                uncommittedPositions.values().iterator().next();
+        if (checkpoint == null || checkpoint.equals(lastWrittenCheckpoint)) {
+            return;
+        }
+        try {
+            TrafficSegmentFiles.writeCheckpoint(directory, checkpoint);
+            lastWrittenCheckpoint = checkpoint;
+            lastCheckpointWriteNanos = System.nanoTime();
+        } catch (IOException e) {
+            log.atWarn().setCause(e).setMessage(() -> "Couldn't write the checkpoint for " + directory).log();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        readerExecutor.submit(() -> {
+            closeCurrentSegment();
+            return null;
+        }).get();
+        readerExecutor.shutdown();
+        synchronized (commitLock) {
+            writeCheckpoint();
+        }
+    }
+}
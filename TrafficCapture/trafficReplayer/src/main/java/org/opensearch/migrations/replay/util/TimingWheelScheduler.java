@@ -0,0 +1,212 @@
+package org.opensearch.migrations.replay.util;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A hierarchical timing wheel that runs tasks on a single netty EventExecutor.  Deadlines are kept as primitive
+ * epoch nanoseconds and are bucketed into ticks, so adding a task is O(1) and doesn't allocate anything beyond the
+ * node that holds it.  Netty's own scheduler keeps every task in a heap, which gets expensive with the millions of
+ * pending tasks that a replay with a high speedup factor can create.
+ * <p>
+ * Level 0 has one slot per tick and each level above it has slots that are WHEEL_SIZE times as wide as the level
+ * below.  As time advances past the end of a higher level slot, its tasks are cascaded down into the lower levels.
+ * Only one netty timer (ticking once per tick) is scheduled for the whole wheel, and only while it has tasks.
+ * <p>
+ * A task never runs before its deadline.  It runs within one tick of it, plus whatever delay the event loop adds
+ * because it's busy with other work.  All of the wheel's state is only accessed from the executor's thread.
+ * Tasks that are scheduled from other threads are handed to the executor first.
+ */
+@Slf4j
+public class TimingWheelScheduler {
+    public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(1);
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    /**
+     * With 1ms ticks, 4 levels cover about 50 days.  Anything further out waits in the top level and is
+     * cascaded back into it until it's close enough.
+     */
+    private static final int NUM_LEVELS = 4;
+
+    private static class TimedTask {
+        final long deadlineTick;
+        final Runnable runnable;
+        TimedTask next;
+
+        TimedTask(long deadlineTick, Runnable runnable) {
+            this.deadlineTick = deadlineTick;
+            this.runnable = runnable;
+        }
+    }
+
+    private final EventExecutor executor;
+    @Getter
+    private final long tickNanos;
+    private final LongSupplier nanoTimeSource;
+    private final long epochNanosMinusNanoTime;
+    private final TimedTask[][] slotHeads = new TimedTask[NUM_LEVELS][WHEEL_SIZE];
+    private final TimedTask[][] slotTails = new TimedTask[NUM_LEVELS][WHEEL_SIZE];
+    /**
+     * Every tick up to and including this one has been run.  This only advances while the wheel is ticking.
+     */
+    private long lastProcessedTick;
+    private int pendingTaskCount;
+    private ScheduledFuture<?> tickerFuture;
+
+    public TimingWheelScheduler(EventExecutor executor) {
+        this(executor, DEFAULT_TICK_DURATION);
+    }
+
+    public TimingWheelScheduler(EventExecutor executor, Duration tickDuration) {
+        this(executor, tickDuration, System::nanoTime);
+    }
+
+    TimingWheelScheduler(EventExecutor executor, Duration tickDuration, LongSupplier nanoTimeSource) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        this.executor = executor;
+        this.tickNanos = tickDuration.toNanos();
+        this.nanoTimeSource = nanoTimeSource;
+        this.epochNanosMinusNanoTime = toEpochNanos(Instant.now()) - nanoTimeSource.getAsLong();
+        this.lastProcessedTick = currentEpochNanos() / tickNanos;
+    }
+
+    public static long toEpochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /**
+     * The wall-clock time, in epoch nanoseconds, as tracked by the monotonic clock since this was created
+     */
+    public long currentEpochNanos() {
+        return nanoTimeSource.getAsLong() + epochNanosMinusNanoTime;
+    }
+
+    public void schedule(Instant deadline, Runnable task) {
+        schedule(toEpochNanos(deadline), task);
+    }
+
+    /**
+     * Runs the task on the executor's thread once deadlineEpochNanos has passed.  Tasks whose deadline has already
+     * passed are submitted to the executor right away (but never run from within this call).
+     */
+    public void schedule(long deadlineEpochNanos, Runnable task) {
+        if (executor.inEventLoop()) {
+            addTask(deadlineEpochNanos, task);
+        } else {
+            executor.execute(() -> addTask(deadlineEpochNanos, task));
+        }
+    }
+
+    /**
+     * @return the number of tasks in the wheel, not counting any that have been handed to the executor to be run
+     */
+    public int getPendingTaskCount() {
+        assert executor.inEventLoop() : "The wheel's state should only be read from its executor's thread";
+        return pendingTaskCount;
+    }
+
+    private void addTask(long deadlineEpochNanos, Runnable task) {
+        // round up so that a task never runs before its deadline
+        var deadlineTick = Math.floorDiv(deadlineEpochNanos + tickNanos - 1, tickNanos);
+        if (tickerFuture == null) {
+            // The wheel is empty, so catch up with however long it's been idle now rather than tick after tick
+            // once it starts ticking again
+            lastProcessedTick = currentEpochNanos() / tickNanos;
+        }
+        if (deadlineTick <= lastProcessedTick) {
+            executor.execute(() -> runTask(task));
+            return;
+        }
+        insert(new TimedTask(deadlineTick, task));
+        ++pendingTaskCount;
+        if (tickerFuture == null) {
+            startTicking();
+        }
+    }
+
+    private void insert(TimedTask timedTask) {
+        var ticksAway = timedTask.deadlineTick - lastProcessedTick;
+        int level = 0;
+        while (level < NUM_LEVELS - 1 && ticksAway >= (1L << (WHEEL_BITS * (level + 1)))) {
+            ++level;
+        }
+        var tickForSlot = Math.min(timedTask.deadlineTick,
+                lastProcessedTick + (1L << (WHEEL_BITS * NUM_LEVELS)) - 1);
+        var slot = (int) ((tickForSlot >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        timedTask.next = null;
+        if (slotTails[level][slot] == null) {
+            slotHeads[level][slot] = timedTask;
+        } else {
+            slotTails[level][slot].next = timedTask;
+        }
+        slotTails[level][slot] = timedTask;
+    }
+
+    private TimedTask removeSlot(int level, int slot) {
+        var head = slotHeads[level][slot];
+        slotHeads[level][slot] = null;
+        slotTails[level][slot] = null;
+        return head;
+    }
+
+    private void startTicking() {
+        tickerFuture = executor.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void advance() {
+        var currentTick = currentEpochNanos() / tickNanos;
+        while (lastProcessedTick < currentTick && pendingTaskCount > 0) {
+            var tick = ++lastProcessedTick;
+            cascade(tick);
+            for (var t = removeSlot(0, (int) (tick & WHEEL_MASK)); t != null; ) {
+                var next = t.next;
+                --pendingTaskCount;
+                runTask(t.runnable);
+                t = next;
+            }
+        }
+        lastProcessedTick = Math.max(lastProcessedTick, currentTick);
+        if (pendingTaskCount == 0 && tickerFuture != null) {
+            tickerFuture.cancel(false);
+            tickerFuture = null;
+        }
+    }
+
+    /**
+     * When tick starts a new slot at a level, move that slot's tasks down into the levels below it.  This is done
+     * from the top down so that tasks cascaded from a higher level are cascaded again if they need to be.
+     */
+    private void cascade(long tick) {
+        int topLevelToCascade = 0;
+        while (topLevelToCascade < NUM_LEVELS - 1 &&
+                ((tick >>> (WHEEL_BITS * (topLevelToCascade + 1))) << (WHEEL_BITS * (topLevelToCascade + 1))) == tick) {
+            ++topLevelToCascade;
+        }
+        for (int level = topLevelToCascade; level > 0; --level) {
+            var slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            for (var t = removeSlot(level, slot); t != null; ) {
+                var next = t.next;
+                insert(t);
+                t = next;
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.atError().setCause(e).setMessage("Error running a task from the timing wheel").log();
+        }
+    }
+}
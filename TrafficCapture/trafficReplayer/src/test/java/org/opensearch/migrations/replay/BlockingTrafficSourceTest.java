@@ -25,6 +25,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -73,6 +74,112 @@ class BlockingTrafficSourceTest extends InstrumentationTest {
         Assertions.assertInstanceOf(EOFException.class, exception.getCause());
     }
 
+    @Test
+    void prefetchedChunksAreBoundedAndReturnedInOrder() throws Exception {
+        var nStreamsToCreate = 210;
+        var PREFETCH_CHUNKS = 4;
+        var testSource = new TestTrafficCaptureSource(rootContext, nStreamsToCreate);
+
+        try (var blockingSource = new BlockingTrafficSource(testSource, Duration.ofMillis(10), PREFETCH_CHUNKS, 2)) {
+            blockingSource.stopReadsPast(sourceStartTime);
+            var firstChunk = blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                    .get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals("conn_0", firstChunk.get(0).getStream().getConnectionId());
+            // nothing else is being taken, so the reads stop once every slot has been filled
+            for (int i = 0; i < 100 && testSource.counter.get() < PREFETCH_CHUNKS + 1; ++i) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+            Assertions.assertEquals(PREFETCH_CHUNKS + 1, testSource.counter.get());
+
+            for (int i = 1; i < nStreamsToCreate; ++i) {
+                blockingSource.stopReadsPast(sourceStartTime.plus(Duration.ofMillis(i)));
+                var chunk = blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                        .get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals("conn_" + i, chunk.get(0).getStream().getConnectionId());
+            }
+            var exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                            .get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(EOFException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    void prefetchingStopsAtTheBarrierAndKeepsTheSourceAlive() throws Exception {
+        var BUFFER_MILLIS = 10;
+        var testSource = new TouchRequiringTrafficCaptureSource(rootContext, 100, Duration.ofMillis(10));
+
+        try (var blockingSource =
+                     new BlockingTrafficSource(testSource, Duration.ofMillis(BUFFER_MILLIS), 2, 0)) {
+            blockingSource.stopReadsPast(sourceStartTime);
+            // streams up to the one just past the barrier are read, then the next read is held back
+            for (int i = 0; i <= BUFFER_MILLIS + SHIFT; ++i) {
+                var chunk = blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                        .get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals("conn_" + i, chunk.get(0).getStream().getConnectionId());
+            }
+            var blockedFuture = blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext);
+            testSource.touchCount.set(0);
+            Thread.sleep(100);
+            Assertions.assertFalse(blockedFuture.isDone());
+            Assertions.assertEquals(BUFFER_MILLIS + SHIFT + 1, testSource.counter.get());
+            Assertions.assertTrue(testSource.touchCount.get() > 0);
+
+            blockingSource.stopReadsPast(sourceStartTime.plus(Duration.ofMillis(BUFFER_MILLIS)));
+            var releasedChunk = blockedFuture.get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals("conn_" + (BUFFER_MILLIS + SHIFT + 1),
+                    releasedChunk.get(0).getStream().getConnectionId());
+        }
+    }
+
+    @Test
+    void prefetchedChunkFailsWhenTheSourceThrowsSynchronously() throws Exception {
+        var testSource = new TestTrafficCaptureSource(rootContext, 10) {
+            @Override
+            public CompletableFuture<List<ITrafficStreamWithKey>>
+            readNextTrafficStreamChunk(Supplier<ITrafficSourceContexts.IReadChunkContext> contextSupplier) {
+                throw new IllegalStateException("Source is broken");
+            }
+        };
+
+        try (var blockingSource = new BlockingTrafficSource(testSource, Duration.ofMillis(10), 2, 0)) {
+            var exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                            .get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(IllegalStateException.class, exception.getCause());
+            exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> blockingSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                            .get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(IllegalStateException.class, exception.getCause());
+        }
+    }
+
+    /**
+     * Like a Kafka consumer, this needs to be touched within every touchInterval to stay alive
+     */
+    private static class TouchRequiringTrafficCaptureSource extends TestTrafficCaptureSource {
+        final Duration touchInterval;
+        final AtomicInteger touchCount = new AtomicInteger();
+        volatile Instant lastTouch = Instant.now();
+
+        TouchRequiringTrafficCaptureSource(TestContext rootContext, int nStreamsToCreate, Duration touchInterval) {
+            super(rootContext, nStreamsToCreate);
+            this.touchInterval = touchInterval;
+        }
+
+        @Override
+        public void touch(ITrafficSourceContexts.IBackPressureBlockContext context) {
+            touchCount.incrementAndGet();
+            lastTouch = Instant.now();
+        }
+
+        @Override
+        public Optional<Instant> getNextRequiredTouch() {
+            return Optional.of(lastTouch.plus(touchInterval));
+        }
+    }
+
     private static class TestTrafficCaptureSource implements ISimpleTrafficCaptureSource {
         int nStreamsToCreate;
         AtomicInteger counter = new AtomicInteger();
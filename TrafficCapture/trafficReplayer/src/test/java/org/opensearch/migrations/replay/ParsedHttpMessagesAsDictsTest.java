@@ -1,8 +1,17 @@
 package org.opensearch.migrations.replay;
 
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.replay.datatypes.HttpRequestTransformationStatus;
+import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamKeyAndContext;
 import org.opensearch.migrations.tracing.InstrumentationTest;
 import org.opensearch.migrations.tracing.TestContext;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
 
@@ -20,4 +29,58 @@ class ParsedHttpMessagesAsDictsTest extends InstrumentationTest {
                 Optional.empty(), Optional.ofNullable(targetResponse));
     }
 
-}
\ No newline at end of file
+    private Map<String, Object> convertSourceResponseMetadata(ResponseMetadataObservation metadata) {
+        var trafficStreamKey = PojoTrafficStreamKeyAndContext.build("testNode", "c", 0,
+                rootContext::createTrafficStreamContextForTest);
+        var sourcePair = new RequestResponsePacketPair(trafficStreamKey, Instant.EPOCH, 0, 0);
+        sourcePair.addRequestData(Instant.EPOCH, "GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        sourcePair.addResponseMetadata(Instant.EPOCH.plusMillis(10), metadata);
+        var tuple = new SourceTargetCaptureTuple(rootContext.getTestTupleContext(), sourcePair,
+                null, null, HttpRequestTransformationStatus.SKIPPED, null, Duration.ZERO);
+        var parsed = new ParsedHttpMessagesAsDicts(tuple);
+        Assertions.assertTrue(parsed.sourceResponseOp.isPresent());
+        return parsed.sourceResponseOp.get();
+    }
+
+    @Test
+    public void testResponseMetadataIsConvertedWithTheByteLengthAndHashInPlaceOfTheBody() {
+        var metadata = ResponseMetadataObservation.newBuilder()
+                .setHttpVersion("HTTP/1.1")
+                .setStatusCode(404)
+                .setReasonPhrase("Not Found")
+                .addHeaders(ResponseMetadataObservation.Header.newBuilder()
+                        .setName("Content-Type").setValue("application/json"))
+                .setByteLength(1234)
+                .setLastByteTs(Timestamp.newBuilder().setNanos(25_000_000))
+                .setBodyCrc32C(0xdeadbeef)
+                .build();
+        var response = convertSourceResponseMetadata(metadata);
+
+        Assertions.assertEquals("HTTP/1.1", response.get("HTTP-Version"));
+        Assertions.assertEquals(404, response.get(ParsedHttpMessagesAsDicts.STATUS_CODE_KEY));
+        Assertions.assertEquals("Not Found", response.get("Reason-Phrase"));
+        Assertions.assertEquals(25L, response.get(ParsedHttpMessagesAsDicts.RESPONSE_TIME_MS_KEY));
+        Assertions.assertEquals(1234L, response.get(ParsedHttpMessagesAsDicts.RESPONSE_BYTE_LENGTH_KEY));
+        // the hash is unsigned, even though it's carried in an int
+        Assertions.assertEquals("deadbeef", response.get(ParsedHttpMessagesAsDicts.BODY_CRC32C_KEY));
+        Assertions.assertEquals("application/json", response.get("Content-Type"));
+        Assertions.assertFalse(response.containsKey("body"));
+    }
+
+    @Test
+    public void testResponseMetadataWithoutABodyHashHasNoHashKey() {
+        var metadata = ResponseMetadataObservation.newBuilder()
+                .setHttpVersion("HTTP/1.1")
+                .setStatusCode(200)
+                .setReasonPhrase("OK")
+                .setByteLength(38)
+                .build();
+        var response = convertSourceResponseMetadata(metadata);
+
+        Assertions.assertEquals(200, response.get(ParsedHttpMessagesAsDicts.STATUS_CODE_KEY));
+        Assertions.assertEquals(38L, response.get(ParsedHttpMessagesAsDicts.RESPONSE_BYTE_LENGTH_KEY));
+        Assertions.assertFalse(response.containsKey(ParsedHttpMessagesAsDicts.BODY_CRC32C_KEY));
+        // without a last byte timestamp, the response is treated as having been written all at once
+        Assertions.assertEquals(10L, response.get(ParsedHttpMessagesAsDicts.RESPONSE_TIME_MS_KEY));
+    }
+}
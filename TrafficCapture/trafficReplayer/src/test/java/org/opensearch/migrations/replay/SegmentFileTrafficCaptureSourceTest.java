@@ -0,0 +1,127 @@
+package org.opensearch.migrations.replay;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
+import org.opensearch.migrations.replay.traffic.source.SegmentFileTrafficCaptureSource;
+import org.opensearch.migrations.tracing.InstrumentationTest;
+import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.segmentfiles.TrafficSegmentFiles;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+class SegmentFileTrafficCaptureSourceTest extends InstrumentationTest {
+
+    private static TrafficStream makeTrafficStream(String connectionId, int index) {
+        return TrafficStream.newBuilder()
+                .setNodeId("n")
+                .setConnectionId(connectionId)
+                .setNumber(index)
+                .addSubStream(TrafficObservation.newBuilder()
+                        .setRead(ReadObservation.newBuilder()
+                                .setData(ByteString.copyFrom("GET / HTTP/1.1\r\n", StandardCharsets.UTF_8))))
+                .build();
+    }
+
+    private static void writeSegment(Path segmentPath, List<TrafficStream> trafficStreams, byte[] tornTail)
+            throws IOException {
+        try (var channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(TrafficSegmentFiles.makeSegmentHeader());
+            for (var ts : trafficStreams) {
+                var bytes = ts.toByteArray();
+                channel.write(TrafficSegmentFiles.makeRecordHeader(bytes));
+                channel.write(ByteBuffer.wrap(bytes));
+            }
+            channel.write(ByteBuffer.wrap(tornTail));
+        }
+    }
+
+    /**
+     * Reads every TrafficStream up to the end of the segments and commits the ones that shouldCommit accepts
+     */
+    private List<TrafficStream> readToEnd(Path directory, Predicate<TrafficStream> shouldCommit) throws Exception {
+        var trafficStreamsRead = new ArrayList<TrafficStream>();
+        try (var source = new SegmentFileTrafficCaptureSource(rootContext, directory, false)) {
+            while (true) {
+                List<ITrafficStreamWithKey> chunk;
+                try {
+                    chunk = source.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                            .get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    Assertions.assertInstanceOf(EOFException.class, e.getCause());
+                    break;
+                }
+                for (var tsk : chunk) {
+                    trafficStreamsRead.add(tsk.getStream());
+                    if (shouldCommit.test(tsk.getStream())) {
+                        source.commitTrafficStream(tsk.getKey());
+                    }
+                }
+            }
+        }
+        return trafficStreamsRead;
+    }
+
+    @Test
+    public void testTrafficStreamsAreReadInOrderAcrossSegments(@TempDir Path directory) throws Exception {
+        var firstSegment = List.of(makeTrafficStream("a", 1), makeTrafficStream("b", 1));
+        var secondSegment = List.of(makeTrafficStream("a", 2));
+        // the first segment ends with a record that was torn by a crash before the writer moved on
+        writeSegment(TrafficSegmentFiles.segmentPath(directory, 0), firstSegment, new byte[]{0, 0, 1, 0, 5});
+        writeSegment(TrafficSegmentFiles.segmentPath(directory, 1), secondSegment, new byte[0]);
+
+        var trafficStreamsRead = readToEnd(directory, ts -> true);
+
+        var expected = new ArrayList<>(firstSegment);
+        expected.addAll(secondSegment);
+        Assertions.assertEquals(expected, trafficStreamsRead);
+        // everything was committed, so a restarted reader has nothing left to read
+        Assertions.assertEquals(List.of(), readToEnd(directory, ts -> true));
+    }
+
+    @Test
+    public void testRestartResumesFromTheOldestUncommittedTrafficStream(@TempDir Path directory) throws Exception {
+        var firstSegment = List.of(makeTrafficStream("a", 1), makeTrafficStream("b", 1),
+                makeTrafficStream("a", 2), makeTrafficStream("b", 2));
+        var secondSegment = List.of(makeTrafficStream("a", 3));
+        writeSegment(TrafficSegmentFiles.segmentPath(directory, 0), firstSegment, new byte[0]);
+        writeSegment(TrafficSegmentFiles.segmentPath(directory, 1), secondSegment, new byte[0]);
+
+        // a2 is never committed, so everything from it on has to be read again, even though b2 was committed
+        Predicate<TrafficStream> isA2 = ts -> ts.getNumber() == 2 && ts.getConnectionId().equals("a");
+        Assertions.assertEquals(5, readToEnd(directory, isA2.negate()).size());
+        var checkpoint = TrafficSegmentFiles.readCheckpoint(directory).orElseThrow();
+        Assertions.assertEquals(0, checkpoint.getSegmentSequenceNumber());
+
+        var reread = readToEnd(directory, ts -> true);
+        Assertions.assertEquals(List.of(firstSegment.get(2), firstSegment.get(3), secondSegment.get(0)), reread);
+        Assertions.assertEquals(new TrafficSegmentFiles.Checkpoint(1, TrafficSegmentFiles.SEGMENT_HEADER_SIZE +
+                TrafficSegmentFiles.RECORD_HEADER_SIZE + secondSegment.get(0).getSerializedSize()),
+                TrafficSegmentFiles.readCheckpoint(directory).orElseThrow());
+    }
+
+    @Test
+    public void testCheckpointThatIsNotARecordBoundaryRereadsItsSegment(@TempDir Path directory) throws Exception {
+        var segment = List.of(makeTrafficStream("a", 1), makeTrafficStream("a", 2));
+        writeSegment(TrafficSegmentFiles.segmentPath(directory, 0), segment, new byte[0]);
+        TrafficSegmentFiles.writeCheckpoint(directory,
+                new TrafficSegmentFiles.Checkpoint(0, TrafficSegmentFiles.SEGMENT_HEADER_SIZE + 1));
+
+        Assertions.assertEquals(segment, readToEnd(directory, ts -> true));
+    }
+}
@@ -0,0 +1,147 @@
+package org.opensearch.migrations.replay;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import lombok.NonNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
+import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamAndKey;
+import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamKeyAndContext;
+import org.opensearch.migrations.replay.tracing.IReplayContexts;
+import org.opensearch.migrations.tracing.InstrumentationTest;
+import org.opensearch.migrations.trafficcapture.protos.CloseObservation;
+import org.opensearch.migrations.trafficcapture.protos.EndOfMessageIndication;
+import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.WriteObservation;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class ShardedTrafficStreamAccumulatorTest extends InstrumentationTest {
+    private static final String NODE_ID = "testNode";
+    private static final int NUM_CONNECTIONS = 32;
+    private static final int NUM_SHARDS = 4;
+
+    private static TrafficObservation.Builder observationAt(Instant t) {
+        return TrafficObservation.newBuilder()
+                .setTs(Timestamp.newBuilder().setSeconds(t.getEpochSecond()).setNanos(t.getNano()).build());
+    }
+
+    private static TrafficObservation read(Instant t, String s) {
+        return observationAt(t).setRead(ReadObservation.newBuilder()
+                .setData(ByteString.copyFrom(s, StandardCharsets.UTF_8))).build();
+    }
+
+    private static TrafficObservation write(Instant t, String s) {
+        return observationAt(t).setWrite(WriteObservation.newBuilder()
+                .setData(ByteString.copyFrom(s, StandardCharsets.UTF_8))).build();
+    }
+
+    private static TrafficObservation eom(Instant t) {
+        return observationAt(t).setEndOfMessageIndicator(EndOfMessageIndication.newBuilder()
+                .setFirstLineByteLength(1).setHeadersByteLength(1)).build();
+    }
+
+    /**
+     * Each connection has two requests, with every request and response split across two TrafficStreams
+     */
+    private static List<TrafficStream> makeTrafficStreamsForConnection(Instant t, String connectionId) {
+        var builder = TrafficStream.newBuilder().setNodeId(NODE_ID).setConnectionId(connectionId);
+        return List.of(
+                builder.clone().setNumber(1)
+                        .addSubStream(read(t, connectionId + "-req0")).build(),
+                builder.clone().setNumber(2)
+                        .addSubStream(eom(t))
+                        .addSubStream(write(t, connectionId + "-resp0"))
+                        .addSubStream(read(t, connectionId + "-req1")).build(),
+                builder.clone().setNumberOfThisLastChunk(3)
+                        .addSubStream(eom(t))
+                        .addSubStream(write(t, connectionId + "-resp1"))
+                        .addSubStream(observationAt(t).setClose(CloseObservation.getDefaultInstance())).build());
+    }
+
+    @Test
+    public void testStreamsForEachConnectionAreAccumulatedInOrderOnOneThread() {
+        var requestsByConnection = new ConcurrentHashMap<String, List<String>>();
+        var responsesByConnection = new ConcurrentHashMap<String, List<String>>();
+        var threadsByConnection = new ConcurrentHashMap<String, Set<String>>();
+        var accumulator = new ShardedTrafficStreamAccumulator(NUM_SHARDS, Duration.ofSeconds(30), null,
+                new AccumulationCallbacks() {
+                    @Override
+                    public Consumer<RequestResponsePacketPair>
+                    onRequestReceived(@NonNull IReplayContexts.IReplayerHttpTransactionContext ctx,
+                                      @NonNull HttpMessageAndTimestamp request) {
+                        var connectionId = ctx.getReplayerRequestKey().getTrafficStreamKey().getConnectionId();
+                        threadsByConnection.computeIfAbsent(connectionId, k -> ConcurrentHashMap.newKeySet())
+                                .add(Thread.currentThread().getName());
+                        requestsByConnection.computeIfAbsent(connectionId, k -> new ArrayList<>())
+                                .add(request.stream().map(b -> new String(b, StandardCharsets.UTF_8))
+                                        .collect(Collectors.joining()));
+                        return fullPair -> responsesByConnection.computeIfAbsent(connectionId, k -> new ArrayList<>())
+                                .add(fullPair.responseData.stream().map(b -> new String(b, StandardCharsets.UTF_8))
+                                        .collect(Collectors.joining()));
+                    }
+
+                    @Override
+                    public void onTrafficStreamsExpired(RequestResponsePacketPair.ReconstructionStatus status,
+                                                        @NonNull IReplayContexts.IChannelKeyContext ctx,
+                                                        @NonNull List<ITrafficStreamKey> trafficStreamKeysBeingHeld) {
+                        Assertions.fail("Nothing should have expired");
+                    }
+
+                    @Override
+                    public void onConnectionClose(int channelInteractionNumber,
+                                                  @NonNull IReplayContexts.IChannelKeyContext ctx,
+                                                  int channelSessionNumber,
+                                                  RequestResponsePacketPair.ReconstructionStatus status,
+                                                  @NonNull Instant when,
+                                                  @NonNull List<ITrafficStreamKey> trafficStreamKeysBeingHeld) {
+                    }
+
+                    @Override
+                    public void onTrafficStreamIgnored(@NonNull IReplayContexts.ITrafficStreamsLifecycleContext ctx) {
+                    }
+                });
+
+        var t = Instant.now();
+        var streamsByConnection = IntStream.range(0, NUM_CONNECTIONS)
+                .mapToObj(i -> makeTrafficStreamsForConnection(t, "c" + i))
+                .collect(Collectors.toList());
+        // interleave the connections so that every shard has work queued for several connections at once
+        for (int streamIdx = 0; streamIdx < 3; ++streamIdx) {
+            for (var streams : streamsByConnection) {
+                var ts = streams.get(streamIdx);
+                accumulator.accept(new PojoTrafficStreamAndKey(ts,
+                        PojoTrafficStreamKeyAndContext.build(ts, rootContext::createTrafficStreamContextForTest)));
+            }
+        }
+        accumulator.close();
+
+        Assertions.assertEquals(NUM_CONNECTIONS, requestsByConnection.size());
+        for (int i = 0; i < NUM_CONNECTIONS; ++i) {
+            var connectionId = "c" + i;
+            Assertions.assertEquals(List.of(connectionId + "-req0", connectionId + "-req1"),
+                    requestsByConnection.get(connectionId));
+            Assertions.assertEquals(List.of(connectionId + "-resp0", connectionId + "-resp1"),
+                    responsesByConnection.get(connectionId));
+            Assertions.assertEquals(1, threadsByConnection.get(connectionId).size());
+        }
+        Assertions.assertTrue(threadsByConnection.values().stream().flatMap(Set::stream).distinct().count() > 1,
+                "expected the connections to have been spread over more than one thread");
+        Assertions.assertEquals(NUM_CONNECTIONS, accumulator.numberOfConnectionsCreated());
+        Assertions.assertEquals(NUM_CONNECTIONS, accumulator.numberOfConnectionsClosed());
+        Assertions.assertEquals(NUM_CONNECTIONS, accumulator.numberOfRequestsOnReusedConnections());
+        Assertions.assertEquals(0, accumulator.numberOfRequestsTerminatedUponAccumulatorClose());
+    }
+}
@@ -1,23 +1,43 @@
 package org.opensearch.migrations.replay;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.WireFormat;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
 import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamAndKey;
 import org.opensearch.migrations.replay.datatypes.PojoTrafficStreamKeyAndContext;
 import org.opensearch.migrations.replay.datatypes.RawPackets;
+import org.opensearch.migrations.replay.datatypes.SerializedTrafficStream;
+import org.opensearch.migrations.replay.datatypes.SerializedTrafficStreamAndKey;
 import org.opensearch.migrations.replay.tracing.IReplayContexts;
 import org.opensearch.migrations.replay.traffic.generator.ExhaustiveTrafficStreamGenerator;
 import org.opensearch.migrations.replay.traffic.generator.ObservationDirective;
 import org.opensearch.migrations.replay.traffic.generator.TrafficStreamGenerator;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
 import org.opensearch.migrations.tracing.InstrumentationTest;
 import org.opensearch.migrations.tracing.TestContext;
+import org.opensearch.migrations.trafficcapture.protos.CloseObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressedReadObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressedWriteObservation;
+import org.opensearch.migrations.trafficcapture.protos.CompressionCodec;
+import org.opensearch.migrations.trafficcapture.protos.EndOfMessageIndication;
+import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
+import org.opensearch.migrations.trafficcapture.protos.ResponseMetadataObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservationCompression;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.WriteObservation;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -48,6 +68,7 @@ import java.util.stream.Stream;
 @Slf4j
 public class SimpleCapturedTrafficToHttpTransactionAccumulatorTest extends InstrumentationTest {
     public static final int MAX_COMMANDS_IN_CONNECTION = 256;
+    private static final int MALFORMED_STREAM_INDEX = 99;
 
     static long calculateAggregateSizeOfPacketBytes(RawPackets packetBytes) {
         return packetBytes.stream().mapToInt(bArr->bArr.length).sum();
@@ -95,6 +116,185 @@ public class SimpleCapturedTrafficToHttpTransactionAccumulatorTest extends Instr
         Assertions.assertEquals(requestsReceived.get(), reconstructedTransactions.size());
     }
 
+    /**
+     * The header of a stream is read when it's first read from the source, but its observations are only parsed
+     * once it's accumulated.  A stream whose observations can't be parsed is dropped without affecting others.
+     */
+    @Test
+    void unparseableStreamIsIgnoredAndOtherStreamsAreAccumulated() throws Exception {
+        var header = TrafficStream.newBuilder()
+                .setNodeId("testNode")
+                .setConnectionId("malformedConnection")
+                .setNumber(MALFORMED_STREAM_INDEX)
+                .build()
+                .toByteArray();
+        var malformedObservation = new byte[] {
+                (byte) ((TrafficStream.SUBSTREAM_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED), 2,
+                // a varint that's cut off by the end of the observation
+                (byte) 0x08, (byte) 0xff
+        };
+        var malformedStream = SerializedTrafficStream.readHeader(
+                ByteString.copyFrom(header).concat(ByteString.copyFrom(malformedObservation)));
+        var malformedStreamWithKey = new SerializedTrafficStreamAndKey(malformedStream,
+                PojoTrafficStreamKeyAndContext.build(malformedStream, malformedStream.getTrafficStreamIndex(),
+                        rootContext::createTrafficStreamContextForTest));
+
+        var wellFormedStreams = Arrays.stream(TrafficStreamGenerator.makeTrafficStream(1024 * 1024, 0,
+                new AtomicInteger(), List.of(ObservationDirective.read(1024),
+                        ObservationDirective.eom(),
+                        ObservationDirective.write(1024)), rootContext))
+                .map(ts -> (ITrafficStreamWithKey) new PojoTrafficStreamAndKey(ts,
+                        PojoTrafficStreamKeyAndContext.build(ts, rootContext::createTrafficStreamContextForTest)));
+        List<RequestResponsePacketPair> reconstructedTransactions = new ArrayList<>();
+        var requestsReceived = new AtomicInteger();
+        var tsIndicesReceived = accumulateTrafficStreamsWithKeysWithNewAccumulator(
+                Stream.concat(Stream.of(malformedStreamWithKey), wellFormedStreams),
+                reconstructedTransactions, requestsReceived);
+
+        Assertions.assertTrue(tsIndicesReceived.contains(MALFORMED_STREAM_INDEX));
+        Assertions.assertEquals(1, requestsReceived.get());
+        assertReconstructedTransactionsMatchExpectations(reconstructedTransactions,
+                new int[] {1024}, new int[] {1024});
+    }
+
+    private static final String COMPRESSED_REQUEST = "GET / HTTP/1.1\r\n\r\n";
+    private static final String COMPRESSED_RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+
+    private static ByteString deflate(String s) {
+        return ByteString.copyFrom(TrafficObservationCompression.compress(CompressionCodec.DEFLATE,
+                ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static TrafficStream makeCompressedTrafficStream(String connectionId,
+                                                             CompressedReadObservation compressedRead) {
+        var t0 = Instant.parse("2024-01-01T00:00:00Z");
+        return TrafficStream.newBuilder()
+                .setNodeId("testNode")
+                .setConnectionId(connectionId)
+                .setNumberOfThisLastChunk(1)
+                .addSubStream(observationAt(t0).setCompressedRead(compressedRead))
+                .addSubStream(observationAt(t0).setEndOfMessageIndicator(EndOfMessageIndication.newBuilder()
+                        .setFirstLineByteLength(16).setHeadersByteLength(0)))
+                .addSubStream(observationAt(t0.plusMillis(1)).setCompressedWrite(CompressedWriteObservation.newBuilder()
+                        .setCodec(CompressionCodec.DEFLATE)
+                        .setData(deflate(COMPRESSED_RESPONSE))
+                        .setUncompressedLength(COMPRESSED_RESPONSE.length())))
+                .addSubStream(observationAt(t0.plusMillis(2)).setClose(CloseObservation.getDefaultInstance()))
+                .build();
+    }
+
+    private static CompressedReadObservation makeCompressedRequest() {
+        return CompressedReadObservation.newBuilder()
+                .setCodec(CompressionCodec.DEFLATE)
+                .setData(deflate(COMPRESSED_REQUEST))
+                .setUncompressedLength(COMPRESSED_REQUEST.length())
+                .build();
+    }
+
+    @Test
+    void compressedObservationsAreAccumulatedLikePlainOnes() {
+        List<RequestResponsePacketPair> reconstructedTransactions = new ArrayList<>();
+        var requestsReceived = new AtomicInteger();
+        accumulateTrafficStreamsWithNewAccumulator(rootContext,
+                Stream.of(makeCompressedTrafficStream("compressedConnection", makeCompressedRequest())),
+                reconstructedTransactions, requestsReceived);
+
+        Assertions.assertEquals(1, requestsReceived.get());
+        assertReconstructedTransactionsMatchExpectations(reconstructedTransactions,
+                new int[] {COMPRESSED_REQUEST.length()}, new int[] {COMPRESSED_RESPONSE.length()});
+        var requestBytes = reconstructedTransactions.get(0).requestData.packetBytes.stream()
+                .map(b -> new String(b, StandardCharsets.UTF_8))
+                .collect(Collectors.joining());
+        Assertions.assertEquals(COMPRESSED_REQUEST, requestBytes);
+    }
+
+    /**
+     * A stream with a compressed observation that can't be decompressed is skipped entirely, without disturbing
+     * other connections, just like a stream that can't be parsed.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void undecompressableStreamIsIgnoredAndOtherStreamsAreAccumulated(boolean hasUnknownCodec) {
+        var badRead = hasUnknownCodec ?
+                makeCompressedRequest().toBuilder().setCodecValue(1000).build() :
+                CompressedReadObservation.newBuilder()
+                        .setCodec(CompressionCodec.DEFLATE)
+                        // 0xff starts a DEFLATE block with the reserved block type
+                        .setData(ByteString.copyFrom(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff}))
+                        .setUncompressedLength(COMPRESSED_REQUEST.length())
+                        .build();
+        var badStream = makeCompressedTrafficStream("badConnection", badRead).toBuilder()
+                .setNumber(MALFORMED_STREAM_INDEX)
+                .build();
+        List<RequestResponsePacketPair> reconstructedTransactions = new ArrayList<>();
+        var requestsReceived = new AtomicInteger();
+        var tsIndicesReceived = accumulateTrafficStreamsWithNewAccumulator(rootContext,
+                Stream.of(badStream, makeCompressedTrafficStream("goodConnection", makeCompressedRequest())),
+                reconstructedTransactions, requestsReceived);
+
+        Assertions.assertTrue(tsIndicesReceived.contains(MALFORMED_STREAM_INDEX));
+        Assertions.assertEquals(1, requestsReceived.get());
+        assertReconstructedTransactionsMatchExpectations(reconstructedTransactions,
+                new int[] {COMPRESSED_REQUEST.length()}, new int[] {COMPRESSED_RESPONSE.length()});
+    }
+
+    private static TrafficObservation.Builder observationAt(Instant t) {
+        return TrafficObservation.newBuilder()
+                .setTs(Timestamp.newBuilder().setSeconds(t.getEpochSecond()).setNanos(t.getNano()).build());
+    }
+
+    /**
+     * When the proxy only captures the metadata of responses, a single ResponseMetadataObservation stands in for
+     * all of the writes of a response.  It should complete the transaction just as those writes would have.
+     */
+    @Test
+    void responseMetadataIsAccumulatedAsTheSourceResponse() throws Exception {
+        var t0 = Instant.parse("2024-01-01T00:00:00Z");
+        var request = ByteString.copyFrom("GET / HTTP/1.1\r\n\r\n", StandardCharsets.UTF_8);
+        var metadata = ResponseMetadataObservation.newBuilder()
+                .setHttpVersion("HTTP/1.1")
+                .setStatusCode(200)
+                .setReasonPhrase("OK")
+                .setByteLength(1024)
+                .setLastByteTs(Timestamp.newBuilder().setSeconds(t0.getEpochSecond()).setNanos(3_000_000))
+                .build();
+        var trafficStream = TrafficStream.newBuilder()
+                .setNodeId("testNode")
+                .setConnectionId("metadataConnection")
+                .setNumberOfThisLastChunk(1)
+                .addSubStream(observationAt(t0).setRead(ReadObservation.newBuilder().setData(request)))
+                .addSubStream(observationAt(t0).setEndOfMessageIndicator(EndOfMessageIndication.newBuilder()
+                        .setFirstLineByteLength(16).setHeadersByteLength(0)))
+                .addSubStream(observationAt(t0.plusMillis(1)).setResponseMetadata(metadata))
+                .addSubStream(observationAt(t0.plusMillis(4)).setRead(ReadObservation.newBuilder().setData(request)))
+                .addSubStream(observationAt(t0.plusMillis(4)).setEndOfMessageIndicator(
+                        EndOfMessageIndication.newBuilder().setFirstLineByteLength(16).setHeadersByteLength(0)))
+                .addSubStream(observationAt(t0.plusMillis(5)).setWrite(WriteObservation.newBuilder()
+                        .setData(ByteString.copyFrom("HTTP/1.1 200 OK\r\n\r\n", StandardCharsets.UTF_8))))
+                .addSubStream(observationAt(t0.plusMillis(6)).setClose(CloseObservation.getDefaultInstance()))
+                .build();
+        List<RequestResponsePacketPair> reconstructedTransactions = new ArrayList<>();
+        var requestsReceived = new AtomicInteger();
+        accumulateTrafficStreamsWithNewAccumulator(rootContext, Stream.of(trafficStream),
+                reconstructedTransactions, requestsReceived);
+
+        Assertions.assertEquals(2, requestsReceived.get());
+        Assertions.assertEquals(2, reconstructedTransactions.size());
+        var metadataPair = reconstructedTransactions.get(0);
+        Assertions.assertEquals(request.size(),
+                calculateAggregateSizeOfPacketBytes(metadataPair.requestData.packetBytes));
+        Assertions.assertInstanceOf(HttpMessageAndTimestamp.Response.class, metadataPair.responseData);
+        Assertions.assertEquals(metadata,
+                ((HttpMessageAndTimestamp.Response) metadataPair.responseData).getMetadata());
+        Assertions.assertEquals(0, calculateAggregateSizeOfPacketBytes(metadataPair.responseData.packetBytes));
+        Assertions.assertEquals(t0.plusMillis(1), metadataPair.responseData.getFirstPacketTimestamp());
+        Assertions.assertEquals(t0.plusMillis(3), metadataPair.responseData.getLastPacketTimestamp());
+
+        var fullPair = reconstructedTransactions.get(1);
+        Assertions.assertNull(((HttpMessageAndTimestamp.Response) fullPair.responseData).getMetadata());
+        Assertions.assertEquals(19, calculateAggregateSizeOfPacketBytes(fullPair.responseData.packetBytes));
+    }
+
     /**
      * Returns the traffic stream indices whose contents have been fully received.
      * @param trafficStreams
@@ -107,6 +307,16 @@ public class SimpleCapturedTrafficToHttpTransactionAccumulatorTest extends Instr
                                                Stream<TrafficStream> trafficStreams,
                                                List<RequestResponsePacketPair> aggregations,
                                                AtomicInteger requestsReceived) {
+        return accumulateTrafficStreamsWithKeysWithNewAccumulator(trafficStreams
+                        .map(ts -> new PojoTrafficStreamAndKey(ts, PojoTrafficStreamKeyAndContext.build(ts,
+                                context::createTrafficStreamContextForTest))),
+                aggregations, requestsReceived);
+    }
+
+    static SortedSet<Integer>
+    accumulateTrafficStreamsWithKeysWithNewAccumulator(Stream<? extends ITrafficStreamWithKey> trafficStreams,
+                                                       List<RequestResponsePacketPair> aggregations,
+                                                       AtomicInteger requestsReceived) {
         var tsIndicesReceived = new TreeSet<Integer>();
         CapturedTrafficToHttpTransactionAccumulator trafficAccumulator =
                 new CapturedTrafficToHttpTransactionAccumulator(Duration.ofSeconds(30), null,
@@ -154,12 +364,8 @@ public class SimpleCapturedTrafficToHttpTransactionAccumulatorTest extends Instr
                             }
                         });
         var tsList = trafficStreams.collect(Collectors.toList());
-        trafficStreams = tsList.stream();
 
-        trafficStreams.forEach(ts->trafficAccumulator.accept(
-                new PojoTrafficStreamAndKey(ts, PojoTrafficStreamKeyAndContext.build(ts,
-                        context::createTrafficStreamContextForTest)
-                )));
+        tsList.forEach(trafficAccumulator::accept);
         trafficAccumulator.close();
         return tsIndicesReceived;
     }
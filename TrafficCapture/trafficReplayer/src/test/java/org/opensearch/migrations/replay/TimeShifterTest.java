@@ -30,4 +30,19 @@ class TimeShifterTest {
         Assertions.assertEquals(sourceTime2, shifter.transformRealTimeToSourceTime(
                 shifter.transformSourceTimeToRealTime(sourceTime2)).get());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testOnlyTheFirstTimestampSetsTheBaseline() {
+        TimeShifter shifter = new TimeShifter(RATE_MULTIPLIER);
+        var firstSourceTime = Instant.now().minus(Duration.ofHours(1));
+        var earlierSourceTime = firstSourceTime.minus(Duration.ofMinutes(RATE_MULTIPLIER));
+
+        shifter.setFirstTimestamp(firstSourceTime);
+        var systemTimeStart = shifter.transformSourceTimeToRealTime(firstSourceTime);
+        // a request that started earlier, but was reconstructed later, doesn't move what's been scheduled
+        shifter.setFirstTimestamp(earlierSourceTime);
+        Assertions.assertEquals(systemTimeStart, shifter.transformSourceTimeToRealTime(firstSourceTime));
+        Assertions.assertEquals(systemTimeStart.minus(Duration.ofMinutes(1)),
+                shifter.transformSourceTimeToRealTime(earlierSourceTime));
+    }
+}
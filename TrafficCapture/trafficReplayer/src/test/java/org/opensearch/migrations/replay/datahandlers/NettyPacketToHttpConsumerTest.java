@@ -1,5 +1,6 @@
 package org.opensearch.migrations.replay.datahandlers;
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -190,7 +191,7 @@ public class NettyPacketToHttpConsumerTest extends InstrumentationTest {
                     var ctx = rootContext.getTestConnectionRequestContext("TEST_" + i, j);
                     var requestFinishFuture = TrafficReplayer.transformAndSendRequest(transformingHttpHandlerFactory,
                         sendingFactory, ctx, Instant.now(), Instant.now(),
-                        () -> Stream.of(EXPECTED_REQUEST_STRING.getBytes(StandardCharsets.UTF_8)));
+                        () -> Stream.of(Unpooled.wrappedBuffer(EXPECTED_REQUEST_STRING.getBytes(StandardCharsets.UTF_8))));
                     log.info("requestFinishFuture=" + requestFinishFuture);
                     var aggregatedResponse = requestFinishFuture.get();
                     log.debug("Got aggregated response=" + aggregatedResponse);
@@ -0,0 +1,43 @@
+package org.opensearch.migrations.replay.datatypes;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBufUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class RawPacketsTest {
+
+    @Test
+    public void testByteBufsShareThePacketsBytes() {
+        var packets = new RawPackets();
+        var source = ByteString.copyFrom("GET / HTTP/1.1\r\n", StandardCharsets.UTF_8);
+        packets.add(source.substring(0, 6).concat(source.substring(6)));
+        packets.add("\r\n".getBytes(StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(2, packets.size());
+        Assertions.assertEquals("GET / HTTP/1.1\r\n", new String(packets.get(0), StandardCharsets.UTF_8));
+        var wrappedContents = packets.streamByteBufs().map(bb -> {
+            try {
+                Assertions.assertTrue(bb.isReadOnly());
+                return new String(ByteBufUtil.getBytes(bb), StandardCharsets.UTF_8);
+            } finally {
+                bb.release();
+            }
+        }).collect(Collectors.toList());
+        Assertions.assertEquals(List.of("GET / HTTP/1.1\r\n", "\r\n"), wrappedContents);
+    }
+
+    @Test
+    public void testEqualityIsByContent() {
+        var a = new RawPackets();
+        a.add(ByteString.copyFromUtf8("abc"));
+        var b = new RawPackets();
+        b.add("abc".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(a, b);
+        Assertions.assertEquals(a.hashCode(), b.hashCode());
+    }
+}
@@ -0,0 +1,74 @@
+package org.opensearch.migrations.replay.datatypes;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class SerializedTrafficStreamTest {
+
+    private static TrafficStream makeTrafficStream(String connectionId, boolean isLastChunk, int index) {
+        var builder = TrafficStream.newBuilder()
+                .setNodeId("testNode")
+                .setConnectionId(connectionId)
+                .setPriorRequestsReceived(3)
+                .setLastObservationWasUnterminatedRead(true)
+                .addSubStream(TrafficObservation.newBuilder()
+                        .setTs(Timestamp.newBuilder().setSeconds(1).build())
+                        .setRead(ReadObservation.newBuilder()
+                                .setData(ByteString.copyFrom("GET / HTTP/1.1\r\n", StandardCharsets.UTF_8))));
+        return (isLastChunk ? builder.setNumberOfThisLastChunk(index) : builder.setNumber(index)).build();
+    }
+
+    @Test
+    public void testHeaderIsReadWithoutTheObservations() throws IOException {
+        var original = makeTrafficStream("c1", true, 7);
+        var serialized = SerializedTrafficStream.readHeader(original.toByteString());
+        Assertions.assertEquals("testNode", serialized.getNodeId());
+        Assertions.assertEquals("c1", serialized.getConnectionId());
+        Assertions.assertEquals(7, serialized.getTrafficStreamIndex());
+        Assertions.assertTrue(serialized.isLastChunk());
+        Assertions.assertEquals(3, serialized.getPriorRequestsReceived());
+        Assertions.assertTrue(serialized.isLastObservationWasUnterminatedRead());
+        Assertions.assertTrue(serialized.hasLastObservationWasUnterminatedRead());
+        Assertions.assertFalse(SerializedTrafficStream.readHeader(TrafficStream.newBuilder()
+                .setConnectionId("c2")
+                .build()
+                .toByteString())
+                .hasLastObservationWasUnterminatedRead());
+        Assertions.assertEquals(original, serialized.getStream());
+        Assertions.assertSame(serialized.getStream(), serialized.getStream());
+    }
+
+    @Test
+    public void testDelimitedStreamsAreSplitApart() throws IOException {
+        var originals = List.of(makeTrafficStream("c1", false, 1), makeTrafficStream("c2", true, 2));
+        var baos = new ByteArrayOutputStream();
+        for (var ts : originals) {
+            ts.writeDelimitedTo(baos);
+        }
+        var bytes = baos.toByteArray();
+
+        var fromBuffer = SerializedTrafficStream.readAllDelimited(ByteString.copyFrom(bytes));
+        Assertions.assertEquals(2, fromBuffer.size());
+        Assertions.assertEquals(bytes.length, fromBuffer.stream().mapToInt(SerializedTrafficStream::getDelimitedSize).sum());
+
+        var inputStream = new ByteArrayInputStream(bytes);
+        for (int i = 0; i < originals.size(); ++i) {
+            Assertions.assertEquals(originals.get(i), fromBuffer.get(i).getStream());
+            var fromStream = SerializedTrafficStream.readDelimitedFrom(inputStream);
+            Assertions.assertEquals(originals.get(i).getConnectionId(), fromStream.getConnectionId());
+            Assertions.assertEquals(originals.get(i), fromStream.getStream());
+        }
+        Assertions.assertNull(SerializedTrafficStream.readDelimitedFrom(inputStream));
+    }
+}
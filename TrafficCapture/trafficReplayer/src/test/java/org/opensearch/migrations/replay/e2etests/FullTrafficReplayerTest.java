@@ -9,12 +9,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.ResourceLock;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
-import org.opensearch.migrations.replay.CapturedTrafficToHttpTransactionAccumulator;
 import org.opensearch.migrations.replay.ReplayEngine;
 import org.opensearch.migrations.replay.SourceTargetCaptureTuple;
 import org.opensearch.migrations.replay.TestHttpServerContext;
 import org.opensearch.migrations.replay.TimeShifter;
 import org.opensearch.migrations.replay.TrafficReplayer;
+import org.opensearch.migrations.replay.TrafficStreamAccumulator;
 import org.opensearch.migrations.replay.tracing.IRootReplayerContext;
 import org.opensearch.migrations.replay.traffic.generator.ExhaustiveTrafficStreamGenerator;
 import org.opensearch.migrations.replay.datatypes.ITrafficStreamKey;
@@ -91,7 +91,7 @@ public class FullTrafficReplayerTest extends InstrumentationTest {
         @Override
         @SneakyThrows
         protected void wrapUpWorkAndEmitSummary(ReplayEngine replayEngine,
-                                                CapturedTrafficToHttpTransactionAccumulator accumulator) {
+                                                TrafficStreamAccumulator accumulator) {
             var startTime = System.nanoTime();
             for (Duration waitTime = Duration.ofMillis(10);
                  replayEngine.isWorkOutstanding();
@@ -12,11 +12,13 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.opensearch.migrations.replay.tracing.ChannelContextManager;
 import org.opensearch.migrations.replay.tracing.ReplayContexts;
+import org.opensearch.migrations.replay.traffic.source.ITrafficCaptureSource;
 import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
 import org.opensearch.migrations.tracing.InstrumentationTest;
 import org.opensearch.migrations.trafficcapture.protos.ReadObservation;
 import org.opensearch.migrations.trafficcapture.protos.TrafficObservation;
 import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStreamUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -140,6 +142,50 @@ class KafkaTrafficCaptureSourceTest extends InstrumentationTest {
         }
     }
 
+    @Test
+    public void testBatchedRecordIsUnpackedAndCommittedOnceAllStreamsAreDone() throws Exception {
+        int numTrafficStreams = 3;
+        MockConsumer<String, byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        try (var protobufConsumer = new KafkaTrafficCaptureSource(rootContext,
+                mockConsumer, TEST_TOPIC_NAME, Duration.ofHours(1))) {
+            initializeMockConsumerTopic(mockConsumer);
+
+            mockConsumer.schedulePollTask(() -> {
+                mockConsumer.rebalance(Collections.singletonList(new TopicPartition(TEST_TOPIC_NAME, 0)));
+                try (var baos = new ByteArrayOutputStream()) {
+                    for (int i = 0; i < numTrafficStreams; ++i) {
+                        makeTrafficStream(Instant.now(), "payload" + i, i + 1).writeDelimitedTo(baos);
+                    }
+                    var record = new ConsumerRecord<>(TEST_TOPIC_NAME, 0, 1, "batch", baos.toByteArray());
+                    record.headers().add(TrafficStreamUtils.TRAFFIC_STREAM_BATCH_FORMAT_HEADER,
+                            TrafficStreamUtils.LENGTH_DELIMITED_BATCH_FORMAT.getBytes(StandardCharsets.UTF_8));
+                    mockConsumer.addRecord(record);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            var streams = new ArrayList<ITrafficStreamWithKey>();
+            Assertions.assertTimeoutPreemptively(TEST_TIMEOUT, () -> {
+                while (streams.size() < numTrafficStreams) {
+                    streams.addAll(protobufConsumer.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                            .get());
+                }
+            });
+            Assertions.assertEquals(numTrafficStreams, streams.size());
+            for (int i = 0; i < numTrafficStreams; ++i) {
+                Assertions.assertEquals(i + 1, streams.get(i).getStream().getSubStreamCount());
+            }
+
+            Assertions.assertEquals(ITrafficCaptureSource.CommitResult.BlockedByOtherCommits,
+                    protobufConsumer.commitTrafficStream(streams.get(2).getKey()));
+            Assertions.assertEquals(ITrafficCaptureSource.CommitResult.BlockedByOtherCommits,
+                    protobufConsumer.commitTrafficStream(streams.get(0).getKey()));
+            Assertions.assertEquals(ITrafficCaptureSource.CommitResult.AfterNextRead,
+                    protobufConsumer.commitTrafficStream(streams.get(1).getKey()));
+        }
+    }
+
     @Test
     public void testBuildPropertiesBaseCase() throws IOException {
         Properties props = KafkaTrafficCaptureSource.buildKafkaProperties("brokers", "groupId", false, null);
@@ -0,0 +1,64 @@
+package org.opensearch.migrations.replay.kafka;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeSet;
+
+class OffsetLifecycleTrackerTest {
+
+    @Test
+    public void testHeadOnlyAdvancesWhenTheLowestOffsetIsRemoved() {
+        var tracker = new OffsetLifecycleTracker(1);
+        tracker.add(10);
+        tracker.add(11);
+        tracker.add(15);
+        Assertions.assertEquals(Optional.empty(), tracker.removeAndReturnNewHead(11));
+        Assertions.assertEquals(Optional.of(15L), tracker.removeAndReturnNewHead(10));
+        Assertions.assertEquals(Optional.of(16L), tracker.removeAndReturnNewHead(15));
+        Assertions.assertTrue(tracker.isEmpty());
+        tracker.add(100);
+        Assertions.assertEquals(1, tracker.size());
+        Assertions.assertEquals(Optional.of(101L), tracker.removeAndReturnNewHead(100));
+    }
+
+    /**
+     * Compares against a sorted set while the window of outstanding offsets grows well past the initial
+     * capacity of the ring and wraps around it many times
+     */
+    @Test
+    public void testMatchesASortedSetForRandomCompletionOrders() {
+        var random = new Random(2);
+        var tracker = new OffsetLifecycleTracker(1);
+        var outstanding = new TreeSet<Long>();
+        var notYetRemoved = new ArrayList<Long>();
+        long nextOffset = 5;
+        long highWatermark = 0;
+        for (int round = 0; round < 50; ++round) {
+            var numToAdd = random.nextInt(5000);
+            for (int i = 0; i < numToAdd; ++i) {
+                // leave gaps, like Kafka can
+                nextOffset += 1 + (random.nextInt(10) == 0 ? random.nextInt(100) : 0);
+                tracker.add(nextOffset);
+                outstanding.add(nextOffset);
+                notYetRemoved.add(nextOffset);
+                highWatermark = nextOffset;
+            }
+            Collections.shuffle(notYetRemoved, random);
+            var numToRemove = random.nextInt(notYetRemoved.size() + 1);
+            for (int i = 0; i < numToRemove; ++i) {
+                var offset = notYetRemoved.remove(notYetRemoved.size() - 1);
+                var wasHead = outstanding.first().equals(offset);
+                outstanding.remove(offset);
+                var expected = !wasHead ? Optional.<Long>empty() :
+                        Optional.of(outstanding.isEmpty() ? highWatermark + 1 : outstanding.first());
+                Assertions.assertEquals(expected, tracker.removeAndReturnNewHead(offset));
+            }
+            Assertions.assertEquals(outstanding.size(), tracker.size());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.opensearch.migrations.replay.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensearch.migrations.replay.traffic.source.ITrafficCaptureSource;
+import org.opensearch.migrations.replay.traffic.source.ITrafficStreamWithKey;
+import org.opensearch.migrations.tracing.InstrumentationTest;
+import org.opensearch.migrations.trafficcapture.protos.TrafficStream;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class ParallelKafkaTrafficCaptureSourceTest extends InstrumentationTest {
+    private static final String TEST_TOPIC_NAME = "TEST_TOPIC_NAME";
+    private static final int NUM_PARTITIONS = 2;
+    private static final int RECORDS_PER_PARTITION = 5;
+
+    private static MockConsumer<String, byte[]> makeConsumerForPartition(int partition) {
+        var mockConsumer = makeUnassignedConsumer(partition);
+        mockConsumer.schedulePollTask(() -> assignPartitionWithRecords(mockConsumer, partition));
+        return mockConsumer;
+    }
+
+    private static MockConsumer<String, byte[]> makeUnassignedConsumer(int partition) {
+        var mockConsumer = new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.updateBeginningOffsets(Map.of(new TopicPartition(TEST_TOPIC_NAME, partition), 0L));
+        return mockConsumer;
+    }
+
+    private static void assignPartitionWithRecords(MockConsumer<String, byte[]> mockConsumer, int partition) {
+        mockConsumer.rebalance(Collections.singletonList(new TopicPartition(TEST_TOPIC_NAME, partition)));
+        for (int i = 0; i < RECORDS_PER_PARTITION; ++i) {
+            var ts = TrafficStream.newBuilder()
+                    .setNodeId("testNode")
+                    .setConnectionId("p" + partition)
+                    .setNumber(i + 1)
+                    .build();
+            mockConsumer.addRecord(new ConsumerRecord<>(TEST_TOPIC_NAME, partition, i, "k" + i, ts.toByteArray()));
+        }
+    }
+
+    private List<ITrafficStreamWithKey> readStreams(ParallelKafkaTrafficCaptureSource parallelSource,
+                                                    int numStreams) {
+        var streams = new ArrayList<ITrafficStreamWithKey>();
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (streams.size() < numStreams) {
+                streams.addAll(parallelSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext)
+                        .get());
+            }
+        });
+        return streams;
+    }
+
+    @Test
+    public void testStreamsFromAllConsumersAreReadInPartitionOrderAndCommittedToTheirOwnConsumer() throws Exception {
+        var sources = new ArrayList<KafkaTrafficCaptureSource>();
+        for (int p = 0; p < NUM_PARTITIONS; ++p) {
+            sources.add(new KafkaTrafficCaptureSource(rootContext, makeConsumerForPartition(p), TEST_TOPIC_NAME,
+                    Duration.ofHours(1)));
+        }
+        try (var parallelSource = new ParallelKafkaTrafficCaptureSource(rootContext, sources)) {
+            var streams = readStreams(parallelSource, NUM_PARTITIONS * RECORDS_PER_PARTITION);
+
+            var streamsByConnection = streams.stream()
+                    .collect(Collectors.groupingBy(s -> s.getKey().getConnectionId(), Collectors.toList()));
+            Assertions.assertEquals(NUM_PARTITIONS, streamsByConnection.size());
+            for (var connectionStreams : streamsByConnection.values()) {
+                Assertions.assertEquals(List.of(1, 2, 3, 4, 5), connectionStreams.stream()
+                        .map(s -> s.getKey().getTrafficStreamIndex()).collect(Collectors.toList()));
+                // the first offset of each partition is at the head of its own consumer's tracker
+                Assertions.assertEquals(ITrafficCaptureSource.CommitResult.AfterNextRead,
+                        parallelSource.commitTrafficStream(connectionStreams.get(0).getKey()));
+                Assertions.assertEquals(ITrafficCaptureSource.CommitResult.BlockedByOtherCommits,
+                        parallelSource.commitTrafficStream(connectionStreams.get(2).getKey()));
+            }
+        }
+    }
+
+    /**
+     * When a partition moves to another consumer, that consumer reads the same records again.  Its generation
+     * count is independent of the first consumer's, so the keys can match in every field but the source that
+     * read them.  Each key still has to be committed back to its own source.
+     */
+    @Test
+    public void testStreamsReReadAfterAPartitionIsReassignedAreCommittedToTheNewConsumer() throws Exception {
+        var firstConsumer = makeConsumerForPartition(0);
+        var secondConsumer = makeUnassignedConsumer(0);
+        var sources = List.of(
+                new KafkaTrafficCaptureSource(rootContext, firstConsumer, TEST_TOPIC_NAME, Duration.ofHours(1)),
+                new KafkaTrafficCaptureSource(rootContext, secondConsumer, TEST_TOPIC_NAME, Duration.ofHours(1)));
+        try (var parallelSource = new ParallelKafkaTrafficCaptureSource(rootContext, sources)) {
+            var streamsFromFirstConsumer = readStreams(parallelSource, RECORDS_PER_PARTITION);
+
+            firstConsumer.schedulePollTask(() -> firstConsumer.rebalance(Collections.emptyList()));
+            secondConsumer.schedulePollTask(() -> assignPartitionWithRecords(secondConsumer, 0));
+            var streamsFromSecondConsumer = readStreams(parallelSource, RECORDS_PER_PARTITION);
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (!firstConsumer.assignment().isEmpty()) {
+                    parallelSource.readNextTrafficStreamChunk(rootContext::createReadChunkContext).get();
+                }
+            });
+
+            var firstKey = streamsFromFirstConsumer.get(0).getKey();
+            var secondKey = streamsFromSecondConsumer.get(0).getKey();
+            Assertions.assertEquals(firstKey.getConnectionId(), secondKey.getConnectionId());
+            Assertions.assertEquals(firstKey.getTrafficStreamIndex(), secondKey.getTrafficStreamIndex());
+            Assertions.assertNotEquals(firstKey, secondKey);
+            // the first consumer no longer owns the partition, so its commit is dropped...
+            Assertions.assertEquals(ITrafficCaptureSource.CommitResult.Ignored,
+                    parallelSource.commitTrafficStream(firstKey));
+            // ...without disturbing the second consumer's tracking of the same offset
+            Assertions.assertEquals(ITrafficCaptureSource.CommitResult.AfterNextRead,
+                    parallelSource.commitTrafficStream(secondKey));
+        }
+    }
+}
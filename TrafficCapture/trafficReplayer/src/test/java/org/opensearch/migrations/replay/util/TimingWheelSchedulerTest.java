@@ -0,0 +1,84 @@
+package org.opensearch.migrations.replay.util;
+
+import io.netty.channel.DefaultEventLoop;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+class TimingWheelSchedulerTest {
+
+    @Test
+    public void testTasksRunInDeadlineOrderAndNeverEarly() throws Exception {
+        var eventLoop = new DefaultEventLoop();
+        try {
+            var timingWheel = new TimingWheelScheduler(eventLoop);
+            var start = timingWheel.currentEpochNanos();
+            // the task that's already due runs right away, and
+            // offsets past 256ms land in the second level of the wheel and have to be cascaded down
+            var offsetsMs = List.of(300, 20, 60, 40, 257, 40, 600, -10, 120);
+            var ranTasks = new ConcurrentLinkedQueue<int[]>();
+            var lateByNanos = new ConcurrentLinkedQueue<Long>();
+            var allDone = new CountDownLatch(offsetsMs.size());
+            for (int i = 0; i < offsetsMs.size(); ++i) {
+                var taskIdx = i;
+                var deadline = start + Duration.ofMillis(offsetsMs.get(i)).toNanos();
+                timingWheel.schedule(deadline, () -> {
+                    Assertions.assertTrue(eventLoop.inEventLoop());
+                    lateByNanos.add(timingWheel.currentEpochNanos() - deadline);
+                    ranTasks.add(new int[]{taskIdx, offsetsMs.get(taskIdx)});
+                    allDone.countDown();
+                });
+            }
+            Assertions.assertTrue(allDone.await(10, TimeUnit.SECONDS));
+
+            var ranOffsets = ranTasks.stream().map(a -> a[1]).collect(Collectors.toList());
+            var expectedOffsets = new ArrayList<>(offsetsMs);
+            expectedOffsets.sort(Integer::compare);
+            Assertions.assertEquals(expectedOffsets, ranOffsets);
+            // tasks with the same deadline keep the order that they were scheduled in
+            var tiedTasks = ranTasks.stream().filter(a -> a[1] == 40).map(a -> a[0]).collect(Collectors.toList());
+            Assertions.assertEquals(List.of(3, 5), tiedTasks);
+            Assertions.assertTrue(lateByNanos.stream().allMatch(n -> n >= 0), "tasks ran early: " + lateByNanos);
+            Assertions.assertEquals(0, (int) eventLoop.submit(timingWheel::getPendingTaskCount).get());
+        } finally {
+            eventLoop.shutdownGracefully().sync();
+        }
+    }
+
+    @Test
+    public void testTasksScheduledAfterALongIdleGapDontWaitForTheWheelToCatchUp() throws Exception {
+        var eventLoop = new DefaultEventLoop();
+        try {
+            var nanoTime = new AtomicLong();
+            var timingWheel = new TimingWheelScheduler(eventLoop, Duration.ofMillis(1), nanoTime::get);
+            var firstTaskRan = new CountDownLatch(1);
+            timingWheel.schedule(timingWheel.currentEpochNanos() + Duration.ofMillis(5).toNanos(),
+                    firstTaskRan::countDown);
+            nanoTime.addAndGet(Duration.ofMillis(5).toNanos());
+            Assertions.assertTrue(firstTaskRan.await(10, TimeUnit.SECONDS));
+
+            // walking through every tick of this gap would take far longer than the test waits
+            nanoTime.addAndGet(Duration.ofDays(1000).toNanos());
+            var now = timingWheel.currentEpochNanos();
+            var overdueTaskRan = new CountDownLatch(1);
+            var laterTaskRan = new CountDownLatch(1);
+            timingWheel.schedule(now - Duration.ofMillis(1).toNanos(), overdueTaskRan::countDown);
+            timingWheel.schedule(now + Duration.ofMillis(2).toNanos(), laterTaskRan::countDown);
+            Assertions.assertTrue(overdueTaskRan.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, (int) eventLoop.submit(timingWheel::getPendingTaskCount).get());
+
+            nanoTime.addAndGet(Duration.ofMillis(2).toNanos());
+            Assertions.assertTrue(laterTaskRan.await(10, TimeUnit.SECONDS));
+        } finally {
+            eventLoop.shutdownGracefully().sync();
+        }
+    }
+}